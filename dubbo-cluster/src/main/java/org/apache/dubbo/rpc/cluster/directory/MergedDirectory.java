@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.directory;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.cluster.Directory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * MergedDirectory, lists the invokers of several directories, such as the ones of several registries, keeping only the
+ * first invoker of each provider, that is of each protocol, address and service key. The other parameters of the urls
+ * may differ, e.g. the consumer parameters of each registry. The invokers of a single directory are listed as they are.
+ *
+ */
+public class MergedDirectory<T> extends AbstractDirectory<T> {
+
+    private final List<Directory<T>> directories;
+
+    public MergedDirectory(URL url, List<Directory<T>> directories) {
+        super(url);
+        if (directories == null || directories.isEmpty())
+            throw new IllegalArgumentException("directories == null");
+        this.directories = directories;
+    }
+
+    @Override
+    public Class<T> getInterface() {
+        return directories.get(0).getInterface();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        if (isDestroyed()) {
+            return false;
+        }
+        for (Directory<T> directory : directories) {
+            if (directory.isAvailable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void destroy() {
+        if (isDestroyed()) {
+            return;
+        }
+        super.destroy();
+        for (Directory<T> directory : directories) {
+            directory.destroy();
+        }
+    }
+
+    @Override
+    protected List<Invoker<T>> doList(Invocation invocation) throws RpcException {
+        List<Invoker<T>> first = null;
+        List<Invoker<T>> invokers = null;
+        Set<Provider> providers = null;
+        RpcException failure = null;
+        for (Directory<T> directory : directories) {
+            List<Invoker<T>> listed;
+            try {
+                listed = directory.list(invocation);
+            } catch (RpcException e) {
+                // e.g. no provider in this registry
+                failure = e;
+                continue;
+            }
+            if (listed == null || listed.isEmpty()) {
+                continue;
+            }
+            if (first == null) {
+                first = listed;
+                continue;
+            }
+            if (invokers == null) {
+                invokers = new ArrayList<Invoker<T>>(first.size() + listed.size());
+                providers = new HashSet<Provider>();
+                merge(first, invokers, providers);
+            }
+            merge(listed, invokers, providers);
+        }
+        if (invokers != null) {
+            return invokers;
+        }
+        if (first != null) {
+            return first;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return new ArrayList<Invoker<T>>();
+    }
+
+    private static <T> void merge(List<Invoker<T>> listed, List<Invoker<T>> invokers, Set<Provider> providers) {
+        for (Invoker<T> invoker : listed) {
+            if (providers.add(new Provider(invoker.getUrl()))) {
+                invokers.add(invoker);
+            }
+        }
+    }
+
+    /**
+     * The protocol, address and service key of a url, compared without building them into a string.
+     */
+    private static final class Provider {
+
+        private final String protocol;
+
+        private final String host;
+
+        private final int port;
+
+        private final String serviceInterface;
+
+        private final String group;
+
+        private final String version;
+
+        private final int hash;
+
+        Provider(URL url) {
+            this.protocol = url.getProtocol();
+            this.host = url.getHost();
+            this.port = url.getPort();
+            this.serviceInterface = url.getServiceInterface();
+            this.group = emptyToNull(url.getParameter(Constants.GROUP_KEY));
+            this.version = emptyToNull(url.getParameter(Constants.VERSION_KEY));
+            int h = port;
+            h = 31 * h + (host == null ? 0 : host.hashCode());
+            h = 31 * h + (serviceInterface == null ? 0 : serviceInterface.hashCode());
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Provider)) {
+                return false;
+            }
+            Provider other = (Provider) o;
+            return port == other.port && hash == other.hash && equals(host, other.host)
+                    && equals(serviceInterface, other.serviceInterface) && equals(protocol, other.protocol)
+                    && equals(group, other.group) && equals(version, other.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private static boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        private static String emptyToNull(String value) {
+            return value == null || value.isEmpty() ? null : value;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.loadbalance;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.support.RpcUtils;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Affinity load balance, sends the requests with the same key to the same provider, so that the providers can keep
+ * the state of a key, such as a user, in their caches.
+ * <p>
+ * The key is the attachment named by <code>affinity.attachment</code>, or else the argument at the index
+ * <code>affinity.argument</code>, 0 by default. The provider is chosen by rendezvous hashing: each provider scores
+ * the key with a hash of its address and the highest score wins. When a provider is removed only its keys move,
+ * and a new provider only takes its share of the keys. Unlike {@link ConsistentHashLoadBalance}, there is no ring
+ * to build on a change, and no digest or string to build per request.
+ * <p>
+ * The requests without a key are balanced randomly. The weights are ignored.
+ */
+public class AffinityLoadBalance extends AbstractLoadBalance {
+
+    public static final String NAME = "affinity";
+
+    @Override
+    protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
+        String methodName = RpcUtils.getMethodName(invocation);
+        Object key;
+        String attachment = url.getMethodParameter(methodName, Constants.AFFINITY_ATTACHMENT_KEY);
+        if (attachment != null && attachment.length() > 0) {
+            key = invocation.getAttachment(attachment);
+        } else {
+            int index = url.getMethodParameter(methodName, Constants.AFFINITY_ARGUMENT_KEY, 0);
+            Object[] args = invocation.getArguments();
+            key = args != null && index >= 0 && index < args.length ? args[index] : null;
+        }
+        if (key == null) {
+            return invokers.get(ThreadLocalRandom.current().nextInt(invokers.size()));
+        }
+        long hash = hash(key);
+        Invoker<T> selected = null;
+        long maxScore = 0;
+        for (int i = 0, size = invokers.size(); i < size; i++) {
+            Invoker<T> invoker = invokers.get(i);
+            long score = mix(hash ^ mix(address(invoker.getUrl())));
+            if (selected == null || Long.compareUnsigned(score, maxScore) > 0) {
+                selected = invoker;
+                maxScore = score;
+            }
+        }
+        return selected;
+    }
+
+    static long hash(Object key) {
+        if (key instanceof Number && !(key instanceof Float || key instanceof Double)) {
+            return mix(((Number) key).longValue());
+        }
+        // String caches its hash code
+        return mix(key.hashCode());
+    }
+
+    private static long address(URL url) {
+        String host = url.getHost();
+        return ((long) (host == null ? 0 : host.hashCode()) << 32) | url.getPort();
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreads every bit of the input over the output.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
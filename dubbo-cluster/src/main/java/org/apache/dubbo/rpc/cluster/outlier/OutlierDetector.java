@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.outlier;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.logger.Logger;
+import org.apache.dubbo.common.logger.LoggerFactory;
+import org.apache.dubbo.rpc.Invoker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passive outlier detection of the invokers of a cluster, based on the {@link OutlierStats} recorded by {@link OutlierFilter}.
+ * <ul>
+ * <li>consecutive failures: checked on every selection</li>
+ * <li>success rate: ejects the invokers below mean - stdev * factor, analysed every interval</li>
+ * <li>latency: ejects the invokers whose latency percentile exceeds the median by a factor, analysed every interval</li>
+ * </ul>
+ * The ejection time doubles every time an invoker is ejected again, and never more than
+ * the max ejection percent of the invokers are ejected at the same time.
+ */
+public class OutlierDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutlierDetector.class);
+
+    /**
+     * Minimum invokers with enough requests for the success rate and latency to be compared
+     */
+    private static final int MINIMUM_HOSTS = 5;
+
+    private final String serviceKey;
+
+    private final int consecutiveErrors;
+
+    private final int interval;
+
+    private final long ejectionTime;
+
+    private final long maxEjectionTime;
+
+    private final int maxEjectionPercent;
+
+    private final double successRateStdev;
+
+    private final int requestVolume;
+
+    private final int latencyPercentile;
+
+    private final double latencyFactor;
+
+    private final AtomicLong nextAnalyseTime;
+
+    private volatile InvokerStats lastInvokerStats;
+
+    public OutlierDetector(URL url) {
+        this.serviceKey = url.getServiceKey();
+        this.consecutiveErrors = url.getParameter(Constants.OUTLIER_CONSECUTIVE_ERRORS_KEY, Constants.DEFAULT_OUTLIER_CONSECUTIVE_ERRORS);
+        this.interval = url.getParameter(Constants.OUTLIER_INTERVAL_KEY, Constants.DEFAULT_OUTLIER_INTERVAL);
+        this.ejectionTime = url.getParameter(Constants.OUTLIER_EJECTION_TIME_KEY, Constants.DEFAULT_OUTLIER_EJECTION_TIME);
+        this.maxEjectionTime = Math.max(ejectionTime, url.getParameter(Constants.OUTLIER_MAX_EJECTION_TIME_KEY, Constants.DEFAULT_OUTLIER_MAX_EJECTION_TIME));
+        this.maxEjectionPercent = url.getParameter(Constants.OUTLIER_MAX_EJECTION_PERCENT_KEY, Constants.DEFAULT_OUTLIER_MAX_EJECTION_PERCENT);
+        this.successRateStdev = url.getParameter(Constants.OUTLIER_SUCCESS_RATE_STDEV_KEY, Constants.DEFAULT_OUTLIER_SUCCESS_RATE_STDEV);
+        this.requestVolume = url.getParameter(Constants.OUTLIER_REQUEST_VOLUME_KEY, Constants.DEFAULT_OUTLIER_REQUEST_VOLUME);
+        this.latencyPercentile = url.getParameter(Constants.OUTLIER_LATENCY_PERCENTILE_KEY, Constants.DEFAULT_OUTLIER_LATENCY_PERCENTILE);
+        this.latencyFactor = url.getParameter(Constants.OUTLIER_LATENCY_FACTOR_KEY, Constants.DEFAULT_OUTLIER_LATENCY_FACTOR);
+        this.nextAnalyseTime = new AtomicLong(System.currentTimeMillis() + interval);
+    }
+
+    /**
+     * @return the invokers which are not ejected, the given list itself if none is
+     */
+    public <T> List<Invoker<T>> select(List<Invoker<T>> invokers) {
+        if (invokers == null || invokers.isEmpty()) {
+            return invokers;
+        }
+        InvokerStats invokerStats = lastInvokerStats;
+        if (invokerStats == null || invokerStats.invokers != invokers || invokerStats.stats.length != invokers.size()) {
+            // directories hand out the same list until the invokers change
+            invokerStats = new InvokerStats(invokers);
+            lastInvokerStats = invokerStats;
+        }
+        OutlierStats[] stats = invokerStats.stats;
+        long now = System.currentTimeMillis();
+        long next = nextAnalyseTime.get();
+        if (now >= next && nextAnalyseTime.compareAndSet(next, now + interval)) {
+            analyse(stats, now);
+        }
+        int ejected = 0;
+        for (OutlierStats s : stats) {
+            if (!s.isEjected(now) && s.getConsecutiveFailures() >= consecutiveErrors) {
+                eject(stats, s, now, "consecutive failures " + s.getConsecutiveFailures());
+            }
+            if (s.isEjected(now)) {
+                ejected++;
+            }
+        }
+        if (ejected == 0 || ejected == stats.length) {
+            return invokers;
+        }
+        List<Invoker<T>> available = new ArrayList<Invoker<T>>(stats.length - ejected);
+        for (int i = 0; i < stats.length; i++) {
+            if (!stats[i].isEjected(now)) {
+                available.add(invokers.get(i));
+            }
+        }
+        return available;
+    }
+
+    private void analyse(OutlierStats[] stats, long now) {
+        double[] successRates = new double[stats.length];
+        long[] latencies = new long[stats.length];
+        int hosts = 0;
+        double sum = 0;
+        for (int i = 0; i < stats.length; i++) {
+            long[] counts = stats[i].rollInterval(latencyPercentile, requestVolume);
+            long total = counts[0] + counts[1];
+            stats[i].heal(now);
+            if (total < requestVolume || stats[i].isEjected(now)) {
+                successRates[i] = -1;
+                continue;
+            }
+            successRates[i] = (double) counts[0] / total;
+            latencies[hosts] = counts[2];
+            sum += successRates[i];
+            hosts++;
+        }
+        if (hosts < MINIMUM_HOSTS) {
+            return;
+        }
+        double mean = sum / hosts;
+        double variance = 0;
+        for (double rate : successRates) {
+            if (rate >= 0) {
+                variance += (rate - mean) * (rate - mean);
+            }
+        }
+        double threshold = mean - successRateStdev * Math.sqrt(variance / hosts);
+        Arrays.sort(latencies, 0, hosts);
+        long maxLatency = (long) (Math.max(latencies[hosts / 2], 1) * latencyFactor);
+        for (int i = 0; i < stats.length; i++) {
+            double rate = successRates[i];
+            if (rate < 0) {
+                continue;
+            }
+            if (rate < threshold) {
+                eject(stats, stats[i], now, "success rate " + rate + " below " + threshold);
+            } else if (latencyFactor > 0 && stats[i].getLastLatency() > maxLatency) {
+                eject(stats, stats[i], now, "latency p" + latencyPercentile + " " + stats[i].getLastLatency() + "ms above " + maxLatency + "ms");
+            }
+        }
+    }
+
+    private synchronized void eject(OutlierStats[] stats, OutlierStats target, long now, String cause) {
+        if (target.isEjected(now)) {
+            return;
+        }
+        int ejected = 0;
+        for (OutlierStats s : stats) {
+            if (s.isEjected(now)) {
+                ejected++;
+            }
+        }
+        if ((ejected + 1) * 100 > maxEjectionPercent * stats.length) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Skip ejecting " + target.getAddress() + " of " + serviceKey + ", cause: " + cause
+                        + ", already " + ejected + " of " + stats.length + " invokers ejected");
+            }
+            return;
+        }
+        target.eject(now, ejectionTime, maxEjectionTime);
+        logger.warn("Eject " + target.getAddress() + " of " + serviceKey + " until " + target.getEjectedUntil()
+                + ", ejections: " + target.getEjections() + ", cause: " + cause);
+    }
+
+    private static final class InvokerStats {
+
+        private final List<?> invokers;
+
+        private final OutlierStats[] stats;
+
+        InvokerStats(List<? extends Invoker<?>> invokers) {
+            this.invokers = invokers;
+            this.stats = new OutlierStats[invokers.size()];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = OutlierStats.getStats(invokers.get(i).getUrl());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.outlier;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.extension.Activate;
+import org.apache.dubbo.remoting.RemotingException;
+import org.apache.dubbo.rpc.AsyncRpcResult;
+import org.apache.dubbo.rpc.Filter;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcException;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Records the outcome and latency of every call into the {@link OutlierStats} of the invoker.
+ * Only transport failures count against the invoker, business exceptions are successful calls.
+ */
+@Activate(group = Constants.CONSUMER, value = Constants.OUTLIER_KEY)
+public class OutlierFilter implements Filter {
+
+    @Override
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        final OutlierStats stats = OutlierStats.getStats(invoker.getUrl());
+        final long begin = System.currentTimeMillis();
+        Result result;
+        try {
+            result = invoker.invoke(invocation);
+        } catch (RuntimeException e) {
+            stats.record(System.currentTimeMillis() - begin, !isFailure(e));
+            throw e;
+        }
+        if (result instanceof AsyncRpcResult) {
+            CompletableFuture<?> future = ((AsyncRpcResult) result).getValueFuture();
+            future.whenComplete((value, t) -> {
+                // a cancelled call, e.g. a losing fork, says nothing about the invoker
+                if (!(t instanceof CancellationException)) {
+                    stats.record(System.currentTimeMillis() - begin, t == null || !isFailure(t));
+                }
+            });
+        } else {
+            stats.record(System.currentTimeMillis() - begin, !isFailure(result.getException()));
+        }
+        return result;
+    }
+
+    static boolean isFailure(Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof RpcException) {
+            return !((RpcException) t).isBiz();
+        }
+        return t instanceof RemotingException;
+    }
+
+}
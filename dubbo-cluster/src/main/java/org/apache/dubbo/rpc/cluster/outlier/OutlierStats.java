@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.outlier;
+
+import org.apache.dubbo.common.URL;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Passive health statistics of an invoker, recorded by {@link OutlierFilter} and
+ * analysed by {@link OutlierDetector}. They are kept by provider address and service key, and removed by the
+ * directory which destroys the invoker.
+ */
+public class OutlierStats {
+
+    private static final ConcurrentMap<String, OutlierStats> STATS = new ConcurrentHashMap<String, OutlierStats>();
+
+    /**
+     * The statistics by invoker url, so that the filter and the detector find them without building their key.
+     * An invoker keeps its url, which is hashed once per lookup and compared by identity.
+     */
+    private static final ConcurrentMap<URL, OutlierStats> URL_STATS = new ConcurrentHashMap<URL, OutlierStats>();
+
+    /**
+     * Latencies are counted in power of two buckets of milliseconds, the last bucket holds everything above
+     */
+    private static final int LATENCY_BUCKETS = 32;
+
+    private final String address;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final AtomicInteger succeeded = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS);
+
+    private volatile long ejectedUntil;
+
+    private volatile int ejections;
+
+    private volatile double lastSuccessRate = -1;
+
+    private volatile long lastLatency = -1;
+
+    private OutlierStats(String address) {
+        this.address = address;
+    }
+
+    public static OutlierStats getStats(URL url) {
+        OutlierStats stats = URL_STATS.get(url);
+        if (stats != null) {
+            return stats;
+        }
+        String key = toKey(url);
+        stats = STATS.get(key);
+        if (stats == null) {
+            STATS.putIfAbsent(key, new OutlierStats(url.getAddress()));
+            stats = STATS.get(key);
+        }
+        URL_STATS.put(url, stats);
+        if (STATS.get(key) != stats) {
+            // removed meanwhile
+            URL_STATS.remove(url, stats);
+        }
+        return stats;
+    }
+
+    public static void removeStats(URL url) {
+        URL_STATS.remove(url);
+        OutlierStats stats = STATS.remove(toKey(url));
+        if (stats != null) {
+            // other urls of the same provider and service
+            URL_STATS.values().removeAll(Collections.singleton(stats));
+        }
+    }
+
+    private static String toKey(URL url) {
+        return url.getProtocol() + "://" + url.getAddress() + "/" + url.getServiceKey();
+    }
+
+    /**
+     * @return the statistics of all invokers, keyed by protocol://address/serviceKey
+     */
+    public static Map<String, OutlierStats> getAllStats() {
+        return Collections.unmodifiableMap(STATS);
+    }
+
+    public void record(long elapsed, boolean success) {
+        if (success) {
+            consecutiveFailures.set(0);
+            succeeded.incrementAndGet();
+        } else {
+            consecutiveFailures.incrementAndGet();
+            failed.incrementAndGet();
+        }
+        int bucket = elapsed <= 0 ? 0 : Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(elapsed));
+        latencies.incrementAndGet(bucket);
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public boolean isEjected() {
+        return isEjected(System.currentTimeMillis());
+    }
+
+    boolean isEjected(long now) {
+        return ejectedUntil > now;
+    }
+
+    /**
+     * @return the timestamp in milliseconds the ejection of the invoker ends at, 0 if it has never been ejected
+     */
+    public long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    /**
+     * @return how many times in a row the invoker has been ejected, it decreases while the invoker stays healthy
+     */
+    public int getEjections() {
+        return ejections;
+    }
+
+    /**
+     * @return the success rate of the last analysed interval, -1 if there were not enough requests
+     */
+    public double getLastSuccessRate() {
+        return lastSuccessRate;
+    }
+
+    /**
+     * @return the latency percentile in milliseconds of the last analysed interval, rounded down to a power of two,
+     * -1 if there were not enough requests
+     */
+    public long getLastLatency() {
+        return lastLatency;
+    }
+
+    void eject(long now, long baseTime, long maxTime) {
+        long time = baseTime << Math.min(ejections, 30);
+        ejectedUntil = now + (time <= 0 || time > maxTime ? maxTime : time);
+        ejections++;
+        consecutiveFailures.set(0);
+    }
+
+    void heal(long now) {
+        if (ejections > 0 && !isEjected(now)) {
+            ejections--;
+        }
+    }
+
+    /**
+     * Closes the current interval and resets its counters.
+     *
+     * @return {succeeded, failed, latency percentile}
+     */
+    long[] rollInterval(int percentile, int requestVolume) {
+        long success = succeeded.getAndSet(0);
+        long failure = failed.getAndSet(0);
+        long total = success + failure;
+        long[] counts = new long[LATENCY_BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            counts[i] = latencies.getAndSet(i, 0);
+            recorded += counts[i];
+        }
+        long latency = -1;
+        if (total >= requestVolume && recorded > 0) {
+            long rank = (recorded * percentile + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    latency = i == 0 ? 0 : 1L << (i - 1);
+                    break;
+                }
+            }
+            lastSuccessRate = (double) success / total;
+        } else {
+            lastSuccessRate = -1;
+        }
+        lastLatency = latency;
+        return new long[]{success, failure, latency};
+    }
+
+}
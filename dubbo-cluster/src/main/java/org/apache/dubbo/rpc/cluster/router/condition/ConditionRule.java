@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.router.condition;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.utils.LRUCache;
+import org.apache.dubbo.common.utils.StringUtils;
+import org.apache.dubbo.rpc.Invocation;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled form of a condition route rule, shared by every {@link ConditionRouter} built from the same rule text.
+ */
+final class ConditionRule {
+
+    private static final Pattern ROUTE_PATTERN = Pattern.compile("([&!=,]*)\\s*([^&!=,\\s]+)");
+
+    private static final int CACHE_CAPACITY = 1000;
+
+    private static final Map<String, ConditionRule> RULE_CACHE = new LRUCache<String, ConditionRule>(CACHE_CAPACITY);
+
+    /**
+     * Empty means "always match", as with a blank or "true" when-rule.
+     */
+    private final Condition[] whenCondition;
+
+    /**
+     * Null means "match nothing", as with a blank or "false" then-rule.
+     */
+    private final Condition[] thenCondition;
+
+    private ConditionRule(Condition[] whenCondition, Condition[] thenCondition) {
+        this.whenCondition = whenCondition;
+        this.thenCondition = thenCondition;
+    }
+
+    static ConditionRule compile(String rule) throws ParseException {
+        ConditionRule compiled = RULE_CACHE.get(rule);
+        if (compiled == null) {
+            int i = rule.indexOf("=>");
+            String whenRule = i < 0 ? null : rule.substring(0, i).trim();
+            String thenRule = i < 0 ? rule.trim() : rule.substring(i + 2).trim();
+            Condition[] when = StringUtils.isBlank(whenRule) || "true".equals(whenRule) ? new Condition[0] : parseRule(whenRule);
+            Condition[] then = StringUtils.isBlank(thenRule) || "false".equals(thenRule) ? null : parseRule(thenRule);
+            // NOTE: It should be determined on the business level whether the `When condition` can be empty or not.
+            compiled = new ConditionRule(when, then);
+            RULE_CACHE.put(rule, compiled);
+        }
+        return compiled;
+    }
+
+    private static Condition[] parseRule(String rule)
+            throws ParseException {
+        Map<String, Condition> condition = new LinkedHashMap<String, Condition>();
+        if (StringUtils.isBlank(rule)) {
+            return new Condition[0];
+        }
+        // Key-Value pair, stores both match and mismatch conditions
+        Condition pair = null;
+        // Multiple values
+        GlobMatcher values = null;
+        final Matcher matcher = ROUTE_PATTERN.matcher(rule);
+        while (matcher.find()) { // Try to match one by one
+            String separator = matcher.group(1);
+            String content = matcher.group(2);
+            // Start part of the condition expression.
+            if (separator == null || separator.length() == 0) {
+                pair = new Condition(content);
+                condition.put(content, pair);
+            }
+            // The KV part of the condition expression
+            else if ("&".equals(separator)) {
+                if (condition.get(content) == null) {
+                    pair = new Condition(content);
+                    condition.put(content, pair);
+                } else {
+                    pair = condition.get(content);
+                }
+            }
+            // The Value in the KV part.
+            else if ("=".equals(separator)) {
+                if (pair == null)
+                    throw new ParseException("Illegal route rule \""
+                            + rule + "\", The error char '" + separator
+                            + "' at index " + matcher.start() + " before \""
+                            + content + "\".", matcher.start());
+
+                values = pair.matches;
+                values.add(content);
+            }
+            // The Value in the KV part.
+            else if ("!=".equals(separator)) {
+                if (pair == null)
+                    throw new ParseException("Illegal route rule \""
+                            + rule + "\", The error char '" + separator
+                            + "' at index " + matcher.start() + " before \""
+                            + content + "\".", matcher.start());
+
+                values = pair.mismatches;
+                values.add(content);
+            }
+            // The Value in the KV part, if Value have more than one items.
+            else if (",".equals(separator)) { // Should be seperateed by ','
+                if (values == null || values.isEmpty())
+                    throw new ParseException("Illegal route rule \""
+                            + rule + "\", The error char '" + separator
+                            + "' at index " + matcher.start() + " before \""
+                            + content + "\".", matcher.start());
+                values.add(content);
+            } else {
+                throw new ParseException("Illegal route rule \"" + rule
+                        + "\", The error char '" + separator + "' at index "
+                        + matcher.start() + " before \"" + content + "\".", matcher.start());
+            }
+        }
+        return condition.values().toArray(new Condition[condition.size()]);
+    }
+
+    boolean isBlacklist() {
+        return thenCondition == null;
+    }
+
+    boolean matchWhen(URL url, Invocation invocation) {
+        return whenCondition.length == 0 || matchCondition(whenCondition, url, null, invocation);
+    }
+
+    boolean matchThen(URL url, URL param) {
+        return thenCondition != null && thenCondition.length > 0 && matchCondition(thenCondition, url, param, null);
+    }
+
+    private static boolean matchCondition(Condition[] condition, URL url, URL param, Invocation invocation) {
+        boolean result = false;
+        for (Condition pair : condition) {
+            String sampleValue;
+            //get real invoked method name from invocation
+            if (invocation != null && pair.methodKey) {
+                sampleValue = invocation.getMethodName();
+            } else {
+                sampleValue = pair.getSampleValue(url);
+            }
+            if (sampleValue != null) {
+                if (!pair.isMatch(sampleValue, param)) {
+                    return false;
+                } else {
+                    result = true;
+                }
+            } else {
+                //not pass the condition
+                if (!pair.matches.isEmpty()) {
+                    return false;
+                } else {
+                    result = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * One key of the rule with its match and mismatch patterns. The key is resolved against the URL
+     * the same way {@link URL#toMap()} would, without copying the parameters.
+     */
+    private static final class Condition {
+
+        private static final int PARAMETER = 0;
+        private static final int PROTOCOL = 1;
+        private static final int USERNAME = 2;
+        private static final int PASSWORD = 3;
+        private static final int HOST = 4;
+        private static final int PORT = 5;
+        private static final int PATH = 6;
+
+        final GlobMatcher matches = new GlobMatcher();
+        final GlobMatcher mismatches = new GlobMatcher();
+
+        private final String key;
+        private final String defaultKey;
+        private final boolean methodKey;
+        private final int field;
+
+        Condition(String key) {
+            this.key = key;
+            this.defaultKey = Constants.DEFAULT_KEY_PREFIX + key;
+            this.methodKey = Constants.METHOD_KEY.equals(key) || Constants.METHODS_KEY.equals(key);
+            if ("protocol".equals(key)) {
+                field = PROTOCOL;
+            } else if ("username".equals(key)) {
+                field = USERNAME;
+            } else if ("password".equals(key)) {
+                field = PASSWORD;
+            } else if ("host".equals(key)) {
+                field = HOST;
+            } else if ("port".equals(key)) {
+                field = PORT;
+            } else if ("path".equals(key)) {
+                field = PATH;
+            } else {
+                field = PARAMETER;
+            }
+        }
+
+        String getSampleValue(URL url) {
+            String value = null;
+            switch (field) {
+                case PROTOCOL:
+                    value = url.getProtocol();
+                    break;
+                case USERNAME:
+                    value = url.getUsername();
+                    break;
+                case PASSWORD:
+                    value = url.getPassword();
+                    break;
+                case HOST:
+                    value = url.getHost();
+                    break;
+                case PORT:
+                    value = url.getPort() > 0 ? String.valueOf(url.getPort()) : null;
+                    break;
+                case PATH:
+                    value = url.getPath();
+                    break;
+                default:
+            }
+            Map<String, String> parameters = url.getParameters();
+            if (value == null) {
+                value = parameters.get(key);
+            }
+            if (value == null) {
+                value = parameters.get(defaultKey);
+            }
+            return value;
+        }
+
+        private boolean isMatch(String value, URL param) {
+            if (!matches.isEmpty() && mismatches.isEmpty()) {
+                return matches.isMatch(value, param);
+            }
+
+            if (!mismatches.isEmpty() && matches.isEmpty()) {
+                return !mismatches.isMatch(value, param);
+            }
+
+            if (!matches.isEmpty() && !mismatches.isEmpty()) {
+                //when both mismatches and matches contain the same value, then using mismatches first
+                return !mismatches.isMatch(value, param) && matches.isMatch(value, param);
+            }
+            return false;
+        }
+    }
+}
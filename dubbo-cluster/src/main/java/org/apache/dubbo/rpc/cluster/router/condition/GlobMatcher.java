@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.router.condition;
+
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.utils.UrlUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled set of glob patterns, equivalent to testing every pattern with
+ * {@link UrlUtils#isMatchGlobPattern(String, String, URL)} and OR-ing the results.
+ * <p>
+ * Patterns are split by the position of their last '*': plain values go to a hash set,
+ * trailing globs to a prefix trie, and the remaining forms are kept as prefix/suffix pairs.
+ * '$' references depend on the consumer URL, so only their key is extracted up front and
+ * the referenced value is looked up at match time.
+ */
+final class GlobMatcher {
+
+    private final Set<String> exact = new HashSet<String>();
+
+    private final PrefixTrie prefixes = new PrefixTrie();
+
+    private final List<String[]> affixes = new ArrayList<String[]>();
+
+    private final List<String[]> references = new ArrayList<String[]>();
+
+    private boolean any;
+
+    private int size;
+
+    void add(String pattern) {
+        size++;
+        if (pattern.startsWith("$")) {
+            references.add(new String[]{pattern, pattern.substring(1)});
+        } else if ("*".equals(pattern)) {
+            any = true;
+        } else {
+            int i = pattern.lastIndexOf('*');
+            if (i == -1) {
+                exact.add(pattern);
+            } else if (i == pattern.length() - 1) {
+                prefixes.add(pattern.substring(0, i));
+            } else {
+                affixes.add(new String[]{pattern.substring(0, i), pattern.substring(i + 1)});
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isMatch(String value, URL param) {
+        if (any) {
+            return true;
+        }
+        if (value.length() > 0) {
+            if (exact.contains(value) || prefixes.matchesPrefixOf(value)) {
+                return true;
+            }
+            for (int i = 0; i < affixes.size(); i++) {
+                String[] affix = affixes.get(i);
+                if (value.startsWith(affix[0]) && value.endsWith(affix[1])) {
+                    return true;
+                }
+            }
+        }
+        for (int i = 0; i < references.size(); i++) {
+            String[] reference = references.get(i);
+            String pattern = param != null ? param.getRawParameter(reference[1]) : reference[0];
+            if (UrlUtils.isMatchGlobPattern(pattern, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -20,6 +20,7 @@ import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.common.logger.Logger;
 import org.apache.dubbo.common.logger.LoggerFactory;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
 import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.RpcContext;
@@ -30,25 +31,58 @@ import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * ScriptRouter
- *
+ * <p>
+ * Script engines are not safe for concurrent use, so every evaluation borrows an engine from the pool of the router,
+ * with the rule compiled once per engine and the bindings reused between calls. The engines go away with the router.
+ * <ul>
+ * <li>timeout: when positive, the rule is evaluated on a separate thread and ignored if it does not finish in time.
+ * A rule which timed out is ignored until that evaluation ends, as a script may never end nor stop when interrupted.
+ * The rule is ignored as well when all the evaluating threads are busy.</li>
+ * <li>pure: the rule only depends on the invokers, so the result for an unchanged invoker list is reused</li>
+ * </ul>
  */
 public class ScriptRouter implements Router {
 
     private static final Logger logger = LoggerFactory.getLogger(ScriptRouter.class);
 
-    private static final Map<String, ScriptEngine> engines = new ConcurrentHashMap<String, ScriptEngine>();
+    private static final Map<String, ScriptEngineFactory> factories = new ConcurrentHashMap<String, ScriptEngineFactory>();
+
+    private static final int MAX_EVALUATE_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService evaluateExecutor = new ThreadPoolExecutor(0, MAX_EVALUATE_THREADS,
+            60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new NamedThreadFactory("DubboScriptRouterEvaluator", true));
+
+    private final ScriptEngineFactory factory;
 
-    private final ScriptEngine engine;
+    private final Queue<Evaluator> evaluators = new ConcurrentLinkedQueue<Evaluator>();
+
+    /**
+     * The evaluation still running after its timeout, if any
+     */
+    private final AtomicReference<Evaluation<?>> overdue = new AtomicReference<Evaluation<?>>();
 
     private final int priority;
 
@@ -56,10 +90,18 @@ public class ScriptRouter implements Router {
 
     private final URL url;
 
+    private final int timeout;
+
+    private final boolean pure;
+
+    private volatile RouteResult lastResult;
+
     public ScriptRouter(URL url) {
         this.url = url;
         String type = url.getParameter(Constants.TYPE_KEY);
         this.priority = url.getParameter(Constants.PRIORITY_KEY, 0);
+        this.timeout = url.getParameter(Constants.TIMEOUT_KEY, 0);
+        this.pure = url.getParameter(Constants.PURE_KEY, false);
         String rule = url.getParameterAndDecoded(Constants.RULE_KEY);
         if (type == null || type.length() == 0) {
             type = Constants.DEFAULT_SCRIPT_TYPE_KEY;
@@ -67,15 +109,16 @@ public class ScriptRouter implements Router {
         if (rule == null || rule.length() == 0) {
             throw new IllegalStateException(new IllegalStateException("route rule can not be empty. rule:" + rule));
         }
-        ScriptEngine engine = engines.get(type);
-        if (engine == null) {
-            engine = new ScriptEngineManager().getEngineByName(type);
+        ScriptEngineFactory factory = factories.get(type);
+        if (factory == null) {
+            ScriptEngine engine = new ScriptEngineManager().getEngineByName(type);
             if (engine == null) {
                 throw new IllegalStateException(new IllegalStateException("Unsupported route rule type: " + type + ", rule: " + rule));
             }
-            engines.put(type, engine);
+            factory = engine.getFactory();
+            factories.put(type, factory);
         }
-        this.engine = engine;
+        this.factory = factory;
         this.rule = rule;
     }
 
@@ -85,33 +128,92 @@ public class ScriptRouter implements Router {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public <T> List<Invoker<T>> route(List<Invoker<T>> invokers, URL url, Invocation invocation) throws RpcException {
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> List<Invoker<T>> route(final List<Invoker<T>> invokers, URL url, final Invocation invocation) throws RpcException {
+        RouteResult last = lastResult;
+        if (pure && last != null && last.isSameInvokers(invokers)) {
+            return new ArrayList<Invoker<T>>((List) last.result);
+        }
         try {
-            List<Invoker<T>> invokersCopy = new ArrayList<Invoker<T>>(invokers);
-            Compilable compilable = (Compilable) engine;
-            Bindings bindings = engine.createBindings();
-            bindings.put("invokers", invokersCopy);
-            bindings.put("invocation", invocation);
-            bindings.put("context", RpcContext.getContext());
-            CompiledScript function = compilable.compile(rule);
-            Object obj = function.eval(bindings);
-            if (obj instanceof Invoker[]) {
-                invokersCopy = Arrays.asList((Invoker<T>[]) obj);
-            } else if (obj instanceof Object[]) {
-                invokersCopy = new ArrayList<Invoker<T>>();
-                for (Object inv : (Object[]) obj) {
-                    invokersCopy.add((Invoker<T>) inv);
+            List<Invoker<T>> result;
+            if (timeout > 0) {
+                if (overdue.get() != null) {
+                    return invokers;
                 }
+                result = evaluateWithTimeout(invokers, invocation, RpcContext.getContext());
             } else {
-                invokersCopy = (List<Invoker<T>>) obj;
+                result = evaluate(invokers, invocation, RpcContext.getContext());
+            }
+            if (pure && result != null) {
+                lastResult = new RouteResult(invokers, new ArrayList<Invoker<?>>(result));
             }
-            return invokersCopy;
+            return result;
         } catch (ScriptException e) {
             //fail then ignore rule .invokers.
             logger.error("route error , rule has been ignored. rule: " + rule + ", method:" + invocation.getMethodName() + ", url: " + RpcContext.getContext().getUrl(), e);
             return invokers;
+        } catch (TimeoutException e) {
+            logger.error("route timeout , rule has been ignored until its evaluation ends. rule: " + rule + ", method:" + invocation.getMethodName() + ", timeout: " + timeout + "ms, url: " + RpcContext.getContext().getUrl());
+            return invokers;
+        } catch (RejectedExecutionException e) {
+            logger.error("route rejected , all " + MAX_EVALUATE_THREADS + " evaluating threads are busy, rule has been ignored. rule: " + rule + ", method:" + invocation.getMethodName() + ", url: " + RpcContext.getContext().getUrl());
+            return invokers;
+        }
+    }
+
+    private <T> List<Invoker<T>> evaluateWithTimeout(final List<Invoker<T>> invokers, final Invocation invocation, final RpcContext context)
+            throws ScriptException, TimeoutException {
+        Evaluation<T> evaluation = new Evaluation<T>(invokers, invocation, context);
+        Future<List<Invoker<T>>> future = evaluateExecutor.submit(evaluation);
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            overdue.set(evaluation);
+            if (evaluation.finished) {
+                overdue.compareAndSet(evaluation, null);
+            }
+            future.cancel(true);
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RpcException("Interrupted while evaluating route rule: " + rule, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ScriptException) {
+                throw (ScriptException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RpcException(cause.getMessage(), cause);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<Invoker<T>> evaluate(List<Invoker<T>> invokers, Invocation invocation, RpcContext context) throws ScriptException {
+        Evaluator evaluator = evaluators.poll();
+        if (evaluator == null) {
+            evaluator = new Evaluator(factory.getScriptEngine(), rule);
+        }
+        List<Invoker<T>> invokersCopy = new ArrayList<Invoker<T>>(invokers);
+        Object obj;
+        try {
+            obj = evaluator.eval(invokersCopy, invocation, context);
+        } finally {
+            evaluators.offer(evaluator);
+        }
+        if (obj instanceof Invoker[]) {
+            invokersCopy = Arrays.asList((Invoker<T>[]) obj);
+        } else if (obj instanceof Object[]) {
+            invokersCopy = new ArrayList<Invoker<T>>();
+            for (Object inv : (Object[]) obj) {
+                invokersCopy.add((Invoker<T>) inv);
+            }
+        } else {
+            invokersCopy = (List<Invoker<T>>) obj;
         }
+        return invokersCopy;
     }
 
     @Override
@@ -123,4 +225,100 @@ public class ScriptRouter implements Router {
         return this.priority == c.priority ? rule.compareTo(c.rule) : (this.priority > c.priority ? 1 : -1);
     }
 
+    /**
+     * An evaluation on the evaluateExecutor, which lets the rule be evaluated again once it ends.
+     */
+    private final class Evaluation<T> implements Callable<List<Invoker<T>>> {
+
+        private final List<Invoker<T>> invokers;
+
+        private final Invocation invocation;
+
+        private final RpcContext context;
+
+        private volatile boolean finished;
+
+        Evaluation(List<Invoker<T>> invokers, Invocation invocation, RpcContext context) {
+            this.invokers = invokers;
+            this.invocation = invocation;
+            this.context = context;
+        }
+
+        @Override
+        public List<Invoker<T>> call() throws Exception {
+            try {
+                return evaluate(invokers, invocation, context);
+            } finally {
+                finished = true;
+                overdue.compareAndSet(this, null);
+            }
+        }
+    }
+
+    /**
+     * An engine with the rule compiled against it, used by one evaluation at a time.
+     */
+    private static final class Evaluator {
+
+        private final ScriptEngine engine;
+
+        private final String rule;
+
+        private final Bindings bindings;
+
+        private CompiledScript function;
+
+        Evaluator(ScriptEngine engine, String rule) {
+            this.engine = engine;
+            this.rule = rule;
+            this.bindings = engine.createBindings();
+        }
+
+        Object eval(List<?> invokers, Invocation invocation, RpcContext context) throws ScriptException {
+            bindings.put("invokers", invokers);
+            bindings.put("invocation", invocation);
+            bindings.put("context", context);
+            try {
+                if (engine instanceof Compilable) {
+                    if (function == null) {
+                        function = ((Compilable) engine).compile(rule);
+                    }
+                    return function.eval(bindings);
+                }
+                return engine.eval(rule, bindings);
+            } finally {
+                bindings.remove("invokers");
+                bindings.remove("invocation");
+                bindings.remove("context");
+            }
+        }
+    }
+
+    /**
+     * The result of a pure rule, valid as long as the same invokers are routed again.
+     */
+    private static final class RouteResult {
+
+        private final Invoker<?>[] invokers;
+
+        private final List<Invoker<?>> result;
+
+        RouteResult(List<? extends Invoker<?>> invokers, List<Invoker<?>> result) {
+            this.invokers = invokers.toArray(new Invoker<?>[invokers.size()]);
+            this.result = result;
+        }
+
+        boolean isSameInvokers(List<? extends Invoker<?>> other) {
+            if (other.size() != invokers.length) {
+                return false;
+            }
+            for (int i = 0; i < invokers.length; i++) {
+                if (other.get(i) != invokers[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
 }
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.router.zone;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.logger.Logger;
+import org.apache.dubbo.common.logger.LoggerFactory;
+import org.apache.dubbo.common.utils.StringUtils;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.cluster.Router;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ZoneRouter keeps the traffic in the zone of the consumer, given by the <code>zone</code> parameter of the consumer
+ * and of the provider URLs.
+ * <p>
+ * The local zone takes the share <code>min(1, healthy / total * overprovision, healthy / min)</code> of the requests,
+ * the rest spills over to the healthy providers of the other zones, so that each zone gets a share proportional to
+ * its healthy providers. The shares are computed when the invokers of the directory change, not on each request,
+ * and kept for each invoker list as the directory hands a different list to each method. The health of the invokers
+ * is checked again at most once per {@link #AVAILABILITY_CHECK_INTERVAL}, and the shares computed again if it changed.
+ */
+public class ZoneRouter implements Router, Comparable<Router> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ZoneRouter.class);
+
+    public static final URL ROUTER_URL = new URL("zone", Constants.ANYHOST_VALUE, 0, Constants.ANY_VALUE).addParameters(Constants.RUNTIME_KEY, "true");
+
+    private final int priority;
+
+    private final URL url;
+
+    private final double overprovision;
+
+    private final int min;
+
+    /**
+     * The most plans kept, a directory hands the router one invoker list per method
+     */
+    private static final int MAX_PLANS = 64;
+
+    /**
+     * How often in milliseconds the availability of the invokers of a plan is checked again
+     */
+    static final long AVAILABILITY_CHECK_INTERVAL = 1000;
+
+    /**
+     * The plans of the invoker lists routed lately, the latest first, copied on write
+     */
+    private volatile Plan[] plans = new Plan[0];
+
+    public ZoneRouter(URL url) {
+        this.url = url.addParameter(Constants.RUNTIME_KEY, true);
+        this.priority = url.getParameter(Constants.PRIORITY_KEY, 0);
+        this.overprovision = getOverprovision(url, Constants.DEFAULT_ZONE_OVERPROVISION);
+        this.min = getMin(url, Constants.DEFAULT_ZONE_MIN);
+    }
+
+    /**
+     * @return the valid overprovision factor of the url, otherwise the given default
+     */
+    private static double getOverprovision(URL url, double defaultValue) {
+        String value = url == null ? null : url.getParameter(Constants.ZONE_OVERPROVISION_KEY);
+        if (StringUtils.isEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            double overprovision = Double.parseDouble(value);
+            if (overprovision > 0 && !Double.isInfinite(overprovision)) {
+                return overprovision;
+            }
+        } catch (NumberFormatException e) {
+            // invalid, warned below
+        }
+        logger.warn("Invalid " + Constants.ZONE_OVERPROVISION_KEY + "=" + value + " in " + url + ", use " + defaultValue + " instead.");
+        return defaultValue;
+    }
+
+    /**
+     * @return the valid minimum of healthy local providers of the url, otherwise the given default
+     */
+    private static int getMin(URL url, int defaultValue) {
+        String value = url == null ? null : url.getParameter(Constants.ZONE_MIN_KEY);
+        if (StringUtils.isEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            int min = Integer.parseInt(value.trim());
+            if (min >= 1) {
+                return min;
+            }
+        } catch (NumberFormatException e) {
+            // invalid, warned below
+        }
+        logger.warn("Invalid " + Constants.ZONE_MIN_KEY + "=" + value + " in " + url + ", use " + defaultValue + " instead.");
+        return defaultValue;
+    }
+
+    public ZoneRouter() {
+        this(ROUTER_URL);
+    }
+
+    @Override
+    public URL getUrl() {
+        return url;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<Invoker<T>> route(List<Invoker<T>> invokers, URL url, Invocation invocation) throws RpcException {
+        if (invokers == null || invokers.isEmpty()) {
+            return invokers;
+        }
+        Plan plan = getPlan(invokers, url);
+        if (plan.local == null) {
+            return invokers;
+        }
+        if (plan.localShare >= 1 || (plan.localShare > 0 && ThreadLocalRandom.current().nextDouble() < plan.localShare)) {
+            return (List) plan.local;
+        }
+        return (List) plan.remote;
+    }
+
+    private <T> Plan getPlan(List<Invoker<T>> invokers, URL consumerUrl) {
+        for (Plan plan : plans) {
+            if (plan.invokers.get() == invokers && plan.consumerUrl == consumerUrl) {
+                return plan.isAvailabilityChanged(invokers) ? addPlan(new Plan(invokers, consumerUrl), plan) : plan;
+            }
+        }
+        return addPlan(new Plan(invokers, consumerUrl), null);
+    }
+
+    private synchronized Plan addPlan(Plan plan, Plan replaced) {
+        // drop the plans of the lists gone with a directory change
+        List<Plan> kept = new ArrayList<Plan>(Math.min(plans.length + 1, MAX_PLANS));
+        kept.add(plan);
+        for (Plan p : plans) {
+            if (kept.size() < MAX_PLANS && p != replaced && p.invokers.get() != null) {
+                kept.add(p);
+            }
+        }
+        plans = kept.toArray(new Plan[kept.size()]);
+        return plan;
+    }
+
+    private String getParameter(URL consumerUrl, String key) {
+        String value = consumerUrl == null ? null : consumerUrl.getParameter(key);
+        return StringUtils.isEmpty(value) ? this.url.getParameter(key) : value;
+    }
+
+    /**
+     * The routing of a list of invokers.
+     */
+    private final class Plan {
+
+        private final WeakReference<List<?>> invokers;
+
+        private final URL consumerUrl;
+
+        /**
+         * The healthy invokers of the local zone, null if the invokers are not routed by zone
+         */
+        private final List<Invoker<?>> local;
+
+        private final List<Invoker<?>> remote;
+
+        private final double localShare;
+
+        /**
+         * The availability of each invoker when the plan was computed, null if it does not matter
+         */
+        private final boolean[] available;
+
+        private volatile long nextCheck;
+
+        <T> Plan(List<Invoker<T>> invokers, URL consumerUrl) {
+            this.invokers = new WeakReference<List<?>>(invokers);
+            this.consumerUrl = consumerUrl;
+            this.nextCheck = System.currentTimeMillis() + AVAILABILITY_CHECK_INTERVAL;
+            String zone = getParameter(consumerUrl, Constants.ZONE_KEY);
+            if (StringUtils.isEmpty(zone)) {
+                this.local = null;
+                this.remote = null;
+                this.localShare = 1;
+                this.available = null;
+                return;
+            }
+            List<Invoker<?>> local = new ArrayList<Invoker<?>>();
+            List<Invoker<?>> remote = new ArrayList<Invoker<?>>();
+            this.available = new boolean[invokers.size()];
+            int localTotal = 0;
+            for (int i = 0; i < invokers.size(); i++) {
+                Invoker<T> invoker = invokers.get(i);
+                boolean inZone = zone.equals(invoker.getUrl().getParameter(Constants.ZONE_KEY));
+                if (inZone) {
+                    localTotal++;
+                }
+                available[i] = invoker.isAvailable();
+                if (available[i]) {
+                    (inZone ? local : remote).add(invoker);
+                }
+            }
+            if (local.isEmpty() && remote.isEmpty()) {
+                // nothing is healthy, leave the invokers to the cluster
+                this.local = null;
+                this.remote = null;
+                this.localShare = 1;
+                return;
+            }
+            // the consumer parameters override those of the router, checked once per plan
+            double share = Math.min(1, (double) local.size() / Math.max(1, localTotal) * getOverprovision(consumerUrl, overprovision));
+            share = Math.min(share, (double) local.size() / getMin(consumerUrl, min));
+            this.local = Collections.unmodifiableList(local);
+            this.remote = Collections.unmodifiableList(remote);
+            this.localShare = remote.isEmpty() ? 1 : share;
+        }
+
+        /**
+         * Check the availability of the invokers again once the interval is over.
+         *
+         * @return true if an invoker became available or unavailable since the plan was computed
+         */
+        <T> boolean isAvailabilityChanged(List<Invoker<T>> invokers) {
+            if (available == null) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            if (now < nextCheck) {
+                return false;
+            }
+            nextCheck = now + AVAILABILITY_CHECK_INTERVAL;
+            if (invokers.size() != available.length) {
+                return true;
+            }
+            for (int i = 0; i < available.length; i++) {
+                if (invokers.get(i).isAvailable() != available[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public int compareTo(Router o) {
+        if (o == null || o.getClass() != ZoneRouter.class) {
+            return 1;
+        }
+        ZoneRouter c = (ZoneRouter) o;
+        return this.priority == c.priority ? url.toFullString().compareTo(c.url.toFullString()) : (this.priority > c.priority ? 1 : -1);
+    }
+}
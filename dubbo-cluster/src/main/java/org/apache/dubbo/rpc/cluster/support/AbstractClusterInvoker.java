@@ -32,6 +32,7 @@ import org.apache.dubbo.rpc.Result;
 import org.apache.dubbo.rpc.RpcException;
 import org.apache.dubbo.rpc.cluster.Directory;
 import org.apache.dubbo.rpc.cluster.LoadBalance;
+import org.apache.dubbo.rpc.cluster.outlier.OutlierDetector;
 import org.apache.dubbo.rpc.support.RpcUtils;
 
 import java.util.ArrayList;
@@ -54,6 +55,8 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
 
     private volatile Invoker<T> stickyInvoker = null;
 
+    private final OutlierDetector outlierDetector;
+
     public AbstractClusterInvoker(Directory<T> directory) {
         this(directory, directory.getUrl());
     }
@@ -65,6 +68,8 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
         this.directory = directory;
         //sticky: invoker.isAvailable() should always be checked before using when availablecheck is true.
         this.availablecheck = url.getParameter(Constants.CLUSTER_AVAILABLE_CHECK_KEY, Constants.DEFAULT_CLUSTER_AVAILABLE_CHECK);
+        //outlier: invokers ejected by the outlier detection are excluded before load balance.
+        this.outlierDetector = url.getParameter(Constants.OUTLIER_KEY, false) ? new OutlierDetector(url) : null;
     }
 
     @Override
@@ -101,6 +106,8 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
      * b) Reselection, the validation rule for reselection: selected > available. This rule guarantees that
      * the selected invoker has the minimum chance to be one in the previously selected list, and also
      * guarantees this invoker is available.
+     * <p>
+     * If outlier detection is enabled, the invokers it ejected are removed before both steps.
      *
      * @param loadbalance load balance policy
      * @param invocation  invocation
@@ -112,6 +119,9 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
     protected Invoker<T> select(LoadBalance loadbalance, Invocation invocation, List<Invoker<T>> invokers, List<Invoker<T>> selected) throws RpcException {
         if (invokers == null || invokers.isEmpty())
             return null;
+        if (outlierDetector != null) {
+            invokers = outlierDetector.select(invokers);
+        }
         String methodName = invocation == null ? "" : invocation.getMethodName();
 
         boolean sticky = invokers.get(0).getUrl().getMethodParameter(methodName, Constants.CLUSTER_STICKY_KEY, Constants.DEFAULT_CLUSTER_STICKY);
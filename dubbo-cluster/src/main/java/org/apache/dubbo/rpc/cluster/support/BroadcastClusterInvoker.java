@@ -16,6 +16,8 @@
  */
 package org.apache.dubbo.rpc.cluster.support;
 
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
 import org.apache.dubbo.common.logger.Logger;
 import org.apache.dubbo.common.logger.LoggerFactory;
 import org.apache.dubbo.rpc.Invocation;
@@ -25,6 +27,7 @@ import org.apache.dubbo.rpc.RpcContext;
 import org.apache.dubbo.rpc.RpcException;
 import org.apache.dubbo.rpc.cluster.Directory;
 import org.apache.dubbo.rpc.cluster.LoadBalance;
+import org.apache.dubbo.rpc.support.RpcUtils;
 
 import java.util.List;
 
@@ -45,6 +48,9 @@ public class BroadcastClusterInvoker<T> extends AbstractClusterInvoker<T> {
     public Result doInvoke(final Invocation invocation, List<Invoker<T>> invokers, LoadBalance loadbalance) throws RpcException {
         checkInvokers(invokers, invocation);
         RpcContext.getContext().setInvokers((List) invokers);
+        if (getUrl().getMethodParameter(RpcUtils.getMethodName(invocation), Constants.BROADCAST_ASYNC_KEY, false)) {
+            return doInvokeAsync(invocation, invokers);
+        }
         RpcException exception = null;
         Result result = null;
         for (Invoker<T> invoker : invokers) {
@@ -64,4 +70,23 @@ public class BroadcastClusterInvoker<T> extends AbstractClusterInvoker<T> {
         return result;
     }
 
+    private Result doInvokeAsync(Invocation invocation, List<Invoker<T>> invokers) throws RpcException {
+        URL url = getUrl();
+        String methodName = RpcUtils.getMethodName(invocation);
+        int concurrency = url.getMethodParameter(methodName, Constants.BROADCAST_CONCURRENCY_KEY, Constants.DEFAULT_BROADCAST_CONCURRENCY);
+        String completion = url.getMethodParameter(methodName, Constants.BROADCAST_COMPLETION_KEY, Constants.BROADCAST_COMPLETION_ALL);
+        int quorum;
+        if (Constants.BROADCAST_COMPLETION_NONE.equals(completion)) {
+            quorum = 0;
+        } else if (Constants.BROADCAST_COMPLETION_QUORUM.equals(completion)) {
+            quorum = Math.max(1, url.getMethodParameter(methodName, Constants.BROADCAST_QUORUM_KEY, invokers.size() / 2 + 1));
+        } else {
+            quorum = invokers.size();
+        }
+        int timeout = url.getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+        BroadcastInvocation<T> broadcast = new BroadcastInvocation<T>(invocation, invokers, concurrency, quorum);
+        broadcast.start();
+        return broadcast.getResult(url, timeout);
+    }
+
 }
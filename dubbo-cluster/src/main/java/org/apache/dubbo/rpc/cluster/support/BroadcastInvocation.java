@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.logger.Logger;
+import org.apache.dubbo.common.logger.LoggerFactory;
+import org.apache.dubbo.rpc.AsyncRpcResult;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcContext;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.RpcResult;
+import org.apache.dubbo.rpc.SimpleAsyncRpcResult;
+import org.apache.dubbo.rpc.support.RpcUtils;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One invocation sent asynchronously to every invoker, with at most a given number of calls in flight.
+ * The next call is sent when one completes, so no thread waits for the providers.
+ * <p>
+ * It completes when all the calls are done, when a quorum of them succeeded, or right after the calls are sent.
+ * The failures are aggregated into one exception.
+ */
+final class BroadcastInvocation<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastInvocation.class);
+
+    private final Invocation invocation;
+
+    private final List<Invoker<T>> invokers;
+
+    private final int concurrency;
+
+    private final int quorum;
+
+    private final CompletableFuture<Result> done = new CompletableFuture<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger successes = new AtomicInteger();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final Queue<RpcException> exceptions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Serializes the sending of the calls, see {@link #drain()}
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private int next;
+
+    private volatile Result lastResult;
+
+    private volatile Result failure;
+
+    /**
+     * @param quorum the successful calls needed before completing, the number of invokers to wait for all of them,
+     *               0 to complete once every call is sent
+     */
+    BroadcastInvocation(Invocation invocation, List<Invoker<T>> invokers, int concurrency, int quorum) {
+        this.invocation = invocation;
+        this.invokers = invokers;
+        this.concurrency = Math.max(1, concurrency);
+        this.quorum = Math.min(quorum, invokers.size());
+    }
+
+    /**
+     * Send the calls, as many as the concurrency allows, the others are sent when the first ones complete.
+     */
+    void start() {
+        drain();
+        if (quorum <= 0) {
+            done.complete(new RpcResult());
+        }
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            while (next < invokers.size() && inFlight.get() < concurrency) {
+                inFlight.incrementAndGet();
+                send(invokers.get(next++));
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private void send(final Invoker<T> invoker) {
+        RpcInvocation call = new RpcInvocation(invocation);
+        call.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+        final Result result;
+        try {
+            result = invoker.invoke(call);
+        } catch (Throwable e) {
+            onComplete(invoker, null, e);
+            return;
+        } finally {
+            RpcContext.getContext().setFuture(null);
+        }
+        if (!(result instanceof AsyncRpcResult)) {
+            // the protocol does not support async invocation, the result is already there
+            onComplete(invoker, result, null);
+            return;
+        }
+        final AsyncRpcResult asyncResult = (AsyncRpcResult) result;
+        CompletableFuture<?> valueFuture = asyncResult.getValueFuture();
+        valueFuture.whenComplete((value, t) -> {
+            if (t instanceof CompletionException && t.getCause() != null) {
+                t = t.getCause();
+            }
+            if (t != null && ForkedInvocation.isFailure(t)) {
+                onComplete(invoker, null, t);
+                return;
+            }
+            Result r = asyncResult.getResultFuture().getNow(null);
+            onComplete(invoker, r != null ? r : (t == null ? new RpcResult(value) : new RpcResult(t)), null);
+        });
+    }
+
+    private void onComplete(Invoker<T> invoker, Result result, Throwable t) {
+        inFlight.decrementAndGet();
+        int failed;
+        int succeeded;
+        if (t == null) {
+            lastResult = result;
+            succeeded = successes.incrementAndGet();
+            failed = failures.get();
+        } else {
+            RpcException e = t instanceof RpcException ? (RpcException) t : new RpcException(t.getMessage(), t);
+            logger.warn("Failed to broadcast to " + invoker.getUrl().getAddress() + ": " + e.getMessage(), e);
+            exceptions.add(e);
+            failed = failures.incrementAndGet();
+            succeeded = successes.get();
+        }
+        if (quorum > 0 && !done.isDone()) {
+            if (quorum == invokers.size()) {
+                if (succeeded + failed == invokers.size()) {
+                    complete(failed == 0);
+                }
+            } else if (succeeded >= quorum) {
+                complete(true);
+            } else if (failed > invokers.size() - quorum) {
+                complete(false);
+            }
+        }
+        drain();
+    }
+
+    private synchronized void complete(boolean success) {
+        if (done.isDone()) {
+            return;
+        }
+        if (success) {
+            done.complete(lastResult);
+        } else {
+            failure = new RpcResult(aggregate());
+            done.complete(failure);
+        }
+    }
+
+    private RpcException aggregate() {
+        RpcException last = null;
+        for (RpcException e : exceptions) {
+            last = e;
+        }
+        RpcException exception = new RpcException(last.getCode(), "Failed to broadcast " + RpcUtils.getMethodName(invocation)
+                + " to " + failures.get() + " of " + invokers.size() + " providers, "
+                + successes.get() + " succeeded. Last error is: " + last.getMessage(), last);
+        for (RpcException e : exceptions) {
+            if (e != last) {
+                exception.addSuppressed(e);
+            }
+        }
+        return exception;
+    }
+
+    /**
+     * Wait for the completion if the invocation is synchronous, or hand out its future otherwise.
+     */
+    Result getResult(URL url, int timeout) throws RpcException {
+        if (RpcUtils.isAsync(url, invocation)) {
+            final CompletableFuture<Object> valueFuture = new CompletableFuture<>();
+            done.whenComplete((r, t) -> {
+                if (r.hasException()) {
+                    valueFuture.completeExceptionally(r.getException());
+                } else {
+                    valueFuture.complete(r.getValue());
+                }
+            });
+            RpcContext.getContext().setFuture(valueFuture);
+            if (RpcUtils.isGeneratedFuture(invocation) || RpcUtils.isFutureReturnType(invocation)) {
+                return new AsyncRpcResult(valueFuture, done, false);
+            }
+            return new SimpleAsyncRpcResult(valueFuture, done, false);
+        }
+        try {
+            Result result = done.get(timeout, TimeUnit.MILLISECONDS);
+            if (result == failure) {
+                throw (RpcException) result.getException();
+            }
+            return result;
+        } catch (TimeoutException e) {
+            throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Failed to broadcast " + RpcUtils.getMethodName(invocation)
+                    + " to " + invokers.size() + " providers in " + timeout + "ms, " + successes.get() + " succeeded and "
+                    + failures.get() + " failed.", e);
+        } catch (InterruptedException e) {
+            throw new RpcException("Failed to broadcast " + RpcUtils.getMethodName(invocation) + ": " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            // never happens, done is only completed normally
+            throw new RpcException(e.getCause());
+        }
+    }
+}
@@ -16,9 +16,19 @@
  */
 package org.apache.dubbo.rpc.cluster.support;
 
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
 import org.apache.dubbo.common.logger.Logger;
 import org.apache.dubbo.common.logger.LoggerFactory;
 import org.apache.dubbo.common.threadlocal.NamedInternalThreadFactory;
+import org.apache.dubbo.common.timer.HashedWheelTimer;
+import org.apache.dubbo.common.timer.Timeout;
+import org.apache.dubbo.common.timer.Timer;
+import org.apache.dubbo.common.timer.TimerTask;
+import org.apache.dubbo.common.utils.StringUtils;
+import org.apache.dubbo.metrics.Counter;
+import org.apache.dubbo.metrics.MetricManager;
+import org.apache.dubbo.metrics.MetricName;
 import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
@@ -27,20 +37,27 @@ import org.apache.dubbo.rpc.RpcResult;
 import org.apache.dubbo.rpc.RpcContext;
 import org.apache.dubbo.rpc.cluster.Directory;
 import org.apache.dubbo.rpc.cluster.LoadBalance;
+import org.apache.dubbo.rpc.support.RpcUtils;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * When fails, record failure requests and schedule for retry on a regular interval.
  * Especially useful for services of notification.
+ * <p>
+ * The retries are scheduled on a timer wheel shared by all the failback clusters. Every failed request is retried
+ * with an exponential backoff and jitter, until it succeeds or the retries are exhausted. At most
+ * <code>failbacktasks</code> requests wait for a retry, more are dropped. With <code>failback.journal</code>,
+ * the waiting one way requests are also kept in a journal and retried after a restart.
  *
  * <a href="http://en.wikipedia.org/wiki/Failback">Failback</a>
  *
@@ -49,72 +66,237 @@ public class FailbackClusterInvoker<T> extends AbstractClusterInvoker<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(FailbackClusterInvoker.class);
 
-    private static final long RETRY_FAILED_PERIOD = 5 * 1000;
+    private static final long MAX_RETRY_PERIOD = 60 * 1000;
 
     /**
      * Use {@link NamedInternalThreadFactory} to produce {@link org.apache.dubbo.common.threadlocal.InternalThread}
      * which with the use of {@link org.apache.dubbo.common.threadlocal.InternalThreadLocal} in {@link RpcContext}.
      */
-    private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(2,
-            new NamedInternalThreadFactory("failback-cluster-timer", true));
+    private static final Timer failTimer = new HashedWheelTimer(
+            new NamedInternalThreadFactory("failback-cluster-timer", true), 100, TimeUnit.MILLISECONDS, 512);
 
-    private final ConcurrentMap<Invocation, AbstractClusterInvoker<?>> failed = new ConcurrentHashMap<>();
-    private volatile ScheduledFuture<?> retryFuture;
+    private final ConcurrentMap<Long, RetryTimerTask> failed = new ConcurrentHashMap<>();
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private final int failbackTasks;
+
+    private final int retries;
+
+    private final long period;
+
+    private final FailbackJournal journal;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Counter pendingCounter;
+
+    private final Counter retryCounter;
+
+    private final Counter dropCounter;
 
     public FailbackClusterInvoker(Directory<T> directory) {
         super(directory);
+        URL url = getUrl();
+        int tasks = url.getParameter(Constants.FAILBACK_TASKS_KEY, Constants.DEFAULT_FAILBACK_TASKS);
+        this.failbackTasks = tasks > 0 ? tasks : Constants.DEFAULT_FAILBACK_TASKS;
+        int retriesConfig = url.getParameter(Constants.RETRIES_KEY, Constants.DEFAULT_FAILBACK_TIMES);
+        this.retries = retriesConfig > 0 ? retriesConfig : Constants.DEFAULT_FAILBACK_TIMES;
+        this.period = Math.max(1, url.getParameter(Constants.FAILBACK_PERIOD_KEY, Constants.DEFAULT_FAILBACK_PERIOD));
+        MetricName name = new MetricName("dubbo.cluster.failback").tag(Constants.INTERFACE_KEY, url.getServiceKey());
+        this.pendingCounter = MetricManager.getCounter(Constants.CLUSTER_KEY, name.resolve("pending"));
+        this.retryCounter = MetricManager.getCounter(Constants.CLUSTER_KEY, name.resolve("retries"));
+        this.dropCounter = MetricManager.getCounter(Constants.CLUSTER_KEY, name.resolve("dropped"));
+        this.journal = openJournal(url);
+        if (journal != null) {
+            for (Map.Entry<Long, Invocation> entry : journal.load().entrySet()) {
+                ids.set(Math.max(ids.get(), entry.getKey()));
+                addFailed(entry.getKey(), entry.getValue(), null);
+            }
+        }
     }
 
-    private void addFailed(Invocation invocation, AbstractClusterInvoker<?> router) {
-        if (retryFuture == null) {
-            synchronized (this) {
-                if (retryFuture == null) {
-                    retryFuture = scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
-
-                        @Override
-                        public void run() {
-                            // collect retry statistics
-                            try {
-                                retryFailed();
-                            } catch (Throwable t) { // Defensive fault tolerance
-                                logger.error("Unexpected error occur at collect statistic", t);
-                            }
-                        }
-                    }, RETRY_FAILED_PERIOD, RETRY_FAILED_PERIOD, TimeUnit.MILLISECONDS);
-                }
-            }
+    private FailbackJournal openJournal(URL url) {
+        String dir = url.getParameter(Constants.FAILBACK_JOURNAL_KEY);
+        if (StringUtils.isEmpty(dir)) {
+            return null;
+        }
+        File file = new File(dir, url.getServiceKey().replace('/', '_').replace(':', '_') + ".journal");
+        try {
+            return new FailbackJournal(file, url.getParameter(Constants.FAILBACK_JOURNAL_SIZE_KEY, Constants.DEFAULT_FAILBACK_JOURNAL_SIZE), url);
+        } catch (IOException e) {
+            logger.warn("Failed to open failback journal " + file + ", the failed requests will not survive restarts. cause: " + e.getMessage(), e);
+            return null;
         }
-        failed.put(invocation, router);
     }
 
-    void retryFailed() {
-        if (failed.size() == 0) {
+    private void addFailed(Invocation invocation, Invoker<T> lastInvoker) {
+        long id = ids.incrementAndGet();
+        // the caller of a two way request already got the error, it must not be sent again after a restart
+        if (journal != null && RpcUtils.isOneway(getUrl(), invocation) && !journal.add(id, invocation)) {
+            logger.warn("Failed to keep the request " + invocation.getMethodName() + " in the failback journal, it will not survive restarts.");
+        }
+        addFailed(id, invocation, lastInvoker);
+    }
+
+    private void addFailed(long id, Invocation invocation, Invoker<T> lastInvoker) {
+        if (failed.size() >= failbackTasks) {
+            drop(id, "Failback queue of " + failbackTasks + " requests is full, drop request " + invocation.getMethodName());
             return;
         }
-        for (Map.Entry<Invocation, AbstractClusterInvoker<?>> entry : new HashMap<>(failed).entrySet()) {
-            Invocation invocation = entry.getKey();
-            Invoker<?> invoker = entry.getValue();
-            try {
-                invoker.invoke(invocation);
-                failed.remove(invocation);
-            } catch (Throwable e) {
-                logger.error("Failed retry to invoke method " + invocation.getMethodName() + ", waiting again.", e);
-            }
+        RetryTimerTask task = new RetryTimerTask(id, invocation, lastInvoker);
+        failed.put(id, task);
+        pendingCounter.inc();
+        if (!task.schedule()) {
+            remove(id);
+            drop(id, "Failed to schedule the retry of request " + invocation.getMethodName());
+        }
+    }
+
+    private void remove(long id) {
+        if (failed.remove(id) != null) {
+            pendingCounter.dec();
+        }
+        if (journal != null) {
+            journal.remove(id);
+        }
+    }
+
+    private void drop(long id, String message) {
+        logger.error(message + ", dropped " + dropped.incrementAndGet() + " requests so far.");
+        dropCounter.inc();
+        if (journal != null) {
+            journal.remove(id);
         }
     }
 
+    /**
+     * Retry all the failed requests now, instead of waiting for their timeout.
+     */
+    void retryFailed() {
+        for (RetryTimerTask task : failed.values()) {
+            task.retry();
+        }
+    }
+
+    /**
+     * @return the failed requests waiting for a retry
+     */
+    public int getFailedCount() {
+        return failed.size();
+    }
+
+    /**
+     * @return the failed requests dropped because the queue was full or the retries were exhausted
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
     @Override
     protected Result doInvoke(Invocation invocation, List<Invoker<T>> invokers, LoadBalance loadbalance) throws RpcException {
+        Invoker<T> invoker = null;
         try {
             checkInvokers(invokers, invocation);
-            Invoker<T> invoker = select(loadbalance, invocation, invokers, null);
+            invoker = select(loadbalance, invocation, invokers, null);
             return invoker.invoke(invocation);
         } catch (Throwable e) {
             logger.error("Failback to invoke method " + invocation.getMethodName() + ", wait for retry in background. Ignored exception: "
                     + e.getMessage() + ", ", e);
-            addFailed(invocation, this);
+            addFailed(invocation, invoker);
             return new RpcResult(); // ignore
         }
     }
 
+    @Override
+    public void destroy() {
+        super.destroy();
+        for (RetryTimerTask task : failed.values()) {
+            task.cancel();
+        }
+        // the journal keeps the requests still waiting, they are retried after a restart
+        failed.clear();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Retry one failed request, reselecting an invoker other than the one which failed last.
+     */
+    private class RetryTimerTask implements TimerTask {
+
+        private final long id;
+
+        private final Invocation invocation;
+
+        private volatile Invoker<T> lastInvoker;
+
+        private volatile Timeout timeout;
+
+        private int retryTimes;
+
+        RetryTimerTask(long id, Invocation invocation, Invoker<T> lastInvoker) {
+            this.id = id;
+            this.invocation = invocation;
+            this.lastInvoker = lastInvoker;
+        }
+
+        boolean schedule() {
+            long backoff = Math.min(Math.max(period, MAX_RETRY_PERIOD), period << Math.min(retryTimes, 20));
+            // equal jitter, so that the retries of an outage do not all happen at once
+            long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            try {
+                timeout = failTimer.newTimeout(this, delay, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to schedule failback retry, cause: " + e.getMessage(), e);
+                return false;
+            }
+        }
+
+        void cancel() {
+            Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+
+        void retry() {
+            Timeout t = timeout;
+            if (t == null || t.cancel()) {
+                run(null);
+            }
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (failed.get(id) != this) {
+                return;
+            }
+            retryCounter.inc();
+            try {
+                List<Invoker<T>> invokers = list(invocation);
+                checkInvokers(invokers, invocation);
+                LoadBalance loadbalance = initLoadBalance(invokers, invocation);
+                Invoker<T> retryInvoker = select(loadbalance, invocation, invokers,
+                        lastInvoker == null ? null : Collections.singletonList(lastInvoker));
+                lastInvoker = retryInvoker;
+                retryInvoker.invoke(invocation);
+                remove(id);
+            } catch (Throwable e) {
+                if (++retryTimes >= retries) {
+                    remove(id);
+                    drop(id, "Failed retry times exceed threshold (" + retries + "), invoke method " + invocation.getMethodName());
+                } else {
+                    logger.error("Failed retry to invoke method " + invocation.getMethodName() + ", waiting again.", e);
+                    if (!schedule()) {
+                        remove(id);
+                        drop(id, "Failed to schedule the retry of request " + invocation.getMethodName());
+                    }
+                }
+            }
+        }
+    }
+
 }
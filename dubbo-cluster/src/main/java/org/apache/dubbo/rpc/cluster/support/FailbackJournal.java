@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.logger.Logger;
+import org.apache.dubbo.common.logger.LoggerFactory;
+import org.apache.dubbo.common.serialize.ObjectInput;
+import org.apache.dubbo.common.serialize.ObjectOutput;
+import org.apache.dubbo.common.serialize.Serialization;
+import org.apache.dubbo.common.utils.ReflectUtils;
+import org.apache.dubbo.remoting.transport.CodecSupport;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.RpcInvocation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append only journal of the invocations waiting for a failback retry, memory mapped so that appending costs no system call.
+ * <p>
+ * Every record is a length, a type (added or removed), the id of the invocation and, when added, the invocation written
+ * with the configured {@link Serialization} the way the codecs write a request: the serialization id, the method name,
+ * the parameter types, the arguments and the attachments.
+ * A zero length marks the end of the journal. When the journal is full, the invocations still pending are written
+ * to a new file which replaces the journal.
+ */
+final class FailbackJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(FailbackJournal.class);
+
+    private static final byte ADDED = 1;
+
+    private static final byte REMOVED = 2;
+
+    private static final int HEADER = 4 + 1 + 8;
+
+    private final File file;
+
+    private final int size;
+
+    private final URL url;
+
+    private final Serialization serialization;
+
+    private final Map<Long, byte[]> pending = new LinkedHashMap<Long, byte[]>();
+
+    private RandomAccessFile raf;
+
+    private FileLock lock;
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * Open the journal, the invocations it holds are available from {@link #load()}.
+     *
+     * @throws IOException if the file can not be mapped or is used by another process, or the serialization of
+     *                     the url is not supported
+     */
+    FailbackJournal(File file, int size, URL url) throws IOException {
+        this.file = file;
+        this.size = size;
+        this.url = url;
+        try {
+            this.serialization = CodecSupport.getSerialization(url);
+        } catch (IllegalStateException e) {
+            throw new IOException("Unsupported serialization for failback journal " + file + ", cause: " + e.getMessage(), e);
+        }
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Invalid failback journal directory " + dir + ", failed to create it.");
+        }
+        map(file);
+        read();
+    }
+
+    private void map(File f) throws IOException {
+        raf = new RandomAccessFile(f, "rw");
+        try {
+            try {
+                lock = raf.getChannel().tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Failback journal " + f + " is used by another invoker");
+            }
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, raf.length()));
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private void read() {
+        while (buffer.remaining() >= HEADER) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length < HEADER || start + length > buffer.limit()) {
+                // end of the journal, or a record partially written
+                buffer.position(start);
+                break;
+            }
+            byte type = buffer.get();
+            long id = buffer.getLong();
+            if (type == ADDED) {
+                byte[] bytes = new byte[length - HEADER];
+                buffer.get(bytes);
+                pending.put(id, bytes);
+            } else {
+                pending.remove(id);
+            }
+        }
+    }
+
+    /**
+     * @return the invocations added and not removed, by id
+     */
+    synchronized Map<Long, Invocation> load() {
+        Map<Long, Invocation> invocations = new LinkedHashMap<Long, Invocation>();
+        for (Map.Entry<Long, byte[]> entry : pending.entrySet()) {
+            try {
+                invocations.put(entry.getKey(), decode(entry.getValue()));
+            } catch (Exception e) {
+                logger.warn("Failed to read invocation " + entry.getKey() + " from failback journal " + file + ", cause: " + e.getMessage(), e);
+            }
+        }
+        return invocations;
+    }
+
+    /**
+     * @return false if the invocation can not be serialized
+     */
+    synchronized boolean add(long id, Invocation invocation) {
+        byte[] bytes;
+        try {
+            bytes = encode(invocation);
+        } catch (IOException e) {
+            logger.warn("Failed to write invocation " + invocation.getMethodName() + " to failback journal " + file + ", cause: " + e.getMessage());
+            return false;
+        }
+        if (!append(ADDED, id, bytes)) {
+            return false;
+        }
+        pending.put(id, bytes);
+        return true;
+    }
+
+    private byte[] encode(Invocation invocation) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        bos.write(serialization.getContentTypeId());
+        // the copy has no null arrays and holds the attachments the invoker adds, such as path and version
+        RpcInvocation inv = new RpcInvocation(invocation);
+        ObjectOutput out = serialization.serialize(url, bos);
+        out.writeUTF(inv.getMethodName());
+        out.writeUTF(ReflectUtils.getDesc(inv.getParameterTypes()));
+        for (Object arg : inv.getArguments()) {
+            out.writeObject(arg);
+        }
+        out.writeObject(inv.getAttachments());
+        out.flushBuffer();
+        return bos.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Invocation decode(byte[] bytes) throws IOException, ClassNotFoundException {
+        if (bytes.length == 0) {
+            throw new IOException("Empty invocation record");
+        }
+        ByteArrayInputStream bis = new ByteArrayInputStream(bytes, 1, bytes.length - 1);
+        // same check as for a request from network: an unknown id, or java serialization when not configured, is rejected
+        ObjectInput in = CodecSupport.getSerialization(url, bytes[0]).deserialize(url, bis);
+        String methodName = in.readUTF();
+        String desc = in.readUTF();
+        Class<?>[] types = desc.length() == 0 ? new Class<?>[0] : ReflectUtils.desc2classArray(desc);
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readObject(types[i]);
+        }
+        Map<String, String> attachments = in.readObject(Map.class);
+        return new RpcInvocation(methodName, types, args,
+                attachments == null ? new HashMap<String, String>() : attachments);
+    }
+
+    synchronized void remove(long id) {
+        if (pending.remove(id) != null) {
+            append(REMOVED, id, new byte[0]);
+        }
+    }
+
+    private boolean append(byte type, long id, byte[] bytes) {
+        if (buffer == null) {
+            return false;
+        }
+        int length = HEADER + bytes.length;
+        // keep room for the end mark
+        if (buffer.remaining() < length + 4) {
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.warn("Failed to compact failback journal " + file + ", cause: " + e.getMessage(), e);
+                return false;
+            }
+            if (buffer.remaining() < length + 4) {
+                return false;
+            }
+        }
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(type);
+        buffer.putLong(id);
+        buffer.put(bytes);
+        // a record shorter than the one partially written there before a crash must not leave its bytes readable
+        buffer.putInt(start + length, 0);
+        // the length is written last, so that a record partially written is ignored
+        buffer.putInt(start, length);
+        return true;
+    }
+
+    private void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            for (Map.Entry<Long, byte[]> entry : pending.entrySet()) {
+                out.writeInt(HEADER + entry.getValue().length);
+                out.writeByte(ADDED);
+                out.writeLong(entry.getKey());
+                out.write(entry.getValue());
+            }
+            out.getChannel().force(true);
+        } finally {
+            out.close();
+        }
+        close();
+        if (!tmp.renameTo(file)) {
+            // keep the journal
+            map(file);
+            buffer.position(buffer.limit());
+            throw new IOException("Failed to replace " + file + " with " + tmp);
+        }
+        map(file);
+        buffer.position(0);
+        pending.clear();
+        read();
+    }
+
+    synchronized void close() {
+        if (buffer == null) {
+            return;
+        }
+        buffer.force();
+        buffer = null;
+        try {
+            lock.release();
+            raf.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close failback journal " + file + ", cause: " + e.getMessage(), e);
+        }
+    }
+}
@@ -17,10 +17,14 @@
 package org.apache.dubbo.rpc.cluster.support;
 
 import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
 import org.apache.dubbo.common.Version;
 import org.apache.dubbo.common.logger.Logger;
 import org.apache.dubbo.common.logger.LoggerFactory;
 import org.apache.dubbo.common.utils.NetUtils;
+import org.apache.dubbo.metrics.Counter;
+import org.apache.dubbo.metrics.MetricManager;
+import org.apache.dubbo.metrics.MetricName;
 import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
@@ -34,11 +38,20 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * When invoke fails, log the initial error and retry other invokers (retry n times, which means at most n different invokers will be invoked)
  * Note that retry causes latency.
  * <p>
+ * With <code>retry.budget</code>, the retries are limited to a ratio of the requests over a sliding window, so that
+ * retries do not multiply the load when the providers are degraded. With <code>adaptive.timeout.percentile</code>,
+ * an attempt which is followed by a retry times out after that latency percentile of the method instead of the
+ * configured timeout, the last attempt always uses the configured timeout. The attempt timeout is a value of the
+ * {@link RpcContext}, it is not sent to the provider.
+ * <p>
  * <a href="http://en.wikipedia.org/wiki/Failover">Failover</a>
  *
  */
@@ -46,8 +59,34 @@ public class FailoverClusterInvoker<T> extends AbstractClusterInvoker<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(FailoverClusterInvoker.class);
 
+    private static final int MIN_SAMPLES = 100;
+
+    private final RetryBudget retryBudget;
+
+    private final Counter exhaustedCounter;
+
+    private final int timeoutPercentile;
+
+    private final double timeoutFactor;
+
+    private final ConcurrentMap<String, RollingPercentile> latencies = new ConcurrentHashMap<String, RollingPercentile>();
+
     public FailoverClusterInvoker(Directory<T> directory) {
         super(directory);
+        URL url = getUrl();
+        double budget = url.getParameter(Constants.RETRY_BUDGET_KEY, -1.0);
+        if (budget >= 0) {
+            this.retryBudget = new RetryBudget(budget,
+                    url.getParameter(Constants.RETRY_BUDGET_MIN_KEY, Constants.DEFAULT_RETRY_BUDGET_MIN),
+                    url.getParameter(Constants.RETRY_BUDGET_WINDOW_KEY, Constants.DEFAULT_RETRY_BUDGET_WINDOW));
+            MetricName name = new MetricName("dubbo.cluster.retry.budget").tag(Constants.INTERFACE_KEY, url.getServiceKey());
+            this.exhaustedCounter = MetricManager.getCounter(Constants.CLUSTER_KEY, name.resolve("exhausted"));
+        } else {
+            this.retryBudget = null;
+            this.exhaustedCounter = null;
+        }
+        this.timeoutPercentile = url.getParameter(Constants.ADAPTIVE_TIMEOUT_PERCENTILE_KEY, 0);
+        this.timeoutFactor = url.getParameter(Constants.ADAPTIVE_TIMEOUT_FACTOR_KEY, Constants.DEFAULT_ADAPTIVE_TIMEOUT_FACTOR);
     }
 
     @Override
@@ -60,6 +99,13 @@ public class FailoverClusterInvoker<T> extends AbstractClusterInvoker<T> {
         if (len <= 0) {
             len = 1;
         }
+        if (retryBudget != null) {
+            retryBudget.request();
+        }
+        RollingPercentile latency = null;
+        if (timeoutPercentile > 0 && !RpcUtils.isAsync(getUrl(), invocation)) {
+            latency = getLatency(methodName);
+        }
         // retry loop.
         RpcException le = null; // last exception.
         List<Invoker<T>> invoked = new ArrayList<Invoker<T>>(copyinvokers.size()); // invoked invokers.
@@ -68,6 +114,11 @@ public class FailoverClusterInvoker<T> extends AbstractClusterInvoker<T> {
             //Reselect before retry to avoid a change of candidate `invokers`.
             //NOTE: if `invokers` changed, then `invoked` also lose accuracy.
             if (i > 0) {
+                if (retryBudget != null && !retryBudget.tryRetry()) {
+                    exhaustedCounter.inc();
+                    len = i;
+                    break;
+                }
                 checkWhetherDestroyed();
                 copyinvokers = list(invocation);
                 // check again
@@ -76,8 +127,18 @@ public class FailoverClusterInvoker<T> extends AbstractClusterInvoker<T> {
             Invoker<T> invoker = select(loadbalance, invocation, copyinvokers, invoked);
             invoked.add(invoker);
             RpcContext.getContext().setInvokers((List) invoked);
+            boolean last = i == len - 1 || (retryBudget != null && !retryBudget.canRetry());
+            long attemptTimeout = latency != null && !last ? getAttemptTimeout(methodName, latency) : -1;
+            if (attemptTimeout > 0) {
+                // a local value, an attachment would be sent to the provider and passed on to its own calls
+                RpcContext.getContext().set(Constants.ATTEMPT_TIMEOUT_KEY, (int) attemptTimeout);
+            }
+            long start = System.nanoTime();
             try {
                 Result result = invoker.invoke(invocation);
+                if (latency != null) {
+                    latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }
                 if (le != null && logger.isWarnEnabled()) {
                     logger.warn("Although retry the method " + methodName
                             + " in the service " + getInterface().getName()
@@ -94,11 +155,20 @@ public class FailoverClusterInvoker<T> extends AbstractClusterInvoker<T> {
                 if (e.isBiz()) { // biz exception.
                     throw e;
                 }
+                if (latency != null && e.isTimeout()) {
+                    // an attempt cut off is at least as slow as its timeout, leaving it out would shrink the percentile
+                    long cap = attemptTimeout > 0 ? attemptTimeout
+                            : getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+                    latency.record(Math.max(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), TimeUnit.MILLISECONDS.toMicros(cap)));
+                }
                 le = e;
             } catch (Throwable e) {
                 le = new RpcException(e.getMessage(), e);
             } finally {
                 providers.add(invoker.getUrl().getAddress());
+                if (attemptTimeout > 0) {
+                    RpcContext.getContext().remove(Constants.ATTEMPT_TIMEOUT_KEY);
+                }
             }
         }
         throw new RpcException(le.getCode(), "Failed to invoke the method "
@@ -111,4 +181,26 @@ public class FailoverClusterInvoker<T> extends AbstractClusterInvoker<T> {
                 + le.getMessage(), le.getCause() != null ? le.getCause() : le);
     }
 
+    /**
+     * @return the adaptive timeout in milliseconds, -1 if the latency of the method is not known yet
+     */
+    private long getAttemptTimeout(String methodName, RollingPercentile latency) {
+        long percentile = latency.getPercentile(timeoutPercentile);
+        if (percentile < 0) {
+            return -1;
+        }
+        long timeout = getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+        long adaptive = (long) Math.ceil(percentile * timeoutFactor / 1000);
+        return adaptive < timeout ? Math.max(1, adaptive) : -1;
+    }
+
+    RollingPercentile getLatency(String methodName) {
+        RollingPercentile latency = latencies.get(methodName);
+        if (latency == null) {
+            latencies.putIfAbsent(methodName, new RollingPercentile(60 * 1000, MIN_SAMPLES));
+            latency = latencies.get(methodName);
+        }
+        return latency;
+    }
+
 }
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.remoting.RemotingException;
+import org.apache.dubbo.rpc.AsyncRpcResult;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcContext;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.RpcResult;
+import org.apache.dubbo.rpc.SimpleAsyncRpcResult;
+import org.apache.dubbo.rpc.support.RpcUtils;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One invocation sent asynchronously to several invokers, the first result wins and the pending calls are cancelled.
+ * It fails once every planned call has failed.
+ */
+final class ForkedInvocation {
+
+    private final String cluster;
+
+    private final Invocation invocation;
+
+    private final RollingPercentile latency;
+
+    private final CompletableFuture<Result> first = new CompletableFuture<>();
+
+    private final AtomicInteger planned;
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final List<Invoker<?>> invokers = new CopyOnWriteArrayList<>();
+
+    private final List<CompletableFuture<?>> pendings = new CopyOnWriteArrayList<>();
+
+    private volatile Result failure;
+
+    /**
+     * @param cluster the cluster name used in error messages
+     * @param forks   the number of calls planned, more can be added by {@link #hedge(Invoker)}
+     * @param latency records the latency of every completed call, may be null
+     */
+    ForkedInvocation(String cluster, Invocation invocation, int forks, RollingPercentile latency) {
+        this.cluster = cluster;
+        this.invocation = invocation;
+        this.planned = new AtomicInteger(forks);
+        this.latency = latency;
+        first.whenComplete((r, t) -> {
+            for (CompletableFuture<?> pending : pendings) {
+                if (!pending.isDone()) {
+                    pending.cancel(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * Send one of the planned calls.
+     */
+    void fork(Invoker<?> invoker) {
+        invokers.add(invoker);
+        RpcInvocation fork = new RpcInvocation(invocation);
+        fork.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+        final long start = System.nanoTime();
+        final Result result;
+        try {
+            result = invoker.invoke(fork);
+        } catch (Throwable e) {
+            onFailure(e);
+            return;
+        } finally {
+            RpcContext.getContext().setFuture(null);
+        }
+        if (!(result instanceof AsyncRpcResult)) {
+            // the protocol does not support async invocation, the result is already there
+            record(start);
+            first.complete(result);
+            return;
+        }
+        final AsyncRpcResult asyncResult = (AsyncRpcResult) result;
+        CompletableFuture<?> valueFuture = asyncResult.getValueFuture();
+        pendings.add(valueFuture);
+        if (first.isDone()) {
+            valueFuture.cancel(true);
+            return;
+        }
+        valueFuture.whenComplete((value, t) -> {
+            if (t instanceof CompletionException && t.getCause() != null) {
+                t = t.getCause();
+            }
+            if (t instanceof CancellationException) {
+                return;
+            }
+            record(start);
+            if (t != null && isFailure(t)) {
+                onFailure(t);
+                return;
+            }
+            Result r = asyncResult.getResultFuture().getNow(null);
+            first.complete(r != null ? r : (t == null ? new RpcResult(value) : new RpcResult(t)));
+        });
+    }
+
+    /**
+     * Send one more call than planned, unless the invocation is already complete.
+     *
+     * @return whether the call was sent
+     */
+    boolean hedge(Invoker<?> invoker) {
+        planned.incrementAndGet();
+        if (first.isDone()) {
+            return false;
+        }
+        fork(invoker);
+        return true;
+    }
+
+    CompletableFuture<Result> getFirst() {
+        return first;
+    }
+
+    boolean isDone() {
+        return first.isDone();
+    }
+
+    List<Invoker<?>> getInvokers() {
+        return invokers;
+    }
+
+    /**
+     * Wait for the first result if the invocation is synchronous, or hand out its future otherwise.
+     */
+    Result getResult(URL url, int timeout) throws RpcException {
+        if (RpcUtils.isAsync(url, invocation)) {
+            final CompletableFuture<Object> valueFuture = new CompletableFuture<>();
+            first.whenComplete((r, t) -> {
+                if (r.hasException()) {
+                    valueFuture.completeExceptionally(r.getException());
+                } else {
+                    valueFuture.complete(r.getValue());
+                }
+            });
+            RpcContext.getContext().setFuture(valueFuture);
+            if (RpcUtils.isGeneratedFuture(invocation) || RpcUtils.isFutureReturnType(invocation)) {
+                return new AsyncRpcResult(valueFuture, first, false);
+            }
+            return new SimpleAsyncRpcResult(valueFuture, first, false);
+        }
+        try {
+            Result result = first.get(timeout, TimeUnit.MILLISECONDS);
+            if (result == failure) {
+                throw (RpcException) result.getException();
+            }
+            return result;
+        } catch (TimeoutException e) {
+            first.complete(new RpcResult(e));
+            throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Failed to " + cluster + " invoke provider " + invokers + ", but no luck to perform the invocation in " + timeout + "ms.", e);
+        } catch (InterruptedException e) {
+            first.complete(new RpcResult(e));
+            throw new RpcException("Failed to " + cluster + " invoke provider " + invokers + ", but no luck to perform the invocation. Last error is: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            // never happens, first is only completed normally
+            throw new RpcException(e.getCause());
+        }
+    }
+
+    private void record(long start) {
+        if (latency != null) {
+            latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    private void onFailure(Throwable e) {
+        if (failures.incrementAndGet() >= planned.get()) {
+            RpcException exception = new RpcException(e instanceof RpcException ? ((RpcException) e).getCode() : 0,
+                    "Failed to " + cluster + " invoke provider " + invokers + ", but no luck to perform the invocation. Last error is: " + e.getMessage(),
+                    e.getCause() != null ? e.getCause() : e);
+            Result result = new RpcResult(exception);
+            failure = result;
+            first.complete(result);
+        }
+    }
+
+    /**
+     * @return whether the exception comes from the invocation rather than from the business logic of the provider
+     */
+    static boolean isFailure(Throwable t) {
+        if (t instanceof RpcException) {
+            return !((RpcException) t).isBiz();
+        }
+        return t instanceof RemotingException;
+    }
+}
@@ -37,6 +37,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Invoke a specific number of invokers concurrently, usually used for demanding real-time operations, but need to waste more service resources.
+ * With forks.async, the forks are invoked asynchronously instead of on a thread each.
  *
  * <a href="http://en.wikipedia.org/wiki/Fork_(topology)">Fork</a>
  */
@@ -75,6 +76,9 @@ public class ForkingClusterInvoker<T> extends AbstractClusterInvoker<T> {
                 }
             }
             RpcContext.getContext().setInvokers((List) selected);
+            if (getUrl().getParameter(Constants.FORKS_ASYNC_KEY, false)) {
+                return doInvokeAsync(invocation, selected, timeout);
+            }
             final AtomicInteger count = new AtomicInteger();
             final BlockingQueue<Object> ref = new LinkedBlockingQueue<>();
             for (final Invoker<T> invoker : selected) {
@@ -108,4 +112,16 @@ public class ForkingClusterInvoker<T> extends AbstractClusterInvoker<T> {
             RpcContext.getContext().clearAttachments();
         }
     }
+
+    /**
+     * Issue all forks as async calls, the first result completes the invocation and the pending forks are cancelled.
+     * No thread is used besides the caller, which only waits if the invocation itself is synchronous.
+     */
+    private Result doInvokeAsync(final Invocation invocation, final List<Invoker<T>> selected, int timeout) throws RpcException {
+        ForkedInvocation forked = new ForkedInvocation(ForkingCluster.NAME, invocation, selected.size(), null);
+        for (Invoker<T> invoker : selected) {
+            forked.fork(invoker);
+        }
+        return forked.getResult(getUrl(), timeout);
+    }
 }
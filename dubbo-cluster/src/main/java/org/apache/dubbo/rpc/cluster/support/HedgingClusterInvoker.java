@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.apache.dubbo.metrics.Counter;
+import org.apache.dubbo.metrics.MetricManager;
+import org.apache.dubbo.metrics.MetricName;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcContext;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.cluster.Directory;
+import org.apache.dubbo.rpc.cluster.LoadBalance;
+import org.apache.dubbo.rpc.support.RpcUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Send the request to one invoker, and if it has not responded after the latency percentile of the method,
+ * send the same request to another invoker. The first response wins and the other request is cancelled.
+ * <p>
+ * Hedged requests are limited by a budget: every request earns a fraction of a token and a hedge costs a whole token,
+ * so the extra load stays below the budget ratio. The hedge rate is exported as the dubbo.cluster.hedging.requests
+ * and dubbo.cluster.hedging.hedges counters.
+ */
+public class HedgingClusterInvoker<T> extends AbstractClusterInvoker<T> {
+
+    /**
+     * Tokens are counted in thousandths, a hedge costs one token
+     */
+    private static final long TOKEN = 1000;
+
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    private static final int MIN_SAMPLES = 20;
+
+    private static final ScheduledExecutorService hedgeExecutor = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("DubboHedgingTimer", true));
+
+    private final ConcurrentMap<String, RollingPercentile> latencies = new ConcurrentHashMap<String, RollingPercentile>();
+
+    private final AtomicLong tokens = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    private final int percentile;
+
+    private final long tokensPerRequest;
+
+    private final int window;
+
+    private final Counter requestCounter;
+
+    private final Counter hedgeCounter;
+
+    public HedgingClusterInvoker(Directory<T> directory) {
+        super(directory);
+        URL url = getUrl();
+        this.percentile = url.getParameter(Constants.HEDGING_PERCENTILE_KEY, Constants.DEFAULT_HEDGING_PERCENTILE);
+        this.tokensPerRequest = (long) (url.getParameter(Constants.HEDGING_BUDGET_KEY, Constants.DEFAULT_HEDGING_BUDGET) * TOKEN);
+        this.window = url.getParameter(Constants.HEDGING_WINDOW_KEY, Constants.DEFAULT_HEDGING_WINDOW);
+        MetricName name = new MetricName("dubbo.cluster.hedging").tag(Constants.INTERFACE_KEY, url.getServiceKey());
+        this.requestCounter = MetricManager.getCounter(Constants.CLUSTER_KEY, name.resolve("requests"));
+        this.hedgeCounter = MetricManager.getCounter(Constants.CLUSTER_KEY, name.resolve("hedges"));
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public Result doInvoke(final Invocation invocation, final List<Invoker<T>> invokers, final LoadBalance loadbalance) throws RpcException {
+        checkInvokers(invokers, invocation);
+        String methodName = RpcUtils.getMethodName(invocation);
+        int timeout = getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+        long start = System.currentTimeMillis();
+        RollingPercentile latency = getLatency(methodName);
+        long delay = invokers.size() > 1 ? latency.getPercentile(percentile) : -1;
+        earnToken();
+
+        final Invoker<T> primary = select(loadbalance, invocation, invokers, null);
+        final ForkedInvocation forked = new ForkedInvocation(HedgingCluster.NAME, invocation, 1, latency);
+        forked.fork(primary);
+        if (delay >= 0 && !forked.isDone()) {
+            if (RpcUtils.isAsync(getUrl(), invocation)) {
+                hedgeExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            hedge(forked, invocation, invokers, loadbalance, primary);
+                        } finally {
+                            RpcContext.removeContext();
+                        }
+                    }
+                }, delay, TimeUnit.MICROSECONDS);
+            } else {
+                try {
+                    forked.getFirst().get(delay, TimeUnit.MICROSECONDS);
+                } catch (TimeoutException e) {
+                    hedge(forked, invocation, invokers, loadbalance, primary);
+                } catch (InterruptedException | ExecutionException e) {
+                    // handled when waiting for the result
+                }
+            }
+        }
+        RpcContext.getContext().setInvokers((List) forked.getInvokers());
+        int remaining = (int) Math.max(1, timeout - (System.currentTimeMillis() - start));
+        return forked.getResult(getUrl(), remaining);
+    }
+
+    private void hedge(ForkedInvocation forked, Invocation invocation, List<Invoker<T>> invokers, LoadBalance loadbalance, Invoker<T> primary) {
+        if (forked.isDone() || !acquireToken()) {
+            return;
+        }
+        List<Invoker<T>> selected = new ArrayList<Invoker<T>>(1);
+        selected.add(primary);
+        Invoker<T> invoker = select(loadbalance, invocation, invokers, selected);
+        if (invoker == null || invoker == primary) {
+            tokens.addAndGet(TOKEN);
+            return;
+        }
+        if (forked.hedge(invoker)) {
+            hedges.incrementAndGet();
+            hedgeCounter.inc();
+        }
+    }
+
+    private void earnToken() {
+        requests.incrementAndGet();
+        requestCounter.inc();
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= MAX_TOKENS) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(MAX_TOKENS, current + tokensPerRequest)));
+    }
+
+    private boolean acquireToken() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    RollingPercentile getLatency(String methodName) {
+        RollingPercentile latency = latencies.get(methodName);
+        if (latency == null) {
+            latencies.putIfAbsent(methodName, new RollingPercentile(window, MIN_SAMPLES));
+            latency = latencies.get(methodName);
+        }
+        return latency;
+    }
+
+    /**
+     * @return hedged requests per request
+     */
+    public double getHedgeRate() {
+        long total = requests.get();
+        return total == 0 ? 0 : (double) hedges.get() / total;
+    }
+
+}
@@ -22,10 +22,11 @@ import org.apache.dubbo.common.extension.ExtensionLoader;
 import org.apache.dubbo.common.logger.Logger;
 import org.apache.dubbo.common.logger.LoggerFactory;
 import org.apache.dubbo.common.utils.ConfigUtils;
-import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.apache.dubbo.rpc.AsyncRpcResult;
 import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcContext;
 import org.apache.dubbo.rpc.RpcException;
 import org.apache.dubbo.rpc.RpcInvocation;
 import org.apache.dubbo.rpc.RpcResult;
@@ -37,21 +38,19 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @SuppressWarnings("unchecked")
 public class MergeableClusterInvoker<T> implements Invoker<T> {
 
     private static final Logger log = LoggerFactory.getLogger(MergeableClusterInvoker.class);
     private final Directory<T> directory;
-    private ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("mergeable-cluster-executor", true));
 
     public MergeableClusterInvoker(Directory<T> directory) {
         this.directory = directory;
@@ -80,94 +79,63 @@ public class MergeableClusterInvoker<T> implements Invoker<T> {
             returnType = null;
         }
 
-        Map<String, Future<Result>> results = new HashMap<String, Future<Result>>();
-        for (final Invoker<T> invoker : invokers) {
-            Future<Result> future = executor.submit(new Callable<Result>() {
-                @Override
-                public Result call() throws Exception {
-                    return invoker.invoke(new RpcInvocation(invocation, invoker));
-                }
-            });
-            results.put(invoker.getUrl().getServiceKey(), future);
-        }
-
-        Object result = null;
-
-        List<Result> resultList = new ArrayList<Result>(results.size());
-
         int timeout = getUrl().getMethodParameter(invocation.getMethodName(), Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
-        for (Map.Entry<String, Future<Result>> entry : results.entrySet()) {
-            Future<Result> future = entry.getValue();
-            try {
-                Result r = future.get(timeout, TimeUnit.MILLISECONDS);
-                if (r.hasException()) {
-                    log.error("Invoke " + getGroupDescFromServiceKey(entry.getKey()) + 
-                                    " failed: " + r.getException().getMessage(), 
-                            r.getException());
-                } else {
-                    resultList.add(r);
+        boolean partial = getUrl().getMethodParameter(invocation.getMethodName(), Constants.MERGER_PARTIAL_KEY, false);
+        MergedResult merged = new MergedResult(returnType, merger, partial, invokers.size());
+        List<CompletableFuture<?>> pendings = new ArrayList<CompletableFuture<?>>(invokers.size());
+        try {
+            for (final Invoker<T> invoker : invokers) {
+                fork(invoker, invocation, merged, pendings);
+            }
+            return merged.get(timeout);
+        } finally {
+            for (CompletableFuture<?> pending : pendings) {
+                if (!pending.isDone()) {
+                    pending.cancel(true);
                 }
-            } catch (Exception e) {
-                throw new RpcException("Failed to invoke service " + entry.getKey() + ": " + e.getMessage(), e);
             }
         }
+    }
 
-        if (resultList.isEmpty()) {
-            return new RpcResult((Object) null);
-        } else if (resultList.size() == 1) {
-            return resultList.iterator().next();
+    /**
+     * Send the invocation to one group asynchronously and merge its result once it arrives.
+     */
+    private void fork(Invoker<T> invoker, Invocation invocation, final MergedResult merged, List<CompletableFuture<?>> pendings) {
+        final String key = invoker.getUrl().getServiceKey();
+        merged.pending(key);
+        RpcInvocation fork = new RpcInvocation(invocation, invoker);
+        fork.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+        final Result result;
+        try {
+            result = invoker.invoke(fork);
+        } catch (Throwable e) {
+            merged.fail(key, e);
+            return;
+        } finally {
+            RpcContext.getContext().setFuture(null);
         }
-
-        if (returnType == void.class) {
-            return new RpcResult((Object) null);
+        if (!(result instanceof AsyncRpcResult)) {
+            // the protocol does not support async invocation, the result is already there
+            merged.add(key, result);
+            return;
         }
-
-        if (merger.startsWith(".")) {
-            merger = merger.substring(1);
-            Method method;
-            try {
-                method = returnType.getMethod(merger, returnType);
-            } catch (NoSuchMethodException e) {
-                throw new RpcException("Can not merge result because missing method [ " + merger + " ] in class [ " + 
-                        returnType.getClass().getName() + " ]");
-            }
-            if (!Modifier.isPublic(method.getModifiers())) {
-                method.setAccessible(true);
-            }
-            result = resultList.remove(0).getValue();
-            try {
-                if (method.getReturnType() != void.class
-                        && method.getReturnType().isAssignableFrom(result.getClass())) {
-                    for (Result r : resultList) {
-                        result = method.invoke(result, r.getValue());
-                    }
-                } else {
-                    for (Result r : resultList) {
-                        method.invoke(result, r.getValue());
-                    }
-                }
-            } catch (Exception e) {
-                throw new RpcException("Can not merge result: " + e.getMessage(), e);
+        final AsyncRpcResult asyncResult = (AsyncRpcResult) result;
+        CompletableFuture<?> valueFuture = asyncResult.getValueFuture();
+        pendings.add(valueFuture);
+        valueFuture.whenComplete((value, t) -> {
+            if (t instanceof CompletionException && t.getCause() != null) {
+                t = t.getCause();
             }
-        } else {
-            Merger resultMerger;
-            if (ConfigUtils.isDefault(merger)) {
-                resultMerger = MergerFactory.getMerger(returnType);
-            } else {
-                resultMerger = ExtensionLoader.getExtensionLoader(Merger.class).getExtension(merger);
+            if (t instanceof CancellationException) {
+                return;
             }
-            if (resultMerger != null) {
-                List<Object> rets = new ArrayList<Object>(resultList.size());
-                for (Result r : resultList) {
-                    rets.add(r.getValue());
-                }
-                result = resultMerger.merge(
-                        rets.toArray((Object[]) Array.newInstance(returnType, 0)));
-            } else {
-                throw new RpcException("There is no merger to merge result.");
+            if (t != null && ForkedInvocation.isFailure(t)) {
+                merged.fail(key, t);
+                return;
             }
-        }
-        return new RpcResult(result);
+            Result r = asyncResult.getResultFuture().getNow(null);
+            merged.add(key, r != null ? r : (t == null ? new RpcResult(value) : new RpcResult(t)));
+        });
     }
 
     @Override
@@ -190,11 +158,179 @@ public class MergeableClusterInvoker<T> implements Invoker<T> {
         directory.destroy();
     }
 
-    private String getGroupDescFromServiceKey(String key) {
+    private static String getGroupDescFromServiceKey(String key) {
         int index = key.indexOf("/");
         if (index > 0) {
             return "group [ " + key.substring(0, index) + " ]";
         }
         return key;
     }
+
+    /**
+     * Merges the results of the groups one by one as they arrive, so that only the last one is merged after the wait.
+     */
+    private static final class MergedResult {
+
+        private final Class<?> returnType;
+
+        private final String merger;
+
+        private final boolean partial;
+
+        private final List<String> pendingKeys = new ArrayList<String>();
+
+        private final CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+        private int remaining;
+
+        private boolean closed;
+
+        private int count;
+
+        private Result first;
+
+        private Object value;
+
+        private Method method;
+
+        private Merger resultMerger;
+
+        private RpcException failure;
+
+        private RpcException error;
+
+        MergedResult(Class<?> returnType, String merger, boolean partial, int groups) {
+            this.returnType = returnType;
+            this.merger = merger;
+            this.partial = partial;
+            this.remaining = groups;
+        }
+
+        synchronized void pending(String key) {
+            pendingKeys.add(key);
+        }
+
+        synchronized void add(String key, Result r) {
+            if (closed) {
+                return;
+            }
+            if (r.hasException()) {
+                log.error("Invoke " + getGroupDescFromServiceKey(key) +
+                                " failed: " + r.getException().getMessage(),
+                        r.getException());
+            } else if (count++ == 0) {
+                first = r;
+                value = r.getValue();
+            } else if (returnType != void.class && error == null) {
+                try {
+                    value = merge(value, r.getValue());
+                } catch (RpcException e) {
+                    error = e;
+                }
+            }
+            arrive(key);
+        }
+
+        synchronized void fail(String key, Throwable e) {
+            if (closed) {
+                return;
+            }
+            if (partial) {
+                log.error("Invoke " + getGroupDescFromServiceKey(key) + " failed: " + e.getMessage(), e);
+            } else if (failure == null) {
+                failure = new RpcException("Failed to invoke service " + key + ": " + e.getMessage(), e);
+                done.complete(null);
+            }
+            arrive(key);
+        }
+
+        private void arrive(String key) {
+            pendingKeys.remove(key);
+            if (--remaining == 0) {
+                done.complete(null);
+            }
+        }
+
+        /**
+         * Wait until every group has returned, or until the timeout in partial mode, and return the merged result.
+         */
+        Result get(int timeout) throws RpcException {
+            try {
+                done.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                synchronized (this) {
+                    if (!partial) {
+                        closed = true;
+                        throw new RpcException(RpcException.TIMEOUT_EXCEPTION, "Failed to invoke service " + pendingKeys
+                                + ": no result returned in " + timeout + "ms", e);
+                    }
+                    log.warn("Merge results without " + pendingKeys + ", no result returned in " + timeout + "ms");
+                }
+            } catch (InterruptedException e) {
+                throw new RpcException("Failed to invoke service " + pendingKeys + ": " + e.getMessage(), e);
+            } catch (ExecutionException e) {
+                // never happens, done is only completed normally
+                throw new RpcException(e.getCause());
+            }
+            synchronized (this) {
+                closed = true;
+                if (failure != null) {
+                    throw failure;
+                }
+                if (count == 0) {
+                    return new RpcResult((Object) null);
+                } else if (count == 1) {
+                    return first;
+                }
+                if (returnType == void.class) {
+                    return new RpcResult((Object) null);
+                }
+                if (error != null) {
+                    throw error;
+                }
+                return new RpcResult(value);
+            }
+        }
+
+        private Object merge(Object result, Object next) {
+            if (merger.startsWith(".")) {
+                if (method == null) {
+                    String name = merger.substring(1);
+                    try {
+                        method = returnType.getMethod(name, returnType);
+                    } catch (NoSuchMethodException e) {
+                        throw new RpcException("Can not merge result because missing method [ " + name + " ] in class [ " +
+                                returnType.getClass().getName() + " ]");
+                    }
+                    if (!Modifier.isPublic(method.getModifiers())) {
+                        method.setAccessible(true);
+                    }
+                }
+                try {
+                    if (method.getReturnType() != void.class
+                            && method.getReturnType().isAssignableFrom(result.getClass())) {
+                        return method.invoke(result, next);
+                    }
+                    method.invoke(result, next);
+                    return result;
+                } catch (Exception e) {
+                    throw new RpcException("Can not merge result: " + e.getMessage(), e);
+                }
+            }
+            if (resultMerger == null) {
+                if (ConfigUtils.isDefault(merger)) {
+                    resultMerger = MergerFactory.getMerger(returnType);
+                } else {
+                    resultMerger = ExtensionLoader.getExtensionLoader(Merger.class).getExtension(merger);
+                }
+                if (resultMerger == null) {
+                    throw new RpcException("There is no merger to merge result.");
+                }
+            }
+            Object[] items = (Object[]) Array.newInstance(returnType, 2);
+            items[0] = result;
+            items[1] = next;
+            return resultMerger.merge(items);
+        }
+    }
 }
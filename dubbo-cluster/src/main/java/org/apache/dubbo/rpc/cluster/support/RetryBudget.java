@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the retries to a ratio of the requests over a sliding window, so that retries can not multiply the load
+ * when many requests fail. A minimum of retries is always allowed within the window.
+ * <p>
+ * The window is split in two halves, counted over the current and the previous half.
+ */
+class RetryBudget {
+
+    private final double ratio;
+
+    private final int minRetries;
+
+    private final long halfWindow;
+
+    private final AtomicLong halfStart;
+
+    private volatile Counts current = new Counts();
+
+    private volatile Counts previous = new Counts();
+
+    /**
+     * @param ratio      the retries allowed per request
+     * @param minRetries the retries allowed within the window whatever the requests
+     * @param window     the window in milliseconds
+     */
+    RetryBudget(double ratio, int minRetries, long window) {
+        this.ratio = ratio;
+        this.minRetries = minRetries;
+        this.halfWindow = Math.max(1, window / 2);
+        this.halfStart = new AtomicLong(System.currentTimeMillis());
+    }
+
+    void request() {
+        roll();
+        current.requests.increment();
+    }
+
+    /**
+     * @return whether a retry is allowed now, without taking it
+     */
+    boolean canRetry() {
+        roll();
+        Counts cur = current;
+        Counts prev = previous;
+        long requests = cur.requests.sum() + prev.requests.sum();
+        long retries = cur.retries.sum() + prev.retries.sum();
+        return retries < Math.max(minRetries, (long) (requests * ratio));
+    }
+
+    /**
+     * Take a retry from the budget. Concurrent callers may overdraw it slightly.
+     *
+     * @return false if the budget is exhausted
+     */
+    boolean tryRetry() {
+        if (!canRetry()) {
+            return false;
+        }
+        current.retries.increment();
+        return true;
+    }
+
+    private void roll() {
+        long start = halfStart.get();
+        long now = System.currentTimeMillis();
+        if (now - start < halfWindow || !halfStart.compareAndSet(start, now)) {
+            return;
+        }
+        previous = now - start >= 2 * halfWindow ? new Counts() : current;
+        current = new Counts();
+    }
+
+    private static final class Counts {
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder retries = new LongAdder();
+    }
+}
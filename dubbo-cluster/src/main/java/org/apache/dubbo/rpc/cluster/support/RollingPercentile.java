@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency percentiles over a rolling window, kept in a histogram of log-linear buckets
+ * (8 buckets per power of two, so a percentile is off by 12.5% at most) which records without locking or allocating.
+ * <p>
+ * The window is split in two halves: percentiles are computed over the current and the previous half,
+ * and the previous half is dropped when a new one starts.
+ */
+public class RollingPercentile {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final long halfWindow;
+
+    private final int minSamples;
+
+    private final AtomicLong halfStart;
+
+    private volatile Histogram current = new Histogram();
+
+    private volatile Histogram previous = new Histogram();
+
+    /**
+     * @param window     the window in milliseconds
+     * @param minSamples the samples needed within the window before a percentile is known
+     */
+    public RollingPercentile(long window, int minSamples) {
+        this.halfWindow = Math.max(1, window / 2);
+        this.minSamples = Math.max(1, minSamples);
+        this.halfStart = new AtomicLong(System.currentTimeMillis());
+    }
+
+    public void record(long value) {
+        roll();
+        current.add(index(value < 0 ? 0 : value));
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, -1 if there are not enough samples yet
+     */
+    public long getPercentile(double percentile) {
+        roll();
+        Histogram cur = current;
+        Histogram prev = previous;
+        long total = cur.total.get() + prev.total.get();
+        if (total < minSamples) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += cur.counts.get(i) + prev.counts.get(i);
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * @return the samples within the window
+     */
+    public long getCount() {
+        roll();
+        return current.total.get() + previous.total.get();
+    }
+
+    private void roll() {
+        long start = halfStart.get();
+        long now = System.currentTimeMillis();
+        if (now - start < halfWindow || !halfStart.compareAndSet(start, now)) {
+            return;
+        }
+        if (now - start >= 2 * halfWindow) {
+            // nothing recorded for a whole window
+            previous = new Histogram();
+        } else {
+            previous = current;
+        }
+        current = new Histogram();
+    }
+
+    static int index(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (msb - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int msb = (index - LINEAR_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        int shift = msb - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    private static final class Histogram {
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong total = new AtomicLong();
+
+        void add(int index) {
+            counts.incrementAndGet(index);
+            total.incrementAndGet();
+        }
+    }
+}
@@ -45,6 +45,10 @@ public class MockClusterInvoker<T> implements Invoker<T> {
         this.invoker = invoker;
     }
 
+    public Directory<T> getDirectory() {
+        return directory;
+    }
+
     @Override
     public URL getUrl() {
         return directory.getUrl();
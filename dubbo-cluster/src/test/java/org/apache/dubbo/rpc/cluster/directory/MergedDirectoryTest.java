@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.directory;
+
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.cluster.Directory;
+import org.apache.dubbo.rpc.cluster.router.MockInvoker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MergedDirectory Test
+ */
+public class MergedDirectoryTest {
+
+    @Test
+    public void testMergedDirectory() {
+        Invoker<String> invoker1 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService"));
+        Invoker<String> invoker2 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.4:20880/com.foo.BarService"));
+        Invoker<String> invoker3 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.4:20880/com.foo.BarService"));
+        Directory<String> empty = new StaticDirectory<String>(new ArrayList<Invoker<String>>(Arrays.asList(invoker1))) {
+            @Override
+            protected List<Invoker<String>> doList(Invocation invocation) throws RpcException {
+                throw new RpcException(RpcException.FORBIDDEN_EXCEPTION, "No provider available");
+            }
+        };
+        StaticDirectory<String> first = new StaticDirectory<String>(new ArrayList<Invoker<String>>(Arrays.asList(invoker1, invoker2)));
+        List<Directory<String>> directories = new ArrayList<Directory<String>>();
+        directories.add(first);
+        directories.add(empty);
+        directories.add(new StaticDirectory<String>(new ArrayList<Invoker<String>>(Arrays.asList(invoker3))));
+        MergedDirectory<String> mergedDirectory = new MergedDirectory<String>(invoker1.getUrl(), directories);
+
+        List<Invoker<String>> invokers = mergedDirectory.list(new MockDirInvocation());
+        Assert.assertEquals(Arrays.asList(invoker1, invoker2), invokers);
+
+        mergedDirectory.destroy();
+        Assert.assertTrue(first.isDestroyed());
+        Assert.assertFalse(mergedDirectory.isAvailable());
+    }
+
+    @Test
+    public void testMergedByServiceKey() {
+        URL url = URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService?version=1.0");
+        Invoker<String> invoker1 = new MockInvoker<String>(url);
+        Invoker<String> invoker2 = new MockInvoker<String>(url.addParameter("timestamp", "1"));
+        Invoker<String> invoker3 = new MockInvoker<String>(url.addParameter("group", "a"));
+        List<Directory<String>> directories = new ArrayList<Directory<String>>();
+        directories.add(new StaticDirectory<String>(new ArrayList<Invoker<String>>(Arrays.asList(invoker1))));
+        directories.add(new StaticDirectory<String>(new ArrayList<Invoker<String>>(Arrays.asList(invoker2, invoker3))));
+
+        List<Invoker<String>> invokers = new MergedDirectory<String>(url, directories).list(new MockDirInvocation());
+        Assert.assertEquals(Arrays.asList(invoker1, invoker3), invokers);
+    }
+
+    @Test(expected = RpcException.class)
+    public void testNoProvider() {
+        Invoker<String> invoker = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService"));
+        Directory<String> empty = new StaticDirectory<String>(Arrays.asList(invoker)) {
+            @Override
+            protected List<Invoker<String>> doList(Invocation invocation) throws RpcException {
+                throw new RpcException(RpcException.FORBIDDEN_EXCEPTION, "No provider available");
+            }
+        };
+        new MergedDirectory<String>(invoker.getUrl(), Arrays.asList(empty)).list(new MockDirInvocation());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.filter;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Exporter;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Protocol;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.RpcResult;
+import org.apache.dubbo.rpc.cluster.directory.StaticDirectory;
+import org.apache.dubbo.rpc.cluster.support.FailoverClusterInvoker;
+import org.apache.dubbo.rpc.protocol.AbstractInvoker;
+import org.apache.dubbo.rpc.protocol.ProtocolFilterWrapper;
+import org.apache.dubbo.rpc.support.RpcUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invokes a failover cluster of 10 providers through the consumer filter chain, down to an invoker which reads its
+ * parameters as DubboInvoker does, so that the time is spent in the parameter lookups of the consumer side.
+ * Run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsumerFilterChainBenchmark {
+
+    private static final int PROVIDERS = 10;
+
+    private Invoker<DemoService> cluster;
+
+    private Invocation invocation;
+
+    @Setup
+    public void setUp() {
+        Protocol protocol = new ProtocolFilterWrapper(new BenchmarkProtocol());
+        List<Invoker<DemoService>> invokers = new ArrayList<Invoker<DemoService>>(PROVIDERS);
+        for (int i = 0; i < PROVIDERS; i++) {
+            invokers.add(protocol.refer(DemoService.class, URL.valueOf("dubbo://10.20.0." + i + ":20880/"
+                    + DemoService.class.getName() + "?anyhost=true&application=consumer&check=false&dubbo=2.0.2"
+                    + "&generic=false&interface=" + DemoService.class.getName() + "&methods=sayHello,plus"
+                    + "&pid=" + (1000 + i) + "&side=consumer&timestamp=" + (1500000000000L + i) + "&actives=100"
+                    + "&timeout=3000&retries=2&sayHello.timeout=1000&sayHello.retries=1&plus.weight=50"
+                    + "&loadbalance=random&serialization=hessian2&threads=200&payload=8388608&version=1.0.0")));
+        }
+        cluster = new FailoverClusterInvoker<DemoService>(new StaticDirectory<DemoService>(invokers.get(0).getUrl(), invokers));
+        invocation = new RpcInvocation("sayHello", new Class<?>[]{String.class}, new Object[]{"world"});
+    }
+
+    @Benchmark
+    public Object invoke() {
+        return cluster.invoke(invocation).getValue();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConsumerFilterChainBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static class BenchmarkProtocol implements Protocol {
+
+        @Override
+        public int getDefaultPort() {
+            return 20880;
+        }
+
+        @Override
+        public <T> Exporter<T> export(Invoker<T> invoker) throws RpcException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> Invoker<T> refer(Class<T> type, URL url) throws RpcException {
+            return new AbstractInvoker<T>(type, url) {
+                @Override
+                protected Result doInvoke(Invocation invocation) throws Throwable {
+                    String methodName = RpcUtils.getMethodName(invocation);
+                    int timeout = getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+                    boolean async = RpcUtils.isAsync(getUrl(), invocation);
+                    boolean oneway = RpcUtils.isOneway(getUrl(), invocation);
+                    boolean sent = getUrl().getMethodParameter(methodName, Constants.SENT_KEY, false);
+                    return new RpcResult(async || oneway || sent ? null : timeout);
+                }
+            };
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+}
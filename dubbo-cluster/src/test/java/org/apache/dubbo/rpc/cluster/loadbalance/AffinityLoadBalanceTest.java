@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License")); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.loadbalance;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.cluster.LoadBalance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.BDDMockito.given;
+
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class AffinityLoadBalanceTest extends LoadBalanceBaseTest {
+
+    private final LoadBalance lb = new AffinityLoadBalance();
+
+    private final URL url = URL.valueOf("test://127.0.0.1/DemoService");
+
+    private Invoker select(List<Invoker<LoadBalanceBaseTest>> invokers, Object key) {
+        given(invocation.getArguments()).willReturn(new Object[]{key});
+        return lb.select(invokers, url, invocation);
+    }
+
+    @Test
+    public void testSameKeySameInvoker() {
+        for (int i = 0; i < 100; i++) {
+            Invoker selected = select(invokers, "user" + i);
+            for (int j = 0; j < 10; j++) {
+                Assert.assertSame(selected, select(invokers, "user" + i));
+            }
+        }
+        Assert.assertSame(select(invokers, 42), select(invokers, 42L));
+    }
+
+    @Test
+    public void testDistribution() {
+        int runs = 10000;
+        Map<Invoker, Integer> counter = new HashMap<Invoker, Integer>();
+        for (int i = 0; i < runs; i++) {
+            Invoker selected = select(invokers, "user" + i);
+            Integer count = counter.get(selected);
+            counter.put(selected, count == null ? 1 : count + 1);
+        }
+        Assert.assertEquals(invokers.size(), counter.size());
+        for (Integer count : counter.values()) {
+            Assert.assertEquals(runs / invokers.size(), count, runs / invokers.size() / 5);
+        }
+    }
+
+    @Test
+    public void testMinimalMovement() {
+        int runs = 1000;
+        Map<Object, Invoker> before = new HashMap<Object, Invoker>();
+        for (int i = 0; i < runs; i++) {
+            before.put(i, select(invokers, i));
+        }
+        List<Invoker<LoadBalanceBaseTest>> removed = new ArrayList<Invoker<LoadBalanceBaseTest>>(invokers);
+        removed.remove(invoker3);
+        for (int i = 0; i < runs; i++) {
+            Invoker selected = select(removed, i);
+            if (before.get(i) != invoker3) {
+                Assert.assertSame(before.get(i), selected);
+            }
+        }
+        // the order of the invokers does not matter
+        List<Invoker<LoadBalanceBaseTest>> reversed = new ArrayList<Invoker<LoadBalanceBaseTest>>(invokers);
+        Collections.reverse(reversed);
+        for (int i = 0; i < runs; i++) {
+            Assert.assertSame(before.get(i), select(reversed, i));
+        }
+    }
+
+    @Test
+    public void testAttachment() {
+        URL url = this.url.addParameter(Constants.AFFINITY_ATTACHMENT_KEY, "userId");
+        given(invocation.getAttachment("userId")).willReturn("alice");
+        Invoker selected = lb.select(invokers, url, invocation);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(selected, lb.select(invokers, url, invocation));
+        }
+    }
+
+    @Test
+    public void testWithoutKey() {
+        given(invocation.getArguments()).willReturn(new Object[0]);
+        Assert.assertNotNull(lb.select(invokers, url, invocation));
+        Assert.assertNotNull(select(invokers, null));
+    }
+}
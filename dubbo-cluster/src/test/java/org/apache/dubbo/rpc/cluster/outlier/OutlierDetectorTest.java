@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.outlier;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.cluster.router.MockInvoker;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OutlierDetectorTest {
+
+    private final List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+
+    @After
+    public void tearDown() {
+        for (Invoker<String> invoker : invokers) {
+            OutlierStats.removeStats(invoker.getUrl());
+        }
+    }
+
+    private List<Invoker<String>> createInvokers(int count) {
+        for (int i = 0; i < count; i++) {
+            invokers.add(new MockInvoker<String>(URL.valueOf("dubbo://10.20.30." + i + ":20880/com.foo.BarService")));
+        }
+        return invokers;
+    }
+
+    private static OutlierStats stats(Invoker<?> invoker) {
+        return OutlierStats.getStats(invoker.getUrl());
+    }
+
+    @Test
+    public void testEjectConsecutiveFailures() {
+        List<Invoker<String>> invokers = createInvokers(4);
+        OutlierDetector detector = new OutlierDetector(URL.valueOf("consumer://10.20.30.100/com.foo.BarService?outlier=true")
+                .addParameter(Constants.OUTLIER_CONSECUTIVE_ERRORS_KEY, 3));
+        Assert.assertSame(invokers, detector.select(invokers));
+
+        stats(invokers.get(1)).record(10, false);
+        stats(invokers.get(1)).record(10, false);
+        Assert.assertSame(invokers, detector.select(invokers));
+        stats(invokers.get(1)).record(10, false);
+        List<Invoker<String>> selected = detector.select(invokers);
+        Assert.assertEquals(3, selected.size());
+        Assert.assertFalse(selected.contains(invokers.get(1)));
+        Assert.assertTrue(stats(invokers.get(1)).isEjected());
+        Assert.assertEquals(1, stats(invokers.get(1)).getEjections());
+    }
+
+    @Test
+    public void testMaxEjectionPercent() {
+        List<Invoker<String>> invokers = createInvokers(4);
+        OutlierDetector detector = new OutlierDetector(URL.valueOf("consumer://10.20.30.100/com.foo.BarService?outlier=true")
+                .addParameter(Constants.OUTLIER_CONSECUTIVE_ERRORS_KEY, 1)
+                .addParameter(Constants.OUTLIER_MAX_EJECTION_PERCENT_KEY, 50));
+        for (Invoker<String> invoker : invokers) {
+            stats(invoker).record(10, false);
+        }
+        Assert.assertEquals(2, detector.select(invokers).size());
+    }
+
+    @Test
+    public void testEjectionTimeBackoff() {
+        OutlierStats stats = stats(createInvokers(1).get(0));
+        long now = System.currentTimeMillis();
+        stats.eject(now, 100, 300);
+        Assert.assertEquals(now + 100, stats.getEjectedUntil());
+        stats.eject(now, 100, 300);
+        Assert.assertEquals(now + 200, stats.getEjectedUntil());
+        stats.eject(now, 100, 300);
+        Assert.assertEquals(now + 300, stats.getEjectedUntil());
+
+        // healthy intervals bring the ejection time back down
+        stats.heal(now + 1000);
+        stats.heal(now + 1000);
+        Assert.assertEquals(1, stats.getEjections());
+    }
+
+    @Test
+    public void testEjectLowSuccessRate() throws Exception {
+        List<Invoker<String>> invokers = createInvokers(6);
+        OutlierDetector detector = new OutlierDetector(URL.valueOf("consumer://10.20.30.100/com.foo.BarService?outlier=true")
+                .addParameter(Constants.OUTLIER_INTERVAL_KEY, 1)
+                .addParameter(Constants.OUTLIER_REQUEST_VOLUME_KEY, 10)
+                .addParameter(Constants.OUTLIER_LATENCY_FACTOR_KEY, 0));
+        for (int i = 0; i < 20; i++) {
+            for (Invoker<String> invoker : invokers) {
+                // interleaved failures never reach the consecutive failures threshold
+                stats(invoker).record(10, invoker != invokers.get(2) || i % 2 == 0);
+            }
+        }
+        Thread.sleep(10);
+        List<Invoker<String>> selected = detector.select(invokers);
+        Assert.assertEquals(5, selected.size());
+        Assert.assertFalse(selected.contains(invokers.get(2)));
+        Assert.assertEquals(0.5, stats(invokers.get(2)).getLastSuccessRate(), 0.001);
+    }
+
+    @Test
+    public void testEjectHighLatency() throws Exception {
+        List<Invoker<String>> invokers = createInvokers(6);
+        OutlierDetector detector = new OutlierDetector(URL.valueOf("consumer://10.20.30.100/com.foo.BarService?outlier=true")
+                .addParameter(Constants.OUTLIER_INTERVAL_KEY, 1)
+                .addParameter(Constants.OUTLIER_REQUEST_VOLUME_KEY, 10));
+        for (int i = 0; i < 20; i++) {
+            for (Invoker<String> invoker : invokers) {
+                stats(invoker).record(invoker == invokers.get(4) ? 500 : 10, true);
+            }
+        }
+        Thread.sleep(10);
+        List<Invoker<String>> selected = detector.select(invokers);
+        Assert.assertEquals(5, selected.size());
+        Assert.assertFalse(selected.contains(invokers.get(4)));
+        Assert.assertEquals(256, stats(invokers.get(4)).getLastLatency());
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.outlier;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.RpcResult;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class OutlierFilterTest {
+
+    private final URL url = URL.valueOf("dubbo://10.20.40.1:20880/com.foo.BarService?outlier=true");
+
+    private final Invocation invocation = new RpcInvocation("sayHello", new Class<?>[0], new Object[0]);
+
+    @After
+    public void tearDown() {
+        OutlierStats.removeStats(url);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRecordFailures() {
+        Invoker<String> invoker = mock(Invoker.class);
+        given(invoker.getUrl()).willReturn(url);
+        given(invoker.invoke(invocation)).willThrow(new RpcException(RpcException.TIMEOUT_EXCEPTION, "timeout"));
+        OutlierFilter filter = new OutlierFilter();
+        for (int i = 0; i < 2; i++) {
+            try {
+                filter.invoke(invoker, invocation);
+                Assert.fail();
+            } catch (RpcException expected) {
+            }
+        }
+        Assert.assertEquals(2, OutlierStats.getStats(url).getConsecutiveFailures());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBizExceptionIsSuccess() {
+        Invoker<String> invoker = mock(Invoker.class);
+        given(invoker.getUrl()).willReturn(url);
+        given(invoker.invoke(invocation)).willReturn(new RpcResult(new IllegalArgumentException("biz")));
+        OutlierStats.getStats(url).record(10, false);
+        new OutlierFilter().invoke(invoker, invocation);
+        Assert.assertEquals(0, OutlierStats.getStats(url).getConsecutiveFailures());
+    }
+
+    @Test
+    public void testStatsKeyedByServiceKey() {
+        URL grouped = url.addParameter(Constants.GROUP_KEY, "a");
+        try {
+            OutlierStats.getStats(url).record(10, false);
+            Assert.assertSame(OutlierStats.getStats(url), OutlierStats.getStats(url.addParameter(Constants.TIMESTAMP_KEY, 1)));
+            Assert.assertNotSame(OutlierStats.getStats(url), OutlierStats.getStats(grouped));
+            Assert.assertEquals(0, OutlierStats.getStats(grouped).getConsecutiveFailures());
+        } finally {
+            OutlierStats.removeStats(grouped);
+        }
+    }
+
+    @Test
+    public void testRemoveStatsOfAnotherUrl() {
+        URL other = url.addParameter(Constants.TIMESTAMP_KEY, 1);
+        OutlierStats stats = OutlierStats.getStats(url);
+        Assert.assertSame(stats, OutlierStats.getStats(other));
+        OutlierStats.removeStats(other);
+        // no url of the provider keeps the removed statistics
+        Assert.assertNotSame(stats, OutlierStats.getStats(url));
+    }
+
+}
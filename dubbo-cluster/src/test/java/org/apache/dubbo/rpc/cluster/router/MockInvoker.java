@@ -38,6 +38,11 @@ public class MockInvoker<T> implements Invoker<T> {
         this.available = available;
     }
 
+    public MockInvoker(URL url, boolean available) {
+        this.url = url;
+        this.available = available;
+    }
+
     @Override
     public Class<T> getInterface() {
         return null;
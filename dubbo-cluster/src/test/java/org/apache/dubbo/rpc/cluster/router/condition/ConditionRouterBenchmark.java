@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.router.condition;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.cluster.Router;
+import org.apache.dubbo.rpc.cluster.router.MockInvoker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes 500 providers through a chain of 1, 10 or 100 condition rules.
+ * Run with {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionRouterBenchmark {
+
+    private static final int PROVIDERS = 500;
+
+    @Param({"1", "10", "100"})
+    private int rules;
+
+    private List<Invoker<String>> invokers;
+
+    private List<Router> routers;
+
+    private URL consumer;
+
+    private Invocation invocation;
+
+    @Setup
+    public void setUp() {
+        invokers = new ArrayList<Invoker<String>>(PROVIDERS);
+        for (int i = 0; i < PROVIDERS; i++) {
+            invokers.add(new MockInvoker<String>(URL.valueOf("dubbo://10.20." + (i / 250) + "." + (i % 250)
+                    + ":20880/com.foo.BarService?application=provider" + (i % 5) + "&default.serialization=hessian2"
+                    + "&zone=zone" + (i % 3) + "&version=1.0." + (i % 4))));
+        }
+        routers = new ArrayList<Router>(rules);
+        URL routeUrl = URL.valueOf("condition://0.0.0.0/com.foo.BarService");
+        for (int i = 0; i < rules; i++) {
+            String rule;
+            switch (i % 4) {
+                case 0:
+                    rule = "host = 10.1.*,10.2.* => host = 10.20.0.*,10.20.1.1" + i;
+                    break;
+                case 1:
+                    rule = "method = sayHello,sayBye" + i + " => zone = $zone & serialization != java";
+                    break;
+                case 2:
+                    rule = "application = consumer*" + i + " => version = 1.0.*,2.0." + i;
+                    break;
+                default:
+                    rule = "method != noop" + i + " => host != 10.20.1.*2" + i + " & application = *1,*2,*3,*4,*0";
+            }
+            routers.add(new ConditionRouterFactory().getRouter(routeUrl.addParameterAndEncoded(Constants.RULE_KEY, rule)));
+        }
+        consumer = URL.valueOf("consumer://10.1.0.1/com.foo.BarService?application=consumer-app&zone=zone1");
+        invocation = new RpcInvocation("sayHello", new Class<?>[0], new Object[0]);
+    }
+
+    @Benchmark
+    public List<Invoker<String>> route() {
+        List<Invoker<String>> result = invokers;
+        for (Router router : routers) {
+            result = router.route(result, consumer, invocation);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConditionRouterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -32,6 +32,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ConditionRouterTest {
@@ -305,4 +306,50 @@ public class ConditionRouterTest {
         Assert.assertEquals(0, filteredInvokers.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testRoute_GlobPatterns() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        Invoker<String> invoker1 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService?application=foo-provider"));
+        Invoker<String> invoker2 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.4.3:20880/com.foo.BarService?application=bar-provider"));
+        Invoker<String> invoker3 = new MockInvoker<String>(URL.valueOf("dubbo://10.30.3.3:20880/com.foo.BarService?application=foo-consumer"));
+        invokers.add(invoker1);
+        invokers.add(invoker2);
+        invokers.add(invoker3);
+        URL consumer = URL.valueOf("consumer://" + NetUtils.getLocalHost() + "/com.foo.BarService");
+
+        Router prefix = new ConditionRouterFactory().getRouter(getRouteUrl("=> host = 10.20.*"));
+        Assert.assertEquals(Arrays.asList(invoker1, invoker2), prefix.route(invokers, consumer, new RpcInvocation()));
+
+        Router suffix = new ConditionRouterFactory().getRouter(getRouteUrl("=> application = *-provider & host != *.4.3"));
+        Assert.assertEquals(Arrays.asList(invoker1), suffix.route(invokers, consumer, new RpcInvocation()));
+
+        Router infix = new ConditionRouterFactory().getRouter(getRouteUrl("=> host = 10.*.3.3,10.20.4.2"));
+        Assert.assertEquals(Arrays.asList(invoker1, invoker3), infix.route(invokers, consumer, new RpcInvocation()));
+
+        Router any = new ConditionRouterFactory().getRouter(getRouteUrl("=> application = *"));
+        Assert.assertEquals(invokers, any.route(invokers, consumer, new RpcInvocation()));
+    }
+
+    @Test
+    public void testRoute_SharedCompiledRule() throws Exception {
+        URL routeUrl = getRouteUrl("host = " + NetUtils.getLocalHost() + " => host = 10.20.3.3");
+        ConditionRouter router1 = (ConditionRouter) new ConditionRouterFactory().getRouter(routeUrl);
+        ConditionRouter router2 = (ConditionRouter) new ConditionRouterFactory().getRouter(routeUrl);
+        Assert.assertNotSame(router1, router2);
+        Assert.assertSame(router1.getRule(), router2.getRule());
+
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        Invoker<String> invoker1 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService"));
+        Invoker<String> invoker2 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.4:20880/com.foo.BarService"));
+        invokers.add(invoker1);
+        invokers.add(invoker2);
+        URL consumerUrl = URL.valueOf("consumer://" + NetUtils.getLocalHost() + "/com.foo.BarService");
+        List<Invoker<String>> filteredInvokers1 = router1.route(invokers, consumerUrl, new RpcInvocation());
+        List<Invoker<String>> filteredInvokers2 = router2.route(invokers, consumerUrl, new RpcInvocation());
+        Assert.assertEquals(Arrays.asList(invoker1), filteredInvokers1);
+        Assert.assertEquals(filteredInvokers1, filteredInvokers2);
+        // routing does not replace the compiled rule either
+        Assert.assertSame(router1.getRule(), router2.getRule());
+    }
+
+}
@@ -32,6 +32,10 @@ import org.junit.Test;
 import javax.script.ScriptException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class ScriptRouterTest {
 
@@ -85,5 +89,100 @@ public class ScriptRouterTest {
         Assert.assertEquals(invoker3, filteredInvokers.get(1));
     }
 
-    //TODO Add tests for abnormal scene
+    @Test
+    public void testRoutePureResultReused() {
+        String script = "invocation.setAttachment('evaluated', 'true'); invokers";
+        Router router = new ScriptRouterFactory().getRouter(getRouteUrl(script).addParameter(Constants.PURE_KEY, true));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>());
+        invokers.add(new MockInvoker<String>());
+
+        RpcInvocation first = new RpcInvocation();
+        Assert.assertEquals(invokers, router.route(invokers, invokers.get(0).getUrl(), first));
+        Assert.assertEquals("true", first.getAttachment("evaluated"));
+
+        RpcInvocation second = new RpcInvocation();
+        Assert.assertEquals(invokers, router.route(new ArrayList<Invoker<String>>(invokers), invokers.get(0).getUrl(), second));
+        Assert.assertNull(second.getAttachment("evaluated"));
+
+        invokers.add(new MockInvoker<String>());
+        RpcInvocation third = new RpcInvocation();
+        Assert.assertEquals(invokers, router.route(invokers, invokers.get(0).getUrl(), third));
+        Assert.assertEquals("true", third.getAttachment("evaluated"));
+    }
+
+    @Test
+    public void testRouteTimeout() {
+        String script = "var start = java.lang.System.currentTimeMillis();" +
+                "while (java.lang.System.currentTimeMillis() - start < 1000) {}" +
+                "invokers.subList(0, 1)";
+        Router router = new ScriptRouterFactory().getRouter(getRouteUrl(script).addParameter(Constants.TIMEOUT_KEY, 100));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>());
+        invokers.add(new MockInvoker<String>());
+        List<Invoker<String>> filteredInvokers = router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation());
+        Assert.assertEquals(invokers, filteredInvokers);
+    }
+
+    @Test
+    public void testRouteTimeoutIgnoredUntilEnded() throws Exception {
+        String script = "invocation.setAttachment('evaluated', 'true');" +
+                "var start = java.lang.System.currentTimeMillis();" +
+                "while (java.lang.System.currentTimeMillis() - start < 500) {}" +
+                "invokers.subList(0, 1)";
+        Router router = new ScriptRouterFactory().getRouter(getRouteUrl(script).addParameter(Constants.TIMEOUT_KEY, 50));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>());
+        invokers.add(new MockInvoker<String>());
+        Assert.assertEquals(invokers, router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation()));
+
+        // the timed out evaluation is still running, the rule is not evaluated again meanwhile
+        RpcInvocation skipped = new RpcInvocation();
+        Assert.assertEquals(invokers, router.route(invokers, invokers.get(0).getUrl(), skipped));
+        Assert.assertNull(skipped.getAttachment("evaluated"));
+
+        Thread.sleep(800);
+        RpcInvocation evaluated = new RpcInvocation();
+        router.route(invokers, invokers.get(0).getUrl(), evaluated);
+        Assert.assertEquals("true", evaluated.getAttachment("evaluated"));
+    }
+
+    @Test
+    public void testRouteConcurrently() throws Exception {
+        String script = "function route(invokers,invocation){" +
+                "var result = new java.util.ArrayList();" +
+                "result.add(invokers.get(invocation.getArguments()[0]));" +
+                "return result;" +
+                "} route(invokers,invocation)";
+        final Router router = new ScriptRouterFactory().getRouter(getRouteUrl(script));
+        final List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        for (int i = 0; i < 4; i++) {
+            invokers.add(new MockInvoker<String>());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 4; i++) {
+                final int index = i;
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int j = 0; j < 100; j++) {
+                            RpcInvocation invocation = new RpcInvocation("route", new Class<?>[]{Integer.class}, new Object[]{index});
+                            List<Invoker<String>> result = router.route(invokers, null, invocation);
+                            if (result.size() != 1 || result.get(0) != invokers.get(index)) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
\ No newline at end of file
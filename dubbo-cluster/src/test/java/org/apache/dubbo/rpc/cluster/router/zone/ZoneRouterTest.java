@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.router.zone;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.extension.ExtensionLoader;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.cluster.Router;
+import org.apache.dubbo.rpc.cluster.RouterFactory;
+import org.apache.dubbo.rpc.cluster.router.MockInvoker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ZoneRouterTest {
+
+    private static final URL CONSUMER_URL = URL.valueOf("consumer://10.20.3.9/com.foo.BarService?zone=a");
+
+    private final Router router = new ZoneRouterFactory().getRouter(ZoneRouter.ROUTER_URL);
+
+    private static Invoker<String> invoker(int host, String zone, boolean available) {
+        return new MockInvoker<String>(URL.valueOf("dubbo://10.20.3." + host + ":20880/com.foo.BarService?zone=" + zone), available);
+    }
+
+    @Test
+    public void testRoute_localZone() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(invoker(1, "a", true));
+        invokers.add(invoker(2, "a", true));
+        invokers.add(invoker(3, "b", true));
+
+        for (int i = 0; i < 100; i++) {
+            List<Invoker<String>> routed = router.route(invokers, CONSUMER_URL, new RpcInvocation());
+            Assert.assertEquals(invokers.subList(0, 2), routed);
+        }
+    }
+
+    @Test
+    public void testRoute_spillOver() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(invoker(1, "a", true));
+        for (int i = 2; i <= 4; i++) {
+            invokers.add(invoker(i, "a", false));
+        }
+        invokers.add(invoker(5, "b", true));
+        invokers.add(invoker(6, "c", true));
+        invokers.add(invoker(7, "c", false));
+
+        // a quarter of the local zone is healthy, so 0.25 * 1.4 of the requests stay local
+        int local = 0;
+        int total = 10000;
+        for (int i = 0; i < total; i++) {
+            List<Invoker<String>> routed = router.route(invokers, CONSUMER_URL, new RpcInvocation());
+            if (routed.contains(invokers.get(0))) {
+                Assert.assertEquals(1, routed.size());
+                local++;
+            } else {
+                Assert.assertEquals(2, routed.size());
+                Assert.assertTrue(routed.contains(invokers.get(4)));
+                Assert.assertTrue(routed.contains(invokers.get(5)));
+            }
+        }
+        Assert.assertEquals(0.35, (double) local / total, 0.03);
+    }
+
+    @Test
+    public void testRoute_minimum() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(invoker(1, "a", true));
+        invokers.add(invoker(2, "b", true));
+        URL consumerUrl = CONSUMER_URL.addParameter(Constants.ZONE_MIN_KEY, 4);
+
+        int local = 0;
+        int total = 10000;
+        for (int i = 0; i < total; i++) {
+            if (router.route(invokers, consumerUrl, new RpcInvocation()).contains(invokers.get(0))) {
+                local++;
+            }
+        }
+        Assert.assertEquals(0.25, (double) local / total, 0.03);
+    }
+
+    @Test
+    public void testRoute_noHealthyLocal() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(invoker(1, "a", false));
+        invokers.add(invoker(2, "b", true));
+
+        List<Invoker<String>> routed = router.route(invokers, CONSUMER_URL, new RpcInvocation());
+        Assert.assertEquals(1, routed.size());
+        Assert.assertSame(invokers.get(1), routed.get(0));
+    }
+
+    @Test
+    public void testRoute_availabilityChanged() throws Exception {
+        final AtomicBoolean available = new AtomicBoolean(true);
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.1:20880/com.foo.BarService?zone=a"), true) {
+            @Override
+            public boolean isAvailable() {
+                return available.get();
+            }
+        });
+        invokers.add(invoker(2, "b", true));
+
+        List<Invoker<String>> routed = router.route(invokers, CONSUMER_URL, new RpcInvocation());
+        Assert.assertSame(invokers.get(0), routed.get(0));
+
+        available.set(false);
+        Thread.sleep(ZoneRouter.AVAILABILITY_CHECK_INTERVAL + 100);
+        for (int i = 0; i < 100; i++) {
+            routed = router.route(invokers, CONSUMER_URL, new RpcInvocation());
+            Assert.assertEquals(1, routed.size());
+            Assert.assertSame(invokers.get(1), routed.get(0));
+        }
+    }
+
+    @Test
+    public void testRoute_withoutZone() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(invoker(1, "a", true));
+        invokers.add(invoker(2, "b", true));
+
+        URL consumerUrl = URL.valueOf("consumer://10.20.3.9/com.foo.BarService");
+        Assert.assertSame(invokers, router.route(invokers, consumerUrl, new RpcInvocation()));
+    }
+
+    @Test
+    public void testRoute_recomputeOnChange() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(invoker(1, "a", true));
+        invokers.add(invoker(2, "b", true));
+        Assert.assertEquals(1, router.route(invokers, CONSUMER_URL, new RpcInvocation()).size());
+
+        List<Invoker<String>> changed = new ArrayList<Invoker<String>>(invokers);
+        changed.add(invoker(3, "a", true));
+        Assert.assertEquals(2, router.route(changed, CONSUMER_URL, new RpcInvocation()).size());
+    }
+
+    @Test
+    public void testRoute_planPerInvokerList() {
+        List<Invoker<String>> first = new ArrayList<Invoker<String>>();
+        first.add(invoker(1, "a", true));
+        List<Invoker<String>> second = new ArrayList<Invoker<String>>(first);
+        second.add(invoker(2, "a", true));
+
+        // like a directory handing a different list to each method
+        List<Invoker<String>> routed = router.route(first, CONSUMER_URL, new RpcInvocation());
+        Assert.assertEquals(2, router.route(second, CONSUMER_URL, new RpcInvocation()).size());
+        Assert.assertSame(routed, router.route(first, CONSUMER_URL, new RpcInvocation()));
+    }
+
+    @Test
+    public void testRoute_invalidParameters() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(invoker(1, "a", true));
+        invokers.add(invoker(2, "b", true));
+
+        Router router = new ZoneRouter(ZoneRouter.ROUTER_URL.addParameter(Constants.ZONE_OVERPROVISION_KEY, "1,4")
+                .addParameter(Constants.ZONE_MIN_KEY, "-1"));
+        Assert.assertEquals(1, router.route(invokers, CONSUMER_URL, new RpcInvocation()).size());
+
+        // the defaults are used instead
+        URL consumerUrl = CONSUMER_URL.addParameter(Constants.ZONE_OVERPROVISION_KEY, "NaN")
+                .addParameter(Constants.ZONE_MIN_KEY, "two");
+        List<Invoker<String>> routed = router.route(invokers, consumerUrl, new RpcInvocation());
+        Assert.assertEquals(1, routed.size());
+        Assert.assertSame(invokers.get(0), routed.get(0));
+    }
+
+    @Test
+    public void testRoute_createBySpi() {
+        URL url = URL.valueOf("zookeeper://10.20.3.1:20880/com.foo.BarService?router=zone");
+        RouterFactory routerFactory = ExtensionLoader.getExtensionLoader(RouterFactory.class).getExtension(url.getParameter(Constants.ROUTER_KEY));
+        Router router = routerFactory.getRouter(url);
+        Assert.assertTrue(router instanceof ZoneRouter);
+        Assert.assertTrue(router.getUrl().getParameter(Constants.RUNTIME_KEY, false));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.AsyncRpcResult;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcContext;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.cluster.Directory;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * BroadcastClusterInvokerTest
+ */
+@SuppressWarnings("unchecked")
+public class BroadcastClusterInvokerTest {
+
+    private List<Invoker<BroadcastClusterInvokerTest>> invokers = new ArrayList<Invoker<BroadcastClusterInvokerTest>>();
+    private List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+    private RpcInvocation invocation = new RpcInvocation();
+    private Directory<BroadcastClusterInvokerTest> dic;
+
+    @Before
+    public void setUp() throws Exception {
+        RpcContext.removeContext();
+        dic = mock(Directory.class);
+        given(dic.list(invocation)).willReturn(invokers);
+        given(dic.getInterface()).willReturn(BroadcastClusterInvokerTest.class);
+
+        invocation.setMethodName("method1");
+
+        for (int i = 0; i < 4; i++) {
+            Invoker<BroadcastClusterInvokerTest> invoker = mock(Invoker.class);
+            CompletableFuture<Object> future = new CompletableFuture<Object>();
+            given(invoker.invoke(any(Invocation.class))).willReturn(new AsyncRpcResult(future));
+            given(invoker.getUrl()).willReturn(URL.valueOf("test://10.20.30." + i + ":20880/test"));
+            given(invoker.isAvailable()).willReturn(true);
+            given(invoker.getInterface()).willReturn(BroadcastClusterInvokerTest.class);
+            invokers.add(invoker);
+            futures.add(future);
+        }
+    }
+
+    private Result invoke(String parameters) {
+        given(dic.getUrl()).willReturn(URL.valueOf("test://test:11/test?broadcast.async=true&timeout=100&" + parameters));
+        return new BroadcastClusterInvoker<BroadcastClusterInvokerTest>(dic).invoke(invocation);
+    }
+
+    private void fail(int i) {
+        futures.get(i).completeExceptionally(new RpcException(RpcException.NETWORK_EXCEPTION, "network"));
+    }
+
+    @Test
+    public void testAsyncAll() {
+        for (CompletableFuture<Object> future : futures) {
+            future.complete("ok");
+        }
+        Assert.assertEquals("ok", invoke("").getValue());
+    }
+
+    @Test
+    public void testAsyncAllAggregatesFailures() {
+        futures.get(0).complete("ok");
+        futures.get(1).complete("ok");
+        fail(2);
+        fail(3);
+        try {
+            invoke("");
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertTrue(expected.getMessage().contains("2 of 4 providers"));
+            Assert.assertEquals(1, expected.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void testAsyncQuorum() {
+        futures.get(0).complete("ok");
+        fail(1);
+        futures.get(2).complete("ok");
+        // a majority of 3 providers is needed
+        try {
+            invoke("broadcast.completion=quorum");
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertTrue(expected.isTimeout());
+        }
+        futures.get(3).complete("ok");
+        Assert.assertEquals("ok", invoke("broadcast.completion=quorum").getValue());
+        Assert.assertEquals("ok", invoke("broadcast.completion=quorum&broadcast.quorum=2").getValue());
+    }
+
+    @Test
+    public void testAsyncQuorumFailed() {
+        fail(0);
+        fail(1);
+        try {
+            invoke("broadcast.completion=quorum");
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertFalse(expected.isTimeout());
+        }
+    }
+
+    @Test
+    public void testAsyncNone() {
+        Assert.assertNull(invoke("broadcast.completion=none").getValue());
+    }
+
+    @Test
+    public void testAsyncConcurrency() {
+        invoke("broadcast.completion=none&broadcast.concurrency=2");
+        verify(invokers.get(1)).invoke(any(Invocation.class));
+        verify(invokers.get(2), never()).invoke(any(Invocation.class));
+
+        futures.get(0).complete("ok");
+        verify(invokers.get(2)).invoke(any(Invocation.class));
+        verify(invokers.get(3), never()).invoke(any(Invocation.class));
+        fail(1);
+        verify(invokers.get(3)).invoke(any(Invocation.class));
+    }
+}
@@ -16,8 +16,10 @@
  */
 package org.apache.dubbo.rpc.cluster.support;
 
+import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.common.utils.LogUtil;
+import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
 import org.apache.dubbo.rpc.RpcContext;
@@ -27,12 +29,15 @@ import org.apache.dubbo.rpc.cluster.Directory;
 
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
@@ -46,6 +51,9 @@ public class FailbackClusterInvokerTest {
     Directory<FailbackClusterInvokerTest> dic;
     Result result = new RpcResult();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * @throws java.lang.Exception
      */
@@ -129,4 +137,89 @@ public class FailbackClusterInvokerTest {
         invoker.retryFailed();// when retry the invoker which get from failed map already is not the mocked invoker,so
         // it can be invoke successfully
     }
-}
\ No newline at end of file
+
+    private static void waitFor(FailbackClusterInvoker<?> invoker, int failed, long dropped) throws InterruptedException {
+        for (int i = 0; i < 100 && (invoker.getFailedCount() != failed || invoker.getDroppedCount() != dropped); i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(failed, invoker.getFailedCount());
+        assertEquals(dropped, invoker.getDroppedCount());
+    }
+
+    @Test
+    public void testRetrySucceeds() throws Exception {
+        given(invoker.invoke(invocation)).willThrow(new RuntimeException()).willReturn(result);
+        given(invoker.getUrl()).willReturn(url);
+        given(invoker.getInterface()).willReturn(FailbackClusterInvokerTest.class);
+        given(dic.getUrl()).willReturn(url.addParameter(Constants.FAILBACK_PERIOD_KEY, 10));
+
+        FailbackClusterInvoker<FailbackClusterInvokerTest> invoker = new FailbackClusterInvoker<FailbackClusterInvokerTest>(dic);
+        invoker.invoke(invocation);
+        assertEquals(1, invoker.getFailedCount());
+        waitFor(invoker, 0, 0);
+    }
+
+    @Test
+    public void testRetriesExhausted() throws Exception {
+        resetInvokerToException();
+        given(dic.getUrl()).willReturn(url.addParameter(Constants.FAILBACK_PERIOD_KEY, 10).addParameter(Constants.RETRIES_KEY, 2));
+
+        FailbackClusterInvoker<FailbackClusterInvokerTest> invoker = new FailbackClusterInvoker<FailbackClusterInvokerTest>(dic);
+        invoker.invoke(invocation);
+        waitFor(invoker, 0, 1);
+    }
+
+    @Test
+    public void testFailbackTasksBounded() {
+        resetInvokerToException();
+        given(dic.getUrl()).willReturn(url.addParameter(Constants.FAILBACK_TASKS_KEY, 2));
+
+        FailbackClusterInvoker<FailbackClusterInvokerTest> invoker = new FailbackClusterInvoker<FailbackClusterInvokerTest>(dic);
+        for (int i = 0; i < 3; i++) {
+            invoker.invoke(invocation);
+        }
+        assertEquals(2, invoker.getFailedCount());
+        assertEquals(1, invoker.getDroppedCount());
+        invoker.destroy();
+    }
+
+    @Test
+    public void testJournalSurvivesRestart() throws Exception {
+        resetInvokerToException();
+        URL journalUrl = url.addParameter(Constants.FAILBACK_JOURNAL_KEY, folder.getRoot().getAbsolutePath())
+                .addParameter(Constants.FAILBACK_PERIOD_KEY, 10);
+        given(dic.getUrl()).willReturn(journalUrl);
+
+        invocation.setAttachment(Constants.RETURN_KEY, Boolean.FALSE.toString());
+        FailbackClusterInvoker<FailbackClusterInvokerTest> invoker = new FailbackClusterInvoker<FailbackClusterInvokerTest>(dic);
+        invoker.invoke(invocation);
+        invoker.destroy();
+
+        given(this.invoker.invoke(any(Invocation.class))).willReturn(result);
+        given(dic.list(any(Invocation.class))).willReturn(invokers);
+        invoker = new FailbackClusterInvoker<FailbackClusterInvokerTest>(dic);
+        assertEquals(1, invoker.getFailedCount());
+        waitFor(invoker, 0, 0);
+        invoker.destroy();
+
+        invoker = new FailbackClusterInvoker<FailbackClusterInvokerTest>(dic);
+        assertEquals(0, invoker.getFailedCount());
+        invoker.destroy();
+    }
+
+    @Test
+    public void testJournalSkipsTwoWayRequests() throws Exception {
+        resetInvokerToException();
+        URL journalUrl = url.addParameter(Constants.FAILBACK_JOURNAL_KEY, folder.getRoot().getAbsolutePath());
+        given(dic.getUrl()).willReturn(journalUrl);
+
+        FailbackClusterInvoker<FailbackClusterInvokerTest> invoker = new FailbackClusterInvoker<FailbackClusterInvokerTest>(dic);
+        invoker.invoke(invocation);
+        assertEquals(1, invoker.getFailedCount());
+        invoker.destroy();
+
+        invoker = new FailbackClusterInvoker<FailbackClusterInvokerTest>(dic);
+        assertEquals(0, invoker.getFailedCount());
+        invoker.destroy();
+    }
+}
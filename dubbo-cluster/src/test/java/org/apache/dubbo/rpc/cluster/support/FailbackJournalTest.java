@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.RpcInvocation;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+public class FailbackJournalTest {
+
+    private static final URL url = URL.valueOf("dubbo://127.0.0.1:20880/DemoService");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Invocation invocation(String argument) {
+        return new RpcInvocation("sayHello", new Class<?>[]{String.class}, new Object[]{argument});
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        File file = new File(folder.getRoot(), "test.journal");
+        FailbackJournal journal = new FailbackJournal(file, 4096, url);
+        Assert.assertTrue(journal.add(1, invocation("a")));
+        Assert.assertTrue(journal.add(2, invocation("b")));
+        journal.remove(1);
+        journal.close();
+
+        journal = new FailbackJournal(file, 4096, url);
+        Map<Long, Invocation> pending = journal.load();
+        Assert.assertEquals(1, pending.size());
+        Invocation invocation = pending.get(2L);
+        Assert.assertEquals("sayHello", invocation.getMethodName());
+        Assert.assertEquals("b", invocation.getArguments()[0]);
+        Assert.assertArrayEquals(new Class<?>[]{String.class}, invocation.getParameterTypes());
+        journal.close();
+    }
+
+    @Test
+    public void testReloadAttachments() throws Exception {
+        File file = new File(folder.getRoot(), "test.journal");
+        FailbackJournal journal = new FailbackJournal(file, 4096, url);
+        Assert.assertTrue(journal.add(1, new RpcInvocation("sayHello", new Class<?>[0], new Object[0],
+                Collections.singletonMap("token", "secret"))));
+        journal.close();
+
+        journal = new FailbackJournal(file, 4096, url);
+        Invocation invocation = journal.load().get(1L);
+        Assert.assertEquals(0, invocation.getArguments().length);
+        Assert.assertEquals("secret", invocation.getAttachment("token"));
+        journal.close();
+    }
+
+    @Test
+    public void testJavaSerializedRecordRejected() throws Exception {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(payload);
+        oos.writeObject(new RpcInvocation(invocation("a")));
+        oos.close();
+        byte[] bytes = payload.toByteArray();
+
+        File file = new File(folder.getRoot(), "test.journal");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        out.writeInt(4 + 1 + 8 + bytes.length);
+        out.writeByte(1);
+        out.writeLong(1);
+        out.write(bytes);
+        out.close();
+
+        FailbackJournal journal = new FailbackJournal(file, 4096, url);
+        Assert.assertTrue(journal.load().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        File file = new File(folder.getRoot(), "test.journal");
+        FailbackJournal journal = new FailbackJournal(file, 4096, url);
+        // far more records than the journal holds, but only a few pending at once
+        for (long id = 1; id <= 1000; id++) {
+            Assert.assertTrue(journal.add(id, invocation("value" + id)));
+            if (id > 3) {
+                journal.remove(id - 3);
+            }
+        }
+        journal.close();
+
+        journal = new FailbackJournal(file, 4096, url);
+        Map<Long, Invocation> pending = journal.load();
+        Assert.assertEquals(3, pending.size());
+        Assert.assertEquals("value1000", pending.get(1000L).getArguments()[0]);
+        journal.close();
+    }
+
+    @Test
+    public void testAppendAfterPartialRecord() throws Exception {
+        File file = new File(folder.getRoot(), "test.journal");
+        FailbackJournal journal = new FailbackJournal(file, 4096, url);
+        Assert.assertTrue(journal.add(1, invocation("a")));
+        Assert.assertTrue(journal.add(2, invocation("b")));
+        journal.close();
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int first = records.getInt(0);
+        int second = records.getInt(first);
+
+        // a crash left a record without its length, followed by bytes which look like a record where the
+        // second one will end
+        File crashed = new File(folder.getRoot(), "crashed.journal");
+        ByteBuffer bytes = ByteBuffer.allocate(4096);
+        bytes.put(records.array(), 0, first);
+        bytes.position(first + second);
+        bytes.put(records.array(), 0, first);
+        bytes.putLong(first + second + 5, 99);
+        RandomAccessFile raf = new RandomAccessFile(crashed, "rw");
+        raf.write(bytes.array());
+        raf.close();
+
+        journal = new FailbackJournal(crashed, 4096, url);
+        Assert.assertEquals(1, journal.load().size());
+        Assert.assertTrue(journal.add(2, invocation("b")));
+        journal.close();
+
+        journal = new FailbackJournal(crashed, 4096, url);
+        Map<Long, Invocation> pending = journal.load();
+        Assert.assertEquals(2, pending.size());
+        Assert.assertFalse(pending.containsKey(99L));
+        journal.close();
+    }
+
+    @Test
+    public void testLockedByAnotherJournal() throws Exception {
+        File file = new File(folder.getRoot(), "test.journal");
+        FailbackJournal journal = new FailbackJournal(file, 4096, url);
+        try {
+            new FailbackJournal(file, 4096, url);
+            Assert.fail();
+        } catch (IOException expected) {
+            // one journal per file
+        } finally {
+            journal.close();
+        }
+    }
+}
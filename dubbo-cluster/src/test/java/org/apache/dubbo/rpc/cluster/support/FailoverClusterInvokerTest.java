@@ -16,10 +16,12 @@
  */
 package org.apache.dubbo.rpc.cluster.support;
 
+import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcContext;
 import org.apache.dubbo.rpc.RpcException;
 import org.apache.dubbo.rpc.RpcInvocation;
 import org.apache.dubbo.rpc.RpcResult;
@@ -29,6 +31,8 @@ import org.apache.dubbo.rpc.protocol.AbstractInvoker;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +40,8 @@ import java.util.concurrent.Callable;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -161,6 +167,120 @@ public class FailoverClusterInvokerTest {
         }
     }
 
+    @Test
+    public void testRetryBudgetExhausted() {
+        URL url = this.url.addParameter(Constants.RETRY_BUDGET_KEY, "0").addParameter(Constants.RETRY_BUDGET_MIN_KEY, "2");
+        given(dic.getUrl()).willReturn(url);
+        for (Invoker<FailoverClusterInvokerTest> invoker : invokers) {
+            given(invoker.invoke(invocation)).willThrow(new RpcException(RpcException.TIMEOUT_EXCEPTION));
+            given(invoker.isAvailable()).willReturn(true);
+            given(invoker.getUrl()).willReturn(url);
+            given(invoker.getInterface()).willReturn(FailoverClusterInvokerTest.class);
+        }
+
+        FailoverClusterInvoker<FailoverClusterInvokerTest> invoker = new FailoverClusterInvoker<FailoverClusterInvokerTest>(dic);
+        try {
+            invoker.invoke(invocation);
+            fail();
+        } catch (RpcException expected) {
+            assertTrue(expected.getMessage().indexOf("Tried 3 times") > 0);
+        }
+        try {
+            invoker.invoke(invocation);
+            fail();
+        } catch (RpcException expected) {
+            assertTrue(expected.getMessage().indexOf("Tried 1 times") > 0);
+        }
+    }
+
+    @Test
+    public void testAdaptiveAttemptTimeout() {
+        URL url = URL.valueOf("test://test:11/test?retries=1&" + Constants.ADAPTIVE_TIMEOUT_PERCENTILE_KEY + "=99");
+        given(dic.getUrl()).willReturn(url);
+        final List<Object> attemptTimeouts = new ArrayList<Object>();
+        final boolean[] failing = new boolean[1];
+        for (Invoker<FailoverClusterInvokerTest> invoker : invokers) {
+            given(invoker.invoke(invocation)).willAnswer(new Answer<Result>() {
+                @Override
+                public Result answer(InvocationOnMock mock) throws Throwable {
+                    // never sent to the provider
+                    assertNull(invocation.getAttachment(Constants.ATTEMPT_TIMEOUT_KEY));
+                    attemptTimeouts.add(RpcContext.getContext().get(Constants.ATTEMPT_TIMEOUT_KEY));
+                    if (failing[0]) {
+                        throw new RpcException(RpcException.TIMEOUT_EXCEPTION);
+                    }
+                    return result;
+                }
+            });
+            given(invoker.isAvailable()).willReturn(true);
+            given(invoker.getUrl()).willReturn(url);
+            given(invoker.getInterface()).willReturn(FailoverClusterInvokerTest.class);
+        }
+
+        FailoverClusterInvoker<FailoverClusterInvokerTest> invoker = new FailoverClusterInvoker<FailoverClusterInvokerTest>(dic);
+        // the timeout of the first attempt is left to the invoker until the latency is known
+        for (int i = 0; i < 100; i++) {
+            invoker.invoke(invocation);
+        }
+        for (Object attemptTimeout : attemptTimeouts) {
+            assertNull(attemptTimeout);
+        }
+
+        attemptTimeouts.clear();
+        failing[0] = true;
+        try {
+            invoker.invoke(invocation);
+            fail();
+        } catch (RpcException expected) {
+            assertTrue(expected.isTimeout());
+        }
+        assertEquals(2, attemptTimeouts.size());
+        assertNotNull(attemptTimeouts.get(0));
+        assertTrue((Integer) attemptTimeouts.get(0) < Constants.DEFAULT_TIMEOUT);
+        // the last attempt uses the configured timeout
+        assertNull(attemptTimeouts.get(1));
+        assertNull(RpcContext.getContext().get(Constants.ATTEMPT_TIMEOUT_KEY));
+    }
+
+    @Test
+    public void testTimedOutAttemptsRecorded() {
+        URL url = URL.valueOf("test://test:11/test?retries=1&" + Constants.ADAPTIVE_TIMEOUT_PERCENTILE_KEY + "=99");
+        given(dic.getUrl()).willReturn(url);
+        final boolean[] failing = new boolean[1];
+        for (Invoker<FailoverClusterInvokerTest> invoker : invokers) {
+            given(invoker.invoke(invocation)).willAnswer(new Answer<Result>() {
+                @Override
+                public Result answer(InvocationOnMock mock) throws Throwable {
+                    if (failing[0]) {
+                        throw new RpcException(RpcException.TIMEOUT_EXCEPTION);
+                    }
+                    return result;
+                }
+            });
+            given(invoker.isAvailable()).willReturn(true);
+            given(invoker.getUrl()).willReturn(url);
+            given(invoker.getInterface()).willReturn(FailoverClusterInvokerTest.class);
+        }
+
+        FailoverClusterInvoker<FailoverClusterInvokerTest> invoker = new FailoverClusterInvoker<FailoverClusterInvokerTest>(dic);
+        for (int i = 0; i < 100; i++) {
+            invoker.invoke(invocation);
+        }
+        RollingPercentile latency = invoker.getLatency(invocation.getMethodName());
+        assertEquals(100, latency.getCount());
+
+        failing[0] = true;
+        try {
+            invoker.invoke(invocation);
+            fail();
+        } catch (RpcException expected) {
+            assertTrue(expected.isTimeout());
+        }
+        // both attempts are recorded, the last one at the configured timeout
+        assertEquals(102, latency.getCount());
+        assertTrue(latency.getPercentile(100) >= Constants.DEFAULT_TIMEOUT * 1000L);
+    }
+
     /**
      * When invokers in directory changes after a failed request but just before a retry effort,
      * then we should reselect from the latest invokers before retry.
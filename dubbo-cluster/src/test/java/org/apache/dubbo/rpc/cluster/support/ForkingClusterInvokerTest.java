@@ -17,6 +17,8 @@
 package org.apache.dubbo.rpc.cluster.support;
 
 import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.AsyncRpcResult;
+import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
 import org.apache.dubbo.rpc.RpcException;
@@ -32,8 +34,10 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
@@ -153,4 +157,51 @@ public class ForkingClusterInvokerTest {
         Assert.assertSame(result, ret);
     }
 
+    private void resetInvokerToAsync(Invoker<ForkingClusterInvokerTest> invoker, CompletableFuture<Object> future) {
+        given(invoker.invoke(any(Invocation.class))).willReturn(new AsyncRpcResult(future));
+        given(invoker.getUrl()).willReturn(url);
+        given(invoker.isAvailable()).willReturn(true);
+        given(invoker.getInterface()).willReturn(ForkingClusterInvokerTest.class);
+    }
+
+    @Test
+    public void testInvokeAsyncFirstSuccess() {
+        URL asyncUrl = URL.valueOf("test://test:11/test?forks=3&forks.async=true&timeout=1000");
+        given(dic.getUrl()).willReturn(asyncUrl);
+        CompletableFuture<Object> pending = new CompletableFuture<Object>();
+        CompletableFuture<Object> failed = new CompletableFuture<Object>();
+        failed.completeExceptionally(new RpcException(RpcException.NETWORK_EXCEPTION, "network"));
+        CompletableFuture<Object> succeeded = new CompletableFuture<Object>();
+        resetInvokerToAsync(invoker1, pending);
+        resetInvokerToAsync(invoker2, failed);
+        resetInvokerToAsync(invoker3, succeeded);
+        succeeded.complete("ok");
+
+        ForkingClusterInvoker<ForkingClusterInvokerTest> invoker = new ForkingClusterInvoker<ForkingClusterInvokerTest>(dic);
+        Result ret = invoker.invoke(invocation);
+        Assert.assertEquals("ok", ret.getValue());
+        // the losing fork is cancelled
+        Assert.assertTrue(pending.isCancelled());
+    }
+
+    @Test
+    public void testInvokeAsyncAllFailed() {
+        URL asyncUrl = URL.valueOf("test://test:11/test?forks=3&forks.async=true&timeout=1000");
+        given(dic.getUrl()).willReturn(asyncUrl);
+        for (Invoker<ForkingClusterInvokerTest> i : invokers) {
+            CompletableFuture<Object> failed = new CompletableFuture<Object>();
+            failed.completeExceptionally(new RpcException(RpcException.NETWORK_EXCEPTION, "network"));
+            resetInvokerToAsync(i, failed);
+        }
+
+        ForkingClusterInvoker<ForkingClusterInvokerTest> invoker = new ForkingClusterInvoker<ForkingClusterInvokerTest>(dic);
+        try {
+            invoker.invoke(invocation);
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertTrue(expected.getMessage().contains("Failed to forking invoke provider"));
+            Assert.assertEquals(RpcException.NETWORK_EXCEPTION, expected.getCode());
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.AsyncRpcResult;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.cluster.Directory;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * HedgingClusterInvokerTest
+ */
+@SuppressWarnings("unchecked")
+public class HedgingClusterInvokerTest {
+
+    private List<Invoker<HedgingClusterInvokerTest>> invokers = new ArrayList<Invoker<HedgingClusterInvokerTest>>();
+    private Invoker<HedgingClusterInvokerTest> invoker1 = mock(Invoker.class);
+    private Invoker<HedgingClusterInvokerTest> invoker2 = mock(Invoker.class);
+    private RpcInvocation invocation = new RpcInvocation();
+    private Directory<HedgingClusterInvokerTest> dic;
+    private CompletableFuture<Object> pending = new CompletableFuture<Object>();
+    private AtomicInteger calls = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        dic = mock(Directory.class);
+        given(dic.list(invocation)).willReturn(invokers);
+        given(dic.getInterface()).willReturn(HedgingClusterInvokerTest.class);
+
+        invocation.setMethodName("method1");
+
+        // the first call hangs, the following ones return at once
+        Answer<Result> answer = new Answer<Result>() {
+            @Override
+            public Result answer(InvocationOnMock mock) {
+                if (calls.getAndIncrement() == 0) {
+                    return new AsyncRpcResult(pending);
+                }
+                return new AsyncRpcResult(CompletableFuture.completedFuture((Object) "ok"));
+            }
+        };
+        for (Invoker<HedgingClusterInvokerTest> invoker : new Invoker[]{invoker1, invoker2}) {
+            given(invoker.invoke(any(Invocation.class))).willAnswer(answer);
+            given(invoker.getUrl()).willReturn(URL.valueOf("test://test:11/test"));
+            given(invoker.isAvailable()).willReturn(true);
+            given(invoker.getInterface()).willReturn(HedgingClusterInvokerTest.class);
+            invokers.add(invoker);
+        }
+    }
+
+    @Test
+    public void testNoHedgeWithoutLatency() {
+        given(dic.getUrl()).willReturn(URL.valueOf("test://test:11/test?hedging.budget=1&timeout=100"));
+        pending.complete("first");
+
+        HedgingClusterInvoker<HedgingClusterInvokerTest> invoker = new HedgingClusterInvoker<HedgingClusterInvokerTest>(dic);
+        Result ret = invoker.invoke(invocation);
+        Assert.assertEquals("first", ret.getValue());
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(0, invoker.getHedgeRate(), 0);
+    }
+
+    @Test
+    public void testHedgeAfterPercentile() {
+        given(dic.getUrl()).willReturn(URL.valueOf("test://test:11/test?hedging.budget=1&timeout=1000"));
+
+        HedgingClusterInvoker<HedgingClusterInvokerTest> invoker = new HedgingClusterInvoker<HedgingClusterInvokerTest>(dic);
+        RollingPercentile latency = invoker.getLatency("method1");
+        for (int i = 0; i < 100; i++) {
+            latency.record(1);
+        }
+        Result ret = invoker.invoke(invocation);
+        Assert.assertEquals("ok", ret.getValue());
+        Assert.assertEquals(2, calls.get());
+        // the slow primary call is cancelled
+        Assert.assertTrue(pending.isCancelled());
+        Assert.assertTrue(invoker.getHedgeRate() > 0);
+    }
+
+    @Test
+    public void testNoHedgeWithoutBudget() {
+        given(dic.getUrl()).willReturn(URL.valueOf("test://test:11/test?hedging.budget=0&timeout=100"));
+
+        HedgingClusterInvoker<HedgingClusterInvokerTest> invoker = new HedgingClusterInvoker<HedgingClusterInvokerTest>(dic);
+        RollingPercentile latency = invoker.getLatency("method1");
+        for (int i = 0; i < 100; i++) {
+            latency.record(1);
+        }
+        try {
+            invoker.invoke(invocation);
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertTrue(expected.isTimeout());
+        }
+        Assert.assertEquals(1, calls.get());
+    }
+}
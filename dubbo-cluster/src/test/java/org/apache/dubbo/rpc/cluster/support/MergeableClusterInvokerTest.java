@@ -18,9 +18,11 @@ package org.apache.dubbo.rpc.cluster.support;
 
 import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.AsyncRpcResult;
 import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcException;
 import org.apache.dubbo.rpc.RpcResult;
 import org.apache.dubbo.rpc.cluster.Directory;
 
@@ -37,8 +39,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
 
@@ -223,4 +227,70 @@ public class MergeableClusterInvokerTest {
 
     }
 
+    private void resetInvokers(Result firstResult, Result secondResult) {
+        given(invocation.getMethodName()).willReturn("getMenu");
+        given(invocation.getParameterTypes()).willReturn(new Class<?>[]{});
+        given(invocation.getArguments()).willReturn(new Object[]{});
+        given(invocation.getAttachments()).willReturn(new HashMap<String, String>());
+
+        given(firstInvoker.getUrl()).willReturn(url.addParameter(Constants.GROUP_KEY, "first"));
+        given(firstInvoker.getInterface()).willReturn(MenuService.class);
+        given(firstInvoker.invoke(any(Invocation.class))).willReturn(firstResult);
+        given(firstInvoker.isAvailable()).willReturn(true);
+
+        given(secondInvoker.getUrl()).willReturn(url.addParameter(Constants.GROUP_KEY, "second"));
+        given(secondInvoker.getInterface()).willReturn(MenuService.class);
+        given(secondInvoker.invoke(any(Invocation.class))).willReturn(secondResult);
+        given(secondInvoker.isAvailable()).willReturn(true);
+
+        given(directory.list(invocation)).willReturn(Arrays.asList(firstInvoker, secondInvoker));
+        given(directory.getUrl()).willReturn(url);
+        given(directory.getInterface()).willReturn(MenuService.class);
+    }
+
+    @Test
+    public void testGetMenuAsync() throws Exception {
+        url = url.addParameter(Constants.MERGER_KEY, ".merge");
+        resetInvokers(new AsyncRpcResult(CompletableFuture.completedFuture((Object) firstMenu)),
+                new AsyncRpcResult(CompletableFuture.completedFuture((Object) secondMenu)));
+
+        mergeableClusterInvoker = new MergeableClusterInvoker<MenuService>(directory);
+        Result result = mergeableClusterInvoker.invoke(invocation);
+        Menu menu = (Menu) result.getValue();
+        Map<String, List<String>> expected = new HashMap<String, List<String>>();
+        merge(expected, firstMenuMap);
+        merge(expected, secondMenuMap);
+        assertEquals(expected.keySet(), menu.getMenus().keySet());
+    }
+
+    @Test
+    public void testPartialResults() throws Exception {
+        url = url.addParameter(Constants.MERGER_KEY, ".merge")
+                .addParameter(Constants.MERGER_PARTIAL_KEY, true)
+                .addParameter(Constants.TIMEOUT_KEY, 100);
+        CompletableFuture<Object> pending = new CompletableFuture<Object>();
+        resetInvokers(new RpcResult(firstMenu), new AsyncRpcResult(pending));
+
+        mergeableClusterInvoker = new MergeableClusterInvoker<MenuService>(directory);
+        Result result = mergeableClusterInvoker.invoke(invocation);
+        Assert.assertSame(firstMenu, result.getValue());
+        Assert.assertTrue(pending.isCancelled());
+    }
+
+    @Test
+    public void testTimeoutWithoutPartialResults() throws Exception {
+        url = url.addParameter(Constants.MERGER_KEY, ".merge")
+                .addParameter(Constants.TIMEOUT_KEY, 100);
+        CompletableFuture<Object> pending = new CompletableFuture<Object>();
+        resetInvokers(new RpcResult(firstMenu), new AsyncRpcResult(pending));
+
+        mergeableClusterInvoker = new MergeableClusterInvoker<MenuService>(directory);
+        try {
+            mergeableClusterInvoker.invoke(invocation);
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertTrue(expected.isTimeout());
+        }
+        Assert.assertTrue(pending.isCancelled());
+    }
 }
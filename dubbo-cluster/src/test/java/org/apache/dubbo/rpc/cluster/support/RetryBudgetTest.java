@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void testMinRetries() {
+        RetryBudget budget = new RetryBudget(0, 2, 60 * 1000);
+        budget.request();
+        assertTrue(budget.tryRetry());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.canRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void testRatio() {
+        RetryBudget budget = new RetryBudget(0.1, 0, 60 * 1000);
+        for (int i = 0; i < 9; i++) {
+            budget.request();
+        }
+        assertFalse(budget.tryRetry());
+        budget.request();
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void testWindowExpiry() throws Exception {
+        RetryBudget budget = new RetryBudget(0, 1, 20);
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+        Thread.sleep(50);
+        assertTrue(budget.tryRetry());
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.cluster.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RollingPercentileTest {
+
+    @Test
+    public void testIndex() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 100, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = RollingPercentile.index(value);
+            Assert.assertTrue(value <= RollingPercentile.upperBound(index));
+            if (index > 0) {
+                Assert.assertTrue(value > RollingPercentile.upperBound(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        RollingPercentile percentile = new RollingPercentile(60000, 10);
+        for (int i = 1; i < 10; i++) {
+            percentile.record(i);
+        }
+        Assert.assertEquals(-1, percentile.getPercentile(50));
+        for (int i = 10; i <= 1000; i++) {
+            percentile.record(i);
+        }
+        Assert.assertEquals(1000, percentile.getCount());
+        long p50 = percentile.getPercentile(50);
+        Assert.assertTrue(p50 >= 500 && p50 <= 500 * 1.125);
+        long p99 = percentile.getPercentile(99);
+        Assert.assertTrue(p99 >= 990 && p99 <= 990 * 1.125);
+    }
+}
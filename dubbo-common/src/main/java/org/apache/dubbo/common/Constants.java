@@ -202,6 +202,127 @@ public class Constants {
 
     public static final String FORKS_KEY = "forks";
 
+    /**
+     * To decide whether the forks are invoked asynchronously instead of on a thread each
+     */
+    public static final String FORKS_ASYNC_KEY = "forks.async";
+
+    /**
+     * The latency percentile of a method after which the hedging cluster sends a second request
+     */
+    public static final String HEDGING_PERCENTILE_KEY = "hedging.percentile";
+
+    public static final int DEFAULT_HEDGING_PERCENTILE = 95;
+
+    /**
+     * Extra load allowed for hedged requests, as a ratio of the requests
+     */
+    public static final String HEDGING_BUDGET_KEY = "hedging.budget";
+
+    public static final double DEFAULT_HEDGING_BUDGET = 0.05;
+
+    /**
+     * Window in milliseconds over which the latency percentile of a method is computed
+     */
+    public static final String HEDGING_WINDOW_KEY = "hedging.window";
+
+    public static final int DEFAULT_HEDGING_WINDOW = 60 * 1000;
+
+    /**
+     * To decide whether the broadcast invokes the providers asynchronously instead of one after another
+     */
+    public static final String BROADCAST_ASYNC_KEY = "broadcast.async";
+
+    /**
+     * The maximum of invocations in flight during an asynchronous broadcast
+     */
+    public static final String BROADCAST_CONCURRENCY_KEY = "broadcast.concurrency";
+
+    public static final int DEFAULT_BROADCAST_CONCURRENCY = 64;
+
+    /**
+     * When an asynchronous broadcast returns: all, quorum or none
+     */
+    public static final String BROADCAST_COMPLETION_KEY = "broadcast.completion";
+
+    public static final String BROADCAST_COMPLETION_ALL = "all";
+
+    public static final String BROADCAST_COMPLETION_QUORUM = "quorum";
+
+    public static final String BROADCAST_COMPLETION_NONE = "none";
+
+    /**
+     * The successful invocations needed by a quorum broadcast, a majority of the providers by default
+     */
+    public static final String BROADCAST_QUORUM_KEY = "broadcast.quorum";
+
+    /**
+     * The maximum of failed invocations waiting for a retry in a failback cluster, more are dropped
+     */
+    public static final String FAILBACK_TASKS_KEY = "failbacktasks";
+
+    public static final int DEFAULT_FAILBACK_TASKS = 100;
+
+    /**
+     * Retries of a failed invocation in a failback cluster when the retries are not configured
+     */
+    public static final int DEFAULT_FAILBACK_TIMES = 3;
+
+    /**
+     * The delay in milliseconds before the first retry of a failback cluster, doubled on every retry
+     */
+    public static final String FAILBACK_PERIOD_KEY = "failback.period";
+
+    public static final int DEFAULT_FAILBACK_PERIOD = 5 * 1000;
+
+    /**
+     * The directory of the journal keeping the failed invocations of a failback cluster across restarts
+     */
+    public static final String FAILBACK_JOURNAL_KEY = "failback.journal";
+
+    /**
+     * The size in bytes of the memory mapped failback journal
+     */
+    public static final String FAILBACK_JOURNAL_SIZE_KEY = "failback.journal.size";
+
+    public static final int DEFAULT_FAILBACK_JOURNAL_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The ratio of retries to requests allowed by a failover cluster, no limit if not set
+     */
+    public static final String RETRY_BUDGET_KEY = "retry.budget";
+
+    /**
+     * The retries allowed within the window whatever the requests, so that retries still happen on low traffic
+     */
+    public static final String RETRY_BUDGET_MIN_KEY = "retry.budget.min";
+
+    public static final int DEFAULT_RETRY_BUDGET_MIN = 10;
+
+    /**
+     * The sliding window in milliseconds over which the retries and the requests are counted
+     */
+    public static final String RETRY_BUDGET_WINDOW_KEY = "retry.budget.window";
+
+    public static final int DEFAULT_RETRY_BUDGET_WINDOW = 10 * 1000;
+
+    /**
+     * The latency percentile of a method used as the timeout of the attempts followed by a retry, disabled if not set
+     */
+    public static final String ADAPTIVE_TIMEOUT_PERCENTILE_KEY = "adaptive.timeout.percentile";
+
+    /**
+     * The factor applied to the latency percentile to get the adaptive timeout
+     */
+    public static final String ADAPTIVE_TIMEOUT_FACTOR_KEY = "adaptive.timeout.factor";
+
+    public static final double DEFAULT_ADAPTIVE_TIMEOUT_FACTOR = 2;
+
+    /**
+     * The RpcContext value holding the timeout in milliseconds of one attempt, it can only shorten the configured timeout
+     */
+    public static final String ATTEMPT_TIMEOUT_KEY = "attempt.timeout";
+
     public static final String DEFAULT_THREADPOOL = "limited";
 
     public static final String DEFAULT_CLIENT_THREADPOOL = "cached";
@@ -416,6 +537,11 @@ public class Constants {
 
     public static final String MERGER_KEY = "merger";
 
+    /**
+     * To decide whether a mergeable invocation returns the results arrived within the timeout instead of failing
+     */
+    public static final String MERGER_PARTIAL_KEY = "merger.partial";
+
     /**
      * To decide whether to exclude unavailable invoker from the cluster
      */
@@ -440,6 +566,74 @@ public class Constants {
      */
     public static final boolean DEFAULT_CLUSTER_STICKY = false;
 
+    /**
+     * To decide whether to eject invokers detected as outliers from the cluster
+     */
+    public static final String OUTLIER_KEY = "outlier";
+
+    /**
+     * Consecutive failures after which an invoker is ejected
+     */
+    public static final String OUTLIER_CONSECUTIVE_ERRORS_KEY = "outlier.consecutive.errors";
+
+    public static final int DEFAULT_OUTLIER_CONSECUTIVE_ERRORS = 5;
+
+    /**
+     * Interval in milliseconds between two success rate and latency analyses
+     */
+    public static final String OUTLIER_INTERVAL_KEY = "outlier.interval";
+
+    public static final int DEFAULT_OUTLIER_INTERVAL = 10 * 1000;
+
+    /**
+     * Base ejection time in milliseconds, doubled every time the same invoker is ejected again
+     */
+    public static final String OUTLIER_EJECTION_TIME_KEY = "outlier.ejection.time";
+
+    public static final int DEFAULT_OUTLIER_EJECTION_TIME = 30 * 1000;
+
+    /**
+     * Upper bound of the ejection time in milliseconds
+     */
+    public static final String OUTLIER_MAX_EJECTION_TIME_KEY = "outlier.max.ejection.time";
+
+    public static final int DEFAULT_OUTLIER_MAX_EJECTION_TIME = 300 * 1000;
+
+    /**
+     * Maximum percentage of the invokers of a cluster which can be ejected at the same time
+     */
+    public static final String OUTLIER_MAX_EJECTION_PERCENT_KEY = "outlier.max.ejection.percent";
+
+    public static final int DEFAULT_OUTLIER_MAX_EJECTION_PERCENT = 50;
+
+    /**
+     * An invoker is ejected when its success rate is lower than the mean minus this many standard deviations
+     */
+    public static final String OUTLIER_SUCCESS_RATE_STDEV_KEY = "outlier.success.rate.stdev";
+
+    public static final double DEFAULT_OUTLIER_SUCCESS_RATE_STDEV = 1.9;
+
+    /**
+     * Minimum requests of an invoker within an interval for its success rate and latency to be analysed
+     */
+    public static final String OUTLIER_REQUEST_VOLUME_KEY = "outlier.request.volume";
+
+    public static final int DEFAULT_OUTLIER_REQUEST_VOLUME = 100;
+
+    /**
+     * The latency percentile compared between invokers
+     */
+    public static final String OUTLIER_LATENCY_PERCENTILE_KEY = "outlier.latency.percentile";
+
+    public static final int DEFAULT_OUTLIER_LATENCY_PERCENTILE = 99;
+
+    /**
+     * An invoker is ejected when its latency percentile exceeds the median of the cluster by this factor, 0 to disable
+     */
+    public static final String OUTLIER_LATENCY_FACTOR_KEY = "outlier.latency.factor";
+
+    public static final double DEFAULT_OUTLIER_LATENCY_FACTOR = 3;
+
     /**
      * To decide whether to make connection when the client is created
      */
@@ -462,6 +656,39 @@ public class Constants {
      */
     public static final String REGISTRY_FILESAVE_SYNC_KEY = "save.file";
 
+    /**
+     * Minimum interval in milliseconds between two asynchronous saves of the registry cache file, the changes in
+     * between are written together
+     */
+    public static final String REGISTRY_FILESAVE_INTERVAL_KEY = "save.file.interval";
+
+    /**
+     * Whether the changed entries are appended to the registry cache file, which is rewritten once it doubles
+     */
+    public static final String REGISTRY_FILESAVE_APPEND_KEY = "save.file.append";
+
+    /**
+     * Whether a subscription is notified from the registry cache file first and subscribed in the background
+     */
+    public static final String REGISTRY_FAST_START_KEY = "fast.start";
+
+    /**
+     * The threads subscribing in the background when starting fast
+     */
+    public static final String REGISTRY_FAST_START_THREADS_KEY = "fast.start.threads";
+
+    public static final int DEFAULT_REGISTRY_FAST_START_THREADS = 4;
+
+    /**
+     * Milliseconds a reference waits for the subscription to one of several registries, 0 to wait until it is done
+     */
+    public static final String REGISTRY_SUBSCRIBE_TIMEOUT_KEY = "subscribe.timeout";
+
+    /**
+     * Whether a reference to several registries joins their providers in a single directory without duplicates
+     */
+    public static final String REGISTRY_MERGE_KEY = "registry.merge";
+
     /**
      * Period of registry center's retry interval
      */
@@ -472,6 +699,23 @@ public class Constants {
      */
     public static final int DEFAULT_REGISTRY_RETRY_PERIOD = 5 * 1000;
 
+    /**
+     * The threads retrying the failed actions of a registry, that is the retries running at once
+     */
+    public static final String REGISTRY_RETRY_THREADS_KEY = "retry.threads";
+
+    public static final int DEFAULT_REGISTRY_RETRY_THREADS = 1;
+
+    /**
+     * Window in milliseconds in which the notifications of a subscription are merged, 0 to notify right away
+     */
+    public static final String REGISTRY_NOTIFY_DELAY_KEY = "notify.delay";
+
+    /**
+     * Minimum interval in milliseconds between two merged notifications of a subscription
+     */
+    public static final String REGISTRY_NOTIFY_INTERVAL_KEY = "notify.interval";
+
     /**
      * Reconnection period in milliseconds for register center
      */
@@ -479,6 +723,11 @@ public class Constants {
 
     public static final int DEFAULT_REGISTRY_RECONNECT_PERIOD = 3 * 1000;
 
+    /**
+     * Whether a registry pipelines the watches of its subscriptions and batches the registrations of a recovery
+     */
+    public static final String REGISTRY_PIPELINE_KEY = "pipeline";
+
     public static final String SESSION_TIMEOUT_KEY = "session";
 
     public static final int DEFAULT_SESSION_TIMEOUT = 60 * 1000;
@@ -557,6 +806,11 @@ public class Constants {
 
     public static final String RUNTIME_KEY = "runtime";
 
+    /**
+     * a route script declared as pure only depends on the invokers it is given, so its result can be reused
+     */
+    public static final String PURE_KEY = "pure";
+
     /**
      * when ROUTER_KEY's value is set to ROUTER_TYPE_CLEAR, RegistryDirectory will clean all current routers
      */
@@ -645,6 +899,42 @@ public class Constants {
 
     public static final String REQUEST_TAG_KEY = "request.tag";
 
+    /**
+     * The availability zone of a provider or a consumer, used by the zone router
+     */
+    public static final String ZONE_KEY = "zone";
+
+    /**
+     * The factor applied to the healthy ratio of the local zone before traffic spills over to the other zones
+     */
+    public static final String ZONE_OVERPROVISION_KEY = "zone.overprovision";
+
+    public static final double DEFAULT_ZONE_OVERPROVISION = 1.4;
+
+    /**
+     * The healthy providers the local zone needs to take all of the traffic
+     */
+    public static final String ZONE_MIN_KEY = "zone.min";
+
+    public static final int DEFAULT_ZONE_MIN = 1;
+
+    /**
+     * The index of the argument the affinity load balance hashes
+     */
+    public static final String AFFINITY_ARGUMENT_KEY = "affinity.argument";
+
+    /**
+     * The attachment the affinity load balance hashes instead of an argument, such as a user id
+     */
+    public static final String AFFINITY_ATTACHMENT_KEY = "affinity.attachment";
+
+    /**
+     * The parsed URL strings cached by {@link URLInterner}, a system property
+     */
+    public static final String URL_CACHE_SIZE_KEY = "dubbo.url.cache.size";
+
+    public static final int DEFAULT_URL_CACHE_SIZE = 10000;
+
     /*
      * private Constants(){ }
      */
@@ -94,6 +94,10 @@ public /**final**/ class URL implements Serializable {
 
     private volatile transient Map<String, URL> urls;
 
+    private volatile transient Map<String, Map<String, String>> methodParameters;
+
+    private volatile transient Map<String, Map<String, Number>> methodNumbers;
+
     private volatile transient String ip;
 
     private volatile transient String full;
@@ -169,6 +173,21 @@ public /**final**/ class URL implements Serializable {
         this.parameters = Collections.unmodifiableMap(parameters);
     }
 
+    /**
+     * Keep the parameters as they are, they must not be modified afterwards.
+     *
+     * @see URLInterner
+     */
+    URL(String protocol, String username, String password, String host, int port, String path, Map<String, String> parameters, boolean shared) {
+        this.protocol = protocol;
+        this.username = username;
+        this.password = password;
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.parameters = parameters;
+    }
+
     /**
      * Parse url string
      *
@@ -456,6 +475,45 @@ public /**final**/ class URL implements Serializable {
         return numbers;
     }
 
+    /**
+     * The parameters prefixed by a method name, split by method, so that they are looked up without building the key.
+     */
+    private Map<String, Map<String, String>> getMethodParameters() {
+        if (methodParameters == null) { // concurrent initialization is tolerant
+            Map<String, Map<String, String>> methods = new HashMap<String, Map<String, String>>();
+            for (Map.Entry<String, String> entry : parameters.entrySet()) {
+                String key = entry.getKey();
+                int i = key == null ? -1 : key.indexOf('.');
+                if (i > 0) {
+                    String method = key.substring(0, i);
+                    Map<String, String> values = methods.get(method);
+                    if (values == null) {
+                        values = new HashMap<String, String>();
+                        methods.put(method, values);
+                    }
+                    values.put(key.substring(i + 1), entry.getValue());
+                }
+            }
+            methodParameters = methods.isEmpty() ? Collections.<String, Map<String, String>>emptyMap() : methods;
+        }
+        return methodParameters;
+    }
+
+    private Map<String, Number> getMethodNumbers(String method) {
+        if (method == null) {
+            return getNumbers();
+        }
+        if (methodNumbers == null) { // concurrent initialization is tolerant
+            methodNumbers = new ConcurrentHashMap<String, Map<String, Number>>();
+        }
+        Map<String, Number> numbers = methodNumbers.get(method);
+        if (numbers == null) {
+            numbers = new ConcurrentHashMap<String, Number>();
+            methodNumbers.put(method, numbers);
+        }
+        return numbers;
+    }
+
     private Map<String, URL> getUrls() {
         if (urls == null) { // concurrent initialization is tolerant
             urls = new ConcurrentHashMap<String, URL>();
@@ -657,7 +715,13 @@ public /**final**/ class URL implements Serializable {
     }
 
     public String getMethodParameter(String method, String key) {
-        String value = parameters.get(method + "." + key);
+        String value;
+        if (method == null || key == null || method.indexOf('.') >= 0) {
+            value = parameters.get(method + "." + key);
+        } else {
+            Map<String, String> values = getMethodParameters().get(method);
+            value = values == null ? null : values.get(key);
+        }
         if (value == null || value.length() == 0) {
             return getParameter(key);
         }
@@ -673,53 +737,53 @@ public /**final**/ class URL implements Serializable {
     }
 
     public double getMethodParameter(String method, String key, double defaultValue) {
-        String methodKey = method + "." + key;
-        Number n = getNumbers().get(methodKey);
+        Map<String, Number> numbers = getMethodNumbers(method);
+        Number n = numbers.get(key);
         if (n != null) {
-            return n.intValue();
+            return n.doubleValue();
         }
         String value = getMethodParameter(method, key);
         if (value == null || value.length() == 0) {
             return defaultValue;
         }
         double d = Double.parseDouble(value);
-        getNumbers().put(methodKey, d);
+        numbers.put(key, d);
         return d;
     }
 
     public float getMethodParameter(String method, String key, float defaultValue) {
-        String methodKey = method + "." + key;
-        Number n = getNumbers().get(methodKey);
+        Map<String, Number> numbers = getMethodNumbers(method);
+        Number n = numbers.get(key);
         if (n != null) {
-            return n.intValue();
+            return n.floatValue();
         }
         String value = getMethodParameter(method, key);
         if (value == null || value.length() == 0) {
             return defaultValue;
         }
         float f = Float.parseFloat(value);
-        getNumbers().put(methodKey, f);
+        numbers.put(key, f);
         return f;
     }
 
     public long getMethodParameter(String method, String key, long defaultValue) {
-        String methodKey = method + "." + key;
-        Number n = getNumbers().get(methodKey);
+        Map<String, Number> numbers = getMethodNumbers(method);
+        Number n = numbers.get(key);
         if (n != null) {
-            return n.intValue();
+            return n.longValue();
         }
         String value = getMethodParameter(method, key);
         if (value == null || value.length() == 0) {
             return defaultValue;
         }
         long l = Long.parseLong(value);
-        getNumbers().put(methodKey, l);
+        numbers.put(key, l);
         return l;
     }
 
     public int getMethodParameter(String method, String key, int defaultValue) {
-        String methodKey = method + "." + key;
-        Number n = getNumbers().get(methodKey);
+        Map<String, Number> numbers = getMethodNumbers(method);
+        Number n = numbers.get(key);
         if (n != null) {
             return n.intValue();
         }
@@ -728,13 +792,13 @@ public /**final**/ class URL implements Serializable {
             return defaultValue;
         }
         int i = Integer.parseInt(value);
-        getNumbers().put(methodKey, i);
+        numbers.put(key, i);
         return i;
     }
 
     public short getMethodParameter(String method, String key, short defaultValue) {
-        String methodKey = method + "." + key;
-        Number n = getNumbers().get(methodKey);
+        Map<String, Number> numbers = getMethodNumbers(method);
+        Number n = numbers.get(key);
         if (n != null) {
             return n.shortValue();
         }
@@ -743,13 +807,13 @@ public /**final**/ class URL implements Serializable {
             return defaultValue;
         }
         short s = Short.parseShort(value);
-        getNumbers().put(methodKey, s);
+        numbers.put(key, s);
         return s;
     }
 
     public byte getMethodParameter(String method, String key, byte defaultValue) {
-        String methodKey = method + "." + key;
-        Number n = getNumbers().get(methodKey);
+        Map<String, Number> numbers = getMethodNumbers(method);
+        Number n = numbers.get(key);
         if (n != null) {
             return n.byteValue();
         }
@@ -758,7 +822,7 @@ public /**final**/ class URL implements Serializable {
             return defaultValue;
         }
         byte b = Byte.parseByte(value);
-        getNumbers().put(methodKey, b);
+        numbers.put(key, b);
         return b;
     }
 
@@ -855,6 +919,9 @@ public /**final**/ class URL implements Serializable {
             return false;
         }
         if (key == null) {
+            if (method.indexOf('.') < 0) {
+                return getMethodParameters().containsKey(method);
+            }
             String prefix = method + ".";
             for (String fullKey : parameters.keySet()) {
                 if (fullKey.startsWith(prefix)) {
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.common;
+
+import org.apache.dubbo.common.utils.ConfigUtils;
+import org.apache.dubbo.common.utils.LRUCache;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Shares the memory of the URLs which differ by a few parameters, such as the providers of a service.
+ * <p>
+ * The interned URLs keep their parameters in a flyweight map: the names are shared by all the URLs with the same
+ * parameter names, and the names and values are interned strings. The parsed URL strings are cached with LRU eviction,
+ * so the same registry data is parsed once.
+ * <p>
+ * The interned URLs are equal to the URLs they are made from, and are immutable as the others.
+ */
+public final class URLInterner {
+
+    private static final int CACHE_SIZE = Integer.parseInt(ConfigUtils.getProperty(Constants.URL_CACHE_SIZE_KEY,
+            String.valueOf(Constants.DEFAULT_URL_CACHE_SIZE)));
+
+    private static final LRUCache<String, URL> PARSED = new LRUCache<String, URL>(CACHE_SIZE);
+
+    private static final LRUCache<List<String>, Names> NAMES = new LRUCache<List<String>, Names>(CACHE_SIZE);
+
+    private URLInterner() {
+    }
+
+    /**
+     * Parse the url string as {@link URL#valueOf(String)} does, or return the interned URL it was parsed to.
+     */
+    public static URL valueOf(String url) {
+        URL parsed = PARSED.get(url);
+        if (parsed == null) {
+            parsed = intern(URL.valueOf(url));
+            PARSED.put(url, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * @return an URL equal to the url whose strings and parameter names are shared
+     */
+    public static URL intern(URL url) {
+        Map<String, String> parameters = url.getParameters();
+        if (parameters instanceof ParameterMap) {
+            return url;
+        }
+        String[] keys = parameters.keySet().toArray(new String[parameters.size()]);
+        for (String key : keys) {
+            if (key == null) {
+                return url;
+            }
+        }
+        Arrays.sort(keys);
+        List<String> nameList = Arrays.asList(keys);
+        Names names = NAMES.get(nameList);
+        if (names == null) {
+            names = new Names(keys);
+            NAMES.put(nameList, names);
+        }
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = intern(parameters.get(keys[i]));
+        }
+        return new URL(intern(url.getProtocol()), intern(url.getUsername()), intern(url.getPassword()),
+                intern(url.getHost()), url.getPort(), intern(url.getPath()), new ParameterMap(names, values), true);
+    }
+
+    private static String intern(String value) {
+        return value == null ? null : value.intern();
+    }
+
+    /**
+     * The sorted parameter names of URLs, with an open addressing table of their indexes.
+     */
+    private static final class Names {
+
+        private final String[] keys;
+
+        private final int[] table;
+
+        private final int mask;
+
+        Names(String[] keys) {
+            this.keys = new String[keys.length];
+            int capacity = 4;
+            while (capacity < keys.length * 2) {
+                capacity <<= 1;
+            }
+            this.table = new int[capacity];
+            this.mask = capacity - 1;
+            for (int i = 0; i < keys.length; i++) {
+                this.keys[i] = keys[i].intern();
+                int slot = spread(keys[i].hashCode()) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+
+        int indexOf(Object key) {
+            if (!(key instanceof String)) {
+                return -1;
+            }
+            int slot = spread(key.hashCode()) & mask;
+            int index;
+            while ((index = table[slot]) != 0) {
+                String name = keys[index - 1];
+                if (name == key || name.equals(key)) {
+                    return index - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static int spread(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * An immutable map of the shared names to the values of an URL.
+     */
+    private static final class ParameterMap extends AbstractMap<String, String> implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Names names;
+
+        private final String[] values;
+
+        private transient Set<Entry<String, String>> entrySet;
+
+        ParameterMap(Names names, String[] values) {
+            this.names = names;
+            this.values = values;
+        }
+
+        @Override
+        public String get(Object key) {
+            int index = names.indexOf(key);
+            return index < 0 ? null : values[index];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return names.indexOf(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new AbstractSet<Entry<String, String>>() {
+                    @Override
+                    public Iterator<Entry<String, String>> iterator() {
+                        return new Iterator<Entry<String, String>>() {
+                            private int index;
+
+                            @Override
+                            public boolean hasNext() {
+                                return index < values.length;
+                            }
+
+                            @Override
+                            public Entry<String, String> next() {
+                                if (index >= values.length) {
+                                    throw new NoSuchElementException();
+                                }
+                                Entry<String, String> entry = new SimpleImmutableEntry<String, String>(names.keys[index], values[index]);
+                                index++;
+                                return entry;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return values.length;
+                    }
+                };
+            }
+            return entrySet;
+        }
+
+        private Object writeReplace() {
+            return Collections.unmodifiableMap(new HashMap<String, String>(this));
+        }
+    }
+}
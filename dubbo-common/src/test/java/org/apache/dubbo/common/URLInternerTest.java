@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.common;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class URLInternerTest {
+
+    private static final String PROVIDER = "dubbo://10.20.130.230:20880/context/path?version=1.0.0&application=morgan&methods=a,b";
+
+    @Test
+    public void testValueOf() {
+        URL url = URLInterner.valueOf(PROVIDER);
+        assertEquals(URL.valueOf(PROVIDER), url);
+        assertEquals(URL.valueOf(PROVIDER).hashCode(), url.hashCode());
+        assertEquals(URL.valueOf(PROVIDER).toFullString(), url.toFullString());
+        assertSame(url, URLInterner.valueOf(PROVIDER));
+        assertEquals("1.0.0", url.getParameter("version"));
+        assertEquals(2, url.getParameter("methods", new String[0]).length);
+        assertNull(url.getParameter("group"));
+        assertFalse(url.hasParameter("group"));
+    }
+
+    @Test
+    public void testSharedStrings() {
+        URL url1 = URLInterner.valueOf(PROVIDER);
+        URL url2 = URLInterner.valueOf(PROVIDER.replace("10.20.130.230", "10.20.130.231"));
+        assertSame(url1.getPath(), url2.getPath());
+        assertSame(url1.getParameter("application"), url2.getParameter("application"));
+        Map.Entry<String, String> entry1 = url1.getParameters().entrySet().iterator().next();
+        Map.Entry<String, String> entry2 = url2.getParameters().entrySet().iterator().next();
+        assertSame(entry1.getKey(), entry2.getKey());
+    }
+
+    @Test
+    public void testIntern() {
+        URL url = URL.valueOf(PROVIDER).addParameter("anyhost", true);
+        URL interned = URLInterner.intern(url);
+        assertEquals(url, interned);
+        assertEquals(url.getParameters(), interned.getParameters());
+        assertEquals(interned.getParameters(), url.getParameters());
+        assertSame(interned, URLInterner.intern(interned));
+
+        URL changed = interned.addParameter("weight", 10).removeParameter("anyhost");
+        assertEquals(10, changed.getParameter("weight", 0));
+        assertFalse(changed.hasParameter("anyhost"));
+        assertTrue(interned.hasParameter("anyhost"));
+        try {
+            interned.getParameters().put("weight", "10");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        URL url = URLInterner.valueOf(PROVIDER);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(url);
+        out.close();
+        URL copy = (URL) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(url, copy);
+        assertEquals("morgan", copy.getParameter("application"));
+    }
+}
@@ -28,6 +28,7 @@ import java.util.Map;
 import static org.hamcrest.CoreMatchers.anyOf;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
@@ -680,4 +681,27 @@ public class URLTest {
         assertEquals("1.0.0", url.getParameter("version"));
         assertEquals("morgan", url.getParameter("application"));
     }
+
+    @Test
+    public void testGetMethodParameter() {
+        URL url = URL.valueOf("dubbo://10.20.130.230:20880/context/path?timeout=3000&sayHello.timeout=1000"
+                + "&sayHello.hash.arguments=1&sayHello.factor=1.5&sayHello.sent=true&a.b.c=d");
+        assertEquals("1000", url.getMethodParameter("sayHello", "timeout"));
+        assertEquals("3000", url.getMethodParameter("sayBye", "timeout"));
+        assertEquals(1000, url.getMethodParameter("sayHello", "timeout", 0));
+        assertEquals(1000, url.getMethodParameter("sayHello", "timeout", 0));
+        assertEquals(3000L, url.getMethodParameter("sayBye", "timeout", 0L));
+        assertEquals(1.5, url.getMethodParameter("sayHello", "factor", 1.0), 0);
+        assertEquals(1.5, url.getMethodParameter("sayHello", "factor", 1.0), 0);
+        assertEquals("1", url.getMethodParameter("sayHello", "hash.arguments"));
+        assertTrue(url.getMethodParameter("sayHello", "sent", false));
+        assertEquals("d", url.getMethodParameter("a.b", "c"));
+        assertEquals("d", url.getMethodParameter("a", "b.c"));
+        assertEquals(3000, url.getMethodParameter(null, "timeout", 0));
+        assertTrue(url.hasMethodParameter("sayHello", null));
+        assertFalse(url.hasMethodParameter("sayBye", null));
+        assertTrue(url.hasMethodParameter(null, "timeout"));
+        assertTrue(url.hasMethodParameter("sayBye", "timeout"));
+        assertFalse(url.hasMethodParameter("sayBye", "sent"));
+    }
 }
\ No newline at end of file
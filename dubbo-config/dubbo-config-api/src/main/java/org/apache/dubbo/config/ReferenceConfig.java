@@ -23,6 +23,7 @@ import org.apache.dubbo.common.bytecode.Wrapper;
 import org.apache.dubbo.common.config.AsyncFor;
 import org.apache.dubbo.common.extension.ExtensionLoader;
 import org.apache.dubbo.common.utils.ConfigUtils;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
 import org.apache.dubbo.common.utils.NetUtils;
 import org.apache.dubbo.common.utils.ReflectUtils;
 import org.apache.dubbo.common.utils.StringUtils;
@@ -35,9 +36,12 @@ import org.apache.dubbo.rpc.Protocol;
 import org.apache.dubbo.rpc.ProxyFactory;
 import org.apache.dubbo.rpc.StaticContext;
 import org.apache.dubbo.rpc.cluster.Cluster;
+import org.apache.dubbo.rpc.cluster.Directory;
+import org.apache.dubbo.rpc.cluster.directory.MergedDirectory;
 import org.apache.dubbo.rpc.cluster.directory.StaticDirectory;
 import org.apache.dubbo.rpc.cluster.support.AvailableCluster;
 import org.apache.dubbo.rpc.cluster.support.ClusterUtils;
+import org.apache.dubbo.rpc.cluster.support.wrapper.MockClusterInvoker;
 import org.apache.dubbo.rpc.protocol.injvm.InjvmProtocol;
 import org.apache.dubbo.rpc.service.GenericService;
 import org.apache.dubbo.rpc.support.ProtocolUtils;
@@ -53,6 +57,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.apache.dubbo.common.utils.NetUtils.isInvalidLocalHost;
 
@@ -70,6 +81,8 @@ public class ReferenceConfig<T> extends AbstractReferenceConfig {
     private static final Cluster cluster = ExtensionLoader.getExtensionLoader(Cluster.class).getAdaptiveExtension();
 
     private static final ProxyFactory proxyFactory = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    private static final ExecutorService referExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("DubboReferRegistry", true));
     private final List<URL> urls = new ArrayList<URL>();
     // interface name
     private String interfaceName;
@@ -394,15 +407,18 @@ public class ReferenceConfig<T> extends AbstractReferenceConfig {
             if (urls.size() == 1) {
                 invoker = refprotocol.refer(interfaceClass, urls.get(0));
             } else {
-                List<Invoker<?>> invokers = new ArrayList<Invoker<?>>();
+                List<Invoker<?>> invokers = referAll(urls);
                 URL registryURL = null;
                 for (URL url : urls) {
-                    invokers.add(refprotocol.refer(interfaceClass, url));
                     if (Constants.REGISTRY_PROTOCOL.equals(url.getProtocol())) {
                         registryURL = url; // use last registry url
                     }
                 }
-                if (registryURL != null) { // registry url is available
+                Invoker<?> merged = registryURL != null && tmpUrl.getParameter(Constants.REGISTRY_MERGE_KEY, false)
+                        ? merge(invokers) : null;
+                if (merged != null) { // the providers of all the registries are joined by the cluster of the reference
+                    invoker = merged;
+                } else if (registryURL != null) { // registry url is available
                     // use AvailableCluster only when register's cluster is available
                     URL u = registryURL.addParameter(Constants.CLUSTER_KEY, AvailableCluster.NAME);
                     invoker = cluster.join(new StaticDirectory(u, invokers));
@@ -431,6 +447,103 @@ public class ReferenceConfig<T> extends AbstractReferenceConfig {
         return (T) proxyFactory.getProxy(invoker);
     }
 
+    /**
+     * Refer the urls in parallel, skipping a registry which does not subscribe within its subscribe.timeout
+     */
+    private List<Invoker<?>> referAll(List<URL> urls) {
+        long start = System.currentTimeMillis();
+        List<Future<Invoker<?>>> futures = new ArrayList<Future<Invoker<?>>>();
+        for (final URL url : urls) {
+            futures.add(referExecutor.submit(new Callable<Invoker<?>>() {
+                @Override
+                public Invoker<?> call() throws Exception {
+                    return refprotocol.refer(interfaceClass, url);
+                }
+            }));
+        }
+        List<Invoker<?>> invokers = new ArrayList<Invoker<?>>();
+        for (int i = 0; i < urls.size(); i++) {
+            URL url = urls.get(i);
+            Future<Invoker<?>> future = futures.get(i);
+            int timeout = url.getParameter(Constants.REGISTRY_SUBSCRIBE_TIMEOUT_KEY, 0);
+            try {
+                if (timeout > 0) {
+                    long remaining = Math.max(start + timeout - System.currentTimeMillis(), 0);
+                    invokers.add(future.get(remaining, TimeUnit.MILLISECONDS));
+                } else {
+                    invokers.add(future.get());
+                }
+            } catch (TimeoutException e) {
+                logger.warn("Skip the registry " + url.getAddress() + ", which did not subscribe " + interfaceName + " in " + timeout + "ms");
+                destroyLater(future);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                destroyAll(invokers, futures.subList(i + 1, futures.size()));
+                throw new IllegalStateException("Interrupted while referring " + interfaceName, e);
+            } catch (ExecutionException e) {
+                destroyAll(invokers, futures.subList(i + 1, futures.size()));
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause.getMessage(), cause);
+            }
+        }
+        if (invokers.isEmpty()) {
+            throw new IllegalStateException("No registry subscribed " + interfaceName + " in time on the consumer " + NetUtils.getLocalHost() + " use dubbo version " + Version.getVersion() + ", please check the subscribe.timeout of the registries.");
+        }
+        return invokers;
+    }
+
+    /**
+     * Destroy the invokers referred so far and those still being referred, when the reference fails
+     */
+    private void destroyAll(List<Invoker<?>> invokers, List<Future<Invoker<?>>> pending) {
+        for (Invoker<?> invoker : invokers) {
+            try {
+                invoker.destroy();
+            } catch (Throwable t) {
+                logger.warn(t.getMessage(), t);
+            }
+        }
+        for (Future<Invoker<?>> future : pending) {
+            destroyLater(future);
+        }
+    }
+
+    private void destroyLater(final Future<Invoker<?>> future) {
+        referExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.get().destroy();
+                } catch (ExecutionException e) {
+                    // failed to refer, nothing to destroy
+                } catch (Throwable t) {
+                    logger.warn(t.getMessage(), t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Join the directories of the registries, so that a provider registered to several of them is invoked once
+     *
+     * @return null if an invoker is not one of a registry
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Invoker<?> merge(List<Invoker<?>> invokers) {
+        List<Directory> directories = new ArrayList<Directory>();
+        for (Invoker<?> invoker : invokers) {
+            if (!(invoker instanceof MockClusterInvoker)) {
+                logger.warn("Can not merge the providers of " + invoker.getUrl() + ", join the registries as they are");
+                return null;
+            }
+            directories.add(((MockClusterInvoker<?>) invoker).getDirectory());
+        }
+        return cluster.join(new MergedDirectory(directories.get(0).getUrl(), directories));
+    }
+
     private void checkDefault() {
         if (consumer == null) {
             consumer = new ConsumerConfig();
@@ -17,12 +17,20 @@
 package org.apache.dubbo.config;
 
 import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.utils.NetUtils;
 import org.apache.dubbo.config.api.DemoService;
 import org.apache.dubbo.config.provider.impl.DemoServiceImpl;
+import org.apache.dubbo.rpc.RpcInvocation;
+import org.apache.dubbo.rpc.cluster.directory.MergedDirectory;
+import org.apache.dubbo.rpc.cluster.support.wrapper.MockClusterInvoker;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class ReferenceConfigTest {
 
     @Test
@@ -105,4 +113,46 @@ public class ReferenceConfigTest {
         Assert.assertNotNull(demoService);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMergedRegistries() {
+        ApplicationConfig application = new ApplicationConfig();
+        application.setName("test-merged-registries");
+        List<RegistryConfig> registries = new ArrayList<RegistryConfig>();
+        for (int i = 0; i < 2; i++) {
+            RegistryConfig registry = new RegistryConfig();
+            registry.setAddress("multicast://224.5.6." + (10 + i) + ":" + NetUtils.getAvailablePort());
+            registry.setParameters(Collections.singletonMap(Constants.REGISTRY_SUBSCRIBE_TIMEOUT_KEY, "5000"));
+            registries.add(registry);
+        }
+        ProtocolConfig protocol = new ProtocolConfig();
+        protocol.setName("dubbo");
+        protocol.setPort(NetUtils.getAvailablePort());
+
+        ServiceConfig<DemoService> sc = new ServiceConfig<DemoService>();
+        sc.setInterface(DemoService.class);
+        sc.setRef(new DemoServiceImpl());
+        sc.setApplication(application);
+        sc.setRegistries(registries);
+        sc.setProtocol(protocol);
+
+        ReferenceConfig<DemoService> rc = new ReferenceConfig<DemoService>();
+        rc.setApplication(application);
+        rc.setRegistries(registries);
+        rc.setInterface(DemoService.class);
+        rc.setInjvm(false);
+        rc.setParameters(Collections.singletonMap(Constants.REGISTRY_MERGE_KEY, "true"));
+
+        try {
+            sc.export();
+            DemoService demoService = rc.get();
+            MockClusterInvoker<?> invoker = (MockClusterInvoker<?>) rc.getInvoker();
+            Assert.assertTrue(invoker.getDirectory() instanceof MergedDirectory);
+            Assert.assertEquals(1, invoker.getDirectory().list(new RpcInvocation()).size());
+            Assert.assertEquals("say:merged", demoService.sayName("merged"));
+        } finally {
+            rc.destroy();
+            sc.unexport();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.qos.command.impl;
+
+import org.apache.dubbo.qos.command.BaseCommand;
+import org.apache.dubbo.qos.command.CommandContext;
+import org.apache.dubbo.qos.command.annotation.Cmd;
+import org.apache.dubbo.qos.textui.TTable;
+import org.apache.dubbo.rpc.cluster.outlier.OutlierStats;
+
+import java.util.Map;
+
+@Cmd(name = "outlier", summary = "show the outlier detection state of the invokers", example = {
+        "outlier",
+        "outlier xx.xx.xxx.service"
+})
+public class Outlier implements BaseCommand {
+    @Override
+    public String execute(CommandContext commandContext, String[] args) {
+        String filter = args != null && args.length > 0 ? args[0] : null;
+        long now = System.currentTimeMillis();
+
+        TTable tTable = new TTable(new TTable.ColumnDefine[]{
+                new TTable.ColumnDefine(TTable.Align.LEFT),
+                new TTable.ColumnDefine(TTable.Align.MIDDLE),
+                new TTable.ColumnDefine(TTable.Align.MIDDLE),
+                new TTable.ColumnDefine(TTable.Align.MIDDLE),
+                new TTable.ColumnDefine(TTable.Align.MIDDLE),
+                new TTable.ColumnDefine(TTable.Align.MIDDLE),
+                new TTable.ColumnDefine(TTable.Align.MIDDLE)
+        });
+
+        //Header
+        tTable.addRow("Invoker", "EJECTED", "REMAINING(ms)", "EJECTIONS", "CONSECUTIVE FAILURES", "SUCCESS RATE", "LATENCY(ms)");
+
+        //Content
+        for (Map.Entry<String, OutlierStats> entry : OutlierStats.getAllStats().entrySet()) {
+            if (filter != null && !entry.getKey().contains(filter)) {
+                continue;
+            }
+            OutlierStats stats = entry.getValue();
+            boolean ejected = stats.isEjected();
+            double successRate = stats.getLastSuccessRate();
+            tTable.addRow(entry.getKey(),
+                    ejected ? "Y" : "N",
+                    ejected ? stats.getEjectedUntil() - now : 0,
+                    stats.getEjections(),
+                    stats.getConsecutiveFailures(),
+                    successRate < 0 ? "-" : String.format("%.2f%%", successRate * 100),
+                    stats.getLastLatency() < 0 ? "-" : stats.getLastLatency());
+        }
+
+        return tTable.rendering();
+    }
+}
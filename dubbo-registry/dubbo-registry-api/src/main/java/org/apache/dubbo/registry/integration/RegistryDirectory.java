@@ -18,12 +18,16 @@ package org.apache.dubbo.registry.integration;
 
 import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.URLInterner;
 import org.apache.dubbo.common.Version;
 import org.apache.dubbo.common.extension.ExtensionLoader;
 import org.apache.dubbo.common.logger.Logger;
 import org.apache.dubbo.common.logger.LoggerFactory;
 import org.apache.dubbo.common.utils.NetUtils;
 import org.apache.dubbo.common.utils.StringUtils;
+import org.apache.dubbo.metrics.Compass;
+import org.apache.dubbo.metrics.MetricManager;
+import org.apache.dubbo.metrics.MetricName;
 import org.apache.dubbo.registry.NotifyListener;
 import org.apache.dubbo.registry.Registry;
 import org.apache.dubbo.rpc.Invocation;
@@ -38,11 +42,13 @@ import org.apache.dubbo.rpc.cluster.Router;
 import org.apache.dubbo.rpc.cluster.RouterFactory;
 import org.apache.dubbo.rpc.cluster.directory.AbstractDirectory;
 import org.apache.dubbo.rpc.cluster.directory.StaticDirectory;
+import org.apache.dubbo.rpc.cluster.outlier.OutlierStats;
 import org.apache.dubbo.rpc.cluster.support.ClusterUtils;
 import org.apache.dubbo.rpc.protocol.InvokerWrapper;
 import org.apache.dubbo.rpc.support.RpcUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -65,6 +71,10 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
     private static final RouterFactory routerFactory = ExtensionLoader.getExtensionLoader(RouterFactory.class).getAdaptiveExtension();
 
     private static final ConfiguratorFactory configuratorFactory = ExtensionLoader.getExtensionLoader(ConfiguratorFactory.class).getAdaptiveExtension();
+
+    private static final String REFRESH_FULL = "full";
+
+    private static final String REFRESH_INCREMENTAL = "incremental";
     private final String serviceKey; // Initialization at construction time, assertion not null
     private final Class<T> serviceType; // Initialization at construction time, assertion not null
     private final Map<String, String> queryMap; // Initialization at construction time, assertion not null
@@ -94,6 +104,14 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
     // Set<invokerUrls> cache invokeUrls to invokers mapping.
     private volatile Set<URL> cachedInvokerUrls; // The initial value is null and the midway may be assigned to null, please use the local variable reference
 
+    // Map<providerUrl, key of urlInvokerMap>, only accessed while notifying, null means the next refresh must be a full one.
+    private Map<URL, String> cachedInvokerKeys;
+
+    // Map<methodName, Invoker> sorted invokers of each method before routing, only accessed while notifying.
+    private Map<String, List<Invoker<T>>> rawMethodInvokerMap;
+
+    private final Compass refreshCompass;
+
     public RegistryDirectory(Class<T> serviceType, URL url) {
         super(url);
         if (serviceType == null)
@@ -108,6 +126,8 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
         this.multiGroup = group != null && ("*".equals(group) || group.contains(","));
         String methods = queryMap.get(Constants.METHODS_KEY);
         this.serviceMethods = methods == null ? null : Constants.COMMA_SPLIT_PATTERN.split(methods);
+        this.refreshCompass = MetricManager.getCompass(Constants.REGISTRY_KEY,
+                new MetricName("dubbo.registry.directory.refresh").tag(Constants.INTERFACE_KEY, serviceKey));
     }
 
     /**
@@ -210,16 +230,30 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
                 setRouters(routers);
             }
         }
-        List<Configurator> localConfigurators = this.configurators; // local reference
-        // merge override parameters
-        this.overrideDirectoryUrl = directoryUrl;
-        if (localConfigurators != null && !localConfigurators.isEmpty()) {
-            for (Configurator configurator : localConfigurators) {
-                this.overrideDirectoryUrl = configurator.configure(overrideDirectoryUrl);
+        // only provider changes can be applied on top of the current invokers
+        boolean incremental = configuratorUrls.isEmpty() && routerUrls.isEmpty() && isIncrementalRefreshable(invokerUrls);
+        if (!incremental) {
+            List<Configurator> localConfigurators = this.configurators; // local reference
+            // merge override parameters
+            this.overrideDirectoryUrl = directoryUrl;
+            if (localConfigurators != null && !localConfigurators.isEmpty()) {
+                for (Configurator configurator : localConfigurators) {
+                    this.overrideDirectoryUrl = configurator.configure(overrideDirectoryUrl);
+                }
             }
         }
         // providers
-        refreshInvoker(invokerUrls);
+        long start = System.currentTimeMillis();
+        if (incremental) {
+            refreshInvokerIncrementally(invokerUrls);
+        } else {
+            refreshInvoker(invokerUrls);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        refreshCompass.record(elapsed, incremental ? REFRESH_INCREMENTAL : REFRESH_FULL);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Refreshed invokers of service " + serviceKey + (incremental ? " incrementally" : "") + " in " + elapsed + "ms");
+        }
     }
 
     /**
@@ -249,16 +283,21 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
             if (invokerUrls.isEmpty()) {
                 return;
             }
-            Map<String, Invoker<T>> newUrlInvokerMap = toInvokers(invokerUrls);// Translate url list to Invoker map
-            Map<String, List<Invoker<T>>> newMethodInvokerMap = toMethodInvokers(newUrlInvokerMap); // Change method name to map Invoker Map
+            Map<URL, String> newInvokerKeys = new HashMap<URL, String>();
+            Map<String, Invoker<T>> newUrlInvokerMap = toInvokers(invokerUrls, newInvokerKeys);// Translate url list to Invoker map
+            Map<String, List<Invoker<T>>> newRawMethodInvokerMap = toRawMethodInvokers(newUrlInvokerMap.values());
+            Map<String, List<Invoker<T>>> newMethodInvokerMap = toMethodInvokers(newRawMethodInvokerMap, null, null); // Change method name to map Invoker Map
             // state change
             // If the calculation is wrong, it is not processed.
             if (newUrlInvokerMap == null || newUrlInvokerMap.size() == 0) {
                 logger.error(new IllegalStateException("urls to invokers error .invokerUrls.size :" + invokerUrls.size() + ", invoker.size :0. urls :" + invokerUrls.toString()));
+                this.cachedInvokerKeys = null;
                 return;
             }
             this.methodInvokerMap = multiGroup ? toMergeMethodInvokerMap(newMethodInvokerMap) : newMethodInvokerMap;
             this.urlInvokerMap = newUrlInvokerMap;
+            this.rawMethodInvokerMap = newRawMethodInvokerMap;
+            this.cachedInvokerKeys = newInvokerKeys;
             try {
                 destroyUnusedInvokers(oldUrlInvokerMap, newUrlInvokerMap); // Close the unused Invoker
             } catch (Exception e) {
@@ -267,6 +306,143 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
         }
     }
 
+    /**
+     * Whether the notified provider urls can be applied as a delta on top of the current invokers,
+     * which requires a complete previous refresh and no group merging.
+     */
+    private boolean isIncrementalRefreshable(List<URL> invokerUrls) {
+        if (multiGroup || forbidden || invokerUrls.isEmpty()) {
+            return false;
+        }
+        if (invokerUrls.size() == 1 && invokerUrls.get(0) != null
+                && Constants.EMPTY_PROTOCOL.equals(invokerUrls.get(0).getProtocol())) {
+            return false;
+        }
+        Map<String, Invoker<T>> localUrlInvokerMap = this.urlInvokerMap; // local reference
+        return cachedInvokerUrls != null && cachedInvokerKeys != null && rawMethodInvokerMap != null
+                && methodInvokerMap != null && localUrlInvokerMap != null && !localUrlInvokerMap.isEmpty();
+    }
+
+    /**
+     * Apply the added and removed provider urls to copies of the current invoker maps. The lists of the methods the
+     * changed providers declare are copied with the changes applied, the other lists are reused as is. The changed
+     * methods are routed again only when routers filter the invokers on refresh.
+     * Unchanged invokers and url merging results are reused as is.
+     *
+     * @param invokerUrls the complete provider url list, can't be empty
+     */
+    private void refreshInvokerIncrementally(List<URL> invokerUrls) {
+        Set<URL> oldInvokerUrls = this.cachedInvokerUrls; // local reference
+        Set<URL> newInvokerUrls = new HashSet<URL>(invokerUrls);
+        List<URL> addedUrls = new ArrayList<URL>();
+        for (URL url : newInvokerUrls) {
+            if (!oldInvokerUrls.contains(url)) {
+                addedUrls.add(url);
+            }
+        }
+        List<URL> removedUrls = new ArrayList<URL>();
+        for (URL url : oldInvokerUrls) {
+            if (!newInvokerUrls.contains(url)) {
+                removedUrls.add(url);
+            }
+        }
+        if (addedUrls.isEmpty() && removedUrls.isEmpty()) {
+            return;
+        }
+        this.cachedInvokerUrls = newInvokerUrls;
+
+        Map<URL, String> newInvokerKeys = new HashMap<URL, String>(cachedInvokerKeys);
+        Set<String> removedKeys = new HashSet<String>();
+        for (URL url : removedUrls) {
+            String key = newInvokerKeys.remove(url);
+            if (key != null) {
+                removedKeys.add(key);
+            }
+        }
+        Map<URL, String> addedKeys = new HashMap<URL, String>();
+        Map<String, Invoker<T>> addedUrlInvokerMap = toInvokers(addedUrls, addedKeys);
+        newInvokerKeys.putAll(addedKeys);
+        if (!removedKeys.isEmpty()) {
+            // the key is still used by another provider url
+            for (String key : newInvokerKeys.values()) {
+                removedKeys.remove(key);
+            }
+        }
+
+        Map<String, Invoker<T>> oldUrlInvokerMap = this.urlInvokerMap; // local reference
+        Map<String, Invoker<T>> newUrlInvokerMap = new HashMap<String, Invoker<T>>(oldUrlInvokerMap);
+        Set<Invoker<T>> removedInvokers = new HashSet<Invoker<T>>();
+        for (String key : removedKeys) {
+            Invoker<T> invoker = newUrlInvokerMap.remove(key);
+            if (invoker != null) {
+                removedInvokers.add(invoker);
+            }
+        }
+        Set<Invoker<T>> addedInvokers = new HashSet<Invoker<T>>();
+        for (Map.Entry<String, Invoker<T>> entry : addedUrlInvokerMap.entrySet()) {
+            if (!newUrlInvokerMap.containsKey(entry.getKey())) {
+                newUrlInvokerMap.put(entry.getKey(), entry.getValue());
+                addedInvokers.add(entry.getValue());
+            }
+        }
+        if (newUrlInvokerMap.isEmpty()) {
+            logger.error(new IllegalStateException("urls to invokers error .invokerUrls.size :" + invokerUrls.size() + ", invoker.size :0. urls :" + invokerUrls.toString()));
+            for (Invoker<T> invoker : addedInvokers) {
+                destroyInvoker(invoker);
+            }
+            this.cachedInvokerKeys = null; // the next refresh must be a full one
+            return;
+        }
+
+        // the methods of every changed invoker are parsed once
+        Set<String> changedMethods = new HashSet<String>();
+        for (Invoker<T> invoker : removedInvokers) {
+            changedMethods.addAll(getMethodNames(invoker));
+        }
+        Map<String, List<Invoker<T>>> addedMethodInvokers = new HashMap<String, List<Invoker<T>>>();
+        for (Invoker<T> invoker : addedInvokers) {
+            for (String method : getMethodNames(invoker)) {
+                changedMethods.add(method);
+                List<Invoker<T>> methodInvokers = addedMethodInvokers.get(method);
+                if (methodInvokers == null) {
+                    methodInvokers = new ArrayList<Invoker<T>>();
+                    addedMethodInvokers.put(method, methodInvokers);
+                }
+                methodInvokers.add(invoker);
+            }
+        }
+        Map<String, List<Invoker<T>>> newRawMethodInvokerMap = new HashMap<String, List<Invoker<T>>>(rawMethodInvokerMap);
+        for (String method : changedMethods) {
+            List<Invoker<T>> oldInvokers = newRawMethodInvokerMap.get(method);
+            List<Invoker<T>> methodInvokers = oldInvokers == null ? new ArrayList<Invoker<T>>() : new ArrayList<Invoker<T>>(oldInvokers);
+            if (!removedInvokers.isEmpty()) {
+                methodInvokers.removeAll(removedInvokers);
+            }
+            List<Invoker<T>> added = addedMethodInvokers.get(method);
+            if (added != null) {
+                methodInvokers.addAll(added);
+            }
+            if (methodInvokers.isEmpty() && !Constants.ANY_VALUE.equals(method)) {
+                newRawMethodInvokerMap.remove(method);
+            } else {
+                Collections.sort(methodInvokers, InvokerComparator.getComparator());
+                newRawMethodInvokerMap.put(method, Collections.unmodifiableList(methodInvokers));
+            }
+        }
+
+        if (hasRefreshRouters()) {
+            this.methodInvokerMap = toMethodInvokers(newRawMethodInvokerMap, this.methodInvokerMap, changedMethods);
+        } else {
+            this.methodInvokerMap = toUnroutedMethodInvokers(newRawMethodInvokerMap, this.methodInvokerMap, changedMethods);
+        }
+        this.urlInvokerMap = newUrlInvokerMap;
+        this.rawMethodInvokerMap = newRawMethodInvokerMap;
+        this.cachedInvokerKeys = newInvokerKeys;
+        for (Invoker<T> invoker : removedInvokers) {
+            destroyInvoker(invoker);
+        }
+    }
+
     private Map<String, List<Invoker<T>>> toMergeMethodInvokerMap(Map<String, List<Invoker<T>>> methodMap) {
         Map<String, List<Invoker<T>>> result = new HashMap<String, List<Invoker<T>>>();
         for (Map.Entry<String, List<Invoker<T>>> entry : methodMap.entrySet()) {
@@ -332,9 +508,10 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
      * Turn urls into invokers, and if url has been refer, will not re-reference.
      *
      * @param urls
+     * @param invokerKeys collects the invoker key of every accepted provider url
      * @return invokers
      */
-    private Map<String, Invoker<T>> toInvokers(List<URL> urls) {
+    private Map<String, Invoker<T>> toInvokers(List<URL> urls, Map<URL, String> invokerKeys) {
         Map<String, Invoker<T>> newUrlInvokerMap = new HashMap<String, Invoker<T>>();
         if (urls == null || urls.isEmpty()) {
             return newUrlInvokerMap;
@@ -367,6 +544,7 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
             URL url = mergeUrl(providerUrl);
 
             String key = url.toFullString(); // The parameter urls are sorted
+            invokerKeys.put(providerUrl, key);
             if (keys.contains(key)) { // Repeated url
                 continue;
             }
@@ -383,6 +561,8 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
                         enabled = url.getParameter(Constants.ENABLED_KEY, true);
                     }
                     if (enabled) {
+                        // the invoker keeps the urls as long as the provider is there, share their strings
+                        url = URLInterner.intern(url);
                         invoker = new InvokerDelegate<T>(protocol.refer(serviceType, url), url, providerUrl);
                     }
                 } catch (Throwable t) {
@@ -439,6 +619,21 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
         return providerUrl;
     }
 
+    /**
+     * Whether a router filters the invokers when they are refreshed, the other routers only run per invocation.
+     */
+    private boolean hasRefreshRouters() {
+        List<Router> routers = getRouters();
+        if (routers != null) {
+            for (Router router : routers) {
+                if (router.getUrl() != null && !router.getUrl().getParameter(Constants.RUNTIME_KEY, false)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private List<Invoker<T>> route(List<Invoker<T>> invokers, String method) {
         Invocation invocation = new RpcInvocation(method, new Class<?>[0], new Object[0]);
         List<Router> routers = getRouters();
@@ -454,57 +649,148 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
     }
 
     /**
-     * Transform the invokers list into a mapping relationship with a method
+     * Group the invokers by the methods declared in their provider URL, plus all of them under {@link Constants#ANY_VALUE}.
      *
-     * @param invokersMap Invoker Map
-     * @return Mapping relation between Invoker and method
+     * @param invokers all invokers
+     * @return sorted and unmodifiable invokers of each method, before routing
      */
-    private Map<String, List<Invoker<T>>> toMethodInvokers(Map<String, Invoker<T>> invokersMap) {
-        Map<String, List<Invoker<T>>> newMethodInvokerMap = new HashMap<String, List<Invoker<T>>>();
+    private Map<String, List<Invoker<T>>> toRawMethodInvokers(Collection<Invoker<T>> invokers) {
+        Map<String, List<Invoker<T>>> newRawMethodInvokerMap = new HashMap<String, List<Invoker<T>>>();
         // According to the methods classification declared by the provider URL, the methods is compatible with the registry to execute the filtered methods
         List<Invoker<T>> invokersList = new ArrayList<Invoker<T>>();
-        if (invokersMap != null && invokersMap.size() > 0) {
-            for (Invoker<T> invoker : invokersMap.values()) {
-                String parameter = invoker.getUrl().getParameter(Constants.METHODS_KEY);
-                if (parameter != null && parameter.length() > 0) {
-                    String[] methods = Constants.COMMA_SPLIT_PATTERN.split(parameter);
-                    if (methods != null && methods.length > 0) {
-                        for (String method : methods) {
-                            if (method != null && method.length() > 0
-                                    && !Constants.ANY_VALUE.equals(method)) {
-                                List<Invoker<T>> methodInvokers = newMethodInvokerMap.get(method);
-                                if (methodInvokers == null) {
-                                    methodInvokers = new ArrayList<Invoker<T>>();
-                                    newMethodInvokerMap.put(method, methodInvokers);
-                                }
-                                methodInvokers.add(invoker);
-                            }
-                        }
+        if (invokers != null) {
+            for (Invoker<T> invoker : invokers) {
+                for (String method : getMethodNames(invoker)) {
+                    if (Constants.ANY_VALUE.equals(method)) {
+                        continue;
+                    }
+                    List<Invoker<T>> methodInvokers = newRawMethodInvokerMap.get(method);
+                    if (methodInvokers == null) {
+                        methodInvokers = new ArrayList<Invoker<T>>();
+                        newRawMethodInvokerMap.put(method, methodInvokers);
                     }
+                    methodInvokers.add(invoker);
                 }
                 invokersList.add(invoker);
             }
         }
-        List<Invoker<T>> newInvokersList = route(invokersList, null);
-        newMethodInvokerMap.put(Constants.ANY_VALUE, newInvokersList);
+        newRawMethodInvokerMap.put(Constants.ANY_VALUE, invokersList);
+        // sort and unmodifiable
+        for (Map.Entry<String, List<Invoker<T>>> entry : newRawMethodInvokerMap.entrySet()) {
+            Collections.sort(entry.getValue(), InvokerComparator.getComparator());
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return newRawMethodInvokerMap;
+    }
+
+    /**
+     * The methods declared by the provider URL of the invoker, always including {@link Constants#ANY_VALUE}.
+     */
+    private Set<String> getMethodNames(Invoker<T> invoker) {
+        Set<String> methodNames = new HashSet<String>();
+        methodNames.add(Constants.ANY_VALUE);
+        String parameter = invoker.getUrl().getParameter(Constants.METHODS_KEY);
+        if (parameter != null && parameter.length() > 0) {
+            String[] methods = Constants.COMMA_SPLIT_PATTERN.split(parameter);
+            for (String method : methods) {
+                if (method != null && method.length() > 0) {
+                    methodNames.add(method);
+                }
+            }
+        }
+        return methodNames;
+    }
+
+    /**
+     * Transform the invokers of each method into the routed mapping relationship with a method
+     *
+     * @param rawMethodInvokerMap    invokers of each method before routing
+     * @param oldMethodInvokerMap    the current mapping, null means all methods are routed again
+     * @param changedMethods         the methods whose invokers changed, null means all methods are routed again
+     * @return Mapping relation between Invoker and method
+     */
+    private Map<String, List<Invoker<T>>> toMethodInvokers(Map<String, List<Invoker<T>>> rawMethodInvokerMap,
+                                                           Map<String, List<Invoker<T>>> oldMethodInvokerMap,
+                                                           Set<String> changedMethods) {
+        boolean incremental = oldMethodInvokerMap != null && changedMethods != null;
+        Map<String, List<Invoker<T>>> newMethodInvokerMap = incremental
+                ? new HashMap<String, List<Invoker<T>>>(oldMethodInvokerMap) : new HashMap<String, List<Invoker<T>>>();
+        if (incremental) {
+            for (String method : changedMethods) {
+                newMethodInvokerMap.remove(method);
+            }
+        }
+        for (Map.Entry<String, List<Invoker<T>>> entry : rawMethodInvokerMap.entrySet()) {
+            if (!incremental || changedMethods.contains(entry.getKey())) {
+                newMethodInvokerMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        boolean anyChanged = !incremental || changedMethods.contains(Constants.ANY_VALUE);
+        List<Invoker<T>> newInvokersList;
+        if (anyChanged) {
+            newInvokersList = sortedRoute(rawMethodInvokerMap.get(Constants.ANY_VALUE), null);
+            newMethodInvokerMap.put(Constants.ANY_VALUE, newInvokersList);
+        } else {
+            newInvokersList = oldMethodInvokerMap.get(Constants.ANY_VALUE);
+        }
         if (serviceMethods != null && serviceMethods.length > 0) {
             for (String method : serviceMethods) {
-                List<Invoker<T>> methodInvokers = newMethodInvokerMap.get(method);
-                if (methodInvokers == null || methodInvokers.isEmpty()) {
-                    methodInvokers = newInvokersList;
+                List<Invoker<T>> methodInvokers = rawMethodInvokerMap.get(method);
+                boolean useAny = methodInvokers == null || methodInvokers.isEmpty();
+                if (!incremental || changedMethods.contains(method) || (useAny && anyChanged)) {
+                    newMethodInvokerMap.put(method, sortedRoute(useAny ? newInvokersList : methodInvokers, method));
                 }
-                newMethodInvokerMap.put(method, route(methodInvokers, method));
             }
         }
-        // sort and unmodifiable
-        for (String method : new HashSet<String>(newMethodInvokerMap.keySet())) {
-            List<Invoker<T>> methodInvokers = newMethodInvokerMap.get(method);
-            Collections.sort(methodInvokers, InvokerComparator.getComparator());
-            newMethodInvokerMap.put(method, Collections.unmodifiableList(methodInvokers));
+        return Collections.unmodifiableMap(newMethodInvokerMap);
+    }
+
+    /**
+     * Without routers on refresh, the routed invokers of a method are its sorted invokers: the changed lists are
+     * taken from the raw mapping and the other lists are kept.
+     *
+     * @param rawMethodInvokerMap invokers of each method before routing
+     * @param oldMethodInvokerMap the current mapping
+     * @param changedMethods      the methods whose invokers changed
+     * @return Mapping relation between Invoker and method
+     */
+    private Map<String, List<Invoker<T>>> toUnroutedMethodInvokers(Map<String, List<Invoker<T>>> rawMethodInvokerMap,
+                                                                   Map<String, List<Invoker<T>>> oldMethodInvokerMap,
+                                                                   Set<String> changedMethods) {
+        Map<String, List<Invoker<T>>> newMethodInvokerMap = new HashMap<String, List<Invoker<T>>>(oldMethodInvokerMap);
+        List<Invoker<T>> anyInvokers = rawMethodInvokerMap.get(Constants.ANY_VALUE);
+        Set<String> methods = serviceMethods == null ? Collections.<String>emptySet() : new HashSet<String>(Arrays.asList(serviceMethods));
+        for (String method : changedMethods) {
+            List<Invoker<T>> methodInvokers = rawMethodInvokerMap.get(method);
+            if (methodInvokers != null) {
+                newMethodInvokerMap.put(method, methodInvokers);
+            } else if (methods.contains(method)) {
+                newMethodInvokerMap.put(method, anyInvokers);
+            } else {
+                newMethodInvokerMap.remove(method);
+            }
+        }
+        if (changedMethods.contains(Constants.ANY_VALUE)) {
+            // the service methods no provider declares use all the invokers
+            for (String method : methods) {
+                if (!rawMethodInvokerMap.containsKey(method)) {
+                    newMethodInvokerMap.put(method, anyInvokers);
+                }
+            }
         }
         return Collections.unmodifiableMap(newMethodInvokerMap);
     }
 
+    private List<Invoker<T>> sortedRoute(List<Invoker<T>> invokers, String method) {
+        List<Invoker<T>> invokersCopy = invokers == null ? new ArrayList<Invoker<T>>() : new ArrayList<Invoker<T>>(invokers);
+        List<Invoker<T>> routedInvokers = route(invokersCopy, method);
+        if (routedInvokers != invokersCopy) {
+            routedInvokers = new ArrayList<Invoker<T>>(routedInvokers);
+        }
+        Collections.sort(routedInvokers, InvokerComparator.getComparator());
+        return Collections.unmodifiableList(routedInvokers);
+    }
+
     /**
      * Close all invokers
      */
@@ -512,6 +798,7 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
         Map<String, Invoker<T>> localUrlInvokerMap = this.urlInvokerMap; // local reference
         if (localUrlInvokerMap != null) {
             for (Invoker<T> invoker : new ArrayList<Invoker<T>>(localUrlInvokerMap.values())) {
+                OutlierStats.removeStats(invoker.getUrl());
                 try {
                     invoker.destroy();
                 } catch (Throwable t) {
@@ -521,6 +808,8 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
             localUrlInvokerMap.clear();
         }
         methodInvokerMap = null;
+        rawMethodInvokerMap = null;
+        cachedInvokerKeys = null;
     }
 
     /**
@@ -554,20 +843,26 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
                 if (url != null) {
                     Invoker<T> invoker = oldUrlInvokerMap.remove(url);
                     if (invoker != null) {
-                        try {
-                            invoker.destroy();
-                            if (logger.isDebugEnabled()) {
-                                logger.debug("destroy invoker[" + invoker.getUrl() + "] success. ");
-                            }
-                        } catch (Exception e) {
-                            logger.warn("destroy invoker[" + invoker.getUrl() + "] faild. " + e.getMessage(), e);
-                        }
+                        destroyInvoker(invoker);
                     }
                 }
             }
         }
     }
 
+    private void destroyInvoker(Invoker<T> invoker) {
+        // a provider coming back on the same address starts healthy
+        OutlierStats.removeStats(invoker.getUrl());
+        try {
+            invoker.destroy();
+            if (logger.isDebugEnabled()) {
+                logger.debug("destroy invoker[" + invoker.getUrl() + "] success. ");
+            }
+        } catch (Exception e) {
+            logger.warn("destroy invoker[" + invoker.getUrl() + "] faild. " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public List<Invoker<T>> doList(Invocation invocation) {
         if (forbidden) {
@@ -18,6 +18,7 @@ package org.apache.dubbo.registry.support;
 
 import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.io.UnsafeByteArrayInputStream;
 import org.apache.dubbo.common.logger.Logger;
 import org.apache.dubbo.common.logger.LoggerFactory;
 import org.apache.dubbo.common.utils.ConcurrentHashSet;
@@ -28,13 +29,15 @@ import org.apache.dubbo.registry.NotifyListener;
 import org.apache.dubbo.registry.Registry;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -44,8 +47,10 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -63,10 +68,22 @@ public abstract class AbstractRegistry implements Registry {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
     // Local disk cache, where the special key value.registies records the list of registry centers, and the others are the list of notified service providers
     private final Properties properties = new Properties();
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
     // File cache timing writing
-    private final ExecutorService registryCacheExecutor = Executors.newFixedThreadPool(1, new NamedThreadFactory("DubboSaveRegistryCache", true));
+    private final ScheduledExecutorService registryCacheExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("DubboSaveRegistryCache", true));
     // Is it synchronized to save the file
     private final boolean syncSaveFile;
+    // Minimum interval between two asynchronous saves, the changes in between are written together
+    private final long saveInterval;
+    // Whether an asynchronous save is scheduled and not started yet
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private volatile long lastSaved;
+    // Whether the changed entries are appended to the file instead of rewriting it
+    private final boolean appendFile;
+    // The keys changed since the last save, when appending
+    private final Set<String> changedKeys = new ConcurrentHashSet<String>();
+    // The length of the file when it was last rewritten or loaded
+    private long snapshotLength;
     private final AtomicLong lastCacheChanged = new AtomicLong();
     private final Set<URL> registered = new ConcurrentHashSet<URL>();
     private final ConcurrentMap<URL, Set<NotifyListener>> subscribed = new ConcurrentHashMap<URL, Set<NotifyListener>>();
@@ -79,6 +96,8 @@ public abstract class AbstractRegistry implements Registry {
         setUrl(url);
         // Start file save timer
         syncSaveFile = url.getParameter(Constants.REGISTRY_FILESAVE_SYNC_KEY, false);
+        saveInterval = url.getParameter(Constants.REGISTRY_FILESAVE_INTERVAL_KEY, 0L);
+        appendFile = url.getParameter(Constants.REGISTRY_FILESAVE_APPEND_KEY, false);
         String filename = url.getParameter(Constants.FILE_KEY, System.getProperty("user.home") + "/.dubbo/dubbo-registry-" + url.getParameter(Constants.APPLICATION_KEY) + "-" + url.getAddress() + ".cache");
         File file = null;
         if (ConfigUtils.isNotEmpty(filename)) {
@@ -139,13 +158,20 @@ public abstract class AbstractRegistry implements Registry {
         return lastCacheChanged;
     }
 
-    public void doSaveProperties(long version) {
+    public synchronized void doSaveProperties(long version) {
         if (version < lastCacheChanged.get()) {
             return;
         }
         if (file == null) {
             return;
         }
+        Set<String> keys = new HashSet<String>();
+        if (appendFile) {
+            for (String key : changedKeys) {
+                changedKeys.remove(key);
+                keys.add(key);
+            }
+        }
         // Save
         try {
             File lockfile = new File(file.getAbsolutePath() + ".lock");
@@ -162,14 +188,10 @@ public abstract class AbstractRegistry implements Registry {
                     }
                     // Save
                     try {
-                        if (!file.exists()) {
-                            file.createNewFile();
-                        }
-                        FileOutputStream outputFile = new FileOutputStream(file);
-                        try {
-                            properties.store(outputFile, "Dubbo Registry Cache");
-                        } finally {
-                            outputFile.close();
+                        if (appendFile && snapshotLength > 0 && file.length() < 2 * snapshotLength) {
+                            appendProperties(keys);
+                        } else {
+                            storeProperties();
                         }
                     } finally {
                         lock.release();
@@ -180,53 +202,147 @@ public abstract class AbstractRegistry implements Registry {
             } finally {
                 raf.close();
             }
+            lastSaved = System.currentTimeMillis();
         } catch (Throwable e) {
+            changedKeys.addAll(keys);
             if (version < lastCacheChanged.get()) {
                 return;
             } else {
-                registryCacheExecutor.execute(new SaveProperties(lastCacheChanged.incrementAndGet()));
+                lastCacheChanged.incrementAndGet();
+                scheduleSave(saveInterval);
             }
             logger.warn("Failed to save registry store file, cause: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Rewrite the whole file through a temporary file, so that it is never seen half written
+     */
+    private void storeProperties() throws IOException {
+        File tmp = new File(file.getAbsolutePath() + ".tmp");
+        FileOutputStream outputFile = new FileOutputStream(tmp);
+        try {
+            properties.store(outputFile, "Dubbo Registry Cache");
+        } finally {
+            outputFile.close();
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        snapshotLength = file.length();
+    }
+
+    /**
+     * Append the entries of the keys in the properties format, the last entry of a key wins when it is loaded
+     */
+    private void appendProperties(Set<String> keys) throws IOException {
+        StringBuilder buf = new StringBuilder();
+        for (String key : keys) {
+            String value = properties.getProperty(key);
+            if (value != null) {
+                escape(buf, key, true);
+                buf.append('=');
+                escape(buf, value, false);
+                buf.append('\n');
+            }
+        }
+        if (buf.length() == 0) {
+            return;
+        }
+        FileOutputStream outputFile = new FileOutputStream(file, true);
+        try {
+            outputFile.write(buf.toString().getBytes("ISO-8859-1"));
+        } finally {
+            outputFile.close();
+        }
+    }
+
+    // Escape like Properties.store does
+    private static void escape(StringBuilder buf, String s, boolean key) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case ' ':
+                    if (key || i == 0) {
+                        buf.append('\\');
+                    }
+                    buf.append(' ');
+                    break;
+                case '\t':
+                    buf.append("\\t");
+                    break;
+                case '\n':
+                    buf.append("\\n");
+                    break;
+                case '\r':
+                    buf.append("\\r");
+                    break;
+                case '\f':
+                    buf.append("\\f");
+                    break;
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                case '\\':
+                    buf.append('\\').append(c);
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        buf.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        buf.append(c);
+                    }
+            }
+        }
+    }
+
     private void loadProperties() {
         if (file != null && file.exists()) {
-            InputStream in = null;
             try {
-                in = new FileInputStream(file);
-                properties.load(in);
+                // read in a single pass, the file is not mapped as it could not be replaced while mapped on windows
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+                try {
+                    FileChannel channel = raf.getChannel();
+                    ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    }
+                    int length = buffer.position();
+                    if (appendFile) {
+                        // drop the last entry if its append was interrupted
+                        while (length > 0 && buffer.get(length - 1) != '\n') {
+                            length--;
+                        }
+                    }
+                    properties.load(new UnsafeByteArrayInputStream(buffer.array(), 0, length));
+                    snapshotLength = length;
+                } finally {
+                    raf.close();
+                }
                 if (logger.isInfoEnabled()) {
                     logger.info("Load registry store file " + file + ", data: " + properties);
                 }
             } catch (Throwable e) {
                 logger.warn("Failed to load registry store file " + file, e);
-            } finally {
-                if (in != null) {
-                    try {
-                        in.close();
-                    } catch (IOException e) {
-                        logger.warn(e.getMessage(), e);
-                    }
-                }
             }
         }
     }
 
     public List<URL> getCacheUrls(URL url) {
-        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
-            String key = (String) entry.getKey();
-            String value = (String) entry.getValue();
-            if (key != null && key.length() > 0 && key.equals(url.getServiceKey())
-                    && (Character.isLetter(key.charAt(0)) || key.charAt(0) == '_')
-                    && value != null && value.length() > 0) {
-                String[] arr = value.trim().split(URL_SPLIT);
-                List<URL> urls = new ArrayList<URL>();
-                for (String u : arr) {
-                    urls.add(URL.valueOf(u));
-                }
-                return urls;
+        String key = url.getServiceKey();
+        String value = key == null ? null : properties.getProperty(key);
+        if (key != null && key.length() > 0
+                && (Character.isLetter(key.charAt(0)) || key.charAt(0) == '_')
+                && value != null && value.length() > 0) {
+            String[] arr = value.trim().split(URL_SPLIT);
+            List<URL> urls = new ArrayList<URL>();
+            for (String u : arr) {
+                urls.add(URL.valueOf(u));
             }
+            return urls;
         }
         return null;
     }
@@ -434,17 +550,26 @@ public abstract class AbstractRegistry implements Registry {
                 }
             }
             properties.setProperty(url.getServiceKey(), buf.toString());
+            if (appendFile) {
+                changedKeys.add(url.getServiceKey());
+            }
             long version = lastCacheChanged.incrementAndGet();
             if (syncSaveFile) {
                 doSaveProperties(version);
             } else {
-                registryCacheExecutor.execute(new SaveProperties(version));
+                scheduleSave(lastSaved + saveInterval - System.currentTimeMillis());
             }
         } catch (Throwable t) {
             logger.warn(t.getMessage(), t);
         }
     }
 
+    private void scheduleSave(long delay) {
+        if (saveScheduled.compareAndSet(false, true)) {
+            registryCacheExecutor.schedule(new SaveProperties(), Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+    }
+
     @Override
     public void destroy() {
         if (logger.isInfoEnabled()) {
@@ -489,15 +614,11 @@ public abstract class AbstractRegistry implements Registry {
     }
 
     private class SaveProperties implements Runnable {
-        private long version;
-
-        private SaveProperties(long version) {
-            this.version = version;
-        }
-
         @Override
         public void run() {
-            doSaveProperties(version);
+            // the changes made from now on schedule another save
+            saveScheduled.set(false);
+            doSaveProperties(lastCacheChanged.get());
         }
     }
 
@@ -18,11 +18,18 @@ package org.apache.dubbo.registry.support;
 
 import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
-import org.apache.dubbo.common.utils.ConcurrentHashSet;
+import org.apache.dubbo.common.timer.HashedWheelTimer;
+import org.apache.dubbo.common.timer.Timeout;
+import org.apache.dubbo.common.timer.Timer;
+import org.apache.dubbo.common.timer.TimerTask;
 import org.apache.dubbo.common.utils.ExecutorUtil;
 import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.apache.dubbo.metrics.Counter;
+import org.apache.dubbo.metrics.MetricManager;
+import org.apache.dubbo.metrics.MetricName;
 import org.apache.dubbo.registry.NotifyListener;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -30,108 +37,228 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
  * FailbackRegistry. (SPI, Prototype, ThreadSafe)
+ * <p>
+ * Every failed action is retried on its own, with an exponential backoff and jitter starting from
+ * <code>retry.period</code>, until it succeeds or is superseded. The retries are timed on a wheel shared by all the
+ * registries and run on at most <code>retry.threads</code> threads of each registry.
  *
  */
 public abstract class FailbackRegistry extends AbstractRegistry {
 
-    // Scheduled executor service
-    private final ScheduledExecutorService retryExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("DubboRegistryFailedRetryTimer", true));
+    private static final long MAX_RETRY_PERIOD = 60 * 1000;
 
-    // Timer for failure retry, regular check if there is a request for failure, and if there is, an unlimited retry
-    private final ScheduledFuture<?> retryFuture;
+    private static final Timer retryTimer = new HashedWheelTimer(
+            new NamedThreadFactory("DubboRegistryFailedRetryTimer", true), 100, TimeUnit.MILLISECONDS, 128);
 
-    private final Set<URL> failedRegistered = new ConcurrentHashSet<URL>();
+    // Runs the retries which are due, the timer thread only hands them over
+    private final ExecutorService retryExecutor;
 
-    private final Set<URL> failedUnregistered = new ConcurrentHashSet<URL>();
+    private final ConcurrentMap<URL, RetryTask<URL>> failedRegistered = new ConcurrentHashMap<URL, RetryTask<URL>>();
 
-    private final ConcurrentMap<URL, Set<NotifyListener>> failedSubscribed = new ConcurrentHashMap<URL, Set<NotifyListener>>();
+    private final ConcurrentMap<URL, RetryTask<URL>> failedUnregistered = new ConcurrentHashMap<URL, RetryTask<URL>>();
 
-    private final ConcurrentMap<URL, Set<NotifyListener>> failedUnsubscribed = new ConcurrentHashMap<URL, Set<NotifyListener>>();
+    private final ConcurrentMap<Holder, RetryTask<Holder>> failedSubscribed = new ConcurrentHashMap<Holder, RetryTask<Holder>>();
 
-    private final ConcurrentMap<URL, Map<NotifyListener, List<URL>>> failedNotified = new ConcurrentHashMap<URL, Map<NotifyListener, List<URL>>>();
+    private final ConcurrentMap<Holder, RetryTask<Holder>> failedUnsubscribed = new ConcurrentHashMap<Holder, RetryTask<Holder>>();
+
+    private final ConcurrentMap<Holder, NotifyRetryTask> failedNotified = new ConcurrentHashMap<Holder, NotifyRetryTask>();
 
     /**
-     * The time in milliseconds the retryExecutor will wait
+     * The time in milliseconds before the first retry of a failed action
      */
     private final int retryPeriod;
 
+    private final Counter registeredCounter;
+
+    private final Counter unregisteredCounter;
+
+    private final Counter subscribedCounter;
+
+    private final Counter unsubscribedCounter;
+
+    private final Counter notifiedCounter;
+
+    private final Counter retryCounter;
+
+    /**
+     * Batches the notifications of each subscription, null if notifications are delivered right away
+     */
+    private final NotifyCoalescer notifyCoalescer;
+
+    /**
+     * Subscribes in the background the subscriptions notified from the cache file, null if not starting fast
+     */
+    private final ExecutorService reconcileExecutor;
+
     public FailbackRegistry(URL url) {
         super(url);
-        this.retryPeriod = url.getParameter(Constants.REGISTRY_RETRY_PERIOD_KEY, Constants.DEFAULT_REGISTRY_RETRY_PERIOD);
-        this.retryFuture = retryExecutor.scheduleWithFixedDelay(new Runnable() {
-            @Override
-            public void run() {
-                // Check and connect to the registry
-                try {
-                    retry();
-                } catch (Throwable t) { // Defensive fault tolerance
-                    logger.error("Unexpected error occur at failed retry, cause: " + t.getMessage(), t);
-                }
-            }
-        }, retryPeriod, retryPeriod, TimeUnit.MILLISECONDS);
-    }
-
-    public Future<?> getRetryFuture() {
-        return retryFuture;
+        this.retryPeriod = Math.max(1, url.getParameter(Constants.REGISTRY_RETRY_PERIOD_KEY, Constants.DEFAULT_REGISTRY_RETRY_PERIOD));
+        int retryThreads = Math.max(1, url.getParameter(Constants.REGISTRY_RETRY_THREADS_KEY, Constants.DEFAULT_REGISTRY_RETRY_THREADS));
+        this.retryExecutor = Executors.newFixedThreadPool(retryThreads, new NamedThreadFactory("DubboRegistryFailedRetry", true));
+        MetricName name = new MetricName("dubbo.registry.failback").tag(Constants.REGISTRY_KEY, url.getAddress());
+        this.registeredCounter = MetricManager.getCounter(Constants.REGISTRY_KEY, name.resolve("registered"));
+        this.unregisteredCounter = MetricManager.getCounter(Constants.REGISTRY_KEY, name.resolve("unregistered"));
+        this.subscribedCounter = MetricManager.getCounter(Constants.REGISTRY_KEY, name.resolve("subscribed"));
+        this.unsubscribedCounter = MetricManager.getCounter(Constants.REGISTRY_KEY, name.resolve("unsubscribed"));
+        this.notifiedCounter = MetricManager.getCounter(Constants.REGISTRY_KEY, name.resolve("notified"));
+        this.retryCounter = MetricManager.getCounter(Constants.REGISTRY_KEY, name.resolve("retries"));
+        long notifyDelay = url.getParameter(Constants.REGISTRY_NOTIFY_DELAY_KEY, 0L);
+        if (notifyDelay > 0) {
+            long notifyInterval = url.getParameter(Constants.REGISTRY_NOTIFY_INTERVAL_KEY, 0L);
+            this.notifyCoalescer = new NotifyCoalescer(this, notifyDelay, notifyInterval);
+        } else {
+            this.notifyCoalescer = null;
+        }
+        if (url.getParameter(Constants.REGISTRY_FAST_START_KEY, false)) {
+            int threads = url.getParameter(Constants.REGISTRY_FAST_START_THREADS_KEY, Constants.DEFAULT_REGISTRY_FAST_START_THREADS);
+            this.reconcileExecutor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("DubboRegistryReconcile", true));
+        } else {
+            this.reconcileExecutor = null;
+        }
     }
 
     public Set<URL> getFailedRegistered() {
-        return failedRegistered;
+        return Collections.unmodifiableSet(failedRegistered.keySet());
     }
 
     public Set<URL> getFailedUnregistered() {
-        return failedUnregistered;
+        return Collections.unmodifiableSet(failedUnregistered.keySet());
     }
 
+    /**
+     * @return a snapshot of the failed subscriptions
+     */
     public Map<URL, Set<NotifyListener>> getFailedSubscribed() {
-        return failedSubscribed;
+        return toListeners(failedSubscribed.keySet());
     }
 
+    /**
+     * @return a snapshot of the failed unsubscriptions
+     */
     public Map<URL, Set<NotifyListener>> getFailedUnsubscribed() {
-        return failedUnsubscribed;
+        return toListeners(failedUnsubscribed.keySet());
     }
 
+    /**
+     * @return a snapshot of the failed notifications
+     */
     public Map<URL, Map<NotifyListener, List<URL>>> getFailedNotified() {
-        return failedNotified;
+        Map<URL, Map<NotifyListener, List<URL>>> failed = new HashMap<URL, Map<NotifyListener, List<URL>>>();
+        for (NotifyRetryTask task : failedNotified.values()) {
+            Map<NotifyListener, List<URL>> listeners = failed.get(task.key.url);
+            if (listeners == null) {
+                listeners = new HashMap<NotifyListener, List<URL>>();
+                failed.put(task.key.url, listeners);
+            }
+            listeners.put(task.key.listener, task.urls);
+        }
+        return failed;
     }
 
-    private void addFailedSubscribed(URL url, NotifyListener listener) {
-        Set<NotifyListener> listeners = failedSubscribed.get(url);
-        if (listeners == null) {
-            failedSubscribed.putIfAbsent(url, new ConcurrentHashSet<NotifyListener>());
-            listeners = failedSubscribed.get(url);
+    private static Map<URL, Set<NotifyListener>> toListeners(Set<Holder> holders) {
+        Map<URL, Set<NotifyListener>> failed = new HashMap<URL, Set<NotifyListener>>();
+        for (Holder holder : holders) {
+            Set<NotifyListener> listeners = failed.get(holder.url);
+            if (listeners == null) {
+                listeners = new HashSet<NotifyListener>();
+                failed.put(holder.url, listeners);
+            }
+            listeners.add(holder.listener);
         }
-        listeners.add(listener);
+        return failed;
     }
 
-    private void removeFailedSubscribed(URL url, NotifyListener listener) {
-        Set<NotifyListener> listeners = failedSubscribed.get(url);
-        if (listeners != null) {
-            listeners.remove(listener);
+    protected void addFailedRegistered(URL url) {
+        addFailed(new RetryTask<URL>("register", url, failedRegistered, registeredCounter) {
+            @Override
+            protected void doRetry() {
+                doRegister(key);
+            }
+        });
+    }
+
+    private void addFailedUnregistered(URL url) {
+        addFailed(new RetryTask<URL>("unregister", url, failedUnregistered, unregisteredCounter) {
+            @Override
+            protected void doRetry() {
+                doUnregister(key);
+            }
+        });
+    }
+
+    protected void addFailedSubscribed(URL url, NotifyListener listener) {
+        addFailed(new RetryTask<Holder>("subscribe", new Holder(url, listener), failedSubscribed, subscribedCounter) {
+            @Override
+            protected void doRetry() {
+                doSubscribe(key.url, key.listener);
+            }
+        });
+    }
+
+    private void addFailedUnsubscribed(URL url, NotifyListener listener) {
+        addFailed(new RetryTask<Holder>("unsubscribe", new Holder(url, listener), failedUnsubscribed, unsubscribedCounter) {
+            @Override
+            protected void doRetry() {
+                doUnsubscribe(key.url, key.listener);
+            }
+        });
+    }
+
+    private void addFailedNotified(URL url, NotifyListener listener, List<URL> urls) {
+        NotifyRetryTask task = new NotifyRetryTask(new Holder(url, listener), urls);
+        // only the latest urls are worth notifying
+        NotifyRetryTask previous = failedNotified.put(task.key, task);
+        if (previous != null) {
+            previous.cancel();
+        } else {
+            notifiedCounter.inc();
         }
-        listeners = failedUnsubscribed.get(url);
-        if (listeners != null) {
-            listeners.remove(listener);
+        task.schedule();
+    }
+
+    /**
+     * Keep the task of an action which already failed, but start its backoff over: the action is needed again,
+     * e.g. recovering after a reconnect, and must not wait for the backoff of the outage.
+     */
+    private <K> void addFailed(RetryTask<K> task) {
+        @SuppressWarnings("unchecked")
+        ConcurrentMap<K, RetryTask<K>> failed = (ConcurrentMap<K, RetryTask<K>>) task.failed;
+        RetryTask<K> existing = failed.putIfAbsent(task.key, task);
+        if (existing == null) {
+            task.counter.inc();
+            task.schedule();
+        } else {
+            existing.restart();
         }
-        Map<NotifyListener, List<URL>> notified = failedNotified.get(url);
-        if (notified != null) {
-            notified.remove(listener);
+    }
+
+    private <K> void removeFailed(ConcurrentMap<K, ? extends RetryTask<K>> failed, K key) {
+        RetryTask<K> task = failed.get(key);
+        if (task != null) {
+            task.remove();
         }
     }
 
+    private void removeFailedSubscribed(URL url, NotifyListener listener) {
+        Holder holder = new Holder(url, listener);
+        removeFailed(failedSubscribed, holder);
+        removeFailed(failedUnsubscribed, holder);
+        removeFailed(failedNotified, holder);
+    }
+
     @Override
     public void register(URL url) {
         super.register(url);
-        failedRegistered.remove(url);
-        failedUnregistered.remove(url);
+        removeFailed(failedRegistered, url);
+        removeFailed(failedUnregistered, url);
         try {
             // Sending a registration request to the server side
             doRegister(url);
@@ -153,15 +280,15 @@ public abstract class FailbackRegistry extends AbstractRegistry {
             }
 
             // Record a failed registration request to a failed list, retry regularly
-            failedRegistered.add(url);
+            addFailedRegistered(url);
         }
     }
 
     @Override
     public void unregister(URL url) {
         super.unregister(url);
-        failedRegistered.remove(url);
-        failedUnregistered.remove(url);
+        removeFailed(failedRegistered, url);
+        removeFailed(failedUnregistered, url);
         try {
             // Sending a cancellation request to the server side
             doUnregister(url);
@@ -183,7 +310,7 @@ public abstract class FailbackRegistry extends AbstractRegistry {
             }
 
             // Record a failed registration request to a failed list, retry regularly
-            failedUnregistered.add(url);
+            addFailedUnregistered(url);
         }
     }
 
@@ -191,6 +318,9 @@ public abstract class FailbackRegistry extends AbstractRegistry {
     public void subscribe(URL url, NotifyListener listener) {
         super.subscribe(url, listener);
         removeFailedSubscribed(url, listener);
+        if (reconcileExecutor != null && subscribeFromCache(url, listener)) {
+            return;
+        }
         try {
             // Sending a subscription request to the server side
             doSubscribe(url, listener);
@@ -221,10 +351,46 @@ public abstract class FailbackRegistry extends AbstractRegistry {
         }
     }
 
+    /**
+     * Notify the cached urls of the subscription and subscribe to the registry in the background
+     *
+     * @return false if nothing is cached
+     */
+    private boolean subscribeFromCache(final URL url, final NotifyListener listener) {
+        List<URL> urls = getCacheUrls(url);
+        if (urls == null || urls.isEmpty()) {
+            return false;
+        }
+        notify(url, listener, urls);
+        try {
+            reconcileExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Set<NotifyListener> listeners = getSubscribed().get(url);
+                    if (listeners == null || !listeners.contains(listener)) {
+                        return; // unsubscribed meanwhile
+                    }
+                    try {
+                        doSubscribe(url, listener);
+                    } catch (Throwable t) {
+                        logger.error("Failed to subscribe " + url + ", using cached list, waiting for retry, cause: " + t.getMessage(), t);
+                        addFailedSubscribed(url, listener);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            addFailedSubscribed(url, listener);
+        }
+        return true;
+    }
+
     @Override
     public void unsubscribe(URL url, NotifyListener listener) {
         super.unsubscribe(url, listener);
         removeFailedSubscribed(url, listener);
+        if (notifyCoalescer != null) {
+            notifyCoalescer.remove(url, listener);
+        }
         try {
             // Sending a canceling subscription request to the server side
             doUnsubscribe(url, listener);
@@ -245,12 +411,7 @@ public abstract class FailbackRegistry extends AbstractRegistry {
             }
 
             // Record a failed registration request to a failed list, retry regularly
-            Set<NotifyListener> listeners = failedUnsubscribed.get(url);
-            if (listeners == null) {
-                failedUnsubscribed.putIfAbsent(url, new ConcurrentHashSet<NotifyListener>());
-                listeners = failedUnsubscribed.get(url);
-            }
-            listeners.add(listener);
+            addFailedUnsubscribed(url, listener);
         }
     }
 
@@ -262,16 +423,18 @@ public abstract class FailbackRegistry extends AbstractRegistry {
         if (listener == null) {
             throw new IllegalArgumentException("notify listener == null");
         }
+        if (notifyCoalescer != null && notifyCoalescer.offer(url, listener, urls)) {
+            return;
+        }
+        notifyWithFailback(url, listener, urls);
+    }
+
+    void notifyWithFailback(URL url, NotifyListener listener, List<URL> urls) {
         try {
             doNotify(url, listener, urls);
         } catch (Exception t) {
             // Record a failed registration request to a failed list, retry regularly
-            Map<NotifyListener, List<URL>> listeners = failedNotified.get(url);
-            if (listeners == null) {
-                failedNotified.putIfAbsent(url, new ConcurrentHashMap<NotifyListener, List<URL>>());
-                listeners = failedNotified.get(url);
-            }
-            listeners.put(listener, urls);
+            addFailedNotified(url, listener, urls);
             logger.error("Failed to notify for subscribe " + url + ", waiting for retry, cause: " + t.getMessage(), t);
         }
     }
@@ -289,7 +452,7 @@ public abstract class FailbackRegistry extends AbstractRegistry {
                 logger.info("Recover register url " + recoverRegistered);
             }
             for (URL url : recoverRegistered) {
-                failedRegistered.add(url);
+                addFailedRegistered(url);
             }
         }
         // subscribe
@@ -307,146 +470,52 @@ public abstract class FailbackRegistry extends AbstractRegistry {
         }
     }
 
-    // Retry the failed actions
+    /**
+     * Retry all the failed actions now, instead of waiting for their backoff
+     */
     protected void retry() {
-        if (!failedRegistered.isEmpty()) {
-            Set<URL> failed = new HashSet<URL>(failedRegistered);
-            if (failed.size() > 0) {
-                if (logger.isInfoEnabled()) {
-                    logger.info("Retry register " + failed);
-                }
-                try {
-                    for (URL url : failed) {
-                        try {
-                            doRegister(url);
-                            failedRegistered.remove(url);
-                        } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                            logger.warn("Failed to retry register " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                        }
-                    }
-                } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                    logger.warn("Failed to retry register " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                }
-            }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedRegistered.values())) {
+            task.retry();
         }
-        if (!failedUnregistered.isEmpty()) {
-            Set<URL> failed = new HashSet<URL>(failedUnregistered);
-            if (!failed.isEmpty()) {
-                if (logger.isInfoEnabled()) {
-                    logger.info("Retry unregister " + failed);
-                }
-                try {
-                    for (URL url : failed) {
-                        try {
-                            doUnregister(url);
-                            failedUnregistered.remove(url);
-                        } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                            logger.warn("Failed to retry unregister  " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                        }
-                    }
-                } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                    logger.warn("Failed to retry unregister  " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                }
-            }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedUnregistered.values())) {
+            task.retry();
         }
-        if (!failedSubscribed.isEmpty()) {
-            Map<URL, Set<NotifyListener>> failed = new HashMap<URL, Set<NotifyListener>>(failedSubscribed);
-            for (Map.Entry<URL, Set<NotifyListener>> entry : new HashMap<URL, Set<NotifyListener>>(failed).entrySet()) {
-                if (entry.getValue() == null || entry.getValue().size() == 0) {
-                    failed.remove(entry.getKey());
-                }
-            }
-            if (failed.size() > 0) {
-                if (logger.isInfoEnabled()) {
-                    logger.info("Retry subscribe " + failed);
-                }
-                try {
-                    for (Map.Entry<URL, Set<NotifyListener>> entry : failed.entrySet()) {
-                        URL url = entry.getKey();
-                        Set<NotifyListener> listeners = entry.getValue();
-                        for (NotifyListener listener : listeners) {
-                            try {
-                                doSubscribe(url, listener);
-                                listeners.remove(listener);
-                            } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                                logger.warn("Failed to retry subscribe " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                            }
-                        }
-                    }
-                } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                    logger.warn("Failed to retry subscribe " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                }
-            }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedSubscribed.values())) {
+            task.retry();
         }
-        if (!failedUnsubscribed.isEmpty()) {
-            Map<URL, Set<NotifyListener>> failed = new HashMap<URL, Set<NotifyListener>>(failedUnsubscribed);
-            for (Map.Entry<URL, Set<NotifyListener>> entry : new HashMap<URL, Set<NotifyListener>>(failed).entrySet()) {
-                if (entry.getValue() == null || entry.getValue().isEmpty()) {
-                    failed.remove(entry.getKey());
-                }
-            }
-            if (failed.size() > 0) {
-                if (logger.isInfoEnabled()) {
-                    logger.info("Retry unsubscribe " + failed);
-                }
-                try {
-                    for (Map.Entry<URL, Set<NotifyListener>> entry : failed.entrySet()) {
-                        URL url = entry.getKey();
-                        Set<NotifyListener> listeners = entry.getValue();
-                        for (NotifyListener listener : listeners) {
-                            try {
-                                doUnsubscribe(url, listener);
-                                listeners.remove(listener);
-                            } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                                logger.warn("Failed to retry unsubscribe " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                            }
-                        }
-                    }
-                } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                    logger.warn("Failed to retry unsubscribe " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                }
-            }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedUnsubscribed.values())) {
+            task.retry();
         }
-        if (!failedNotified.isEmpty()) {
-            Map<URL, Map<NotifyListener, List<URL>>> failed = new HashMap<URL, Map<NotifyListener, List<URL>>>(failedNotified);
-            for (Map.Entry<URL, Map<NotifyListener, List<URL>>> entry : new HashMap<URL, Map<NotifyListener, List<URL>>>(failed).entrySet()) {
-                if (entry.getValue() == null || entry.getValue().size() == 0) {
-                    failed.remove(entry.getKey());
-                }
-            }
-            if (failed.size() > 0) {
-                if (logger.isInfoEnabled()) {
-                    logger.info("Retry notify " + failed);
-                }
-                try {
-                    for (Map<NotifyListener, List<URL>> values : failed.values()) {
-                        for (Map.Entry<NotifyListener, List<URL>> entry : values.entrySet()) {
-                            try {
-                                NotifyListener listener = entry.getKey();
-                                List<URL> urls = entry.getValue();
-                                listener.notify(urls);
-                                values.remove(listener);
-                            } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                                logger.warn("Failed to retry notify " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                            }
-                        }
-                    }
-                } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
-                    logger.warn("Failed to retry notify " + failed + ", waiting for again, cause: " + t.getMessage(), t);
-                }
-            }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedNotified.values())) {
+            task.retry();
         }
     }
 
     @Override
     public void destroy() {
         super.destroy();
-        try {
-            retryFuture.cancel(true);
-        } catch (Throwable t) {
-            logger.warn(t.getMessage(), t);
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedRegistered.values())) {
+            task.remove();
+        }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedUnregistered.values())) {
+            task.remove();
+        }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedSubscribed.values())) {
+            task.remove();
+        }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedUnsubscribed.values())) {
+            task.remove();
+        }
+        for (RetryTask<?> task : new HashSet<RetryTask<?>>(failedNotified.values())) {
+            task.remove();
         }
         ExecutorUtil.gracefulShutdown(retryExecutor, retryPeriod);
+        if (notifyCoalescer != null) {
+            notifyCoalescer.destroy();
+        }
+        if (reconcileExecutor != null) {
+            reconcileExecutor.shutdownNow();
+        }
     }
 
     // ==== Template method ====
@@ -459,4 +528,162 @@ public abstract class FailbackRegistry extends AbstractRegistry {
 
     protected abstract void doUnsubscribe(URL url, NotifyListener listener);
 
+    /**
+     * A subscription, the key of its failed actions
+     */
+    private static class Holder {
+
+        private final URL url;
+
+        private final NotifyListener listener;
+
+        Holder(URL url, NotifyListener listener) {
+            this.url = url;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Holder)) {
+                return false;
+            }
+            Holder holder = (Holder) o;
+            return url.equals(holder.url) && listener.equals(holder.listener);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * url.hashCode() + listener.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return url.toString();
+        }
+    }
+
+    /**
+     * Retry one failed action, the timer hands it over to the retryExecutor once its backoff is over.
+     */
+    private abstract class RetryTask<K> implements TimerTask, Runnable {
+
+        private final String action;
+
+        protected final K key;
+
+        private final ConcurrentMap<K, ?> failed;
+
+        private final Counter counter;
+
+        private volatile Timeout timeout;
+
+        private volatile int retryTimes;
+
+        RetryTask(String action, K key, ConcurrentMap<K, ?> failed, Counter counter) {
+            this.action = action;
+            this.key = key;
+            this.failed = failed;
+            this.counter = counter;
+        }
+
+        protected abstract void doRetry();
+
+        void schedule() {
+            long backoff = Math.min(Math.max(retryPeriod, MAX_RETRY_PERIOD), (long) retryPeriod << Math.min(retryTimes, 20));
+            // equal jitter, so that the retries of an outage do not all happen at once
+            long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            try {
+                timeout = retryTimer.newTimeout(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                logger.error("Failed to schedule the retry of " + this + ", cause: " + e.getMessage(), e);
+                remove();
+            }
+        }
+
+        void cancel() {
+            Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+
+        /**
+         * Retry after the first period again, unless the retry is already running
+         */
+        void restart() {
+            retryTimes = 0;
+            Timeout t = timeout;
+            if (t != null && t.cancel()) {
+                schedule();
+            }
+        }
+
+        void retry() {
+            Timeout t = timeout;
+            if (t == null || t.cancel()) {
+                run(t);
+            }
+        }
+
+        void remove() {
+            if (failed.remove(key, this)) {
+                counter.dec();
+            }
+            cancel();
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (failed.get(key) != this) {
+                return;
+            }
+            try {
+                retryExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                remove(); // destroyed
+            }
+        }
+
+        @Override
+        public void run() {
+            if (failed.get(key) != this) {
+                return;
+            }
+            retryCounter.inc();
+            try {
+                doRetry();
+                remove();
+            } catch (Throwable t) { // Ignore all the exceptions and wait for the next retry
+                retryTimes++;
+                logger.warn("Failed to retry " + this + " " + retryTimes + " times, waiting for again, cause: " + t.getMessage(), t);
+                if (failed.get(key) == this) {
+                    schedule();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return action + " " + key;
+        }
+    }
+
+    private class NotifyRetryTask extends RetryTask<Holder> {
+
+        private final List<URL> urls;
+
+        NotifyRetryTask(Holder key, List<URL> urls) {
+            super("notify", key, failedNotified, notifiedCounter);
+            this.urls = urls;
+        }
+
+        @Override
+        protected void doRetry() {
+            key.listener.notify(urls);
+        }
+    }
+
 }
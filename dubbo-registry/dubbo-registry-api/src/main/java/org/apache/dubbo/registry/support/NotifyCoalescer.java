@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.registry.support;
+
+import org.apache.dubbo.common.Constants;
+import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.logger.Logger;
+import org.apache.dubbo.common.logger.LoggerFactory;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.apache.dubbo.registry.NotifyListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batches the notifications of each subscription within a window and delivers only the latest urls of each category,
+ * on a dedicated thread. The first notification of a subscription is always delivered synchronously,
+ * so that subscribing still returns with the initial urls.
+ */
+class NotifyCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotifyCoalescer.class);
+
+    private final FailbackRegistry registry;
+
+    private final ScheduledExecutorService notifyExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("DubboRegistryNotifyCoalescer", true));
+
+    private final ConcurrentMap<Subscription, PendingNotify> pendings = new ConcurrentHashMap<Subscription, PendingNotify>();
+
+    /**
+     * The window in milliseconds to wait for more notifications after the first one
+     */
+    private final long delay;
+
+    /**
+     * The minimum time in milliseconds between two deliveries to the same subscription
+     */
+    private final long interval;
+
+    NotifyCoalescer(FailbackRegistry registry, long delay, long interval) {
+        this.registry = registry;
+        this.delay = delay;
+        this.interval = interval;
+    }
+
+    /**
+     * @return false if the notification must be delivered by the caller right now
+     */
+    boolean offer(URL url, NotifyListener listener, List<URL> urls) {
+        if (urls == null || urls.isEmpty()) {
+            return false;
+        }
+        Subscription subscription = new Subscription(url, listener);
+        PendingNotify pending = pendings.get(subscription);
+        if (pending == null) {
+            PendingNotify first = new PendingNotify(subscription);
+            pending = pendings.putIfAbsent(subscription, first);
+            if (pending == null) {
+                first.lastNotifyTime = System.currentTimeMillis();
+                return false;
+            }
+        }
+        long wait;
+        synchronized (pending) {
+            for (URL u : urls) {
+                String category = u.getParameter(Constants.CATEGORY_KEY, Constants.DEFAULT_CATEGORY);
+                List<URL> categoryList = pending.categories.get(category);
+                if (categoryList == null || pending.replaced.put(category, Boolean.TRUE) == null) {
+                    // the first url of this category in this notification replaces the older ones
+                    categoryList = new ArrayList<URL>();
+                    pending.categories.put(category, categoryList);
+                }
+                categoryList.add(u);
+            }
+            pending.replaced.clear();
+            if (pending.scheduled) {
+                return true;
+            }
+            pending.scheduled = true;
+            wait = Math.max(delay, pending.lastNotifyTime + interval - System.currentTimeMillis());
+        }
+        final PendingNotify scheduled = pending;
+        notifyExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(scheduled);
+            }
+        }, wait, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    void remove(URL url, NotifyListener listener) {
+        pendings.remove(new Subscription(url, listener));
+    }
+
+    private void flush(PendingNotify pending) {
+        List<URL> urls = new ArrayList<URL>();
+        synchronized (pending) {
+            for (List<URL> categoryList : pending.categories.values()) {
+                urls.addAll(categoryList);
+            }
+            pending.categories.clear();
+            pending.scheduled = false;
+            pending.lastNotifyTime = System.currentTimeMillis();
+        }
+        if (urls.isEmpty() || pendings.get(pending.subscription) != pending) {
+            return;
+        }
+        try {
+            registry.notifyWithFailback(pending.subscription.url, pending.subscription.listener, urls);
+        } catch (Throwable t) { // Defensive fault tolerance
+            logger.error("Unexpected error occur at coalesced notify of " + pending.subscription.url + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+    void destroy() {
+        pendings.clear();
+        notifyExecutor.shutdownNow();
+    }
+
+    private static final class Subscription {
+
+        private final URL url;
+
+        private final NotifyListener listener;
+
+        Subscription(URL url, NotifyListener listener) {
+            this.url = url;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Subscription)) {
+                return false;
+            }
+            Subscription that = (Subscription) o;
+            return url.equals(that.url) && listener.equals(that.listener);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * url.hashCode() + listener.hashCode();
+        }
+    }
+
+    private static final class PendingNotify {
+
+        private final Subscription subscription;
+
+        private final Map<String, List<URL>> categories = new LinkedHashMap<String, List<URL>>();
+
+        private final Map<String, Boolean> replaced = new LinkedHashMap<String, Boolean>();
+
+        private boolean scheduled;
+
+        private long lastNotifyTime;
+
+        PendingNotify(Subscription subscription) {
+            this.subscription = subscription;
+        }
+    }
+}
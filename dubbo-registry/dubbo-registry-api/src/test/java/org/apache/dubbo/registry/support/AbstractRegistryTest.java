@@ -26,7 +26,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -100,6 +103,52 @@ public class AbstractRegistryTest {
         Assert.assertThat(abstractRegistry.getRegistered().size(), Matchers.equalTo(urlList.size()));
     }
 
+    @Test
+    public void testAppendCacheFile() throws Exception {
+        File file = File.createTempFile("dubbo-registry", ".cache");
+        file.deleteOnExit();
+        URL registryUrl = URL.valueOf("dubbo://127.0.0.1:2233")
+                .addParameter(Constants.FILE_KEY, file.getAbsolutePath())
+                .addParameter(Constants.REGISTRY_FILESAVE_SYNC_KEY, true)
+                .addParameter(Constants.REGISTRY_FILESAVE_APPEND_KEY, true);
+        URL consumer = URL.valueOf("consumer://127.0.0.1/org.apache.dubbo.demo.DemoService?category=providers");
+        URL first = URL.valueOf("dubbo://127.0.0.1:20880/org.apache.dubbo.demo.DemoService");
+        URL second = URL.valueOf("dubbo://127.0.0.1:20881/org.apache.dubbo.demo.DemoService?owner=\u00e9t\u00e9&weight=100");
+        AbstractRegistry registry = new AbstractRegistry(registryUrl) {
+            @Override
+            public boolean isAvailable() {
+                return false;
+            }
+        };
+        registry.notify(consumer, listener, Collections.singletonList(first));
+        long snapshotLength = file.length();
+        registry.notify(consumer, listener, Arrays.asList(first, second));
+        Assert.assertThat(file.length(), Matchers.greaterThan(snapshotLength));
+        Assert.assertThat(loadCacheUrls(registryUrl, consumer), Matchers.contains(first, second));
+
+        // compacted once doubled
+        for (int i = 0; i < 10; i++) {
+            registry.notify(consumer, listener, Collections.singletonList(i % 2 == 0 ? second : first));
+        }
+        Assert.assertThat(file.length(), Matchers.lessThan(4 * snapshotLength));
+        Assert.assertThat(loadCacheUrls(registryUrl, consumer), Matchers.contains(first));
+        registry.destroy();
+    }
+
+    private List<URL> loadCacheUrls(URL registryUrl, URL consumer) {
+        AbstractRegistry registry = new AbstractRegistry(registryUrl) {
+            @Override
+            public boolean isAvailable() {
+                return false;
+            }
+        };
+        try {
+            return registry.getCacheUrls(consumer);
+        } finally {
+            registry.destroy();
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testRegisterIfURLNULL() throws Exception {
         abstractRegistry.register(null);
@@ -24,13 +24,17 @@ import org.apache.dubbo.registry.NotifyListener;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class FailbackRegistryTest {
     static String service;
@@ -61,7 +65,7 @@ public class FailbackRegistryTest {
     public void testDoRetry() throws Exception {
 
         final AtomicReference<Boolean> notified = new AtomicReference<Boolean>(false);
-        final CountDownLatch latch = new CountDownLatch(3);//All of them are called 3 times. Successful attempts to reduce the failure of 1. subscribe register will not be done again
+        final CountDownLatch latch = new CountDownLatch(2);//The unregister and the unsubscribe are retried. subscribe register will not be done again
 
         NotifyListener listner = new NotifyListener() {
             @Override
@@ -78,7 +82,7 @@ public class FailbackRegistryTest {
 
         //Failure can not be called to listener.
         assertEquals(false, notified.get());
-        assertEquals(3, latch.getCount());
+        assertEquals(2, latch.getCount());
 
         registry.setBad(false);
 
@@ -180,10 +184,139 @@ public class FailbackRegistryTest {
         assertEquals(2, count.get());
     }
 
+    @Test
+    public void testNotifyCoalesced() throws Exception {
+        final List<List<URL>> notified = new CopyOnWriteArrayList<List<URL>>();
+        NotifyListener listener = new NotifyListener() {
+            @Override
+            public void notify(List<URL> urls) {
+                notified.add(urls);
+            }
+        };
+        registry = new MockRegistry(registryUrl.addParameter(Constants.REGISTRY_NOTIFY_DELAY_KEY, 100), new CountDownLatch(0));
+        URL subscribeUrl = serviceUrl.setProtocol(Constants.CONSUMER_PROTOCOL).addParameters(CollectionUtils.toStringMap("check", "false"))
+                .addParameter(Constants.CATEGORY_KEY, Constants.PROVIDERS_CATEGORY + "," + Constants.ROUTERS_CATEGORY);
+        registry.subscribe(subscribeUrl, listener);
+        // the initial notification is not delayed
+        assertEquals(1, notified.size());
+
+        URL provider1 = URL.valueOf("dubbo://10.20.30.1:20880/demoservice");
+        URL provider2 = URL.valueOf("dubbo://10.20.30.2:20880/demoservice");
+        URL router = URL.valueOf("route://0.0.0.0/demoservice?category=routers");
+        registry.notify(subscribeUrl, listener, Arrays.asList(provider1));
+        registry.notify(subscribeUrl, listener, Arrays.asList(router));
+        registry.notify(subscribeUrl, listener, Arrays.asList(provider1, provider2));
+        assertEquals(1, notified.size());
+
+        for (int i = 0; i < trytimes && notified.size() < 3; i++) {
+            Thread.sleep(sleeptime);
+        }
+        // one notification per category, with the latest urls of each
+        assertEquals(3, notified.size());
+        assertTrue(notified.contains(Arrays.asList(provider1, provider2)));
+        assertTrue(notified.contains(Arrays.asList(router)));
+        registry.destroy();
+    }
+
+
+    @Test
+    public void testFastStart() throws Exception {
+        File file = File.createTempFile("dubbo-registry", ".cache");
+        file.deleteOnExit();
+        URL url = registryUrl.addParameter(Constants.FILE_KEY, file.getAbsolutePath())
+                .addParameter(Constants.REGISTRY_FILESAVE_SYNC_KEY, true)
+                .addParameter(Constants.REGISTRY_FAST_START_KEY, true);
+        URL consumerUrl = serviceUrl.setProtocol(Constants.CONSUMER_PROTOCOL).addParameters(CollectionUtils.toStringMap("check", "false"));
+        final List<List<URL>> notified = new CopyOnWriteArrayList<List<URL>>();
+        NotifyListener listener = new NotifyListener() {
+            @Override
+            public void notify(List<URL> urls) {
+                notified.add(urls);
+            }
+        };
+
+        // nothing cached yet
+        registry = new MockRegistry(url, new CountDownLatch(1));
+        registry.subscribe(consumerUrl, listener);
+        assertEquals(1, notified.size());
+        registry.destroy();
+
+        notified.clear();
+        final CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch subscribed = new CountDownLatch(1);
+        registry = new MockRegistry(url, subscribed) {
+            @Override
+            protected void doSubscribe(URL url, NotifyListener listener) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.doSubscribe(url, listener);
+            }
+        };
+        // the registry does not answer, the cached urls are notified
+        registry.subscribe(consumerUrl, listener);
+        assertEquals(1, notified.size());
+        assertEquals(Arrays.asList(serviceUrl), notified.get(0));
+
+        release.countDown();
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        registry.destroy();
+    }
+
+    @Test
+    public void testRetryBackoff() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        registry = new MockRegistry(registryUrl.addParameter(Constants.REGISTRY_RETRY_PERIOD_KEY, 100), new CountDownLatch(0)) {
+            @Override
+            protected void doRegister(URL url) {
+                attempts.incrementAndGet();
+                super.doRegister(url);
+            }
+        };
+        registry.setBad(true);
+        registry.register(serviceUrl);
+        assertEquals(1, attempts.get());
+        assertEquals(1, registry.getFailedRegistered().size());
+
+        // at most 100, 200, 400 and 800ms apart, instead of 100ms
+        Thread.sleep(1600);
+        assertTrue(attempts.get() >= 3);
+        assertTrue(attempts.get() <= 6);
+
+        // retried right away
+        registry.setBad(false);
+        registry.retry();
+        for (int i = 0; i < trytimes && !registry.getFailedRegistered().isEmpty(); i++) {
+            Thread.sleep(sleeptime);
+        }
+        assertTrue(registry.getFailedRegistered().isEmpty());
+        registry.destroy();
+    }
+
+    @Test
+    public void testRecoverResetsBackoff() throws Exception {
+        registry = new MockRegistry(registryUrl.addParameter(Constants.REGISTRY_RETRY_PERIOD_KEY, 50), new CountDownLatch(0));
+        registry.setBad(true);
+        registry.register(serviceUrl);
+        // the retries back off towards seconds during the outage
+        Thread.sleep(3000);
+        assertEquals(1, registry.getFailedRegistered().size());
+
+        registry.setBad(false);
+        registry.recover();
+        // retried after the first period again, at most 50ms
+        for (int i = 0; i < 4 && !registry.getFailedRegistered().isEmpty(); i++) {
+            Thread.sleep(sleeptime);
+        }
+        assertTrue(registry.getFailedRegistered().isEmpty());
+        registry.destroy();
+    }
 
     private static class MockRegistry extends FailbackRegistry {
         CountDownLatch latch;
-        private boolean bad = false;
+        private volatile boolean bad = false;
 
         /**
          * @param url
@@ -239,16 +372,6 @@ public class FailbackRegistryTest {
             latch.countDown();
         }
 
-        @Override
-        protected void retry() {
-            super.retry();
-            if (bad) {
-                throw new RuntimeException("can not invoke!");
-            }
-            //System.out.println("do retry");
-            latch.countDown();
-        }
-
         @Override
         public boolean isAvailable() {
             return true;
@@ -32,6 +32,7 @@ import org.apache.dubbo.rpc.RpcInvocation;
 import org.apache.dubbo.rpc.cluster.Router;
 import org.apache.dubbo.rpc.cluster.loadbalance.LeastActiveLoadBalance;
 import org.apache.dubbo.rpc.cluster.loadbalance.RoundRobinLoadBalance;
+import org.apache.dubbo.rpc.cluster.outlier.OutlierStats;
 import org.apache.dubbo.rpc.cluster.router.script.ScriptRouter;
 import org.apache.dubbo.rpc.cluster.router.script.ScriptRouterFactory;
 
@@ -821,6 +822,136 @@ public class RegistryDirectoryTest {
         Assert.assertEquals(2, invokers.size());
     }
 
+    /**
+     * Provider-only notifications are applied as a delta: untouched invokers are kept and only removed ones destroyed.
+     */
+    @Test
+    public void testNotify_Incremental() {
+        RegistryDirectory registryDirectory = getRegistryDirectory();
+        invocation = new RpcInvocation();
+
+        List<URL> durls = new ArrayList<URL>();
+        durls.add(SERVICEURL.setHost("10.20.30.140").addParameter(Constants.METHODS_KEY, "getXXX1,getXXX2"));
+        durls.add(SERVICEURL.setHost("10.20.30.141").addParameter(Constants.METHODS_KEY, "getXXX1"));
+        registryDirectory.notify(durls);
+        Map<String, Invoker<?>> urlInvokerMap = registryDirectory.getUrlInvokerMap();
+        Assert.assertEquals(2, urlInvokerMap.size());
+        Map<String, List<Invoker<?>>> methodInvokerMap = registryDirectory.getMethodInvokerMap();
+        Assert.assertEquals(2, methodInvokerMap.get("getXXX1").size());
+        Assert.assertEquals(1, methodInvokerMap.get("getXXX2").size());
+
+        // remove one provider, add another one
+        durls = new ArrayList<URL>();
+        durls.add(SERVICEURL.setHost("10.20.30.140").addParameter(Constants.METHODS_KEY, "getXXX1,getXXX2"));
+        durls.add(SERVICEURL.setHost("10.20.30.142").addParameter(Constants.METHODS_KEY, "getXXX3"));
+        registryDirectory.notify(durls);
+        Map<String, Invoker<?>> urlInvokerMap2 = registryDirectory.getUrlInvokerMap();
+        Assert.assertEquals(2, urlInvokerMap2.size());
+        Invoker<?> kept = null;
+        for (Invoker<?> invoker : urlInvokerMap.values()) {
+            if ("10.20.30.140".equals(invoker.getUrl().getHost())) {
+                kept = invoker;
+            } else {
+                Assert.assertFalse(invoker.isAvailable());
+            }
+        }
+        Assert.assertTrue(urlInvokerMap2.containsValue(kept));
+        Map<String, List<Invoker<?>>> methodInvokerMap2 = registryDirectory.getMethodInvokerMap();
+        Assert.assertEquals(1, methodInvokerMap2.get("getXXX1").size());
+        Assert.assertSame(methodInvokerMap.get("getXXX2"), methodInvokerMap2.get("getXXX2"));
+        Assert.assertEquals(1, methodInvokerMap2.get("getXXX3").size());
+        Assert.assertEquals(2, methodInvokerMap2.get(Constants.ANY_VALUE).size());
+
+        // same providers again, nothing to refresh
+        registryDirectory.notify(new ArrayList<URL>(durls));
+        Assert.assertSame(methodInvokerMap2, registryDirectory.getMethodInvokerMap());
+
+        invocation = new RpcInvocation();
+        invocation.setMethodName("getXXX3");
+        List<Invoker<?>> invokers = registryDirectory.list(invocation);
+        Assert.assertEquals(1, invokers.size());
+        Assert.assertEquals("10.20.30.142", invokers.get(0).getUrl().getHost());
+    }
+
+    /**
+     * A flapping provider only replaces the lists of the methods it declares.
+     */
+    @Test
+    public void testNotify_IncrementalKeepsUnchangedLists() {
+        RegistryDirectory registryDirectory = getRegistryDirectory();
+        List<URL> durls = new ArrayList<URL>();
+        durls.add(SERVICEURL.setHost("10.20.30.140").addParameter(Constants.METHODS_KEY, "getXXX1,getXXX2,getXXX3"));
+        durls.add(SERVICEURL.setHost("10.20.30.141").addParameter(Constants.METHODS_KEY, "getXXX1,getXXX2,getXXX3"));
+        registryDirectory.notify(durls);
+        Map<String, List<Invoker<?>>> methodInvokerMap = registryDirectory.getMethodInvokerMap();
+
+        List<URL> flapping = new ArrayList<URL>(durls);
+        flapping.add(SERVICEURL.setHost("10.20.30.142").addParameter(Constants.METHODS_KEY, "getXXX3"));
+        registryDirectory.notify(flapping);
+        Map<String, List<Invoker<?>>> methodInvokerMap2 = registryDirectory.getMethodInvokerMap();
+        Assert.assertSame(methodInvokerMap.get("getXXX1"), methodInvokerMap2.get("getXXX1"));
+        Assert.assertSame(methodInvokerMap.get("getXXX2"), methodInvokerMap2.get("getXXX2"));
+        Assert.assertEquals(3, methodInvokerMap2.get("getXXX3").size());
+        Assert.assertEquals(3, methodInvokerMap2.get(Constants.ANY_VALUE).size());
+
+        registryDirectory.notify(new ArrayList<URL>(durls));
+        Map<String, List<Invoker<?>>> methodInvokerMap3 = registryDirectory.getMethodInvokerMap();
+        Assert.assertSame(methodInvokerMap.get("getXXX1"), methodInvokerMap3.get("getXXX1"));
+        Assert.assertSame(methodInvokerMap.get("getXXX2"), methodInvokerMap3.get("getXXX2"));
+        Assert.assertEquals(2, methodInvokerMap3.get("getXXX3").size());
+        Assert.assertEquals(2, methodInvokerMap3.get(Constants.ANY_VALUE).size());
+    }
+
+    /**
+     * With a router filtering on refresh, the changed methods are routed again.
+     */
+    @Test
+    public void testNotify_IncrementalRouted() {
+        // the methods of the reference are routed on refresh
+        RegistryDirectory registryDirectory = getRegistryDirectory(URL.valueOf("notsupport:/" + service + "?refer="
+                + URL.encode("interface=" + service + "&" + Constants.METHODS_KEY + "=getXXX1,getXXX2")));
+        List<URL> durls = new ArrayList<URL>();
+        durls.add(URL.valueOf(Constants.ROUTE_PROTOCOL + "://0.0.0.0/" + service)
+                .addParameter(Constants.ROUTER_KEY, "condition")
+                .addParameterAndEncoded(Constants.RULE_KEY, " => host != 10.20.30.142"));
+        durls.add(SERVICEURL.setHost("10.20.30.140").addParameter(Constants.METHODS_KEY, "getXXX1,getXXX2"));
+        registryDirectory.notify(durls);
+
+        durls = new ArrayList<URL>();
+        durls.add(SERVICEURL.setHost("10.20.30.140").addParameter(Constants.METHODS_KEY, "getXXX1,getXXX2"));
+        durls.add(SERVICEURL.setHost("10.20.30.141").addParameter(Constants.METHODS_KEY, "getXXX1"));
+        durls.add(SERVICEURL.setHost("10.20.30.142").addParameter(Constants.METHODS_KEY, "getXXX1"));
+        registryDirectory.notify(durls);
+        Map<String, List<Invoker<?>>> methodInvokerMap = registryDirectory.getMethodInvokerMap();
+        Assert.assertEquals(2, methodInvokerMap.get("getXXX1").size());
+        Assert.assertEquals(2, methodInvokerMap.get(Constants.ANY_VALUE).size());
+        for (Invoker<?> invoker : methodInvokerMap.get("getXXX1")) {
+            Assert.assertNotEquals("10.20.30.142", invoker.getUrl().getHost());
+        }
+    }
+
+    @Test
+    public void testNotify_RemovesOutlierStats() {
+        RegistryDirectory registryDirectory = getRegistryDirectory();
+        List<URL> durls = new ArrayList<URL>();
+        durls.add(SERVICEURL.setHost("10.20.30.150"));
+        durls.add(SERVICEURL.setHost("10.20.30.151"));
+        registryDirectory.notify(durls);
+        Map<String, Invoker<?>> urlInvokerMap = registryDirectory.getUrlInvokerMap();
+        for (Invoker<?> invoker : urlInvokerMap.values()) {
+            OutlierStats.getStats(invoker.getUrl()).record(10, false);
+        }
+        int stats = OutlierStats.getAllStats().size();
+
+        durls = new ArrayList<URL>();
+        durls.add(SERVICEURL.setHost("10.20.30.150"));
+        registryDirectory.notify(durls);
+        Assert.assertEquals(stats - 1, OutlierStats.getAllStats().size());
+
+        registryDirectory.destroy();
+        Assert.assertEquals(stats - 2, OutlierStats.getAllStats().size());
+    }
+
     /**
      * Test override disables a specified service provider through enable=false
      * It is expected that a specified service provider can be disable.
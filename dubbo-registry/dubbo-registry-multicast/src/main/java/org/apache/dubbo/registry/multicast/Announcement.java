@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.registry.multicast;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A binary announcement of many urls, sorted and sent as the length of the prefix shared with the previous url plus
+ * the rest, deflated.
+ * <pre>
+ * magic(2) version(1) type(1) sender(8) sequence(4) period(4) total(4) count(2) deflated urls
+ * </pre>
+ * An announcement too large for a datagram is split, each datagram holding count of the total urls.
+ */
+final class Announcement {
+
+    static final byte REGISTER = 1;
+
+    static final byte UNREGISTER = 2;
+
+    static final byte SUBSCRIBE = 3;
+
+    static final byte HEARTBEAT = 4;
+
+    /**
+     * Not printable, so that a text message can never be taken for an announcement
+     */
+    private static final short MAGIC = (short) 0xDAB0;
+
+    private static final byte VERSION = 1;
+
+    private static final int HEADER_LENGTH = 26;
+
+    private static final String[] TYPES = {"unknown", "register", "unregister", "subscribe", "heartbeat"};
+
+    final byte type;
+
+    /**
+     * The random id of the sending registry
+     */
+    final long sender;
+
+    /**
+     * The heartbeat round of the sender when it sent the announcement
+     */
+    final int sequence;
+
+    /**
+     * The heartbeat period of the sender in milliseconds, 0 if it does not send heartbeats
+     */
+    final int period;
+
+    /**
+     * The urls of the whole announcement, more than those of a datagram when it was split
+     */
+    final int total;
+
+    final List<String> urls;
+
+    Announcement(byte type, long sender, int sequence, int period, List<String> urls) {
+        this(type, sender, sequence, period, urls.size(), urls);
+    }
+
+    private Announcement(byte type, long sender, int sequence, int period, int total, List<String> urls) {
+        this.type = type;
+        this.sender = sender;
+        this.sequence = sequence;
+        this.period = period;
+        this.total = total;
+        this.urls = urls;
+    }
+
+    /**
+     * Encode into as few datagrams of at most maxLength bytes as possible, a single url larger than that is sent
+     * alone.
+     */
+    List<byte[]> encode(int maxLength) throws IOException {
+        List<String> sorted = new ArrayList<String>(urls);
+        Collections.sort(sorted);
+        List<byte[]> datagrams = new ArrayList<byte[]>();
+        encode(sorted, maxLength, datagrams);
+        return datagrams;
+    }
+
+    private void encode(List<String> urls, int maxLength, List<byte[]> datagrams) throws IOException {
+        byte[] datagram = encode(urls);
+        if (datagram.length <= maxLength || urls.size() <= 1) {
+            datagrams.add(datagram);
+            return;
+        }
+        int half = urls.size() / 2;
+        encode(urls.subList(0, half), maxLength, datagrams);
+        encode(urls.subList(half, urls.size()), maxLength, datagrams);
+    }
+
+    private byte[] encode(List<String> urls) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeLong(sender);
+        out.writeInt(sequence);
+        out.writeInt(period);
+        out.writeInt(this.urls.size());
+        out.writeShort(urls.size());
+        DataOutputStream body = new DataOutputStream(new DeflaterOutputStream(bytes));
+        String previous = "";
+        for (String url : urls) {
+            int shared = 0;
+            int max = Math.min(Math.min(previous.length(), url.length()), 0xFFFF);
+            while (shared < max && previous.charAt(shared) == url.charAt(shared)) {
+                shared++;
+            }
+            body.writeShort(shared);
+            body.writeUTF(url.substring(shared));
+            previous = url;
+        }
+        body.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return null if the data is not an announcement
+     */
+    static Announcement decode(byte[] data, int offset, int length) throws IOException {
+        if (length < HEADER_LENGTH || (short) (((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF)) != MAGIC) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+        in.readShort();
+        if (in.readByte() != VERSION) {
+            return null;
+        }
+        byte type = in.readByte();
+        long sender = in.readLong();
+        int sequence = in.readInt();
+        int period = in.readInt();
+        int total = in.readInt();
+        int count = in.readUnsignedShort();
+        List<String> urls = new ArrayList<String>(count);
+        DataInputStream body = new DataInputStream(new InflaterInputStream(in));
+        try {
+            String previous = "";
+            for (int i = 0; i < count; i++) {
+                int shared = body.readUnsignedShort();
+                String url = previous.substring(0, shared) + body.readUTF();
+                urls.add(url);
+                previous = url;
+            }
+        } finally {
+            body.close();
+        }
+        return new Announcement(type, sender, sequence, period, total, urls);
+    }
+
+    @Override
+    public String toString() {
+        return (type > 0 && type < TYPES.length ? TYPES[type] : TYPES[0]) + " " + sequence + " of " + sender
+                + " with " + urls.size() + " of " + total + " urls";
+    }
+
+}
@@ -35,7 +35,7 @@ import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.Socket;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -45,7 +45,9 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * MulticastRegistry
@@ -57,6 +59,18 @@ public class MulticastRegistry extends FailbackRegistry {
 
     private static final int DEFAULT_MULTICAST_PORT = 1234;
 
+    private static final int MAX_PACKET_SIZE = 65536;
+
+    /**
+     * Keep an announcement within an ethernet frame, so that it is never fragmented
+     */
+    private static final int MAX_DATAGRAM_SIZE = 1472;
+
+    /**
+     * Heartbeats a sender may miss before its urls expire
+     */
+    private static final int EXPIRE_HEARTBEATS = 3;
+
     private final InetAddress multicastAddress;
 
     private final MulticastSocket multicastSocket;
@@ -73,6 +87,21 @@ public class MulticastRegistry extends FailbackRegistry {
 
     private volatile boolean admin = false;
 
+    /**
+     * Whether to send binary announcements, all the nodes of the group must understand them
+     */
+    private final boolean binary;
+
+    private final long senderId = ThreadLocalRandom.current().nextLong();
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private final int heartbeatPeriod;
+
+    private final ScheduledFuture<?> heartbeatFuture;
+
+    private final ConcurrentMap<Long, Sender> senders = new ConcurrentHashMap<Long, Sender>();
+
     public MulticastRegistry(URL url) {
         super(url);
         if (url.isAnyHost()) {
@@ -87,22 +116,30 @@ public class MulticastRegistry extends FailbackRegistry {
             multicastPort = url.getPort() <= 0 ? DEFAULT_MULTICAST_PORT : url.getPort();
             multicastSocket = new MulticastSocket(multicastPort);
             multicastSocket.setLoopbackMode(false);
+            // room for a burst of announcements, the system caps it silently
+            multicastSocket.setReceiveBufferSize(MAX_PACKET_SIZE * 16);
             multicastSocket.joinGroup(multicastAddress);
             Thread thread = new Thread(new Runnable() {
                 @Override
                 public void run() {
-                    byte[] buf = new byte[2048];
+                    byte[] buf = new byte[MAX_PACKET_SIZE];
                     DatagramPacket recv = new DatagramPacket(buf, buf.length);
                     while (!multicastSocket.isClosed()) {
                         try {
+                            recv.setLength(buf.length);
                             multicastSocket.receive(recv);
-                            String msg = new String(recv.getData()).trim();
+                            InetSocketAddress remoteAddress = (InetSocketAddress) recv.getSocketAddress();
+                            Announcement announcement = Announcement.decode(buf, recv.getOffset(), recv.getLength());
+                            if (announcement != null) {
+                                MulticastRegistry.this.receive(announcement, remoteAddress);
+                                continue;
+                            }
+                            String msg = new String(buf, recv.getOffset(), recv.getLength()).trim();
                             int i = msg.indexOf('\n');
                             if (i > 0) {
                                 msg = msg.substring(0, i).trim();
                             }
-                            MulticastRegistry.this.receive(msg, (InetSocketAddress) recv.getSocketAddress());
-                            Arrays.fill(buf, (byte) 0);
+                            MulticastRegistry.this.receive(msg, remoteAddress);
                         } catch (Throwable e) {
                             if (!multicastSocket.isClosed()) {
                                 logger.error(e.getMessage(), e);
@@ -117,7 +154,29 @@ public class MulticastRegistry extends FailbackRegistry {
             throw new IllegalStateException(e.getMessage(), e);
         }
         this.cleanPeriod = url.getParameter(Constants.SESSION_TIMEOUT_KEY, Constants.DEFAULT_SESSION_TIMEOUT);
-        if (url.getParameter("clean", true)) {
+        this.binary = url.getParameter("binary", false);
+        this.heartbeatPeriod = url.getParameter(Constants.HEARTBEAT_KEY, cleanPeriod / EXPIRE_HEARTBEATS);
+        final boolean clean = url.getParameter("clean", true);
+        if (binary || clean) {
+            this.heartbeatFuture = cleanExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (binary) {
+                            heartbeat();
+                        }
+                        if (clean) {
+                            expire();
+                        }
+                    } catch (Throwable t) { // Defensive fault tolerance
+                        logger.error("Unexpected exception occur at multicast heartbeat, cause: " + t.getMessage(), t);
+                    }
+                }
+            }, heartbeatPeriod, heartbeatPeriod, TimeUnit.MILLISECONDS);
+        } else {
+            this.heartbeatFuture = null;
+        }
+        if (clean) {
             this.cleanFuture = cleanExecutor.scheduleWithFixedDelay(new Runnable() {
                 @Override
                 public void run() {
@@ -133,6 +192,39 @@ public class MulticastRegistry extends FailbackRegistry {
         }
     }
 
+    /**
+     * Announce all the dynamic urls registered, so that the other nodes can expire them once the heartbeats stop.
+     */
+    private void heartbeat() {
+        List<String> urls = new ArrayList<String>();
+        for (URL url : getRegistered()) {
+            if (url.getParameter(Constants.DYNAMIC_KEY, true)) {
+                urls.add(url.toFullString());
+            }
+        }
+        multicast(new Announcement(Announcement.HEARTBEAT, senderId, sequence.incrementAndGet(), heartbeatPeriod, urls));
+    }
+
+    /**
+     * Remove the urls of the senders which missed their heartbeats, only when "clean" parameter is true.
+     */
+    private void expire() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Sender> entry : senders.entrySet()) {
+            Sender sender = entry.getValue();
+            if (sender.period > 0 && now - sender.lastSeen > (long) sender.period * EXPIRE_HEARTBEATS
+                    && senders.remove(entry.getKey(), sender)) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Clean " + sender.urls.size() + " urls of " + entry.getKey() + " after heartbeat "
+                            + sender.sequence + ", not heard from in " + (now - sender.lastSeen) + "ms");
+                }
+                for (URL url : sender.urls.keySet()) {
+                    unregistered(url);
+                }
+            }
+        }
+    }
+
     /**
      * Remove the expired providers, only when "clean" parameter is true.
      */
@@ -140,7 +232,7 @@ public class MulticastRegistry extends FailbackRegistry {
         if (admin) {
             for (Set<URL> providers : new HashSet<Set<URL>>(received.values())) {
                 for (URL url : new HashSet<URL>(providers)) {
-                    if (isExpired(url)) {
+                    if (!isAnnounced(url) && isExpired(url)) {
                         if (logger.isWarnEnabled()) {
                             logger.warn("Clean expired provider " + url);
                         }
@@ -151,6 +243,18 @@ public class MulticastRegistry extends FailbackRegistry {
         }
     }
 
+    /**
+     * Whether the url is kept alive by the heartbeats of its sender
+     */
+    private boolean isAnnounced(URL url) {
+        for (Sender sender : senders.values()) {
+            if (sender.period > 0 && sender.urls.containsKey(url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean isExpired(URL url) {
         if (!url.getParameter(Constants.DYNAMIC_KEY, true)
                 || url.getPort() <= 0
@@ -203,25 +307,126 @@ public class MulticastRegistry extends FailbackRegistry {
             unregistered(url);
         } else if (msg.startsWith(Constants.SUBSCRIBE)) {
             URL url = URL.valueOf(msg.substring(Constants.SUBSCRIBE.length()).trim());
-            Set<URL> urls = getRegistered();
-            if (urls != null && !urls.isEmpty()) {
-                for (URL u : urls) {
-                    if (UrlUtils.isMatch(url, u)) {
-                        String host = remoteAddress != null && remoteAddress.getAddress() != null
-                                ? remoteAddress.getAddress().getHostAddress() : url.getIp();
-                        if (url.getParameter("unicast", true) // Whether the consumer's machine has only one process
-                                && !NetUtils.getLocalHost().equals(host)) { // Multiple processes in the same machine cannot be unicast with unicast or there will be only one process receiving information
-                            unicast(Constants.REGISTER + " " + u.toFullString(), host);
-                        } else {
-                            multicast(Constants.REGISTER + " " + u.toFullString());
-                        }
-                    }
-                }
-            }
+            answer(url, remoteAddress, false);
         }/* else if (msg.startsWith(UNSUBSCRIBE)) {
         }*/
     }
 
+    private void receive(Announcement announcement, InetSocketAddress remoteAddress) {
+        if (announcement.sender == senderId) {
+            return;
+        }
+        if (logger.isInfoEnabled()) {
+            logger.info("Receive multicast announcement: " + announcement + " from " + remoteAddress);
+        }
+        if (announcement.type == Announcement.SUBSCRIBE) {
+            for (String url : announcement.urls) {
+                answer(URL.valueOf(url), remoteAddress, true);
+            }
+            return;
+        }
+        Sender sender = senders.get(announcement.sender);
+        if (sender == null) {
+            senders.putIfAbsent(announcement.sender, new Sender());
+            sender = senders.get(announcement.sender);
+        }
+        boolean known = sender.lastSeen > 0;
+        sender.lastSeen = System.currentTimeMillis();
+        sender.period = announcement.period;
+        if (announcement.type == Announcement.UNREGISTER) {
+            for (String u : announcement.urls) {
+                URL url = URL.valueOf(u);
+                sender.urls.remove(url);
+                unregistered(url);
+            }
+            return;
+        }
+        // an announcement sent before a later one may still hold urls unregistered since
+        if (known && announcement.sequence - sender.sequence < 0) {
+            return;
+        }
+        if (known && announcement.sequence - sender.sequence > 1 && logger.isWarnEnabled()) {
+            logger.warn("Missed " + (announcement.sequence - sender.sequence - 1) + " heartbeats of "
+                    + announcement.sender + " from " + remoteAddress);
+        }
+        sender.sequence = announcement.sequence;
+        for (String u : announcement.urls) {
+            URL url = URL.valueOf(u);
+            sender.urls.put(url, announcement.sequence);
+            registered(url);
+        }
+        if (announcement.type == Announcement.HEARTBEAT) {
+            heartbeat(sender, announcement);
+        }
+    }
+
+    /**
+     * Collect the datagrams of a heartbeat round. A complete round holds all the dynamic urls of the sender, so
+     * those announced before the round only were unregistered, and their unregister announcement was lost.
+     */
+    private void heartbeat(Sender sender, Announcement announcement) {
+        if (sender.round == null || sender.roundSequence != announcement.sequence) {
+            // a round missing some datagrams is never complete, the next one replaces it
+            sender.round = new HashSet<String>();
+            sender.roundSequence = announcement.sequence;
+        }
+        sender.round.addAll(announcement.urls);
+        if (sender.round.size() < announcement.total) {
+            return;
+        }
+        sender.round = null;
+        for (Map.Entry<URL, Integer> entry : sender.urls.entrySet()) {
+            URL url = entry.getKey();
+            if (entry.getValue() - announcement.sequence < 0 && url.getParameter(Constants.DYNAMIC_KEY, true)
+                    && sender.urls.remove(url, entry.getValue())) {
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Clean " + url + " missing from heartbeat " + announcement.sequence + " of " + announcement.sender);
+                }
+                unregistered(url);
+            }
+        }
+    }
+
+    /**
+     * Answer a subscription with the matching urls registered, in the format it was sent in.
+     */
+    private void answer(URL url, InetSocketAddress remoteAddress, boolean binary) {
+        List<URL> urls = new ArrayList<URL>();
+        for (URL u : getRegistered()) {
+            if (UrlUtils.isMatch(url, u)) {
+                urls.add(u);
+            }
+        }
+        if (urls.isEmpty()) {
+            return;
+        }
+        String host = remoteAddress != null && remoteAddress.getAddress() != null
+                ? remoteAddress.getAddress().getHostAddress() : url.getIp();
+        boolean unicast = url.getParameter("unicast", true) // Whether the consumer's machine has only one process
+                && !NetUtils.getLocalHost().equals(host); // Multiple processes in the same machine cannot be unicast with unicast or there will be only one process receiving information
+        if (binary) {
+            List<String> announced = new ArrayList<String>();
+            for (URL u : urls) {
+                announced.add(u.toFullString());
+            }
+            Announcement announcement = new Announcement(Announcement.REGISTER, senderId, sequence.get(),
+                    this.binary ? heartbeatPeriod : 0, announced);
+            if (unicast) {
+                unicast(announcement, host);
+            } else {
+                multicast(announcement);
+            }
+            return;
+        }
+        for (URL u : urls) {
+            if (unicast) {
+                unicast(Constants.REGISTER + " " + u.toFullString(), host);
+            } else {
+                multicast(Constants.REGISTER + " " + u.toFullString());
+            }
+        }
+    }
+
     private void multicast(String msg) {
         if (logger.isInfoEnabled()) {
             logger.info("Send multicast message: " + msg + " to " + multicastAddress + ":" + multicastPort);
@@ -248,14 +453,52 @@ public class MulticastRegistry extends FailbackRegistry {
         }
     }
 
+    private void multicast(Announcement announcement) {
+        send(announcement, multicastAddress);
+    }
+
+    private void unicast(Announcement announcement, String host) {
+        try {
+            send(announcement, InetAddress.getByName(host));
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private void send(Announcement announcement, InetAddress address) {
+        if (logger.isInfoEnabled()) {
+            logger.info("Send multicast announcement: " + announcement + " to " + address + ":" + multicastPort);
+        }
+        try {
+            for (byte[] data : announcement.encode(MAX_DATAGRAM_SIZE)) {
+                multicastSocket.send(new DatagramPacket(data, data.length, address, multicastPort));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private void announce(byte type, URL url) {
+        multicast(new Announcement(type, senderId, sequence.get(), heartbeatPeriod,
+                Collections.singletonList(url.toFullString())));
+    }
+
     @Override
     protected void doRegister(URL url) {
-        multicast(Constants.REGISTER + " " + url.toFullString());
+        if (binary) {
+            announce(Announcement.REGISTER, url);
+        } else {
+            multicast(Constants.REGISTER + " " + url.toFullString());
+        }
     }
 
     @Override
     protected void doUnregister(URL url) {
-        multicast(Constants.UNREGISTER + " " + url.toFullString());
+        if (binary) {
+            announce(Announcement.UNREGISTER, url);
+        } else {
+            multicast(Constants.UNREGISTER + " " + url.toFullString());
+        }
     }
 
     @Override
@@ -263,7 +506,11 @@ public class MulticastRegistry extends FailbackRegistry {
         if (Constants.ANY_VALUE.equals(url.getServiceInterface())) {
             admin = true;
         }
-        multicast(Constants.SUBSCRIBE + " " + url.toFullString());
+        if (binary) {
+            announce(Announcement.SUBSCRIBE, url);
+        } else {
+            multicast(Constants.SUBSCRIBE + " " + url.toFullString());
+        }
         synchronized (listener) {
             try {
                 listener.wait(url.getParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT));
@@ -300,6 +547,9 @@ public class MulticastRegistry extends FailbackRegistry {
             if (cleanFuture != null) {
                 cleanFuture.cancel(true);
             }
+            if (heartbeatFuture != null) {
+                heartbeatFuture.cancel(true);
+            }
         } catch (Throwable t) {
             logger.warn(t.getMessage(), t);
         }
@@ -321,10 +571,12 @@ public class MulticastRegistry extends FailbackRegistry {
                     received.putIfAbsent(key, new ConcurrentHashSet<URL>());
                     urls = received.get(key);
                 }
-                urls.add(url);
-                List<URL> list = toList(urls);
+                // heartbeats announce the known urls again and again
+                List<URL> list = urls.add(url) ? toList(urls) : null;
                 for (NotifyListener listener : entry.getValue()) {
-                    notify(key, listener, list);
+                    if (list != null) {
+                        notify(key, listener, list);
+                    }
                     synchronized (listener) {
                         listener.notify();
                     }
@@ -435,4 +687,26 @@ public class MulticastRegistry extends FailbackRegistry {
         return received;
     }
 
+    private static class Sender {
+
+        /**
+         * The urls of the sender, with the heartbeat round they were last announced in
+         */
+        private final ConcurrentMap<URL, Integer> urls = new ConcurrentHashMap<URL, Integer>();
+
+        /**
+         * The urls of the heartbeat round being received, only used by the receiving thread
+         */
+        private Set<String> round;
+
+        private int roundSequence;
+
+        private volatile long lastSeen;
+
+        private volatile int sequence;
+
+        private volatile int period;
+
+    }
+
 }
@@ -27,6 +27,7 @@ import java.net.MulticastSocket;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
@@ -215,4 +216,77 @@ public class MulticastRegistryTest {
         }
     }
 
+    /**
+     * Test binary announcements and the expiry of the urls once the heartbeats stop
+     */
+    @Test
+    public void testBinaryAnnouncement() throws Exception {
+        int port = NetUtils.getAvailablePort();
+        URL url = URL.valueOf("multicast://224.5.6.9:" + port + "?binary=true&heartbeat=100");
+        MulticastRegistry provider = new MulticastRegistry(url);
+        MulticastRegistry consumer = new MulticastRegistry(url);
+        try {
+            for (int i = 0; i < 200; i++) {
+                provider.register(serviceUrl.setPort(20880 + i));
+            }
+            final AtomicReference<List<URL>> notified = new AtomicReference<List<URL>>();
+            consumer.subscribe(consumerUrl, new NotifyListener() {
+                @Override
+                public void notify(List<URL> urls) {
+                    notified.set(urls);
+                }
+            });
+            for (int i = 0; i < 50 && (notified.get() == null || notified.get().size() < 200); i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(200, notified.get().size());
+
+            // stop the heartbeats without unregistering
+            provider.getMulticastSocket().close();
+            for (int i = 0; i < 50 && !"empty".equals(notified.get().get(0).getProtocol()); i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(1, notified.get().size());
+            assertEquals("empty", notified.get().get(0).getProtocol());
+        } finally {
+            provider.destroy();
+            consumer.destroy();
+        }
+    }
+
+    @Test
+    public void testHeartbeatDropsMissingUrls() throws Exception {
+        int port = NetUtils.getAvailablePort();
+        URL url = URL.valueOf("multicast://224.5.6.10:" + port + "?binary=true&heartbeat=100");
+        MulticastRegistry provider = new MulticastRegistry(url);
+        MulticastRegistry consumer = new MulticastRegistry(url);
+        try {
+            for (int i = 0; i < 200; i++) {
+                provider.register(serviceUrl.setPort(20880 + i));
+            }
+            final AtomicReference<List<URL>> notified = new AtomicReference<List<URL>>();
+            consumer.subscribe(consumerUrl, new NotifyListener() {
+                @Override
+                public void notify(List<URL> urls) {
+                    notified.set(urls);
+                }
+            });
+            for (int i = 0; i < 50 && (notified.get() == null || notified.get().size() < 200); i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(200, notified.get().size());
+
+            // unregistered, as if the unregister announcement was lost
+            provider.getRegistered().remove(serviceUrl.setPort(20880));
+            for (int i = 0; i < 50 && notified.get().size() > 199; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(199, notified.get().size());
+            assertFalse(notified.get().contains(serviceUrl.setPort(20880)));
+        } finally {
+            provider.destroy();
+            consumer.destroy();
+        }
+    }
+
 }
@@ -32,10 +32,16 @@ import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -63,6 +69,45 @@ public class RedisRegistry extends FailbackRegistry {
 
     private final static String DEFAULT_ROOT = "dubbo";
 
+    /**
+     * The keys a SCAN call is asked to look at
+     */
+    private static final int SCAN_COUNT = 1000;
+
+    /**
+     * The keys cleaned by a single script call, which blocks the server while running
+     */
+    private static final int CLEAN_BATCH = 100;
+
+    /**
+     * Deletes the expired dynamic urls of the hashes in KEYS, ARGV[1] being the current time, and publishes the
+     * unregister event of each changed hash. It returns the key, url and expiry time of every deleted url.
+     */
+    private static final String CLEAN_SCRIPT =
+            "local deleted = {}\n" +
+            "for _, key in ipairs(KEYS) do\n" +
+            "  if redis.call('type', key).ok == 'hash' then\n" +
+            "    local values = redis.call('hgetall', key)\n" +
+            "    local delete = false\n" +
+            "    for i = 1, #values, 2 do\n" +
+            "      local url = values[i]\n" +
+            "      local expire = tonumber(values[i + 1])\n" +
+            "      if expire and expire < tonumber(ARGV[1])\n" +
+            "          and not string.find(url, '[?&]dynamic=false&') and not string.find(url, '[?&]dynamic=false$') then\n" +
+            "        redis.call('hdel', key, url)\n" +
+            "        delete = true\n" +
+            "        table.insert(deleted, key)\n" +
+            "        table.insert(deleted, url)\n" +
+            "        table.insert(deleted, values[i + 1])\n" +
+            "      end\n" +
+            "    end\n" +
+            "    if delete then\n" +
+            "      redis.call('publish', key, '" + Constants.UNREGISTER + "')\n" +
+            "    end\n" +
+            "  end\n" +
+            "end\n" +
+            "return deleted\n";
+
     private final ScheduledExecutorService expireExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("DubboRegistryExpireTimer", true));
 
     private final ScheduledFuture<?> expireFuture;
@@ -81,6 +126,13 @@ public class RedisRegistry extends FailbackRegistry {
 
     private boolean replicate;
 
+    /**
+     * The channel prefix of the keyspace notifications of the database, null if they are not listened to
+     */
+    private final String keyspacePrefix;
+
+    private volatile String cleanScriptSha;
+
     public RedisRegistry(URL url) {
         super(url);
         if (url.isAnyHost()) {
@@ -136,6 +188,9 @@ public class RedisRegistry extends FailbackRegistry {
                     url.getParameter("db.index", 0)));
         }
 
+        // requires notify-keyspace-events to contain K, g and h on the redis servers
+        this.keyspacePrefix = url.getParameter("keyspace.notify", false)
+                ? "__keyspace@" + url.getParameter("db.index", 0) + "__:" : null;
         this.reconnectPeriod = url.getParameter(Constants.REGISTRY_RECONNECT_PERIOD_KEY, Constants.DEFAULT_REGISTRY_RECONNECT_PERIOD);
         String group = url.getParameter(Constants.GROUP_KEY, DEFAULT_ROOT);
         if (!group.startsWith(Constants.PATH_SEPARATOR)) {
@@ -165,14 +220,31 @@ public class RedisRegistry extends FailbackRegistry {
             try {
                 Jedis jedis = jedisPool.getResource();
                 try {
+                    List<String> keys = new ArrayList<String>();
+                    List<Response<Long>> responses = new ArrayList<Response<Long>>();
+                    String expire = String.valueOf(System.currentTimeMillis() + expirePeriod);
+                    Pipeline pipeline = jedis.pipelined();
                     for (URL url : new HashSet<URL>(getRegistered())) {
                         if (url.getParameter(Constants.DYNAMIC_KEY, true)) {
                             String key = toCategoryPath(url);
-                            if (jedis.hset(key, url.toFullString(), String.valueOf(System.currentTimeMillis() + expirePeriod)) == 1) {
-                                jedis.publish(key, Constants.REGISTER);
-                            }
+                            keys.add(key);
+                            responses.add(pipeline.hset(key, url.toFullString(), expire));
                         }
                     }
+                    pipeline.sync();
+                    Set<String> created = new HashSet<String>();
+                    for (int i = 0; i < keys.size(); i++) {
+                        if (responses.get(i).get() == 1) {
+                            created.add(keys.get(i));
+                        }
+                    }
+                    if (!created.isEmpty()) {
+                        pipeline = jedis.pipelined();
+                        for (String key : created) {
+                            pipeline.publish(key, Constants.REGISTER);
+                        }
+                        pipeline.sync();
+                    }
                     if (admin) {
                         clean(jedis);
                     }
@@ -190,34 +262,49 @@ public class RedisRegistry extends FailbackRegistry {
 
     // The monitoring center is responsible for deleting outdated dirty data
     private void clean(Jedis jedis) {
-        Set<String> keys = jedis.keys(root + Constants.ANY_VALUE);
-        if (keys != null && !keys.isEmpty()) {
-            for (String key : keys) {
-                Map<String, String> values = jedis.hgetAll(key);
-                if (values != null && values.size() > 0) {
-                    boolean delete = false;
-                    long now = System.currentTimeMillis();
-                    for (Map.Entry<String, String> entry : values.entrySet()) {
-                        URL url = URL.valueOf(entry.getKey());
-                        if (url.getParameter(Constants.DYNAMIC_KEY, true)) {
-                            long expire = Long.parseLong(entry.getValue());
-                            if (expire < now) {
-                                jedis.hdel(key, entry.getKey());
-                                delete = true;
-                                if (logger.isWarnEnabled()) {
-                                    logger.warn("Delete expired key: " + key + " -> value: " + entry.getKey() + ", expire: " + new Date(expire) + ", now: " + new Date(now));
-                                }
-                            }
-                        }
-                    }
-                    if (delete) {
-                        jedis.publish(key, Constants.UNREGISTER);
-                    }
+        List<String> keys = new ArrayList<String>(scan(jedis, root + Constants.ANY_VALUE));
+        for (int from = 0; from < keys.size(); from += CLEAN_BATCH) {
+            long now = System.currentTimeMillis();
+            List<?> deleted = (List<?>) evalClean(jedis, keys.subList(from, Math.min(keys.size(), from + CLEAN_BATCH)),
+                    Collections.singletonList(String.valueOf(now)));
+            if (deleted != null && logger.isWarnEnabled()) {
+                for (int i = 0; i + 2 < deleted.size(); i += 3) {
+                    logger.warn("Delete expired key: " + deleted.get(i) + " -> value: " + deleted.get(i + 1) + ", expire: " + new Date(Long.parseLong((String) deleted.get(i + 2))) + ", now: " + new Date(now));
                 }
             }
         }
     }
 
+    private Object evalClean(Jedis jedis, List<String> keys, List<String> args) {
+        String sha = cleanScriptSha;
+        if (sha == null) {
+            sha = jedis.scriptLoad(CLEAN_SCRIPT);
+            cleanScriptSha = sha;
+        }
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            // another server, or its script cache was flushed
+            jedis.scriptLoad(CLEAN_SCRIPT);
+            return jedis.evalsha(sha, keys, args);
+        }
+    }
+
+    /**
+     * Iterate the keys matching the pattern with SCAN, which unlike KEYS does not block the server
+     */
+    private static Set<String> scan(Jedis jedis, String pattern) {
+        Set<String> keys = new HashSet<String>();
+        ScanParams params = new ScanParams().match(pattern).count(SCAN_COUNT);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> result = jedis.scan(cursor, params);
+            keys.addAll(result.getResult());
+            cursor = result.getStringCursor();
+        } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        return keys;
+    }
+
     @Override
     public boolean isAvailable() {
         for (JedisPool jedisPool : jedisPools.values()) {
@@ -350,7 +437,7 @@ public class RedisRegistry extends FailbackRegistry {
                 try {
                     if (service.endsWith(Constants.ANY_VALUE)) {
                         admin = true;
-                        Set<String> keys = jedis.keys(service);
+                        Set<String> keys = scan(jedis, service);
                         if (keys != null && !keys.isEmpty()) {
                             Map<String, Set<String>> serviceKeys = new HashMap<String, Set<String>>();
                             for (String key : keys) {
@@ -367,7 +454,7 @@ public class RedisRegistry extends FailbackRegistry {
                             }
                         }
                     } else {
-                        doNotify(jedis, jedis.keys(service + Constants.PATH_SEPARATOR + Constants.ANY_VALUE), url, Arrays.asList(listener));
+                        doNotify(jedis, scan(jedis, service + Constants.PATH_SEPARATOR + Constants.ANY_VALUE), url, Arrays.asList(listener));
                     }
                     success = true;
                     break; // Just read one server's data
@@ -490,18 +577,27 @@ public class RedisRegistry extends FailbackRegistry {
             if (logger.isInfoEnabled()) {
                 logger.info("redis event: " + key + " = " + msg);
             }
-            if (msg.equals(Constants.REGISTER)
+            if (keyspacePrefix != null && key.startsWith(keyspacePrefix)) {
+                // hset is written by every renewal too, the new urls are announced by a register message instead
+                if ("hdel".equals(msg) || "del".equals(msg) || "expired".equals(msg)) {
+                    notify(key.substring(keyspacePrefix.length()));
+                }
+            } else if (msg.equals(Constants.REGISTER)
                     || msg.equals(Constants.UNREGISTER)) {
+                notify(key);
+            }
+        }
+
+        private void notify(String key) {
+            try {
+                Jedis jedis = jedisPool.getResource();
                 try {
-                    Jedis jedis = jedisPool.getResource();
-                    try {
-                        doNotify(jedis, key);
-                    } finally {
-                        jedis.close();
-                    }
-                } catch (Throwable t) { // TODO Notification failure does not restore mechanism guarantee
-                    logger.error(t.getMessage(), t);
+                    doNotify(jedis, key);
+                } finally {
+                    jedis.close();
                 }
+            } catch (Throwable t) { // TODO Notification failure does not restore mechanism guarantee
+                logger.error(t.getMessage(), t);
             }
         }
 
@@ -582,7 +678,7 @@ public class RedisRegistry extends FailbackRegistry {
                                         if (service.endsWith(Constants.ANY_VALUE)) {
                                             if (!first) {
                                                 first = false;
-                                                Set<String> keys = jedis.keys(service);
+                                                Set<String> keys = scan(jedis, service);
                                                 if (keys != null && !keys.isEmpty()) {
                                                     for (String s : keys) {
                                                         doNotify(jedis, s);
@@ -590,14 +686,14 @@ public class RedisRegistry extends FailbackRegistry {
                                                 }
                                                 resetSkip();
                                             }
-                                            jedis.psubscribe(new NotifySub(jedisPool), service); // blocking
+                                            jedis.psubscribe(new NotifySub(jedisPool), toPatterns(service)); // blocking
                                         } else {
                                             if (!first) {
                                                 first = false;
                                                 doNotify(jedis, service);
                                                 resetSkip();
                                             }
-                                            jedis.psubscribe(new NotifySub(jedisPool), service + Constants.PATH_SEPARATOR + Constants.ANY_VALUE); // blocking
+                                            jedis.psubscribe(new NotifySub(jedisPool), toPatterns(service + Constants.PATH_SEPARATOR + Constants.ANY_VALUE)); // blocking
                                         }
                                         break;
                                     } finally {
@@ -620,6 +716,10 @@ public class RedisRegistry extends FailbackRegistry {
             }
         }
 
+        private String[] toPatterns(String pattern) {
+            return keyspacePrefix == null ? new String[]{pattern} : new String[]{pattern, keyspacePrefix + pattern};
+        }
+
         public void shutdown() {
             try {
                 running = false;
@@ -23,11 +23,15 @@ import org.apache.dubbo.registry.Registry;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import redis.clients.jedis.Jedis;
 import redis.embedded.RedisServer;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.dubbo.common.Constants.BACKUP_KEY;
 import static org.hamcrest.CoreMatchers.is;
@@ -96,6 +100,58 @@ public class RedisRegistryTest {
         assertThat(subscribed.get(serviceUrl).size(), is(0));
     }
 
+    @Test
+    public void testCleanExpired() throws Exception {
+        RedisRegistry registry = (RedisRegistry) new RedisRegistryFactory().createRegistry(registryUrl.addParameter("session", 1000));
+        registry.subscribe(URL.valueOf("redis://redis/*"), new NotifyListener() {
+            @Override
+            public void notify(List<URL> urls) {
+            }
+        });
+        String key = "/dubbo/" + service + "/providers";
+        String expired = String.valueOf(System.currentTimeMillis() - 1000);
+        Jedis jedis = new Jedis(registryUrl.getHost(), registryUrl.getPort());
+        try {
+            jedis.hset(key, "dubbo://10.20.30.40:20880/" + service, expired);
+            jedis.hset(key, "dubbo://10.20.30.40:20881/" + service + "?dynamic=false", expired);
+            for (int i = 0; i < 50 && jedis.hlen(key) > 1; i++) {
+                Thread.sleep(100);
+            }
+            assertThat(jedis.hkeys(key).iterator().next(), is("dubbo://10.20.30.40:20881/" + service + "?dynamic=false"));
+        } finally {
+            jedis.close();
+            registry.destroy();
+        }
+    }
+
+    @Test
+    public void testKeyspaceNotify() throws Exception {
+        Jedis jedis = new Jedis(registryUrl.getHost(), registryUrl.getPort());
+        RedisRegistry registry = (RedisRegistry) new RedisRegistryFactory().createRegistry(registryUrl.addParameter("keyspace.notify", true));
+        try {
+            jedis.configSet("notify-keyspace-events", "Kgh");
+            final BlockingQueue<List<URL>> notified = new LinkedBlockingQueue<List<URL>>();
+            registry.register(serviceUrl);
+            registry.subscribe(serviceUrl.addParameter("category", "providers"), new NotifyListener() {
+                @Override
+                public void notify(List<URL> urls) {
+                    notified.add(urls);
+                }
+            });
+            assertThat(notified.poll(5, TimeUnit.SECONDS).get(0), is(serviceUrl));
+            for (int i = 0; i < 50 && jedis.pubsubNumPat() == 0; i++) {
+                Thread.sleep(100);
+            }
+
+            // deleted without any unregister message
+            jedis.hdel("/dubbo/" + service + "/providers", serviceUrl.toFullString());
+            assertThat(notified.poll(5, TimeUnit.SECONDS).get(0).getProtocol(), is("empty"));
+        } finally {
+            jedis.close();
+            registry.destroy();
+        }
+    }
+
     @Test
     public void testAvailable() {
         redisRegistry.register(serviceUrl);
@@ -18,23 +18,33 @@ package org.apache.dubbo.registry.zookeeper;
 
 import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
+import org.apache.dubbo.common.URLInterner;
 import org.apache.dubbo.common.logger.Logger;
 import org.apache.dubbo.common.logger.LoggerFactory;
 import org.apache.dubbo.common.utils.ConcurrentHashSet;
 import org.apache.dubbo.common.utils.UrlUtils;
 import org.apache.dubbo.registry.NotifyListener;
 import org.apache.dubbo.registry.support.FailbackRegistry;
+import org.apache.dubbo.remoting.zookeeper.ChildDeltaListener;
 import org.apache.dubbo.remoting.zookeeper.ChildListener;
 import org.apache.dubbo.remoting.zookeeper.StateListener;
 import org.apache.dubbo.remoting.zookeeper.ZookeeperClient;
 import org.apache.dubbo.remoting.zookeeper.ZookeeperTransporter;
+import org.apache.dubbo.remoting.zookeeper.support.ChildDeltaAdapter;
 import org.apache.dubbo.rpc.RpcException;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ZookeeperRegistry
@@ -56,6 +66,11 @@ public class ZookeeperRegistry extends FailbackRegistry {
 
     private final ZookeeperClient zkClient;
 
+    /**
+     * Watch the categories of a subscription concurrently and register the urls of a recovery in batches
+     */
+    private final boolean pipeline;
+
     public ZookeeperRegistry(URL url, ZookeeperTransporter zookeeperTransporter) {
         super(url);
         if (url.isAnyHost()) {
@@ -66,6 +81,7 @@ public class ZookeeperRegistry extends FailbackRegistry {
             group = Constants.PATH_SEPARATOR + group;
         }
         this.root = group;
+        this.pipeline = url.getParameter(Constants.REGISTRY_PIPELINE_KEY, false);
         zkClient = zookeeperTransporter.connect(url);
         zkClient.addStateListener(new StateListener() {
             @Override
@@ -163,28 +179,19 @@ public class ZookeeperRegistry extends FailbackRegistry {
                                 Constants.CHECK_KEY, String.valueOf(false)), listener);
                     }
                 }
+            } else if (pipeline) {
+                String[] paths = toCategoriesPath(url);
+                ChildDeltaAdapter zkListener = toCategoryListener(url, listener);
+                notify(url, listener, awaitCategories(url, paths, watchCategories(paths, zkListener), zkListener, deadline()));
             } else {
                 List<URL> urls = new ArrayList<URL>();
                 for (String path : toCategoriesPath(url)) {
-                    ConcurrentMap<NotifyListener, ChildListener> listeners = zkListeners.get(url);
-                    if (listeners == null) {
-                        zkListeners.putIfAbsent(url, new ConcurrentHashMap<NotifyListener, ChildListener>());
-                        listeners = zkListeners.get(url);
-                    }
-                    ChildListener zkListener = listeners.get(listener);
-                    if (zkListener == null) {
-                        listeners.putIfAbsent(listener, new ChildListener() {
-                            @Override
-                            public void childChanged(String parentPath, List<String> currentChilds) {
-                                ZookeeperRegistry.this.notify(url, listener, toUrlsWithEmpty(url, parentPath, currentChilds));
-                            }
-                        });
-                        zkListener = listeners.get(listener);
-                    }
+                    ChildDeltaAdapter zkListener = toCategoryListener(url, listener);
                     zkClient.create(path, false);
+                    zkListener.expect(path);
                     List<String> children = zkClient.addChildListener(path, zkListener);
                     if (children != null) {
-                        urls.addAll(toUrlsWithEmpty(url, path, children));
+                        urls.addAll(toCategoryUrls(zkListener, path, children));
                     }
                 }
                 notify(url, listener, urls);
@@ -194,6 +201,116 @@ public class ZookeeperRegistry extends FailbackRegistry {
         }
     }
 
+    private ChildDeltaAdapter toCategoryListener(URL url, NotifyListener listener) {
+        ConcurrentMap<NotifyListener, ChildListener> listeners = zkListeners.get(url);
+        if (listeners == null) {
+            zkListeners.putIfAbsent(url, new ConcurrentHashMap<NotifyListener, ChildListener>());
+            listeners = zkListeners.get(url);
+        }
+        ChildListener zkListener = listeners.get(listener);
+        if (zkListener == null) {
+            listeners.putIfAbsent(listener, new ChildDeltaAdapter(new CategoryListener(url, listener)));
+            zkListener = listeners.get(listener);
+        }
+        return (ChildDeltaAdapter) zkListener;
+    }
+
+    private List<URL> toCategoryUrls(ChildDeltaAdapter zkListener, String path, List<String> children) {
+        return ((CategoryListener) zkListener.getListener()).reset(zkListener, path, children);
+    }
+
+    private List<CompletableFuture<List<String>>> watchCategories(String[] paths, ChildDeltaAdapter zkListener) {
+        List<CompletableFuture<List<String>>> futures = new ArrayList<CompletableFuture<List<String>>>(paths.length);
+        for (String path : paths) {
+            zkListener.expect(path);
+            futures.add(zkClient.addChildListenerAsync(path, zkListener));
+        }
+        return futures;
+    }
+
+    private List<URL> awaitCategories(URL url, String[] paths, List<CompletableFuture<List<String>>> futures,
+                                      ChildDeltaAdapter zkListener, long deadline) throws Exception {
+        List<URL> urls = new ArrayList<URL>();
+        for (int i = 0; i < paths.length; i++) {
+            List<String> children = futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (children == null) {
+                // the category is not created yet, which is rare enough to do it the slow way
+                zkClient.create(paths[i], false);
+                children = zkClient.addChildListener(paths[i], zkListener);
+            }
+            if (children != null) {
+                urls.addAll(toCategoryUrls(zkListener, paths[i], children));
+            }
+        }
+        return urls;
+    }
+
+    private long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getUrl().getParameter(Constants.TIMEOUT_KEY, 5000));
+    }
+
+    @Override
+    protected void recover() throws Exception {
+        if (!pipeline) {
+            super.recover();
+            return;
+        }
+        // register
+        Set<URL> recoverRegistered = new HashSet<URL>(getRegistered());
+        if (!recoverRegistered.isEmpty()) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Recover register url " + recoverRegistered);
+            }
+            List<String> ephemeralPaths = new ArrayList<String>();
+            List<String> persistentPaths = new ArrayList<String>();
+            for (URL url : recoverRegistered) {
+                (url.getParameter(Constants.DYNAMIC_KEY, true) ? ephemeralPaths : persistentPaths).add(toUrlPath(url));
+            }
+            try {
+                if (!ephemeralPaths.isEmpty()) {
+                    zkClient.create(ephemeralPaths, true);
+                }
+                if (!persistentPaths.isEmpty()) {
+                    zkClient.create(persistentPaths, false);
+                }
+            } catch (Throwable t) {
+                logger.warn("Failed to recover register url " + recoverRegistered + ", waiting for retry, cause: " + t.getMessage(), t);
+                for (URL url : recoverRegistered) {
+                    addFailedRegistered(url);
+                }
+            }
+        }
+        // subscribe, watch everything before waiting for anything
+        Map<URL, Set<NotifyListener>> recoverSubscribed = new HashMap<URL, Set<NotifyListener>>(getSubscribed());
+        if (!recoverSubscribed.isEmpty()) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Recover subscribe url " + recoverSubscribed.keySet());
+            }
+            List<PendingSubscription> pendings = new ArrayList<PendingSubscription>();
+            for (Map.Entry<URL, Set<NotifyListener>> entry : recoverSubscribed.entrySet()) {
+                URL url = entry.getKey();
+                for (NotifyListener listener : entry.getValue()) {
+                    if (Constants.ANY_VALUE.equals(url.getServiceInterface())) {
+                        addFailedSubscribed(url, listener);
+                    } else {
+                        String[] paths = toCategoriesPath(url);
+                        ChildDeltaAdapter zkListener = toCategoryListener(url, listener);
+                        pendings.add(new PendingSubscription(url, listener, zkListener, paths, watchCategories(paths, zkListener)));
+                    }
+                }
+            }
+            long deadline = deadline();
+            for (PendingSubscription pending : pendings) {
+                try {
+                    notify(pending.url, pending.listener, awaitCategories(pending.url, pending.paths, pending.futures, pending.zkListener, deadline));
+                } catch (Throwable t) {
+                    logger.warn("Failed to recover subscribe url " + pending.url + ", waiting for retry, cause: " + t.getMessage(), t);
+                    addFailedSubscribed(pending.url, pending.listener);
+                }
+            }
+        }
+    }
+
     @Override
     protected void doUnsubscribe(URL url, NotifyListener listener) {
         ConcurrentMap<NotifyListener, ChildListener> listeners = zkListeners.get(url);
@@ -277,21 +394,32 @@ public class ZookeeperRegistry extends FailbackRegistry {
         List<URL> urls = new ArrayList<URL>();
         if (providers != null && !providers.isEmpty()) {
             for (String provider : providers) {
-                provider = URL.decode(provider);
-                if (provider.contains("://")) {
-                    URL url = URL.valueOf(provider);
-                    if (UrlUtils.isMatch(consumer, url)) {
-                        urls.add(url);
-                    }
+                URL url = toUrl(consumer, provider);
+                if (url != null) {
+                    urls.add(url);
                 }
             }
         }
         return urls;
     }
 
-    private List<URL> toUrlsWithEmpty(URL consumer, String path, List<String> providers) {
-        List<URL> urls = toUrlsWithoutEmpty(consumer, providers);
-        if (urls == null || urls.isEmpty()) {
+    /**
+     * @return the url of the provider, null if it is not a url or does not match the consumer
+     */
+    private URL toUrl(URL consumer, String provider) {
+        provider = URL.decode(provider);
+        if (provider.contains("://")) {
+            URL url = URLInterner.valueOf(provider);
+            if (UrlUtils.isMatch(consumer, url)) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    private List<URL> toUrlsWithEmpty(URL consumer, String path, Collection<URL> providers) {
+        List<URL> urls = new ArrayList<URL>(providers);
+        if (urls.isEmpty()) {
             int i = path.lastIndexOf('/');
             String category = i < 0 ? path : path.substring(i + 1);
             URL empty = consumer.setProtocol(Constants.EMPTY_PROTOCOL).addParameter(Constants.CATEGORY_KEY, category);
@@ -300,4 +428,80 @@ public class ZookeeperRegistry extends FailbackRegistry {
         return urls;
     }
 
+    /**
+     * Keeps the matching urls of each category of a subscription, so that a change only parses the children added.
+     * It is guarded by the lock of its adapter, which holds it when forwarding a change.
+     */
+    private class CategoryListener implements ChildDeltaListener {
+
+        private final URL url;
+
+        private final NotifyListener listener;
+
+        /**
+         * The matching urls of each category path, by child
+         */
+        private final Map<String, Map<String, URL>> categories = new HashMap<String, Map<String, URL>>();
+
+        CategoryListener(URL url, NotifyListener listener) {
+            this.url = url;
+            this.listener = listener;
+        }
+
+        List<URL> reset(ChildDeltaAdapter adapter, String path, List<String> children) {
+            synchronized (adapter) {
+                // a change since the path was watched replaces the children
+                children = adapter.reset(path, children);
+                Map<String, URL> urls = new TreeMap<String, URL>();
+                put(urls, children);
+                categories.put(path, urls);
+                return toUrlsWithEmpty(url, path, urls.values());
+            }
+        }
+
+        @Override
+        public void childChanged(String path, List<String> added, List<String> removed) {
+            Map<String, URL> urls = categories.get(path);
+            if (urls == null) {
+                return;
+            }
+            for (String child : removed) {
+                urls.remove(child);
+            }
+            put(urls, added);
+            ZookeeperRegistry.this.notify(url, listener, toUrlsWithEmpty(url, path, urls.values()));
+        }
+
+        private void put(Map<String, URL> urls, List<String> children) {
+            for (String child : children) {
+                URL provider = toUrl(url, child);
+                if (provider != null) {
+                    urls.put(child, provider);
+                }
+            }
+        }
+    }
+
+    private static class PendingSubscription {
+
+        private final URL url;
+
+        private final NotifyListener listener;
+
+        private final ChildDeltaAdapter zkListener;
+
+        private final String[] paths;
+
+        private final List<CompletableFuture<List<String>>> futures;
+
+        PendingSubscription(URL url, NotifyListener listener, ChildDeltaAdapter zkListener, String[] paths,
+                            List<CompletableFuture<List<String>>> futures) {
+            this.url = url;
+            this.listener = listener;
+            this.zkListener = zkListener;
+            this.paths = paths;
+            this.futures = futures;
+        }
+    }
+
 }
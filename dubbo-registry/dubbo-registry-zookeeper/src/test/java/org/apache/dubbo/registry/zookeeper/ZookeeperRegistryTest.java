@@ -30,10 +30,14 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
@@ -146,6 +150,59 @@ public class ZookeeperRegistryTest {
         assertThat(status.getLevel(), is(Status.Level.OK));
     }
 
+    @Test
+    public void testIncrementalNotify() throws Exception {
+        URL other = serviceUrl.setPort(20881);
+        final BlockingQueue<List<URL>> notified = new LinkedBlockingQueue<List<URL>>();
+        zookeeperRegistry.register(serviceUrl);
+        zookeeperRegistry.subscribe(serviceUrl, new NotifyListener() {
+            @Override
+            public void notify(List<URL> urls) {
+                notified.add(urls);
+            }
+        });
+        assertThat(notified.poll(5, TimeUnit.SECONDS), is(Collections.singletonList(serviceUrl)));
+
+        zookeeperRegistry.register(other);
+        List<URL> urls = notified.poll(5, TimeUnit.SECONDS);
+        assertThat(urls.size(), is(2));
+        assertThat(urls, hasItems(serviceUrl, other));
+
+        zookeeperRegistry.unregister(serviceUrl);
+        assertThat(notified.poll(5, TimeUnit.SECONDS), is(Collections.singletonList(other)));
+
+        zookeeperRegistry.unregister(other);
+        urls = notified.poll(5, TimeUnit.SECONDS);
+        assertThat(urls.size(), is(1));
+        assertThat(urls.get(0).getProtocol(), is("empty"));
+    }
+
+    @Test
+    public void testPipeline() throws Exception {
+        ZookeeperRegistry registry = (ZookeeperRegistry) zookeeperRegistryFactory.createRegistry(
+                registryUrl.addParameter("pipeline", true));
+        final BlockingQueue<List<URL>> notified = new LinkedBlockingQueue<List<URL>>();
+        registry.register(serviceUrl);
+        registry.subscribe(serviceUrl, new NotifyListener() {
+            @Override
+            public void notify(List<URL> urls) {
+                notified.add(urls);
+            }
+        });
+        assertThat(notified.poll(5, TimeUnit.SECONDS), hasItem(serviceUrl));
+
+        // the node is lost, but still registered
+        registry.doUnregister(serviceUrl);
+        assertThat(registry.lookup(serviceUrl).size(), is(0));
+        notified.clear();
+        registry.recover();
+        assertThat(registry.lookup(serviceUrl).size(), is(1));
+        assertThat(registry.getFailedRegistered().isEmpty(), is(true));
+        assertThat(registry.getFailedSubscribed().isEmpty(), is(true));
+        assertThat(notified.poll(5, TimeUnit.SECONDS), notNullValue());
+        registry.destroy();
+    }
+
     @Test
     public void testSubscribeAnyValue() throws InterruptedException {
         final CountDownLatch latch = new CountDownLatch(1);
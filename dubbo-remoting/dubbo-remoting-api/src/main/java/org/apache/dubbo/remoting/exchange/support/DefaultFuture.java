@@ -68,6 +68,7 @@ public class DefaultFuture implements ResponseFuture {
     private volatile long sent;
     private volatile Response response;
     private volatile ResponseCallback callback;
+    private volatile Timeout timeoutCheckTask;
 
     private DefaultFuture(Channel channel, Request request, int timeout) {
         this.channel = channel;
@@ -84,7 +85,7 @@ public class DefaultFuture implements ResponseFuture {
      */
     private static void timeoutCheck(DefaultFuture future) {
         TimeoutCheckTask task = new TimeoutCheckTask(future);
-        TIME_OUT_TIMER.newTimeout(task, future.getTimeout(), TimeUnit.MILLISECONDS);
+        future.timeoutCheckTask = TIME_OUT_TIMER.newTimeout(task, future.getTimeout(), TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -197,6 +198,10 @@ public class DefaultFuture implements ResponseFuture {
         response = errorResult;
         FUTURES.remove(id);
         CHANNELS.remove(id);
+        Timeout task = timeoutCheckTask;
+        if (task != null) {
+            task.cancel();
+        }
     }
 
     @Override
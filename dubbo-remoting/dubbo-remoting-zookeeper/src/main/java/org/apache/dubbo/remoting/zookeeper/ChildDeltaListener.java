@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.remoting.zookeeper;
+
+import java.util.List;
+
+/**
+ * A lighter variant of {@link ChildListener} told only about the children that changed.
+ *
+ * @see org.apache.dubbo.remoting.zookeeper.support.ChildDeltaAdapter
+ */
+public interface ChildDeltaListener {
+
+    /**
+     * @param path    the parent path
+     * @param added   the children added since the last notification of the path, sorted
+     * @param removed the children removed since the last notification of the path, sorted
+     */
+    void childChanged(String path, List<String> added, List<String> removed);
+
+}
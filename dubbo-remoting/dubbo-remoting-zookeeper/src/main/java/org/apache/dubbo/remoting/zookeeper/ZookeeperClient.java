@@ -18,18 +18,33 @@ package org.apache.dubbo.remoting.zookeeper;
 
 import org.apache.dubbo.common.URL;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ZookeeperClient {
 
     void create(String path, boolean ephemeral);
 
+    /**
+     * Create the nodes in as few round trips as possible, their parents are created as persistent nodes.
+     */
+    void create(Collection<String> paths, boolean ephemeral);
+
     void delete(String path);
 
     List<String> getChildren(String path);
 
     List<String> addChildListener(String path, ChildListener listener);
 
+    /**
+     * Same as {@link #addChildListener(String, ChildListener)} without waiting for the children, so that the
+     * children of many paths can be fetched at once.
+     *
+     * @return the future of the children, null if the path does not exist
+     */
+    CompletableFuture<List<String>> addChildListenerAsync(String path, ChildListener listener);
+
     void removeChildListener(String path, ChildListener listener);
 
     void addStateListener(StateListener listener);
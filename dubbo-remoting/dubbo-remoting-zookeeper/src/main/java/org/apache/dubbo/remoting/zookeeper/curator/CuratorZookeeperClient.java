@@ -25,20 +25,33 @@ import org.apache.dubbo.remoting.zookeeper.support.AbstractZookeeperClient;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.retry.RetryNTimes;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.NoNodeException;
 import org.apache.zookeeper.KeeperException.NodeExistsException;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.WatchedEvent;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class CuratorZookeeperClient extends AbstractZookeeperClient<CuratorWatcher> {
 
+    /**
+     * The operations of one transaction, well below the default 1MB packet limit of the server
+     */
+    private static final int MAX_TRANSACTION_OPS = 100;
+
     private final CuratorFramework client;
 
     public CuratorZookeeperClient(URL url) {
@@ -92,6 +105,48 @@ public class CuratorZookeeperClient extends AbstractZookeeperClient<CuratorWatch
         }
     }
 
+    @Override
+    protected void createAll(List<String> paths, boolean ephemeral) {
+        CreateMode mode = ephemeral ? CreateMode.EPHEMERAL : CreateMode.PERSISTENT;
+        for (int from = 0; from < paths.size(); from += MAX_TRANSACTION_OPS) {
+            List<String> batch = new ArrayList<String>(paths.subList(from, Math.min(paths.size(), from + MAX_TRANSACTION_OPS)));
+            while (!batch.isEmpty()) {
+                try {
+                    CuratorTransaction transaction = client.inTransaction();
+                    CuratorTransactionFinal last = null;
+                    for (String path : batch) {
+                        last = transaction.create().withMode(mode).forPath(path).and();
+                        transaction = last;
+                    }
+                    last.commit();
+                    break;
+                } catch (NodeExistsException e) {
+                    // the whole transaction is rolled back, retry it without the node that exists
+                    int existing = indexOfExisting(e.getResults());
+                    if (existing < 0) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                    batch.remove(existing);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private static int indexOfExisting(List<OpResult> results) {
+        if (results != null) {
+            for (int i = 0; i < results.size(); i++) {
+                OpResult result = results.get(i);
+                if (result instanceof OpResult.ErrorResult
+                        && ((OpResult.ErrorResult) result).getErr() == KeeperException.Code.NODEEXISTS.intValue()) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
     @Override
     public void delete(String path) {
         try {
@@ -149,6 +204,29 @@ public class CuratorZookeeperClient extends AbstractZookeeperClient<CuratorWatch
         }
     }
 
+    @Override
+    protected CompletableFuture<List<String>> addTargetChildListenerAsync(final String path, CuratorWatcher listener) {
+        final CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+        try {
+            client.getChildren().usingWatcher(listener).inBackground(new BackgroundCallback() {
+                @Override
+                public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+                    KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+                    if (code == KeeperException.Code.OK) {
+                        future.complete(event.getChildren());
+                    } else if (code == KeeperException.Code.NONODE) {
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(KeeperException.create(code, path));
+                    }
+                }
+            }).forPath(path);
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     @Override
     public void removeTargetChildListener(String path, CuratorWatcher listener) {
         ((CuratorWatcherImpl) listener).unwatch();
@@ -23,11 +23,16 @@ import org.apache.dubbo.remoting.zookeeper.ChildListener;
 import org.apache.dubbo.remoting.zookeeper.StateListener;
 import org.apache.dubbo.remoting.zookeeper.ZookeeperClient;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Function;
 
 public abstract class AbstractZookeeperClient<TargetChildListener> implements ZookeeperClient {
 
@@ -37,7 +42,7 @@ public abstract class AbstractZookeeperClient<TargetChildListener> implements Zo
 
     private final Set<StateListener> stateListeners = new CopyOnWriteArraySet<StateListener>();
 
-    private final ConcurrentMap<String, ConcurrentMap<ChildListener, TargetChildListener>> childListeners = new ConcurrentHashMap<String, ConcurrentMap<ChildListener, TargetChildListener>>();
+    private final ConcurrentMap<String, PathWatcher> childListeners = new ConcurrentHashMap<String, PathWatcher>();
 
     private volatile boolean closed = false;
 
@@ -68,6 +73,37 @@ public abstract class AbstractZookeeperClient<TargetChildListener> implements Zo
         }
     }
 
+    @Override
+    public void create(Collection<String> paths, boolean ephemeral) {
+        Set<String> parents = new HashSet<String>();
+        List<String> creates = new ArrayList<String>(paths.size());
+        for (String path : paths) {
+            int i = path.lastIndexOf('/');
+            if (i > 0 && parents.add(path.substring(0, i))) {
+                create(path.substring(0, i), false);
+            }
+            if (ephemeral || !checkExists(path)) {
+                creates.add(path);
+            }
+        }
+        if (!creates.isEmpty()) {
+            createAll(creates, ephemeral);
+        }
+    }
+
+    /**
+     * Create the nodes whose parents exist, one by one unless overridden.
+     */
+    protected void createAll(List<String> paths, boolean ephemeral) {
+        for (String path : paths) {
+            if (ephemeral) {
+                createEphemeral(path);
+            } else {
+                createPersistent(path);
+            }
+        }
+    }
+
     @Override
     public void addStateListener(StateListener listener) {
         stateListeners.add(listener);
@@ -84,31 +120,67 @@ public abstract class AbstractZookeeperClient<TargetChildListener> implements Zo
 
     @Override
     public List<String> addChildListener(String path, final ChildListener listener) {
-        ConcurrentMap<ChildListener, TargetChildListener> listeners = childListeners.get(path);
-        if (listeners == null) {
-            childListeners.putIfAbsent(path, new ConcurrentHashMap<ChildListener, TargetChildListener>());
-            listeners = childListeners.get(path);
+        PathWatcher watcher = watch(path, listener);
+        List<String> children = watcher.children;
+        if (children != null) {
+            return new ArrayList<String>(children);
         }
-        TargetChildListener targetListener = listeners.get(listener);
-        if (targetListener == null) {
-            listeners.putIfAbsent(listener, createTargetChildListener(path, listener));
-            targetListener = listeners.get(listener);
+        return watcher.update(addTargetChildListener(path, watcher.target));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> addChildListenerAsync(String path, ChildListener listener) {
+        final PathWatcher watcher = watch(path, listener);
+        List<String> children = watcher.children;
+        if (children != null) {
+            return CompletableFuture.completedFuture((List<String>) new ArrayList<String>(children));
         }
-        return addTargetChildListener(path, targetListener);
+        return addTargetChildListenerAsync(path, watcher.target).thenApply(new Function<List<String>, List<String>>() {
+            @Override
+            public List<String> apply(List<String> children) {
+                return watcher.update(children);
+            }
+        });
     }
 
     @Override
     public void removeChildListener(String path, ChildListener listener) {
-        ConcurrentMap<ChildListener, TargetChildListener> listeners = childListeners.get(path);
-        if (listeners != null) {
-            TargetChildListener targetListener = listeners.remove(listener);
-            if (targetListener != null) {
-                removeTargetChildListener(path, targetListener);
+        PathWatcher watcher = childListeners.get(path);
+        if (watcher != null) {
+            synchronized (watcher) {
+                if (!watcher.listeners.remove(listener) || !watcher.listeners.isEmpty()) {
+                    return;
+                }
+                watcher.removed = true;
+                childListeners.remove(path, watcher);
+            }
+            removeTargetChildListener(path, watcher.target);
+        }
+    }
+
+    private PathWatcher watch(String path, ChildListener listener) {
+        while (true) {
+            PathWatcher watcher = childListeners.get(path);
+            if (watcher == null) {
+                childListeners.putIfAbsent(path, new PathWatcher(path));
+                watcher = childListeners.get(path);
+            }
+            synchronized (watcher) {
+                if (!watcher.removed) {
+                    watcher.listeners.add(listener);
+                    return watcher;
+                }
             }
         }
     }
 
     protected void stateChanged(int state) {
+        if (state == StateListener.RECONNECTED) {
+            // the watches may be lost with the session, the next listener of each path watches it again
+            for (PathWatcher watcher : childListeners.values()) {
+                watcher.children = null;
+            }
+        }
         for (StateListener sessionListener : getSessionListeners()) {
             sessionListener.stateChanged(state);
         }
@@ -139,6 +211,59 @@ public abstract class AbstractZookeeperClient<TargetChildListener> implements Zo
 
     protected abstract List<String> addTargetChildListener(String path, TargetChildListener listener);
 
+    /**
+     * Watch the children without waiting for them, in the calling thread unless overridden.
+     */
+    protected CompletableFuture<List<String>> addTargetChildListenerAsync(String path, TargetChildListener listener) {
+        CompletableFuture<List<String>> future = new CompletableFuture<List<String>>();
+        try {
+            future.complete(addTargetChildListener(path, listener));
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+        return future;
+    }
+
     protected abstract void removeTargetChildListener(String path, TargetChildListener listener);
 
+    /**
+     * A single watch of a path, shared by all of its listeners. It keeps the last children it saw, so that a new
+     * listener of the path gets them without a round trip.
+     */
+    private class PathWatcher implements ChildListener {
+
+        private final String path;
+
+        private final Set<ChildListener> listeners = new CopyOnWriteArraySet<ChildListener>();
+
+        private final TargetChildListener target;
+
+        /**
+         * The children, null when they are not known or the path is not watched
+         */
+        private volatile List<String> children;
+
+        private boolean removed;
+
+        PathWatcher(String path) {
+            this.path = path;
+            this.target = createTargetChildListener(path, this);
+        }
+
+        List<String> update(List<String> children) {
+            this.children = children == null ? null : new ArrayList<String>(children);
+            return children;
+        }
+
+        @Override
+        public void childChanged(String parentPath, List<String> currentChilds) {
+            if (path.equals(parentPath)) {
+                update(currentChilds);
+            }
+            for (ChildListener listener : listeners) {
+                listener.childChanged(parentPath, currentChilds);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.remoting.zookeeper.support;
+
+import org.apache.dubbo.remoting.zookeeper.ChildDeltaListener;
+import org.apache.dubbo.remoting.zookeeper.ChildListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns the full children lists of the watched paths into deltas. It keeps a sorted snapshot of the children of each
+ * path given to {@link #reset(String, List)}, the changes of other paths are ignored.
+ * <p>
+ * A watch may fire before the children it returned are given to {@link #reset(String, List)}. Call
+ * {@link #expect(String)} before watching a path, so that such a change is kept instead of being lost.
+ */
+public class ChildDeltaAdapter implements ChildListener {
+
+    private static final String[] EMPTY = new String[0];
+
+    private final ChildDeltaListener listener;
+
+    private final Map<String, String[]> snapshots = new HashMap<String, String[]>();
+
+    /**
+     * The paths about to be watched, not reset yet
+     */
+    private final Set<String> expected = new HashSet<String>();
+
+    public ChildDeltaAdapter(ChildDeltaListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener == null");
+        }
+        this.listener = listener;
+    }
+
+    public ChildDeltaListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Track a path about to be watched: until it is reset, its changes are kept for the reset instead of being
+     * forwarded.
+     */
+    public synchronized void expect(String path) {
+        expected.add(path);
+        snapshots.remove(path);
+    }
+
+    /**
+     * Set the children the listener knows of a path, usually those returned when the path was watched. If the path
+     * changed since {@link #expect(String)}, the children of that change are newer and replace the given ones.
+     *
+     * @return the children known of the path
+     */
+    public synchronized List<String> reset(String path, List<String> children) {
+        if (expected.remove(path)) {
+            String[] changed = snapshots.get(path);
+            if (changed != null) {
+                return Arrays.asList(changed);
+            }
+        }
+        snapshots.put(path, sort(children));
+        return children;
+    }
+
+    @Override
+    public synchronized void childChanged(String path, List<String> children) {
+        String[] current = sort(children);
+        if (expected.contains(path)) {
+            // watched but not reset yet, the reset takes these children
+            snapshots.put(path, current);
+            return;
+        }
+        String[] previous = snapshots.get(path);
+        if (previous == null) {
+            return;
+        }
+        List<String> added = Collections.emptyList();
+        List<String> removed = Collections.emptyList();
+        int i = 0;
+        int j = 0;
+        while (i < previous.length || j < current.length) {
+            int c = i == previous.length ? 1 : j == current.length ? -1 : previous[i].compareTo(current[j]);
+            if (c < 0) {
+                removed = add(removed, previous[i++]);
+            } else if (c > 0) {
+                added = add(added, current[j++]);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        snapshots.put(path, current);
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            listener.childChanged(path, added, removed);
+        }
+    }
+
+    private static String[] sort(List<String> children) {
+        if (children == null || children.isEmpty()) {
+            return EMPTY;
+        }
+        String[] sorted = children.toArray(new String[children.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static List<String> add(List<String> list, String child) {
+        if (list.isEmpty()) {
+            list = new ArrayList<String>();
+        }
+        list.add(child);
+        return list;
+    }
+
+}
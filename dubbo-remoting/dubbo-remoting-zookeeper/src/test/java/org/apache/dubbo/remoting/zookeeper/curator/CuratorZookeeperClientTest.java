@@ -26,12 +26,20 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
 public class CuratorZookeeperClientTest {
     private TestingServer zkServer;
@@ -100,6 +108,43 @@ public class CuratorZookeeperClientTest {
         curatorClient.removeChildListener("/children", childListener);
     }
 
+    @Test
+    public void testCreateInBatch() {
+        String path = "/dubbo/org.apache.dubbo.demo.DemoService/providers";
+        curatorClient.create(path + "/provider2", false);
+        curatorClient.create(Arrays.asList(path + "/provider1", path + "/provider2", path + "/provider3"), true);
+        assertThat(curatorClient.getChildren(path), containsInAnyOrder("provider1", "provider2", "provider3"));
+    }
+
+    @Test
+    public void testAddChildListenerAsync() throws Exception {
+        String path = "/dubbo/org.apache.dubbo.demo.DemoService/providers";
+        curatorClient.create(path + "/provider1", false);
+        ChildListener childListener = mock(ChildListener.class);
+        List<String> children = curatorClient.addChildListenerAsync(path, childListener).get(5, TimeUnit.SECONDS);
+        assertThat(children, containsInAnyOrder("provider1"));
+        assertThat(curatorClient.addChildListenerAsync("/none", childListener).get(5, TimeUnit.SECONDS), nullValue());
+
+        curatorClient.create(path + "/provider2", false);
+        verify(childListener, timeout(5000)).childChanged(eq(path), argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    public void testSharedChildListener() {
+        String path = "/dubbo/org.apache.dubbo.demo.DemoService/providers";
+        curatorClient.create(path + "/provider1", false);
+        ChildListener first = mock(ChildListener.class);
+        ChildListener second = mock(ChildListener.class);
+        assertThat(curatorClient.addChildListener(path, first), containsInAnyOrder("provider1"));
+        // served by the watch of the first listener
+        assertThat(curatorClient.addChildListener(path, second), containsInAnyOrder("provider1"));
+
+        curatorClient.removeChildListener(path, first);
+        curatorClient.create(path + "/provider2", false);
+        verify(second, timeout(5000)).childChanged(eq(path), argThat(list -> list.size() == 2));
+        assertThat(curatorClient.addChildListener(path, first), containsInAnyOrder("provider1", "provider2"));
+    }
+
     @Test
     public void testCreateExistingPath() {
         curatorClient.create("/pathOne", false);
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.remoting.zookeeper.support;
+
+import org.apache.dubbo.remoting.zookeeper.ChildDeltaListener;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ChildDeltaAdapterTest {
+
+    @Test
+    public void testDelta() {
+        ChildDeltaListener listener = mock(ChildDeltaListener.class);
+        ChildDeltaAdapter adapter = new ChildDeltaAdapter(listener);
+        adapter.reset("/path", Arrays.asList("c", "a", "d"));
+
+        adapter.childChanged("/path", Arrays.asList("e", "d", "b", "a"));
+        verify(listener).childChanged("/path", Arrays.asList("b", "e"), Collections.singletonList("c"));
+
+        adapter.childChanged("/path", null);
+        verify(listener).childChanged("/path", Collections.<String>emptyList(), Arrays.asList("a", "b", "d", "e"));
+    }
+
+    @Test
+    public void testUnchangedOrUnknownPath() {
+        ChildDeltaListener listener = mock(ChildDeltaListener.class);
+        ChildDeltaAdapter adapter = new ChildDeltaAdapter(listener);
+        adapter.reset("/path", Arrays.asList("a", "b"));
+
+        adapter.childChanged("/path", Arrays.asList("b", "a"));
+        adapter.childChanged("", Collections.<String>emptyList());
+        adapter.childChanged("/other", Collections.singletonList("a"));
+        verify(listener, never()).childChanged(anyString(), anyList(), anyList());
+    }
+
+    @Test
+    public void testChangeBeforeReset() {
+        ChildDeltaListener listener = mock(ChildDeltaListener.class);
+        ChildDeltaAdapter adapter = new ChildDeltaAdapter(listener);
+        adapter.expect("/path");
+
+        // the watch fires before the children it returned are reset
+        adapter.childChanged("/path", Arrays.asList("b", "a"));
+        verify(listener, never()).childChanged(anyString(), anyList(), anyList());
+        assertEquals(Arrays.asList("a", "b"), adapter.reset("/path", Collections.singletonList("a")));
+
+        adapter.childChanged("/path", Arrays.asList("a", "b", "c"));
+        verify(listener).childChanged("/path", Collections.singletonList("c"), Collections.<String>emptyList());
+    }
+
+    @Test
+    public void testResetWithoutChange() {
+        ChildDeltaListener listener = mock(ChildDeltaListener.class);
+        ChildDeltaAdapter adapter = new ChildDeltaAdapter(listener);
+        adapter.reset("/path", Collections.singletonList("a"));
+        adapter.expect("/path");
+
+        assertEquals(Arrays.asList("a", "b"), adapter.reset("/path", Arrays.asList("a", "b")));
+        adapter.childChanged("/path", Collections.singletonList("b"));
+        verify(listener).childChanged("/path", Collections.<String>emptyList(), Collections.singletonList("a"));
+    }
+
+}
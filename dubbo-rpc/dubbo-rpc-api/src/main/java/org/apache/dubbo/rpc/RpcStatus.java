@@ -18,15 +18,20 @@ package org.apache.dubbo.rpc;
 
 import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.support.ConcurrencyLimiter;
 
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * URL statistics. (API, Cached, ThreadSafe)
+ * <p>
+ * The counters are striped ({@link LongAdder} and {@link LongAccumulator}), so that concurrent calls update
+ * different padded cells instead of the same cache line. Reading a counter sums its cells and is not atomic
+ * with the other counters, use {@link #getSnapshot()} to read them all at once.
  *
  * @see org.apache.dubbo.rpc.filter.ActiveLimitFilter
  * @see org.apache.dubbo.rpc.filter.ExecuteLimitFilter
@@ -38,14 +43,14 @@ public class RpcStatus {
 
     private static final ConcurrentMap<String, ConcurrentMap<String, RpcStatus>> METHOD_STATISTICS = new ConcurrentHashMap<String, ConcurrentMap<String, RpcStatus>>();
     private final ConcurrentMap<String, Object> values = new ConcurrentHashMap<String, Object>();
-    private final AtomicInteger active = new AtomicInteger();
-    private final AtomicLong total = new AtomicLong();
-    private final AtomicInteger failed = new AtomicInteger();
-    private final AtomicLong totalElapsed = new AtomicLong();
-    private final AtomicLong failedElapsed = new AtomicLong();
-    private final AtomicLong maxElapsed = new AtomicLong();
-    private final AtomicLong failedMaxElapsed = new AtomicLong();
-    private final AtomicLong succeededMaxElapsed = new AtomicLong();
+    private final LongAdder active = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalElapsed = new LongAdder();
+    private final LongAdder failedElapsed = new LongAdder();
+    private final LongAccumulator maxElapsed = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator failedMaxElapsed = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator succeededMaxElapsed = new LongAccumulator(Math::max, 0);
 
     /**
      * Semaphore used to control concurrency limit set by `executes`
@@ -53,6 +58,16 @@ public class RpcStatus {
     private volatile Semaphore executesLimit;
     private volatile int executesPermits;
 
+    /**
+     * Limiter of the concurrent invocations set by `actives`, on the consumer side
+     */
+    private volatile ConcurrencyLimiter activesLimiter;
+
+    /**
+     * Limiter of the concurrent invocations set by `executes`, on the provider side
+     */
+    private volatile ConcurrencyLimiter executesLimiter;
+
     private RpcStatus() {
     }
 
@@ -118,7 +133,7 @@ public class RpcStatus {
     }
 
     private static void beginCount(RpcStatus status) {
-        status.active.incrementAndGet();
+        status.active.increment();
     }
 
     /**
@@ -132,22 +147,17 @@ public class RpcStatus {
     }
 
     private static void endCount(RpcStatus status, long elapsed, boolean succeeded) {
-        status.active.decrementAndGet();
-        status.total.incrementAndGet();
-        status.totalElapsed.addAndGet(elapsed);
-        if (status.maxElapsed.get() < elapsed) {
-            status.maxElapsed.set(elapsed);
-        }
+        status.active.decrement();
+        status.total.increment();
+        status.totalElapsed.add(elapsed);
+        // no write unless the maximum changes
+        status.maxElapsed.accumulate(elapsed);
         if (succeeded) {
-            if (status.succeededMaxElapsed.get() < elapsed) {
-                status.succeededMaxElapsed.set(elapsed);
-            }
+            status.succeededMaxElapsed.accumulate(elapsed);
         } else {
-            status.failed.incrementAndGet();
-            status.failedElapsed.addAndGet(elapsed);
-            if (status.failedMaxElapsed.get() < elapsed) {
-                status.failedMaxElapsed.set(elapsed);
-            }
+            status.failed.increment();
+            status.failedElapsed.add(elapsed);
+            status.failedMaxElapsed.accumulate(elapsed);
         }
     }
 
@@ -177,7 +187,7 @@ public class RpcStatus {
      * @return active
      */
     public int getActive() {
-        return active.get();
+        return active.intValue();
     }
 
     /**
@@ -195,7 +205,7 @@ public class RpcStatus {
      * @return total elapsed
      */
     public long getTotalElapsed() {
-        return totalElapsed.get();
+        return totalElapsed.sum();
     }
 
     /**
@@ -226,7 +236,7 @@ public class RpcStatus {
      * @return failed
      */
     public int getFailed() {
-        return failed.get();
+        return failed.intValue();
     }
 
     /**
@@ -235,7 +245,7 @@ public class RpcStatus {
      * @return failed elapsed
      */
     public long getFailedElapsed() {
-        return failedElapsed.get();
+        return failedElapsed.sum();
     }
 
     /**
@@ -317,7 +327,9 @@ public class RpcStatus {
      *
      * @param maxThreadNum value of {@link Constants#EXECUTES_KEY}
      * @return thread number semaphore
+     * @deprecated use {@link #getExecutesLimiter(int)}
      */
+    @Deprecated
     public Semaphore getSemaphore(int maxThreadNum) {
         if(maxThreadNum <= 0) {
             return null;
@@ -334,4 +346,136 @@ public class RpcStatus {
 
         return executesLimit;
     }
+
+    /**
+     * Get the limiter of the concurrent invocations on the consumer side, a new one is created when the limit changes.
+     *
+     * @param max value of {@link Constants#ACTIVES_KEY}
+     * @return the limiter, null if there is no limit
+     */
+    public ConcurrencyLimiter getActivesLimiter(int max) {
+        if (max <= 0) {
+            return null;
+        }
+        ConcurrencyLimiter current = activesLimiter;
+        if (current == null || current.getMax() != max) {
+            synchronized (this) {
+                current = activesLimiter;
+                if (current == null || current.getMax() != max) {
+                    current = new ConcurrencyLimiter(max);
+                    activesLimiter = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get the limiter of the concurrent invocations on the provider side, a new one is created when the limit changes.
+     *
+     * @param max value of {@link Constants#EXECUTES_KEY}
+     * @return the limiter, null if there is no limit
+     */
+    public ConcurrencyLimiter getExecutesLimiter(int max) {
+        if (max <= 0) {
+            return null;
+        }
+        ConcurrencyLimiter current = executesLimiter;
+        if (current == null || current.getMax() != max) {
+            synchronized (this) {
+                current = executesLimiter;
+                if (current == null || current.getMax() != max) {
+                    current = new ConcurrencyLimiter(max);
+                    executesLimiter = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Read all the counters once.
+     *
+     * @return the statistics at this time
+     */
+    public Snapshot getSnapshot() {
+        return new Snapshot(active.intValue(), total.sum(), failed.intValue(), totalElapsed.sum(), failedElapsed.sum(),
+                maxElapsed.get(), failedMaxElapsed.get(), succeededMaxElapsed.get());
+    }
+
+    /**
+     * Statistics read at once. (API, Immutable)
+     */
+    public static final class Snapshot {
+
+        private final int active;
+        private final long total;
+        private final int failed;
+        private final long totalElapsed;
+        private final long failedElapsed;
+        private final long maxElapsed;
+        private final long failedMaxElapsed;
+        private final long succeededMaxElapsed;
+
+        Snapshot(int active, long total, int failed, long totalElapsed, long failedElapsed,
+                 long maxElapsed, long failedMaxElapsed, long succeededMaxElapsed) {
+            this.active = active;
+            this.total = total;
+            this.failed = failed;
+            this.totalElapsed = totalElapsed;
+            this.failedElapsed = failedElapsed;
+            this.maxElapsed = maxElapsed;
+            this.failedMaxElapsed = failedMaxElapsed;
+            this.succeededMaxElapsed = succeededMaxElapsed;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public long getTotalElapsed() {
+            return totalElapsed;
+        }
+
+        public long getFailedElapsed() {
+            return failedElapsed;
+        }
+
+        public long getMaxElapsed() {
+            return maxElapsed;
+        }
+
+        public long getFailedMaxElapsed() {
+            return failedMaxElapsed;
+        }
+
+        public long getSucceededMaxElapsed() {
+            return succeededMaxElapsed;
+        }
+
+        public long getSucceeded() {
+            return total - failed;
+        }
+
+        public long getAverageElapsed() {
+            return total == 0 ? 0 : totalElapsed / total;
+        }
+
+        public long getFailedAverageElapsed() {
+            return failed == 0 ? 0 : failedElapsed / failed;
+        }
+
+        public long getSucceededAverageElapsed() {
+            long succeeded = getSucceeded();
+            return succeeded == 0 ? 0 : (totalElapsed - failedElapsed) / succeeded;
+        }
+    }
 }
\ No newline at end of file
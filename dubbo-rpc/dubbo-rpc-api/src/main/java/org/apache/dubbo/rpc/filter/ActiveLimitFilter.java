@@ -19,51 +19,49 @@ package org.apache.dubbo.rpc.filter;
 import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
 import org.apache.dubbo.common.extension.Activate;
+import org.apache.dubbo.common.timer.HashedWheelTimer;
+import org.apache.dubbo.common.timer.Timeout;
+import org.apache.dubbo.common.timer.Timer;
+import org.apache.dubbo.common.utils.NamedThreadFactory;
+import org.apache.dubbo.rpc.AsyncRpcResult;
 import org.apache.dubbo.rpc.Filter;
 import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcContext;
 import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.RpcResult;
 import org.apache.dubbo.rpc.RpcStatus;
+import org.apache.dubbo.rpc.SimpleAsyncRpcResult;
+import org.apache.dubbo.rpc.support.ConcurrencyLimiter;
+import org.apache.dubbo.rpc.support.RpcUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * LimitInvokerFilter
+ * <p>
+ * Synchronous invocations wait for a permit on their own thread. Asynchronous invocations never block: they are queued
+ * and sent by the invocation which releases a permit, with the attachments of their caller, or fail once their timeout
+ * is over.
+ * The permit of an asynchronous invocation is released when its response arrives.
  */
 @Activate(group = Constants.CONSUMER, value = Constants.ACTIVES_KEY)
 public class ActiveLimitFilter implements Filter {
 
+    private static final Timer WAIT_TIMER = new HashedWheelTimer(
+            new NamedThreadFactory("dubbo-actives-timeout", true), 30, TimeUnit.MILLISECONDS);
+
     @Override
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
         URL url = invoker.getUrl();
         String methodName = invocation.getMethodName();
         int max = invoker.getUrl().getMethodParameter(methodName, Constants.ACTIVES_KEY, 0);
-        RpcStatus count = RpcStatus.getStatus(invoker.getUrl(), invocation.getMethodName());
-        if (max > 0) {
-            long timeout = invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.TIMEOUT_KEY, 0);
-            long start = System.currentTimeMillis();
-            long remain = timeout;
-            int active = count.getActive();
-            if (active >= max) {
-                synchronized (count) {
-                    while ((active = count.getActive()) >= max) {
-                        try {
-                            count.wait(remain);
-                        } catch (InterruptedException e) {
-                        }
-                        long elapsed = System.currentTimeMillis() - start;
-                        remain = timeout - elapsed;
-                        if (remain <= 0) {
-                            throw new RpcException("Waiting concurrent invoke timeout in client-side for service:  "
-                                    + invoker.getInterface().getName() + ", method: "
-                                    + invocation.getMethodName() + ", elapsed: " + elapsed
-                                    + ", timeout: " + timeout + ". concurrent invokes: " + active
-                                    + ". max concurrent invoke limit: " + max);
-                        }
-                    }
-                }
-            }
-        }
-        try {
+        if (max <= 0) {
             long begin = System.currentTimeMillis();
             RpcStatus.beginCount(url, methodName);
             try {
@@ -74,13 +72,130 @@ public class ActiveLimitFilter implements Filter {
                 RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, false);
                 throw t;
             }
-        } finally {
-            if (max > 0) {
-                synchronized (count) {
-                    count.notify();
-                }
+        }
+        ConcurrencyLimiter limiter = RpcStatus.getStatus(url, methodName).getActivesLimiter(max);
+        if (!limiter.tryAcquire()) {
+            long timeout = invoker.getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+            if (RpcUtils.isAsync(url, invocation)) {
+                return invokeLater(invoker, invocation, limiter, timeout);
+            }
+            long start = System.currentTimeMillis();
+            boolean acquired;
+            try {
+                acquired = limiter.acquire(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            if (!acquired) {
+                throw waitTimeout(invoker, invocation, limiter, System.currentTimeMillis() - start, timeout);
+            }
+        }
+        return invokeWithPermit(invoker, invocation, limiter);
+    }
+
+    /**
+     * Invoke while holding a permit, which is released when the invocation completes.
+     */
+    private Result invokeWithPermit(Invoker<?> invoker, Invocation invocation, final ConcurrencyLimiter limiter) {
+        final URL url = invoker.getUrl();
+        final String methodName = invocation.getMethodName();
+        final long begin = System.currentTimeMillis();
+        RpcStatus.beginCount(url, methodName);
+        Result result;
+        try {
+            result = invoker.invoke(invocation);
+        } catch (RuntimeException t) {
+            RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, false);
+            limiter.release();
+            throw t;
+        }
+        if (result instanceof AsyncRpcResult) {
+            CompletableFuture<?> valueFuture = ((AsyncRpcResult) result).getValueFuture();
+            valueFuture.whenComplete((value, t) -> {
+                RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, t == null);
+                limiter.release();
+            });
+        } else {
+            RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, true);
+            limiter.release();
+        }
+        return result;
+    }
+
+    /**
+     * Queue an asynchronous invocation until a permit is free, the calling thread returns at once.
+     */
+    private Result invokeLater(final Invoker<?> invoker, final Invocation invocation, final ConcurrencyLimiter limiter, final long timeout) {
+        final long start = System.currentTimeMillis();
+        // cleared by ConsumerContextFilter once the caller returns
+        final Map<String, String> attachments = new HashMap<String, String>(RpcContext.getContext().getAttachments());
+        final CompletableFuture<Void> permit = limiter.acquireAsync();
+        final Timeout expiry = WAIT_TIMER.newTimeout(t -> {
+            // fails only if the permit is still not acquired
+            permit.completeExceptionally(waitTimeout(invoker, invocation, limiter, System.currentTimeMillis() - start, timeout));
+        }, timeout, TimeUnit.MILLISECONDS);
+        final CompletableFuture<Object> valueFuture = new CompletableFuture<>();
+        final CompletableFuture<Result> resultFuture = new CompletableFuture<>();
+        permit.whenComplete((v, t) -> {
+            if (t != null) {
+                valueFuture.completeExceptionally(t);
+                resultFuture.complete(new RpcResult(t));
+                return;
+            }
+            expiry.cancel();
+            // runs on the thread releasing the permit: invoke within a context of the caller, then restore its own
+            RpcContext releasing = RpcContext.getContext();
+            RpcContext.removeContext();
+            RpcContext.getContext().setAttachments(attachments);
+            try {
+                complete(invokeWithPermit(invoker, invocation, limiter), valueFuture, resultFuture);
+            } catch (Throwable e) {
+                valueFuture.completeExceptionally(e);
+                resultFuture.complete(new RpcResult(e));
+            } finally {
+                RpcContext.restoreContext(releasing);
             }
+        });
+        RpcContext.getContext().setFuture(valueFuture);
+        if (RpcUtils.isGeneratedFuture(invocation) || RpcUtils.isFutureReturnType(invocation)) {
+            return new AsyncRpcResult(valueFuture, resultFuture, false);
         }
+        return new SimpleAsyncRpcResult(valueFuture, resultFuture, false);
+    }
+
+    private static void complete(Result result, final CompletableFuture<Object> valueFuture, final CompletableFuture<Result> resultFuture) {
+        if (!(result instanceof AsyncRpcResult)) {
+            resultFuture.complete(result);
+            if (result.hasException()) {
+                valueFuture.completeExceptionally(result.getException());
+            } else {
+                valueFuture.complete(result.getValue());
+            }
+            return;
+        }
+        final AsyncRpcResult asyncResult = (AsyncRpcResult) result;
+        CompletableFuture<?> future = asyncResult.getValueFuture();
+        future.whenComplete((value, t) -> {
+            if (t instanceof CompletionException && t.getCause() != null) {
+                t = t.getCause();
+            }
+            Result r = asyncResult.getResultFuture().getNow(null);
+            resultFuture.complete(r != null ? r : (t == null ? new RpcResult(value) : new RpcResult(t)));
+            if (t != null) {
+                valueFuture.completeExceptionally(t);
+            } else {
+                valueFuture.complete(value);
+            }
+        });
+    }
+
+    private static RpcException waitTimeout(Invoker<?> invoker, Invocation invocation, ConcurrencyLimiter limiter, long elapsed, long timeout) {
+        return new RpcException("Waiting concurrent invoke timeout in client-side for service:  "
+                + invoker.getInterface().getName() + ", method: "
+                + invocation.getMethodName() + ", elapsed: " + elapsed
+                + ", timeout: " + timeout + ". concurrent invokes: " + limiter.getActive()
+                + ". max concurrent invoke limit: " + limiter.getMax());
     }
 
 }
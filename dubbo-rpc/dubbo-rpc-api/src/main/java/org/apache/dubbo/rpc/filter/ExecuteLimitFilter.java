@@ -25,8 +25,7 @@ import org.apache.dubbo.rpc.Invoker;
 import org.apache.dubbo.rpc.Result;
 import org.apache.dubbo.rpc.RpcException;
 import org.apache.dubbo.rpc.RpcStatus;
-
-import java.util.concurrent.Semaphore;
+import org.apache.dubbo.rpc.support.ConcurrencyLimiter;
 
 /**
  * ThreadLimitInvokerFilter
@@ -38,7 +37,7 @@ public class ExecuteLimitFilter implements Filter {
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
         URL url = invoker.getUrl();
         String methodName = invocation.getMethodName();
-        Semaphore executesLimit = null;
+        ConcurrencyLimiter executesLimit = null;
         boolean acquireResult = false;
         int max = url.getMethodParameter(methodName, Constants.EXECUTES_KEY, 0);
         if (max > 0) {
@@ -46,9 +45,9 @@ public class ExecuteLimitFilter implements Filter {
 //            if (count.getActive() >= max) {
             /**
              * http://manzhizhen.iteye.com/blog/2386408
-             * use semaphore for concurrency control (to limit thread number)
+             * use a lock free limiter for concurrency control (to limit thread number)
              */
-            executesLimit = count.getSemaphore(max);
+            executesLimit = count.getExecutesLimiter(max);
             if(executesLimit != null && !(acquireResult = executesLimit.tryAcquire())) {
                 throw new RpcException("Failed to invoke method " + invocation.getMethodName() + " in provider " + url + ", cause: The service using threads greater than <dubbo:service executes=\"" + max + "\" /> limited.");
             }
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.support;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the concurrent invocations without locking: the permits are an atomic counter, and the callers waiting
+ * for a permit are futures in a lock-free queue, completed by the thread releasing a permit.
+ * Releasing a permit costs a single atomic operation when no caller is waiting.
+ * <p>
+ * A waiter completed by {@link #release()} runs its callbacks on the releasing thread. If such a callback releases
+ * a permit of the same limiter again, the permit is handed on by the dispatch loop already running on that thread,
+ * so a long queue is drained iteratively instead of recursing once per waiter.
+ *
+ * @see org.apache.dubbo.rpc.filter.ActiveLimitFilter
+ * @see org.apache.dubbo.rpc.filter.ExecuteLimitFilter
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * The limiters dispatching on the current thread
+     */
+    private static final ThreadLocal<Set<ConcurrencyLimiter>> DISPATCHING = ThreadLocal.withInitial(
+            () -> Collections.newSetFromMap(new IdentityHashMap<ConcurrencyLimiter, Boolean>()));
+
+    private final int max;
+
+    private final AtomicInteger permits;
+
+    private final Queue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<CompletableFuture<Void>>();
+
+    /**
+     * The waiters in the queue, checked before polling it
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public ConcurrencyLimiter(int max) {
+        this.max = max;
+        this.permits = new AtomicInteger(max);
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the invocations holding a permit
+     */
+    public int getActive() {
+        return max - permits.get();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * Take a permit if one is free and no caller is waiting for one, so that the waiters are served in their order.
+     * Never waits.
+     */
+    public boolean tryAcquire() {
+        return waiting.get() == 0 && takePermit();
+    }
+
+    private boolean takePermit() {
+        for (; ; ) {
+            int current = permits.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (permits.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take a permit, the future completes once it is taken. Cancel the future to stop waiting:
+     * if it could not be cancelled the permit was taken and must be released.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        if (tryAcquire()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<Void>();
+        waiters.offer(waiter);
+        waiting.incrementAndGet();
+        // a permit may have been released before the waiter was queued
+        dispatch();
+        return waiter;
+    }
+
+    /**
+     * Take a permit, waiting for it at most the given time.
+     *
+     * @return false if no permit was free within the timeout
+     */
+    public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        if (tryAcquire()) {
+            return true;
+        }
+        CompletableFuture<Void> waiter = acquireAsync();
+        try {
+            waiter.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return !waiter.cancel(false);
+        } catch (InterruptedException e) {
+            if (!waiter.cancel(false)) {
+                release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            // never happens, the waiters are only completed normally
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.incrementAndGet();
+        if (waiting.get() > 0) {
+            dispatch();
+        }
+    }
+
+    /**
+     * Hand the free permits to the waiters in their order.
+     */
+    private void dispatch() {
+        Set<ConcurrencyLimiter> dispatching = DISPATCHING.get();
+        if (!dispatching.add(this)) {
+            // called back by a waiter completed below, the loop there checks the permits again
+            return;
+        }
+        try {
+            while (waiting.get() > 0 && takePermit()) {
+                CompletableFuture<Void> waiter = waiters.poll();
+                if (waiter == null) {
+                    // polled by another dispatch which has not counted it yet, check again: a waiter queued
+                    // meanwhile may have missed the permit held here
+                    permits.incrementAndGet();
+                    continue;
+                }
+                waiting.decrementAndGet();
+                if (!waiter.complete(null)) {
+                    // cancelled
+                    permits.incrementAndGet();
+                }
+            }
+        } finally {
+            dispatching.remove(this);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc;
+
+import org.apache.dubbo.common.URL;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RpcStatusTest {
+
+    @Test
+    public void testSnapshot() {
+        URL url = URL.valueOf("dubbo://127.0.0.1:20880/org.apache.dubbo.rpc.RpcStatusTest.snapshot");
+        RpcStatus.beginCount(url, "echo");
+        RpcStatus.beginCount(url, "echo");
+        RpcStatus.endCount(url, "echo", 10, true);
+        RpcStatus.endCount(url, "echo", 30, false);
+        RpcStatus.beginCount(url, "echo");
+
+        RpcStatus.Snapshot snapshot = RpcStatus.getStatus(url, "echo").getSnapshot();
+        Assert.assertEquals(1, snapshot.getActive());
+        Assert.assertEquals(2, snapshot.getTotal());
+        Assert.assertEquals(1, snapshot.getFailed());
+        Assert.assertEquals(1, snapshot.getSucceeded());
+        Assert.assertEquals(40, snapshot.getTotalElapsed());
+        Assert.assertEquals(20, snapshot.getAverageElapsed());
+        Assert.assertEquals(30, snapshot.getMaxElapsed());
+        Assert.assertEquals(30, snapshot.getFailedMaxElapsed());
+        Assert.assertEquals(10, snapshot.getSucceededMaxElapsed());
+        Assert.assertEquals(10, snapshot.getSucceededAverageElapsed());
+
+        // the service counts every method
+        Assert.assertEquals(2, RpcStatus.getStatus(url).getSnapshot().getTotal());
+        RpcStatus.removeStatus(url);
+        RpcStatus.removeStatus(url, "echo");
+    }
+
+    @Test
+    public void testConcurrentCount() throws Exception {
+        final URL url = URL.valueOf("dubbo://127.0.0.1:20880/org.apache.dubbo.rpc.RpcStatusTest.concurrent");
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            final int thread = i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        RpcStatus.beginCount(url, "echo");
+                        RpcStatus.endCount(url, "echo", thread, j % 2 == 0);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        RpcStatus status = RpcStatus.getStatus(url, "echo");
+        Assert.assertEquals(0, status.getActive());
+        Assert.assertEquals(8000, status.getTotal());
+        Assert.assertEquals(4000, status.getFailed());
+        Assert.assertEquals(7, status.getMaxElapsed());
+        RpcStatus.removeStatus(url);
+        RpcStatus.removeStatus(url, "echo");
+    }
+}
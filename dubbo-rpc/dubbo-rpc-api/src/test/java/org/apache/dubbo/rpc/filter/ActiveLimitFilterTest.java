@@ -16,20 +16,36 @@
  */
 package org.apache.dubbo.rpc.filter;
 
+import org.apache.dubbo.common.Constants;
 import org.apache.dubbo.common.URL;
+import org.apache.dubbo.rpc.AsyncRpcResult;
 import org.apache.dubbo.rpc.Filter;
 import org.apache.dubbo.rpc.Invocation;
 import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcContext;
 import org.apache.dubbo.rpc.RpcException;
+import org.apache.dubbo.rpc.RpcInvocation;
 import org.apache.dubbo.rpc.support.BlockMyInvoker;
 import org.apache.dubbo.rpc.support.MockInvocation;
 import org.apache.dubbo.rpc.support.MyInvoker;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * ActiveLimitFilterTest.java
@@ -90,4 +106,113 @@ public class ActiveLimitFilterTest {
         }
         assertNotSame(0, count);
     }
-}
\ No newline at end of file
+
+    @SuppressWarnings("unchecked")
+    private static Invoker<ActiveLimitFilterTest> asyncInvoker(URL url, CompletableFuture<Object> first, CompletableFuture<Object> second) {
+        Invoker<ActiveLimitFilterTest> invoker = mock(Invoker.class);
+        given(invoker.getUrl()).willReturn(url);
+        given(invoker.getInterface()).willReturn(ActiveLimitFilterTest.class);
+        given(invoker.invoke(any(Invocation.class))).willReturn(new AsyncRpcResult(first), new AsyncRpcResult(second));
+        return invoker;
+    }
+
+    private static Invocation asyncInvocation() {
+        RpcInvocation invocation = new RpcInvocation("echo", new Class<?>[0], new Object[0]);
+        invocation.setAttachment(Constants.ASYNC_KEY, "true");
+        return invocation;
+    }
+
+    @Test
+    public void testInvokeAsyncWaitsWithoutBlocking() throws Exception {
+        URL url = URL.valueOf("test://test:11/asyncWait?actives=1&timeout=1000");
+        CompletableFuture<Object> first = new CompletableFuture<Object>();
+        CompletableFuture<Object> second = new CompletableFuture<Object>();
+        Invoker<ActiveLimitFilterTest> invoker = asyncInvoker(url, first, second);
+
+        activeLimitFilter.invoke(invoker, asyncInvocation());
+        Result queued = activeLimitFilter.invoke(invoker, asyncInvocation());
+        // the second invocation waits for the permit of the first one
+        verify(invoker, times(1)).invoke(any(Invocation.class));
+
+        first.complete("a");
+        verify(invoker, times(2)).invoke(any(Invocation.class));
+        second.complete("b");
+        Assert.assertEquals("b", ((AsyncRpcResult) queued).getValueFuture().get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvokeAsyncWithCallerContext() throws Exception {
+        URL url = URL.valueOf("test://test:11/asyncContext?actives=1&timeout=1000");
+        final CompletableFuture<Object> first = new CompletableFuture<Object>();
+        final List<String> callers = new ArrayList<String>();
+        Invoker<ActiveLimitFilterTest> invoker = mock(Invoker.class);
+        given(invoker.getUrl()).willReturn(url);
+        given(invoker.getInterface()).willReturn(ActiveLimitFilterTest.class);
+        given(invoker.invoke(any(Invocation.class))).willAnswer(mock -> {
+            callers.add(RpcContext.getContext().getAttachment("caller"));
+            return new AsyncRpcResult(callers.size() == 1 ? first : CompletableFuture.completedFuture("b"));
+        });
+
+        RpcContext.getContext().setAttachment("caller", "first");
+        activeLimitFilter.invoke(invoker, asyncInvocation());
+        RpcContext.getContext().setAttachment("caller", "second");
+        Result queued = activeLimitFilter.invoke(invoker, asyncInvocation());
+        RpcContext.getContext().clearAttachments();
+
+        final String[] after = new String[1];
+        Thread releasing = new Thread(() -> {
+            RpcContext.getContext().setAttachment("caller", "releasing");
+            first.complete("a");
+            after[0] = RpcContext.getContext().getAttachment("caller");
+        });
+        releasing.start();
+        releasing.join();
+        Assert.assertEquals("b", ((AsyncRpcResult) queued).getValueFuture().get(1, TimeUnit.SECONDS));
+        Assert.assertEquals("second", callers.get(1));
+        Assert.assertEquals("releasing", after[0]);
+    }
+
+    @Test
+    public void testInvokeAsyncWaitTimeout() throws Exception {
+        URL url = URL.valueOf("test://test:11/asyncTimeout?actives=1&timeout=50");
+        Invoker<ActiveLimitFilterTest> invoker = asyncInvoker(url, new CompletableFuture<Object>(), new CompletableFuture<Object>());
+
+        activeLimitFilter.invoke(invoker, asyncInvocation());
+        Result queued = activeLimitFilter.invoke(invoker, asyncInvocation());
+        try {
+            ((AsyncRpcResult) queued).getValueFuture().get(1, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException expected) {
+            Assert.assertTrue(expected.getCause() instanceof RpcException);
+        }
+        verify(invoker, times(1)).invoke(any(Invocation.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvokeAsyncQueueFailingAtOnce() throws Exception {
+        URL url = URL.valueOf("test://test:11/asyncFailing?actives=1&timeout=10000");
+        CompletableFuture<Object> first = new CompletableFuture<Object>();
+        Invoker<ActiveLimitFilterTest> invoker = mock(Invoker.class);
+        given(invoker.getUrl()).willReturn(url);
+        given(invoker.getInterface()).willReturn(ActiveLimitFilterTest.class);
+        given(invoker.invoke(any(Invocation.class))).willReturn(new AsyncRpcResult(first)).willThrow(new RpcException("down"));
+
+        activeLimitFilter.invoke(invoker, asyncInvocation());
+        Result last = null;
+        for (int i = 0; i < 1000; i++) {
+            last = activeLimitFilter.invoke(invoker, asyncInvocation());
+        }
+        // every queued invocation fails on the releasing thread, each one handing its permit to the next
+        Thread releasing = new Thread(null, () -> first.complete("a"), "small-stack", 128 * 1024);
+        releasing.start();
+        releasing.join();
+        try {
+            ((AsyncRpcResult) last).getValueFuture().get(1, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException expected) {
+            Assert.assertEquals("down", expected.getCause().getMessage());
+        }
+    }
+}
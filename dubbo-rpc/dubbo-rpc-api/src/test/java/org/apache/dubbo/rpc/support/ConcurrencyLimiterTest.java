@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.dubbo.rpc.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testTryAcquire() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(2, limiter.getActive());
+        limiter.release();
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testAcquireAsyncInOrder() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        Assert.assertTrue(limiter.acquireAsync().isDone());
+        CompletableFuture<Void> first = limiter.acquireAsync();
+        CompletableFuture<Void> second = limiter.acquireAsync();
+        Assert.assertFalse(first.isDone());
+        Assert.assertEquals(2, limiter.getWaiting());
+
+        limiter.release();
+        Assert.assertTrue(first.isDone());
+        Assert.assertFalse(second.isDone());
+        limiter.release();
+        Assert.assertTrue(second.isDone());
+        Assert.assertEquals(0, limiter.getWaiting());
+        Assert.assertEquals(1, limiter.getActive());
+    }
+
+    @Test
+    public void testCancelledWaiterSkipped() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        limiter.tryAcquire();
+        CompletableFuture<Void> cancelled = limiter.acquireAsync();
+        CompletableFuture<Void> waiting = limiter.acquireAsync();
+        Assert.assertTrue(cancelled.cancel(false));
+
+        limiter.release();
+        Assert.assertTrue(waiting.isDone());
+        Assert.assertEquals(1, limiter.getActive());
+    }
+
+    @Test
+    public void testAcquireTimeout() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        limiter.tryAcquire();
+        Assert.assertFalse(limiter.acquire(10, TimeUnit.MILLISECONDS));
+        limiter.release();
+        // the abandoned waiter does not keep the permit
+        Assert.assertTrue(limiter.acquire(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(3);
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            Assert.assertTrue(limiter.acquire(10, TimeUnit.SECONDS));
+                            int current = active.incrementAndGet();
+                            maxActive.accumulateAndGet(current, Math::max);
+                            active.decrementAndGet();
+                            limiter.release();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertTrue(maxActive.get() <= 3);
+        Assert.assertEquals(0, limiter.getActive());
+        Assert.assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    public void testNoWaiterStranded() throws Exception {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        final AtomicInteger stranded = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 5000; j++) {
+                            CompletableFuture<Void> waiter = limiter.acquireAsync();
+                            try {
+                                // the other threads may all be done, only a lost wakeup leaves the waiter pending
+                                waiter.get(5, TimeUnit.SECONDS);
+                            } catch (TimeoutException e) {
+                                stranded.incrementAndGet();
+                                return;
+                            }
+                            limiter.release();
+                        }
+                    } catch (Exception e) {
+                        stranded.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+        Assert.assertEquals(0, stranded.get());
+        Assert.assertEquals(0, limiter.getActive());
+        Assert.assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    public void testReleaseFromWaiterDoesNotRecurse() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        limiter.tryAcquire();
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 100000; i++) {
+            // like an invocation failing at once on the thread which handed it the permit
+            last = limiter.acquireAsync().thenRun(limiter::release);
+        }
+        limiter.release();
+        Assert.assertTrue(last.isDone());
+        Assert.assertFalse(last.isCompletedExceptionally());
+        Assert.assertEquals(0, limiter.getActive());
+        Assert.assertEquals(0, limiter.getWaiting());
+    }
+}
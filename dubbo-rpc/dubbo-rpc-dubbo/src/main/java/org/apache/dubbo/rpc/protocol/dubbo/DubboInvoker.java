@@ -84,6 +84,10 @@ public class DubboInvoker<T> extends AbstractInvoker<T> {
             boolean isAsyncFuture = RpcUtils.isGeneratedFuture(inv) || RpcUtils.isFutureReturnType(inv);
             boolean isOneway = RpcUtils.isOneway(getUrl(), invocation);
             int timeout = getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+            Object attemptTimeout = RpcContext.getContext().get(Constants.ATTEMPT_TIMEOUT_KEY);
+            if (attemptTimeout instanceof Integer && (Integer) attemptTimeout > 0) {
+                timeout = Math.min(timeout, (Integer) attemptTimeout);
+            }
             if (isOneway) {
                 boolean isSent = getUrl().getMethodParameter(methodName, Constants.SENT_KEY, false);
                 currentClient.send(inv, isSent);
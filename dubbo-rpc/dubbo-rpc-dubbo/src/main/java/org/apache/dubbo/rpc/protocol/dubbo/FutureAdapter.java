@@ -18,6 +18,7 @@ package org.apache.dubbo.rpc.protocol.dubbo;
 
 import org.apache.dubbo.remoting.exchange.ResponseCallback;
 import org.apache.dubbo.remoting.exchange.ResponseFuture;
+import org.apache.dubbo.remoting.exchange.support.DefaultFuture;
 import org.apache.dubbo.rpc.Result;
 import org.apache.dubbo.rpc.RpcException;
 
@@ -64,12 +65,11 @@ public class FutureAdapter<V> extends CompletableFuture<V> {
 
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
-        return false;
-    }
-
-    @Override
-    public boolean isCancelled() {
-        return false;
+        if (future instanceof DefaultFuture && !future.isDone()) {
+            // drop the pending request, a late response will be ignored
+            ((DefaultFuture) future).cancel();
+        }
+        return super.cancel(mayInterruptIfRunning);
     }
 
     @Override
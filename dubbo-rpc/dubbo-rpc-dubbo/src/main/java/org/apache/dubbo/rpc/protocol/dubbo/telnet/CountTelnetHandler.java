@@ -129,7 +129,7 @@ public class CountTelnetHandler implements TelnetHandler {
         header.add("max");
         if (method == null || method.length() == 0) {
             for (Method m : invoker.getInterface().getMethods()) {
-                RpcStatus count = RpcStatus.getStatus(url, m.getName());
+                RpcStatus.Snapshot count = RpcStatus.getStatus(url, m.getName()).getSnapshot();
                 List<String> row = new ArrayList<String>();
                 row.add(m.getName());
                 row.add(String.valueOf(count.getTotal()));
@@ -148,7 +148,7 @@ public class CountTelnetHandler implements TelnetHandler {
                 }
             }
             if (found) {
-                RpcStatus count = RpcStatus.getStatus(url, method);
+                RpcStatus.Snapshot count = RpcStatus.getStatus(url, method).getSnapshot();
                 List<String> row = new ArrayList<String>();
                 row.add(method);
                 row.add(String.valueOf(count.getTotal()));